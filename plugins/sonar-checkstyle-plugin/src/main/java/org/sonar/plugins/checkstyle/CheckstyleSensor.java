@@ -19,12 +19,14 @@
  */
 package org.sonar.plugins.checkstyle;
 
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.Logs;
 
+@ConcurrentExecution
 public class CheckstyleSensor implements Sensor {
 
   private RulesProfile profile;
@@ -20,6 +20,7 @@
 package org.sonar.plugins.cobertura;
 
 import org.sonar.api.*;
+import org.sonar.plugins.cobertura.api.AbstractCoberturaParser;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -37,6 +38,13 @@ import java.util.List;
         name = "Maxmem",
         description = "Maximum memory to pass to JVM of Cobertura processes",
         project = true,
+        global = true),
+    @Property(
+        key = AbstractCoberturaParser.THREADS_PROPERTY,
+        defaultValue = AbstractCoberturaParser.THREADS_DEFAULT_VALUE + "",
+        name = "Parser threads",
+        description = "Number of threads used to parse the packages of the Cobertura xml report file.",
+        project = true,
         global = true) })
 public class CoberturaPlugin extends SonarPlugin {
 
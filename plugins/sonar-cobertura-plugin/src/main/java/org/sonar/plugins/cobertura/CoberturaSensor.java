@@ -22,6 +22,7 @@ package org.sonar.plugins.cobertura;
 import java.io.File;
 
 import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.CoverageExtension;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
@@ -31,6 +32,7 @@ import org.sonar.api.resources.Resource;
 import org.sonar.plugins.cobertura.api.AbstractCoberturaParser;
 import org.sonar.plugins.cobertura.api.CoberturaUtils;
 
+@ConcurrentExecution
 public class CoberturaSensor implements Sensor, CoverageExtension {
 
   public boolean shouldExecuteOnProject(Project project) {
@@ -40,18 +42,23 @@ public class CoberturaSensor implements Sensor, CoverageExtension {
   public void analyse(Project project, SensorContext context) {
     File report = CoberturaUtils.getReport(project);
     if (report != null) {
-      parseReport(report, context);
+      parseReport(report, context, project.getConfiguration().getInt(AbstractCoberturaParser.THREADS_PROPERTY,
+          AbstractCoberturaParser.THREADS_DEFAULT_VALUE));
     }
   }
 
   protected void parseReport(File xmlFile, final SensorContext context) {
+    parseReport(xmlFile, context, AbstractCoberturaParser.THREADS_DEFAULT_VALUE);
+  }
+
+  protected void parseReport(File xmlFile, final SensorContext context, int threads) {
     LoggerFactory.getLogger(CoberturaSensor.class).info("parsing {}", xmlFile);
     new AbstractCoberturaParser() {
       @Override
       protected Resource<?> getResource(String fileName) {
         return new JavaFile(fileName);
       }
-    }.parseReport(xmlFile, context);
+    }.parseReport(xmlFile, context, threads);
   }
 
   @Override
@@ -19,22 +19,33 @@
  */
 package org.sonar.plugins.cobertura.api;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.staxmate.in.SMHierarchicCursor;
 import org.codehaus.staxmate.in.SMInputCursor;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.measures.CoverageMeasuresBuilder;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.utils.SonarException;
 import org.sonar.api.utils.StaxParser;
 import org.sonar.api.utils.XmlParserException;
 
 import javax.xml.stream.XMLStreamException;
-import java.io.File;
+import java.io.*;
 import java.text.ParseException;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static java.util.Locale.ENGLISH;
 import static org.sonar.api.utils.ParsingUtils.parseNumber;
@@ -44,6 +55,21 @@ import static org.sonar.api.utils.ParsingUtils.parseNumber;
  */
 public abstract class AbstractCoberturaParser {
 
+  /**
+   * Number of threads used to parse the packages of the report. The report is parsed sequentially by default.
+   *
+   * @since 2.8
+   */
+  public static final String THREADS_PROPERTY = "sonar.cobertura.parser.threads";
+  public static final int THREADS_DEFAULT_VALUE = 1;
+
+  private static final int PARSED_PACKAGES_PER_THREAD = 4;
+  private static final int SPLIT_BUFFER_SIZE = 64 * 1024;
+  private static final byte[] PACKAGE_START = toBytes("<package");
+  private static final byte[] PACKAGE_END = toBytes("</package>");
+  private static final byte[] XML_DECLARATION_START = toBytes("<?xml");
+  private static final int XML_DECLARATION_MAX_LENGTH = 256;
+
   public void parseReport(File xmlFile, final SensorContext context) {
     try {
       StaxParser parser = new StaxParser(new StaxParser.XmlStreamHandler() {
@@ -63,17 +89,43 @@ public abstract class AbstractCoberturaParser {
     }
   }
 
+  /**
+   * A first pass locates the <code>package</code> elements in the report, then the packages are parsed concurrently.
+   * The measures are saved by the calling thread, in the order of the report.
+   *
+   * @since 2.8
+   */
+  public void parseReport(File xmlFile, SensorContext context, int threads) {
+    List<long[]> packages = null;
+    if (threads > 1) {
+      packages = splitPackages(xmlFile);
+    }
+    if (packages == null || packages.size() < 2) {
+      parseReport(xmlFile, context);
+    } else {
+      parsePackagesConcurrently(xmlFile, packages, context, threads);
+    }
+  }
+
   private void collectPackageMeasures(SMInputCursor pack, SensorContext context) throws ParseException, XMLStreamException {
     while (pack.getNext() != null) {
-      Map<String, CoverageMeasuresBuilder> builderByFilename = Maps.newHashMap();
-      collectFileMeasures(pack.descendantElementCursor("class"), builderByFilename);
-      for (Map.Entry<String, CoverageMeasuresBuilder> entry : builderByFilename.entrySet()) {
-        String filename = sanitizeFilename(entry.getKey());
-        Resource file = getResource(filename);
-        if (fileExists(context, file)) {
-          for (Measure measure : entry.getValue().createMeasures()) {
-            context.saveMeasure(file, measure);
-          }
+      saveMeasures(collectPackage(pack), context);
+    }
+  }
+
+  private Map<String, CoverageMeasuresBuilder> collectPackage(SMInputCursor pack) throws ParseException, XMLStreamException {
+    Map<String, CoverageMeasuresBuilder> builderByFilename = Maps.newHashMap();
+    collectFileMeasures(pack.descendantElementCursor("class"), builderByFilename);
+    return builderByFilename;
+  }
+
+  private void saveMeasures(Map<String, CoverageMeasuresBuilder> builderByFilename, SensorContext context) {
+    for (Map.Entry<String, CoverageMeasuresBuilder> entry : builderByFilename.entrySet()) {
+      String filename = sanitizeFilename(entry.getKey());
+      Resource file = getResource(filename);
+      if (fileExists(context, file)) {
+        for (Measure measure : entry.getValue().createMeasures()) {
+          context.saveMeasure(file, measure);
         }
       }
     }
@@ -99,17 +151,31 @@ public abstract class AbstractCoberturaParser {
     SMInputCursor line = clazz.childElementCursor("lines").advance().childElementCursor("line");
     while (line.getNext() != null) {
       int lineId = Integer.parseInt(line.getAttrValue("number"));
-      builder.setHits(lineId, (int) parseNumber(line.getAttrValue("hits"), ENGLISH));
+      builder.setHits(lineId, parseHits(line.getAttrValue("hits")));
 
       String isBranch = line.getAttrValue("branch");
       String text = line.getAttrValue("condition-coverage");
       if (StringUtils.equals(isBranch, "true") && StringUtils.isNotBlank(text)) {
-        String[] conditions = StringUtils.split(StringUtils.substringBetween(text, "(", ")"), "/");
-        builder.setConditions(lineId, Integer.parseInt(conditions[1]), Integer.parseInt(conditions[0]));
+        // format is "50% (1/2)"
+        int start = text.indexOf('(');
+        int separator = text.indexOf('/', start);
+        int end = text.indexOf(')', separator);
+        builder.setConditions(lineId, Integer.parseInt(text.substring(separator + 1, end)), Integer.parseInt(text.substring(start + 1, separator)));
       }
     }
   }
 
+  /**
+   * Hits are integers in the reports generated by Cobertura. The number format is used only for other values.
+   */
+  private static int parseHits(String hits) throws ParseException {
+    try {
+      return Integer.parseInt(hits);
+    } catch (NumberFormatException e) {
+      return (int) parseNumber(hits, ENGLISH);
+    }
+  }
+
   private String sanitizeFilename(String s) {
     String fileName = FilenameUtils.removeExtension(s);
     fileName = fileName.replace('/', '.').replace('\\', '.');
@@ -117,4 +183,215 @@ public abstract class AbstractCoberturaParser {
   }
 
   protected abstract Resource getResource(String fileName);
+
+  private void parsePackagesConcurrently(File xmlFile, List<long[]> packages, SensorContext context, int threads) {
+    final ThreadLocal<PackageParser> parsers = new ThreadLocal<PackageParser>() {
+      @Override
+      protected PackageParser initialValue() {
+        return new PackageParser();
+      }
+    };
+    byte[] declaration = readXmlDeclaration(xmlFile);
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, packages.size()));
+    try {
+      LinkedList<Future<Map<String, CoverageMeasuresBuilder>>> pendingPackages = Lists.newLinkedList();
+      int next = 0;
+      while (next < packages.size() || !pendingPackages.isEmpty()) {
+        while (next < packages.size() && pendingPackages.size() < threads * PARSED_PACKAGES_PER_THREAD) {
+          pendingPackages.add(executor.submit(new ParsePackageTask(xmlFile, declaration, packages.get(next), parsers)));
+          next++;
+        }
+        saveMeasures(getParsedPackage(pendingPackages.removeFirst()), context);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static Map<String, CoverageMeasuresBuilder> getParsedPackage(Future<Map<String, CoverageMeasuresBuilder>> future) {
+    try {
+      return future.get();
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException("Interrupted while parsing the Cobertura report", e);
+
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new XmlParserException(e.getCause());
+    }
+  }
+
+  /**
+   * Returns the offsets of the first and after the last bytes of each <code>package</code> element, or null if the report
+   * can not be split. Elements are searched in bytes, which is possible because Cobertura writes ASCII-compatible XML.
+   */
+  static List<long[]> splitPackages(File xmlFile) {
+    List<long[]> packages = Lists.newArrayList();
+    InputStream input = null;
+    try {
+      input = new FileInputStream(xmlFile);
+      byte[] buffer = new byte[SPLIT_BUFFER_SIZE];
+      long offset = 0L;
+      long start = -1L;
+      int startMatch = 0;
+      int endMatch = 0;
+      int read;
+      while ((read = input.read(buffer)) != -1) {
+        for (int i = 0; i < read; i++, offset++) {
+          byte b = buffer[i];
+          if (startMatch == PACKAGE_START.length) {
+            // excludes the <packages> element
+            if (b == ' ' || b == '>' || b == '\t' || b == '\r' || b == '\n') {
+              if (start >= 0L) {
+                return null;
+              }
+              start = offset - PACKAGE_START.length;
+            }
+            startMatch = 0;
+          }
+          startMatch = match(PACKAGE_START, startMatch, b);
+          endMatch = match(PACKAGE_END, endMatch, b);
+          if (endMatch == PACKAGE_END.length) {
+            if (start < 0L) {
+              return null;
+            }
+            packages.add(new long[]{start, offset + 1});
+            start = -1L;
+            endMatch = 0;
+          }
+        }
+      }
+      return start < 0L ? packages : null;
+
+    } catch (IOException e) {
+      throw new SonarException("Fail to read the Cobertura report: " + xmlFile, e);
+
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  /**
+   * The XML declaration is copied before each package, so that the encoding of the report is kept.
+   */
+  static byte[] readXmlDeclaration(File xmlFile) {
+    InputStream input = null;
+    try {
+      input = new FileInputStream(xmlFile);
+      byte[] buffer = new byte[XML_DECLARATION_MAX_LENGTH];
+      int length = 0;
+      int read;
+      while (length < buffer.length && (read = input.read(buffer, length, buffer.length - length)) != -1) {
+        length += read;
+      }
+      if (startsWith(buffer, length, XML_DECLARATION_START)) {
+        for (int i = XML_DECLARATION_START.length; i < length - 1; i++) {
+          if (buffer[i] == '?' && buffer[i + 1] == '>') {
+            byte[] declaration = new byte[i + 2];
+            System.arraycopy(buffer, 0, declaration, 0, declaration.length);
+            return declaration;
+          }
+        }
+      }
+      return new byte[0];
+
+    } catch (IOException e) {
+      throw new SonarException("Fail to read the Cobertura report: " + xmlFile, e);
+
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private static boolean startsWith(byte[] buffer, int length, byte[] prefix) {
+    if (length < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (buffer[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The first character of the patterns does not appear anywhere else in the patterns, so a mismatch restarts the search.
+   */
+  private static int match(byte[] pattern, int matched, byte b) {
+    if (pattern[matched] == b) {
+      return matched + 1;
+    }
+    return pattern[0] == b ? 1 : 0;
+  }
+
+  private static byte[] toBytes(String s) {
+    try {
+      return s.getBytes("US-ASCII");
+    } catch (UnsupportedEncodingException e) {
+      throw new SonarException(e);
+    }
+  }
+
+  /**
+   * Parses a <code>package</code> element as a standalone document. The Stax parser is created once, it's not thread-safe.
+   */
+  private final class PackageParser implements StaxParser.XmlStreamHandler {
+    private final StaxParser parser;
+    private Map<String, CoverageMeasuresBuilder> builderByFilename;
+
+    private PackageParser() {
+      this.parser = new StaxParser(this);
+    }
+
+    private Map<String, CoverageMeasuresBuilder> parse(byte[] xml) {
+      try {
+        parser.parse(new ByteArrayInputStream(xml));
+        return builderByFilename;
+      } catch (XMLStreamException e) {
+        throw new XmlParserException(e);
+      } finally {
+        builderByFilename = null;
+      }
+    }
+
+    public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
+      try {
+        rootCursor.advance();
+        builderByFilename = collectPackage(rootCursor);
+      } catch (ParseException e) {
+        throw new XMLStreamException(e);
+      }
+    }
+  }
+
+  private static final class ParsePackageTask implements Callable<Map<String, CoverageMeasuresBuilder>> {
+    private final File xmlFile;
+    private final byte[] declaration;
+    private final long[] range;
+    private final ThreadLocal<PackageParser> parsers;
+
+    private ParsePackageTask(File xmlFile, byte[] declaration, long[] range, ThreadLocal<PackageParser> parsers) {
+      this.xmlFile = xmlFile;
+      this.declaration = declaration;
+      this.range = range;
+      this.parsers = parsers;
+    }
+
+    public Map<String, CoverageMeasuresBuilder> call() throws IOException {
+      byte[] xml = new byte[declaration.length + (int) (range[1] - range[0])];
+      System.arraycopy(declaration, 0, xml, 0, declaration.length);
+      RandomAccessFile file = new RandomAccessFile(xmlFile, "r");
+      try {
+        file.seek(range[0]);
+        file.readFully(xml, declaration.length, xml.length - declaration.length);
+      } finally {
+        file.close();
+      }
+      return parsers.get().parse(xml);
+    }
+  }
 }
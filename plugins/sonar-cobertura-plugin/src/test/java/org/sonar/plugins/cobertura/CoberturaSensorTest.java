@@ -212,6 +212,22 @@ public class CoberturaSensorTest {
         argThat(new IsMeasure(CoreMetrics.LINES_TO_COVER, 5.0))); // do not count line 26 twice
   }
 
+  @Test
+  public void shouldParsePackagesConcurrently() throws URISyntaxException {
+    SensorContext context = mock(SensorContext.class);
+    when(context.getResource(any(Resource.class))).thenReturn(new JavaFile("org.sonar.MyClass"));
+    new CoberturaSensor().parseReport(getCoverageReport(), context, 3);
+
+    final JavaFile file = new JavaFile("org.apache.commons.chain.config.ConfigParser");
+    verify(context).saveMeasure(eq(file), argThat(new IsMeasure(CoreMetrics.LINES_TO_COVER, 30.0)));
+    verify(context).saveMeasure(eq(file), argThat(new IsMeasure(CoreMetrics.UNCOVERED_LINES, 5.0)));
+    verify(context).saveMeasure(eq(file), argThat(new IsMeasure(CoreMetrics.CONDITIONS_TO_COVER, 6.0)));
+    verify(context).saveMeasure(eq(file), argThat(new IsMeasure(CoreMetrics.UNCOVERED_CONDITIONS, 2.0)));
+    verify(context).saveMeasure(
+        eq(new JavaFile("org.apache.commons.chain.impl.CatalogBase")),
+        argThat(new IsMeasure(CoreMetrics.COVERAGE_LINE_HITS_DATA,
+            "48=117;56=234;66=0;67=0;68=0;84=999;86=999;98=318;111=18;121=0;122=0;125=0;126=0;127=0;128=0;131=0;133=0")));
+  }
 
   private File getCoverageReport() throws URISyntaxException {
     return new File(getClass().getResource("/org/sonar/plugins/cobertura/CoberturaSensorTest/commons-chain-coverage.xml").toURI());
@@ -0,0 +1,62 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cobertura.api;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class AbstractCoberturaParserTest {
+
+  @Test
+  public void shouldSplitPackages() throws URISyntaxException, IOException {
+    File report = new File(getClass().getResource("/org/sonar/plugins/cobertura/CoberturaSensorTest/commons-chain-coverage.xml").toURI());
+    List<long[]> packages = AbstractCoberturaParser.splitPackages(report);
+
+    assertThat(packages.size(), is(8));
+    String xml = FileUtils.readFileToString(report, "UTF-8");
+    for (long[] range : packages) {
+      String pack = xml.substring((int) range[0], (int) range[1]);
+      assertThat(pack.startsWith("<package "), is(true));
+      assertThat(pack.endsWith("</package>"), is(true));
+    }
+    assertThat(new String(AbstractCoberturaParser.readXmlDeclaration(report), "UTF-8"), is("<?xml version=\"1.0\"?>"));
+  }
+
+  @Test
+  public void shouldNotSplitUnbalancedPackages() throws IOException {
+    File report = File.createTempFile("coverage", ".xml");
+    try {
+      FileUtils.writeStringToFile(report, "<coverage><packages><package name=\"foo\"><package name=\"bar\"></package></packages></coverage>");
+      assertThat(AbstractCoberturaParser.splitPackages(report), nullValue());
+      assertThat(AbstractCoberturaParser.readXmlDeclaration(report).length, is(0));
+    } finally {
+      FileUtils.deleteQuietly(report);
+    }
+  }
+}
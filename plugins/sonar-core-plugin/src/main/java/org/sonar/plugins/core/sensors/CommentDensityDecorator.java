@@ -22,6 +22,7 @@ package org.sonar.plugins.core.sensors;
 import java.util.Arrays;
 import java.util.List;
 
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.DependedUpon;
@@ -33,6 +34,7 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 
+@ConcurrentExecution
 public class CommentDensityDecorator implements Decorator {
 
   @DependsUpon
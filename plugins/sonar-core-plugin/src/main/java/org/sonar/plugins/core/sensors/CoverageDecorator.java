@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.core.sensors;
 
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.DependsUpon;
 import org.sonar.api.measures.CoreMetrics;
@@ -28,6 +29,7 @@ import org.sonar.api.measures.Metric;
 import java.util.Arrays;
 import java.util.Collection;
 
+@ConcurrentExecution
 public final class CoverageDecorator extends AbstractCoverageDecorator {
 
   @DependsUpon
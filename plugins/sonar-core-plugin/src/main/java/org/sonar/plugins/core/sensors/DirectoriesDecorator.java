@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.core.sensors;
 
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.DependedUpon;
@@ -35,6 +36,7 @@ import java.util.Collection;
 /**
  * @since 2.2
  */
+@ConcurrentExecution
 public final class DirectoriesDecorator implements Decorator {
 
   public boolean shouldExecuteOnProject(Project project) {
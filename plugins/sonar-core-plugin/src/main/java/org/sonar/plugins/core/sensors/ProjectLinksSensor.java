@@ -24,11 +24,13 @@ import org.apache.maven.model.CiManagement;
 import org.apache.maven.model.IssueManagement;
 import org.apache.maven.model.Scm;
 import org.apache.maven.project.MavenProject;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.ProjectLink;
 
+@ConcurrentExecution
 public class ProjectLinksSensor implements Sensor {
 
   public static final String KEY_HOME = "homepage";
@@ -21,6 +21,7 @@ package org.sonar.plugins.core.sensors;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.DateUtils;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Event;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
@@ -28,6 +29,7 @@ import org.sonar.api.resources.Project;
 
 import java.util.Iterator;
 
+@ConcurrentExecution
 public class VersionEventsSensor implements Sensor {
 
   private static final String SNAPSHOT_SUFFIX = "-SNAPSHOT";
@@ -37,6 +37,7 @@ import java.util.List;
 import java.util.Map;
 
 @DependsUpon(value = DecoratorBarriers.END_OF_VIOLATIONS_GENERATION)
+@ConcurrentExecution
 public class ViolationsDecorator implements Decorator {
 
   // temporary data for current resource
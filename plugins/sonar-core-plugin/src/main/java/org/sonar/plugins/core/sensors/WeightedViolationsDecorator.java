@@ -21,6 +21,7 @@ package org.sonar.plugins.core.sensors;
 
 import com.google.common.collect.Multiset;
 import com.google.common.collect.TreeMultiset;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.DependedUpon;
@@ -34,6 +35,7 @@ import org.sonar.api.utils.KeyValueFormat;
 
 import java.util.Map;
 
+@ConcurrentExecution
 public class WeightedViolationsDecorator implements Decorator {
 
   private Map<RulePriority, Integer> weights;
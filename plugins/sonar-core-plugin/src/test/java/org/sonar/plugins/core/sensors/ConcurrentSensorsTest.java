@@ -0,0 +1,92 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.core.sensors;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.maven.project.MavenProject;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.picocontainer.containers.TransientPicoContainer;
+import org.sonar.api.batch.BatchExtensionDictionnary;
+import org.sonar.api.batch.Event;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.ProjectLink;
+import org.sonar.batch.MavenPluginExecutor;
+import org.sonar.batch.events.EventBus;
+import org.sonar.batch.phases.SensorsExecutor;
+import org.sonar.jpa.session.DatabaseSessionFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class ConcurrentSensorsTest {
+
+  private CountDownLatch started = new CountDownLatch(2);
+  private List<Boolean> overlaps = Collections.synchronizedList(Lists.<Boolean>newArrayList());
+
+  @Test
+  public void shouldExecuteSensorsAtTheSameTime() throws Exception {
+    Project project = new Project("foo").setAnalysisVersion("1.0");
+    MavenProject pom = new MavenProject();
+    pom.setUrl("http://sonar.codehaus.org");
+    TransientPicoContainer ioc = new TransientPicoContainer();
+    ioc.addComponent(new ProjectLinksSensor(pom));
+    ioc.addComponent(new VersionEventsSensor());
+    PropertiesConfiguration configuration = new PropertiesConfiguration();
+    configuration.setProperty(SensorsExecutor.THREADS_PROPERTY, 2);
+    SensorsExecutor executor = new SensorsExecutor(new BatchExtensionDictionnary(ioc), project, mock(MavenPluginExecutor.class),
+        mock(EventBus.class), mock(SonarIndex.class), mock(DatabaseSessionFactory.class), configuration);
+
+    // each sensor waits for the other one
+    SensorContext context = mock(SensorContext.class);
+    doAnswer(new WaitForOtherSensor()).when(context).saveLink(any(ProjectLink.class));
+    doAnswer(new WaitForOtherSensor() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        super.answer(invocation);
+        return Lists.<Event>newArrayList();
+      }
+    }).when(context).getEvents(project);
+
+    executor.execute(project, context);
+
+    assertThat(overlaps, is((List<Boolean>) Lists.newArrayList(true, true)));
+  }
+
+  private class WaitForOtherSensor implements Answer<Object> {
+    public Object answer(InvocationOnMock invocation) throws Throwable {
+      started.countDown();
+      overlaps.add(started.await(5, TimeUnit.SECONDS));
+      return null;
+    }
+  }
+}
@@ -29,6 +29,7 @@ import org.sonar.api.measures.Measure;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.duplications.cpd.Match;
+import org.sonar.plugins.cpd.index.ExternalDuplication;
 
 import java.io.File;
 import java.util.*;
@@ -48,6 +49,14 @@ public class CpdAnalyser {
   }
 
   public void analyse(Iterator<Match> matches) {
+    analyse(matches, Collections.<String, List<ExternalDuplication>> emptyMap());
+  }
+
+  /**
+   * @param externalDuplications the duplications with the files of other modules, by absolute path
+   * @since 2.8
+   */
+  public void analyse(Iterator<Match> matches, Map<String, List<ExternalDuplication>> externalDuplications) {
     Map<Resource, DuplicationsData> duplicationsData = new HashMap<Resource, DuplicationsData>();
     while (matches.hasNext()) {
       Match match = matches.next();
@@ -77,11 +86,25 @@ public class CpdAnalyser {
             continue;
           }
 
-          firstFileData.cumulate(secondFile, secondLine, firstLine, match.getLineCount());
+          firstFileData.cumulate(context.saveResource(secondFile), secondLine, firstLine, match.getLineCount());
         }
       }
     }
 
+    for (Map.Entry<String, List<ExternalDuplication>> entry : externalDuplications.entrySet()) {
+      Resource file = mapping.createResource(new File(entry.getKey()), project.getFileSystem().getSourceDirs());
+      if (file == null) {
+        LOG.warn("CPD - File not found : {}", entry.getKey());
+        continue;
+      }
+      DuplicationsData fileData = getDuplicationsData(duplicationsData, file);
+      for (ExternalDuplication duplication : entry.getValue()) {
+        fileData.incrementDuplicatedBlock();
+        fileData.cumulate(duplication.getTargetResourceKey(), duplication.getTargetStartLine(), duplication.getStartLine(),
+            duplication.getLines());
+      }
+    }
+
     for (DuplicationsData data : duplicationsData.values()) {
       data.saveUsing(context);
     }
@@ -109,11 +132,11 @@ public class CpdAnalyser {
       this.resource = resource;
     }
 
-    protected void cumulate(Resource targetResource, int targetDuplicationStartLine, int duplicationStartLine, int duplicatedLines) {
+    protected void cumulate(String targetResourceKey, int targetDuplicationStartLine, int duplicationStartLine, int duplicatedLines) {
       StringBuilder xml = new StringBuilder();
       xml.append("<duplication lines=\"").append(duplicatedLines).append("\" start=\"").append(duplicationStartLine)
           .append("\" target-start=\"").append(targetDuplicationStartLine).append("\" target-resource=\"")
-          .append(context.saveResource(targetResource)).append("\"/>");
+          .append(targetResourceKey).append("\"/>");
 
       duplicationXMLEntries.add(xml);
 
@@ -62,10 +62,43 @@ import java.util.List;
         description = "Searching for duplicated code is memory hungry therefore for very big projects it can be necessary to turn the functionality off.",
         project = true,
         module = true,
+        global = true),
+    @Property(
+        key = CpdPlugin.CROSS_PROJECT_PROPERTY,
+        defaultValue = CpdPlugin.CROSS_PROJECT_DEFAULT_VALUE + "",
+        name = "Cross project duplications",
+        description = "If true, duplications are also detected between the modules of the project, and between the projects " +
+            "which share the same index directory.",
+        project = true,
+        module = false,
+        global = true),
+    @Property(
+        key = CpdPlugin.INDEX_DIRECTORY_PROPERTY,
+        name = "Index directory",
+        description = "Directory where tokens and blocks are stored between analyses. Unchanged files are not tokenized again. " +
+            "Set the same directory on several projects to detect the duplications between them. " +
+            "Default value is the directory 'cpd' in the working directory of the root project.",
+        project = true,
+        module = false,
+        global = true),
+    @Property(
+        key = CpdPlugin.TOKENIZER_THREADS_PROPERTY,
+        defaultValue = CpdPlugin.TOKENIZER_THREADS_DEFAULT_VALUE + "",
+        name = "Tokenizer threads",
+        description = "Number of threads used to tokenize the source files which have changed since the previous analysis. " +
+            "The tokenizer of the language must be thread-safe.",
+        project = true,
+        module = true,
         global = true)
 })
 public class CpdPlugin extends SonarPlugin {
 
+  public static final String CROSS_PROJECT_PROPERTY = "sonar.cpd.cross_project";
+  public static final boolean CROSS_PROJECT_DEFAULT_VALUE = false;
+  public static final String INDEX_DIRECTORY_PROPERTY = "sonar.cpd.index.directory";
+  public static final String TOKENIZER_THREADS_PROPERTY = "sonar.cpd.tokenizer.threads";
+  public static final int TOKENIZER_THREADS_DEFAULT_VALUE = 1;
+
   public List getExtensions() {
     return Arrays.asList(CpdSensor.class, SumDuplicationsDecorator.class, DuplicationDensityDecorator.class, JavaCpdMapping.class);
   }
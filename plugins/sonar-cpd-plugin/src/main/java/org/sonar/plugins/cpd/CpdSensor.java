@@ -20,8 +20,10 @@
 package org.sonar.plugins.cpd;
 
 import net.sourceforge.pmd.cpd.AbstractLanguage;
-import net.sourceforge.pmd.cpd.TokenEntry;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.configuration.Configuration;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.CpdMapping;
@@ -29,10 +31,24 @@ import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.resources.Language;
 import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
 import org.sonar.duplications.cpd.CPD;
+import org.sonar.duplications.cpd.FileTokens;
+import org.sonar.plugins.cpd.index.BlockIndex;
+import org.sonar.plugins.cpd.index.ExternalDuplication;
+import org.sonar.plugins.cpd.index.FileTokensCache;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class CpdSensor implements Sensor {
 
@@ -63,10 +79,27 @@ public class CpdSensor implements Sensor {
         conf.getBoolean("sonar.cpd.skip", false));
   }
 
+  boolean isCrossProject(Project project) {
+    return project.getConfiguration().getBoolean(CpdPlugin.CROSS_PROJECT_PROPERTY, CpdPlugin.CROSS_PROJECT_DEFAULT_VALUE);
+  }
+
+  /**
+   * The index is shared by all the modules of the reactor. It can be shared by several projects by setting the same
+   * directory on each of them.
+   */
+  File getIndexDirectory(Project project) {
+    String path = project.getConfiguration().getString(CpdPlugin.INDEX_DIRECTORY_PROPERTY);
+    if (StringUtils.isNotBlank(path)) {
+      return new File(path);
+    }
+    return new File(project.getRoot().getFileSystem().getSonarWorkingDirectory(), "cpd");
+  }
+
   public void analyse(Project project, SensorContext context) {
     CpdMapping mapping = getMapping(project.getLanguage());
-    CPD cpd = executeCPD(project, mapping, project.getFileSystem().getSourceCharset());
-    saveResults(cpd, mapping, project, context);
+    Map<String, List<ExternalDuplication>> externalDuplications = new HashMap<String, List<ExternalDuplication>>();
+    CPD cpd = executeCPD(project, mapping, project.getFileSystem().getSourceCharset(), context, externalDuplications);
+    saveResults(cpd, mapping, project, context, externalDuplications);
   }
 
   private CpdMapping getMapping(Language language) {
@@ -78,14 +111,17 @@ public class CpdSensor implements Sensor {
     return null;
   }
 
-  private void saveResults(CPD cpd, CpdMapping mapping, Project project, SensorContext context) {
+  private void saveResults(CPD cpd, CpdMapping mapping, Project project, SensorContext context,
+      Map<String, List<ExternalDuplication>> externalDuplications) {
     CpdAnalyser cpdAnalyser = new CpdAnalyser(project, context, mapping);
-    cpdAnalyser.analyse(cpd.getMatches());
+    cpdAnalyser.analyse(cpd.getMatches(), externalDuplications);
   }
 
-  private CPD executeCPD(Project project, CpdMapping mapping, Charset encoding) {
+  private CPD executeCPD(Project project, CpdMapping mapping, Charset encoding, SensorContext context,
+      Map<String, List<ExternalDuplication>> externalDuplications) {
     try {
       CPD cpd = configureCPD(project, mapping, encoding);
+      addFiles(cpd, project, mapping, context, externalDuplications);
       cpd.go();
       return cpd;
 
@@ -94,11 +130,104 @@ public class CpdSensor implements Sensor {
     }
   }
 
-  private CPD configureCPD(Project project, CpdMapping mapping, Charset encoding) throws IOException {
-    // To avoid a cpd bug generating error as "java.lang.IndexOutOfBoundsException: Index: 259, Size: 248"
-    // See http://sourceforge.net/tracker/?func=detail&atid=479921&aid=1947823&group_id=56262 for more details
-    TokenEntry.clearImages();
+  /**
+   * Unchanged files are not tokenized again, their tokens are loaded from the index directory. When the detection
+   * across projects is enabled, the blocks of every file are also compared to the blocks of the other modules.
+   */
+  private void addFiles(CPD cpd, Project project, CpdMapping mapping, SensorContext context,
+      Map<String, List<ExternalDuplication>> externalDuplications) throws IOException {
+    File indexDirectory = getIndexDirectory(project);
+    String module = getModuleId(project);
+    String settings = getTokenizerSettings(project, mapping);
+    FileTokensCache cache = new FileTokensCache(FileTokensCache.getFile(indexDirectory, module), settings).load();
+    BlockIndex blockIndex = null;
+    if (isCrossProject(project)) {
+      blockIndex = createBlockIndex(project, indexDirectory, settings);
+    }
+
+    Map<File, FileTokens> tokensByFile = getTokens(cpd, project.getFileSystem().getSourceFiles(project.getLanguage()), cache);
+    if (blockIndex != null) {
+      for (Map.Entry<File, FileTokens> entry : tokensByFile.entrySet()) {
+        addToBlockIndex(blockIndex, entry.getKey(), entry.getValue(), project, mapping, context, externalDuplications);
+      }
+    }
+
+    cache.save();
+    if (blockIndex != null) {
+      blockIndex.save(project.getRoot().getKey(), module);
+    }
+  }
+
+  /**
+   * Adds the files to CPD and registers their tokens in the cache.
+   */
+  private Map<File, FileTokens> getTokens(CPD cpd, List<File> files, FileTokensCache cache) throws IOException {
+    Map<File, String> checksums = new HashMap<File, String>();
+    Map<File, FileTokens> tokensByFile = new LinkedHashMap<File, FileTokens>();
+    List<File> modifiedFiles = new ArrayList<File>();
+    for (File file : files) {
+      String checksum = DigestUtils.md5Hex(FileUtils.readFileToByteArray(file));
+      checksums.put(file, checksum);
+      FileTokens tokens = cache.get(file.getAbsolutePath(), checksum);
+      if (tokens == null) {
+        modifiedFiles.add(file);
+      } else {
+        cpd.add(file, tokens);
+        tokensByFile.put(file, tokens);
+      }
+    }
+    LoggerFactory.getLogger(getClass()).debug("CPD - Tokens of {} unchanged files on {} are reused", tokensByFile.size(), files.size());
+    tokensByFile.putAll(cpd.addAndGetTokens(modifiedFiles));
+
+    for (Map.Entry<File, FileTokens> entry : tokensByFile.entrySet()) {
+      cache.put(entry.getKey().getAbsolutePath(), checksums.get(entry.getKey()), entry.getValue());
+    }
+    return tokensByFile;
+  }
+
+  /**
+   * Only the blocks of the files of the current module are computed. The blocks of the other modules are loaded from the
+   * index directory : the modules analysed after the current one are found with the blocks of their previous analysis.
+   */
+  private BlockIndex createBlockIndex(Project project, File indexDirectory, String settings) {
+    Set<String> projectModules = new HashSet<String>();
+    addModuleIds(project.getRoot(), projectModules);
+    return new BlockIndex(indexDirectory, getMinimumTokens(project), settings)
+        .load(project.getRoot().getKey(), projectModules, Collections.singleton(getModuleId(project)));
+  }
 
+  private void addModuleIds(Project project, Set<String> moduleIds) {
+    for (Project module : project.getModules()) {
+      addModuleIds(module, moduleIds);
+    }
+    moduleIds.add(getModuleId(project));
+  }
+
+  private String getModuleId(Project project) {
+    return project.getKey() + "-" + project.getLanguageKey();
+  }
+
+  private void addToBlockIndex(BlockIndex blockIndex, File file, FileTokens tokens, Project project, CpdMapping mapping,
+      SensorContext context, Map<String, List<ExternalDuplication>> externalDuplications) {
+    Resource resource = mapping.createResource(file, project.getFileSystem().getSourceDirs());
+    String resourceKey = (resource != null ? context.saveResource(resource) : null);
+    if (resourceKey != null) {
+      blockIndex.add(resourceKey, tokens);
+      List<ExternalDuplication> duplications = blockIndex.find(tokens);
+      if (!duplications.isEmpty()) {
+        externalDuplications.put(file.getAbsolutePath(), duplications);
+      }
+    }
+  }
+
+  private String getTokenizerSettings(Project project, CpdMapping mapping) {
+    Configuration conf = project.getConfiguration();
+    return mapping.getTokenizer().getClass().getName() + ";" + project.getLanguageKey()
+        + ";" + conf.getString(CoreProperties.CPD_IGNORE_LITERALS_PROPERTY, CoreProperties.CPD_IGNORE_LITERALS_DEFAULT_VALUE)
+        + ";" + conf.getString(CoreProperties.CPD_IGNORE_IDENTIFIERS_PROPERTY, CoreProperties.CPD_IGNORE_IDENTIFIERS_DEFAULT_VALUE);
+  }
+
+  private CPD configureCPD(Project project, CpdMapping mapping, Charset encoding) {
     int minTokens = getMinimumTokens(project);
     AbstractLanguage cpdLanguage = new AbstractLanguage(mapping.getTokenizer()) {
     };
@@ -106,10 +235,14 @@ public class CpdSensor implements Sensor {
     CPD cpd = new CPD(minTokens, cpdLanguage);
     cpd.setEncoding(encoding.name());
     cpd.setLoadSourceCodeSlices(false);
-    cpd.add(project.getFileSystem().getSourceFiles(project.getLanguage()));
+    cpd.setTokenizerThreads(getTokenizerThreads(project));
     return cpd;
   }
 
+  int getTokenizerThreads(Project project) {
+    return project.getConfiguration().getInt(CpdPlugin.TOKENIZER_THREADS_PROPERTY, CpdPlugin.TOKENIZER_THREADS_DEFAULT_VALUE);
+  }
+
   int getMinimumTokens(Project project) {
     Configuration conf = project.getConfiguration();
     return conf.getInt("sonar.cpd." + project.getLanguageKey() + ".minimumTokens",
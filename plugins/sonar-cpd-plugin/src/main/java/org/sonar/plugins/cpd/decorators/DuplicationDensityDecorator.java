@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.cpd.decorators;
 
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.DependedUpon;
@@ -32,6 +33,7 @@ import org.sonar.api.resources.Resource;
 import java.util.Arrays;
 import java.util.List;
 
+@ConcurrentExecution
 public class DuplicationDensityDecorator implements Decorator {
 
   @DependsUpon
@@ -20,6 +20,7 @@
 package org.sonar.plugins.cpd.decorators;
 
 import org.sonar.api.batch.AbstractSumChildrenDecorator;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.DependedUpon;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Metric;
@@ -30,6 +31,7 @@ import org.sonar.api.resources.ResourceUtils;
 import java.util.Arrays;
 import java.util.List;
 
+@ConcurrentExecution
 public class SumDuplicationsDecorator extends AbstractSumChildrenDecorator {
 
   @Override
@@ -0,0 +1,407 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cpd.index;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.duplications.cpd.FileTokens;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Index of the files of the modules and projects which share the same directory, used to find the duplications between
+ * them.
+ * <p>
+ * Every module stores the blocks of its own files when it is analysed, so that files are read with the encoding and the
+ * exclusions of their module. The blocks of the modules which are analysed after the current one are those of their
+ * previous analysis.
+ * </p>
+ * <p>
+ * Tokens are not stored. To keep the index small, only one tile of <code>minimumTokens</code> tokens every
+ * {@link #STRIDE} tokens is stored as a block : its rolling hash, a second hash of its tokens, its offset and its first
+ * line. The analysed file is hashed at every position, so a duplication of at least
+ * <code>minimumTokens + STRIDE - 1</code> tokens is always found. Shorter duplications are found only when they are
+ * aligned on stored blocks. Blocks are kept in primitive arrays to avoid the overhead of a map of boxed hashes, and the
+ * second hash is compared when the rolling hash matches, so that collisions of <code>String.hashCode()</code> are not
+ * reported as duplications.
+ * </p>
+ * <p>
+ * The files of the modules which have been removed from the project are deleted when the index is loaded.
+ * </p>
+ *
+ * @since 2.8
+ */
+public class BlockIndex {
+
+  static final int STRIDE = 8;
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlockIndex.class);
+  private static final int VERSION = 3;
+  private static final long BASE = 1000003L;
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final String EXTENSION = ".blocks";
+
+  private final File directory;
+  private final int minimumTokens;
+  private final String settings;
+
+  // blocks of the files of the other modules
+  private final List<String> resourceKeys = new ArrayList<String>();
+  private final Blocks blocks = new Blocks();
+  // short hashes of the blocks in the high bits, indexes of the blocks in the low bits, sorted on the first search
+  private long[] keys = null;
+
+  // blocks of the files of the current module
+  private final List<String> moduleResourceKeys = new ArrayList<String>();
+  private final Blocks moduleBlocks = new Blocks();
+
+  /**
+   * @param settings the settings of the tokenizer. Files of the modules which are tokenized with other settings are ignored.
+   */
+  public BlockIndex(File directory, int minimumTokens, String settings) {
+    this.directory = directory;
+    this.minimumTokens = minimumTokens;
+    this.settings = settings;
+  }
+
+  /**
+   * Loads the blocks of the modules stored in the directory, except the excluded modules. The files of the modules
+   * of the given project which do not belong to <code>projectModules</code> anymore are deleted.
+   *
+   * @param project the key of the root project
+   * @param projectModules the modules of the root project, including itself
+   */
+  public BlockIndex load(String project, Collection<String> projectModules, Collection<String> excludedModules) {
+    File[] files = directory.listFiles(new FilenameFilter() {
+      public boolean accept(File dir, String name) {
+        return name.endsWith(EXTENSION);
+      }
+    });
+    if (files != null) {
+      for (File file : files) {
+        String removedModule = loadFile(file, project, projectModules, excludedModules);
+        if (removedModule != null) {
+          LOG.info("CPD - Module {} has been removed, its blocks are deleted", removedModule);
+          FileUtils.deleteQuietly(file);
+          FileUtils.deleteQuietly(FileTokensCache.getFile(directory, removedModule));
+        }
+      }
+    }
+    keys = null;
+    LOG.debug("CPD - {} blocks of {} files loaded from {}", new Object[] { blocks.size, resourceKeys.size(), directory });
+    return this;
+  }
+
+  /**
+   * @return the module of the file if it has been removed from the project, else null
+   */
+  private String loadFile(File file, String project, Collection<String> projectModules, Collection<String> excludedModules) {
+    DataInputStream input = null;
+    int initialResources = resourceKeys.size();
+    int initialBlocks = blocks.size;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (input.readInt() != VERSION) {
+        LOG.debug("CPD - Blocks are obsolete: {}", file);
+        return null;
+      }
+      String fileProject = input.readUTF();
+      String module = input.readUTF();
+      if (project.equals(fileProject) && !projectModules.contains(module)) {
+        return module;
+      }
+      if (excludedModules.contains(module) || !settings.equals(input.readUTF())) {
+        return null;
+      }
+      int resourceCount = input.readInt();
+      for (int i = 0; i < resourceCount; i++) {
+        resourceKeys.add(input.readUTF());
+        int resourceIndex = resourceKeys.size() - 1;
+        int blockCount = input.readInt();
+        for (int j = 0; j < blockCount; j++) {
+          blocks.add(input.readLong(), input.readLong(), resourceIndex, input.readInt(), input.readInt());
+        }
+      }
+
+    } catch (IOException e) {
+      LOG.warn("CPD - Fail to load blocks, they are ignored: " + file, e);
+      resourceKeys.subList(initialResources, resourceKeys.size()).clear();
+      blocks.size = initialBlocks;
+
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+    return null;
+  }
+
+  /**
+   * Registers a file of the current module. Only its blocks are kept, they are written by {@link #save(String, String)}.
+   *
+   * @param resourceKey the effective key of the file
+   */
+  public void add(String resourceKey, FileTokens tokens) {
+    moduleResourceKeys.add(resourceKey);
+    int resourceIndex = moduleResourceKeys.size() - 1;
+    long[] tileHashes = hashTiles(tokens);
+    for (int offset = 0; offset < tileHashes.length; offset += STRIDE) {
+      moduleBlocks.add(tileHashes[offset], checkTile(tokens, offset), resourceIndex, offset, tokens.getLine(offset));
+    }
+  }
+
+  /**
+   * Stores the blocks of the current module, so that they can be found by the analysis of the other modules.
+   *
+   * @param project the key of the root project
+   */
+  public void save(String project, String module) {
+    File file = IndexFiles.getFile(directory, module, EXTENSION);
+    File tempFile = null;
+    DataOutputStream output = null;
+    try {
+      tempFile = IndexFiles.createTempFile(file);
+      output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      output.writeInt(VERSION);
+      output.writeUTF(project);
+      output.writeUTF(module);
+      output.writeUTF(settings);
+      output.writeInt(moduleResourceKeys.size());
+      // blocks are sorted by resource
+      int block = 0;
+      for (int resourceIndex = 0; resourceIndex < moduleResourceKeys.size(); resourceIndex++) {
+        int end = block;
+        while (end < moduleBlocks.size && moduleBlocks.resourceIndexes[end] == resourceIndex) {
+          end++;
+        }
+        output.writeUTF(moduleResourceKeys.get(resourceIndex));
+        output.writeInt(end - block);
+        for (; block < end; block++) {
+          output.writeLong(moduleBlocks.hashes[block]);
+          output.writeLong(moduleBlocks.checks[block]);
+          output.writeInt(moduleBlocks.offsets[block]);
+          output.writeInt(moduleBlocks.lines[block]);
+        }
+      }
+      output.close();
+      IndexFiles.replace(tempFile, file);
+
+    } catch (IOException e) {
+      LOG.warn("CPD - Fail to save blocks: " + file, e);
+
+    } finally {
+      IOUtils.closeQuietly(output);
+      FileUtils.deleteQuietly(tempFile);
+    }
+  }
+
+  /**
+   * @return the duplications between the given file and the files of the other modules
+   */
+  public List<ExternalDuplication> find(FileTokens tokens) {
+    sortKeys();
+    long[] tileHashes = hashTiles(tokens);
+    List<Hit> hits = new ArrayList<Hit>();
+    for (int index = 0; index < tileHashes.length; index++) {
+      long hash = tileHashes[index];
+      int shortHash = shortHash(hash);
+      long check = 0L;
+      boolean checked = false;
+      for (int i = lowerBound(shortHash); i < keys.length && (int) (keys[i] >> 32) == shortHash; i++) {
+        int block = (int) keys[i];
+        if (blocks.hashes[block] == hash) {
+          if (!checked) {
+            check = checkTile(tokens, index);
+            checked = true;
+          }
+          if (blocks.checks[block] == check) {
+            hits.add(new Hit(blocks.resourceIndexes[block], index - blocks.offsets[block], index, blocks.lines[block]));
+          }
+        }
+      }
+    }
+    return merge(tokens, hits);
+  }
+
+  private void sortKeys() {
+    if (keys != null) {
+      return;
+    }
+    keys = new long[blocks.size];
+    for (int block = 0; block < blocks.size; block++) {
+      keys[block] = ((long) shortHash(blocks.hashes[block]) << 32) | block;
+    }
+    Arrays.sort(keys);
+  }
+
+  /**
+   * Hits of the same target file on the same diagonal, and separated by at most {@link #STRIDE} tokens, belong to the
+   * same duplication.
+   */
+  private List<ExternalDuplication> merge(FileTokens tokens, List<Hit> hits) {
+    Collections.sort(hits);
+    List<ExternalDuplication> result = new ArrayList<ExternalDuplication>();
+    int start = 0;
+    while (start < hits.size()) {
+      Hit first = hits.get(start);
+      Hit last = first;
+      int end = start + 1;
+      while (end < hits.size() && hits.get(end).isFollowing(last)) {
+        last = hits.get(end);
+        end++;
+      }
+      int startLine = tokens.getLine(first.index);
+      int endLine = tokens.getLine(last.index + minimumTokens - 1);
+      result.add(new ExternalDuplication(startLine, endLine - startLine + 1, resourceKeys.get(first.resourceIndex), first.targetLine));
+      start = end;
+    }
+    return result;
+  }
+
+  private int lowerBound(int shortHash) {
+    long key = (long) shortHash << 32;
+    int low = 0;
+    int high = keys.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (keys[middle] < key) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the rolling hash of the tiles of <code>minimumTokens</code> tokens, indexed by their first token
+   */
+  long[] hashTiles(FileTokens tokens) {
+    int count = tokens.size() - minimumTokens + 1;
+    if (count <= 0) {
+      return new long[0];
+    }
+    long highestPower = 1;
+    for (int i = 1; i < minimumTokens; i++) {
+      highestPower *= BASE;
+    }
+    long[] result = new long[count];
+    long hash = 0;
+    for (int i = 0; i < tokens.size(); i++) {
+      if (i >= minimumTokens) {
+        hash -= highestPower * tokens.getImage(i - minimumTokens).hashCode();
+      }
+      hash = hash * BASE + tokens.getImage(i).hashCode();
+      if (i >= minimumTokens - 1) {
+        result[i - minimumTokens + 1] = hash;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * FNV-1a hash of the characters of the tokens of a tile, which does not depend on <code>String.hashCode()</code>.
+   */
+  long checkTile(FileTokens tokens, int offset) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = offset; i < offset + minimumTokens; i++) {
+      String image = tokens.getImage(i);
+      for (int j = 0; j < image.length(); j++) {
+        hash = (hash ^ image.charAt(j)) * FNV_PRIME;
+      }
+      // separator of tokens
+      hash = (hash ^ 0xffff) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  private static int shortHash(long hash) {
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  /**
+   * Blocks stored in parallel arrays.
+   */
+  private static final class Blocks {
+    private long[] hashes = new long[0];
+    private long[] checks = new long[0];
+    private int[] resourceIndexes = new int[0];
+    private int[] offsets = new int[0];
+    private int[] lines = new int[0];
+    private int size = 0;
+
+    private void add(long hash, long check, int resourceIndex, int offset, int line) {
+      if (size == hashes.length) {
+        int capacity = Math.max(64, size * 2);
+        hashes = grow(hashes, new long[capacity]);
+        checks = grow(checks, new long[capacity]);
+        resourceIndexes = grow(resourceIndexes, new int[capacity]);
+        offsets = grow(offsets, new int[capacity]);
+        lines = grow(lines, new int[capacity]);
+      }
+      hashes[size] = hash;
+      checks[size] = check;
+      resourceIndexes[size] = resourceIndex;
+      offsets[size] = offset;
+      lines[size] = line;
+      size++;
+    }
+
+    private long[] grow(long[] array, long[] newArray) {
+      System.arraycopy(array, 0, newArray, 0, size);
+      return newArray;
+    }
+
+    private int[] grow(int[] array, int[] newArray) {
+      System.arraycopy(array, 0, newArray, 0, size);
+      return newArray;
+    }
+  }
+
+  private static final class Hit implements Comparable<Hit> {
+    private final int resourceIndex;
+    private final int diagonal;
+    private final int index;
+    private final int targetLine;
+
+    private Hit(int resourceIndex, int diagonal, int index, int targetLine) {
+      this.resourceIndex = resourceIndex;
+      this.diagonal = diagonal;
+      this.index = index;
+      this.targetLine = targetLine;
+    }
+
+    private boolean isFollowing(Hit previous) {
+      return resourceIndex == previous.resourceIndex && diagonal == previous.diagonal && index - previous.index <= STRIDE;
+    }
+
+    public int compareTo(Hit other) {
+      if (resourceIndex != other.resourceIndex) {
+        return resourceIndex < other.resourceIndex ? -1 : 1;
+      }
+      if (diagonal != other.diagonal) {
+        return diagonal < other.diagonal ? -1 : 1;
+      }
+      return index < other.index ? -1 : (index == other.index ? 0 : 1);
+    }
+  }
+}
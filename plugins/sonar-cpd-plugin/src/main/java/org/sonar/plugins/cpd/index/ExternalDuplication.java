@@ -0,0 +1,59 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cpd.index;
+
+/**
+ * A block of a source file which is duplicated in a file of another module or project.
+ *
+ * @since 2.8
+ */
+public final class ExternalDuplication {
+
+  private final int startLine;
+  private final int lines;
+  private final String targetResourceKey;
+  private final int targetStartLine;
+
+  public ExternalDuplication(int startLine, int lines, String targetResourceKey, int targetStartLine) {
+    this.startLine = startLine;
+    this.lines = lines;
+    this.targetResourceKey = targetResourceKey;
+    this.targetStartLine = targetStartLine;
+  }
+
+  public int getStartLine() {
+    return startLine;
+  }
+
+  public int getLines() {
+    return lines;
+  }
+
+  /**
+   * @return the effective key of the duplicated file, prefixed by the key of its module
+   */
+  public String getTargetResourceKey() {
+    return targetResourceKey;
+  }
+
+  public int getTargetStartLine() {
+    return targetStartLine;
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cpd.index;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.duplications.cpd.FileTokens;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tokens of the source files of a module, stored between analyses so that unchanged files are not tokenized again.
+ * Files are identified by their path and by the checksum of their content. The cache is invalidated when the settings
+ * of the tokenizer change, for example when literals are not ignored anymore.
+ *
+ * @since 2.8
+ */
+public class FileTokensCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FileTokensCache.class);
+  private static final int VERSION = 1;
+  private static final String EXTENSION = ".tokens";
+
+  private final File file;
+  private final String settings;
+  private Map<String, Entry> previousEntries = new HashMap<String, Entry>();
+  private Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+  public FileTokensCache(File file, String settings) {
+    this.file = file;
+    this.settings = settings;
+  }
+
+  /**
+   * @return the file of the tokens of the given module in the index directory
+   */
+  public static File getFile(File directory, String module) {
+    return IndexFiles.getFile(directory, module, EXTENSION);
+  }
+
+  /**
+   * Loads the tokens stored by the previous analysis. A missing or unreadable file is equivalent to an empty cache.
+   */
+  public FileTokensCache load() {
+    previousEntries.clear();
+    if (!file.exists()) {
+      return this;
+    }
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (input.readInt() != VERSION || !settings.equals(input.readUTF())) {
+        LOG.debug("CPD - Cache of tokens is obsolete: {}", file);
+        return this;
+      }
+      int fileCount = input.readInt();
+      for (int i = 0; i < fileCount; i++) {
+        String path = input.readUTF();
+        String checksum = input.readUTF();
+        previousEntries.put(path, new Entry(checksum, readTokens(input)));
+      }
+
+    } catch (IOException e) {
+      LOG.warn("CPD - Fail to load the cache of tokens, it's ignored: " + file, e);
+      previousEntries.clear();
+
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+    return this;
+  }
+
+  /**
+   * @return the tokens loaded from the previous analysis, or null if the file is unknown or if it has been modified
+   */
+  public FileTokens get(String path, String checksum) {
+    Entry entry = previousEntries.get(path);
+    if (entry != null && entry.checksum.equals(checksum)) {
+      return entry.tokens;
+    }
+    return null;
+  }
+
+  /**
+   * Registers the tokens to store. Only the registered files are kept by {@link #save()}.
+   */
+  public void put(String path, String checksum, FileTokens tokens) {
+    entries.put(path, new Entry(checksum, tokens));
+  }
+
+  public void save() {
+    File tempFile = null;
+    DataOutputStream output = null;
+    try {
+      tempFile = IndexFiles.createTempFile(file);
+      output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      output.writeInt(VERSION);
+      output.writeUTF(settings);
+      output.writeInt(entries.size());
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        output.writeUTF(entry.getKey());
+        output.writeUTF(entry.getValue().checksum);
+        writeTokens(output, entry.getValue().tokens);
+      }
+      output.close();
+      IndexFiles.replace(tempFile, file);
+
+    } catch (IOException e) {
+      LOG.warn("CPD - Fail to save the cache of tokens: " + file, e);
+
+    } finally {
+      IOUtils.closeQuietly(output);
+      FileUtils.deleteQuietly(tempFile);
+    }
+  }
+
+  /**
+   * Images are written once per file, tokens reference them by position.
+   */
+  static void writeTokens(DataOutputStream output, FileTokens tokens) throws IOException {
+    Map<String, Integer> images = new LinkedHashMap<String, Integer>();
+    int[] imageIndexes = new int[tokens.size()];
+    for (int i = 0; i < tokens.size(); i++) {
+      Integer index = images.get(tokens.getImage(i));
+      if (index == null) {
+        index = images.size();
+        images.put(tokens.getImage(i), index);
+      }
+      imageIndexes[i] = index;
+    }
+    output.writeInt(images.size());
+    for (String image : images.keySet()) {
+      writeString(output, image);
+    }
+    output.writeInt(tokens.size());
+    for (int i = 0; i < tokens.size(); i++) {
+      output.writeInt(imageIndexes[i]);
+      output.writeInt(tokens.getLine(i));
+    }
+  }
+
+  static FileTokens readTokens(DataInputStream input) throws IOException {
+    String[] images = new String[input.readInt()];
+    for (int i = 0; i < images.length; i++) {
+      images[i] = readString(input);
+    }
+    int size = input.readInt();
+    String[] tokenImages = new String[size];
+    int[] lines = new int[size];
+    for (int i = 0; i < size; i++) {
+      tokenImages[i] = images[input.readInt()];
+      lines[i] = input.readInt();
+    }
+    return new FileTokens(tokenImages, lines);
+  }
+
+  /**
+   * {@link DataOutputStream#writeUTF(String)} is limited to 64Kb, which can be exceeded by long string literals.
+   */
+  private static void writeString(DataOutputStream output, String s) throws IOException {
+    byte[] bytes = s.getBytes("UTF-8");
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static String readString(DataInputStream input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  private static final class Entry {
+    private final String checksum;
+    private final FileTokens tokens;
+
+    private Entry(String checksum, FileTokens tokens) {
+      this.checksum = checksum;
+      this.tokens = tokens;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cpd.index;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Files of the index directory. They are written to a temporary file which then replaces the previous version, so that
+ * an interrupted analysis, or another analysis which shares the directory, never reads a partially written file.
+ *
+ * @since 2.8
+ */
+final class IndexFiles {
+
+  private IndexFiles() {
+    // only static methods
+  }
+
+  static File getFile(File directory, String module, String extension) {
+    return new File(directory, module.replaceAll("[^a-zA-Z0-9._-]", "_") + extension);
+  }
+
+  static File createTempFile(File file) throws IOException {
+    File directory = file.getParentFile();
+    directory.mkdirs();
+    return File.createTempFile(file.getName(), ".tmp", directory);
+  }
+
+  /**
+   * {@link File#renameTo(File)} does not replace an existing file on all the platforms, so it's deleted before a second
+   * attempt.
+   */
+  static void replace(File tempFile, File file) throws IOException {
+    if (!tempFile.renameTo(file)) {
+      file.delete();
+      if (!tempFile.renameTo(file)) {
+        throw new IOException("Fail to rename " + tempFile + " to " + file);
+      }
+    }
+  }
+}
@@ -35,6 +35,7 @@ import java.util.LinkedHashSet;
 import java.util.Set;
 
 import net.sourceforge.pmd.cpd.TokenEntry;
+import net.sourceforge.pmd.cpd.Tokens;
 
 import org.junit.Test;
 import org.sonar.api.batch.CpdMapping;
@@ -49,6 +50,8 @@ import org.sonar.duplications.cpd.Match;
 
 public class CpdAnalyserTest {
 
+  private Tokens tokens = new Tokens();
+
   @Test
   public void testOneSimpleDuplicationBetweenTwoFiles() throws Exception {
     ProjectFileSystem fileSystem = mock(ProjectFileSystem.class);
@@ -68,7 +71,7 @@ public class CpdAnalyserTest {
     when(context.saveResource(resource1)).thenReturn("key1");
     when(context.saveResource(resource2)).thenReturn("key2");
 
-    Match match1 = new Match(5, new TokenEntry(null, file1.getAbsolutePath(), 5), new TokenEntry(null, file2.getAbsolutePath(), 15));
+    Match match1 = new Match(5, newTokenEntry(file1.getAbsolutePath(), 5), newTokenEntry(file2.getAbsolutePath(), 15));
     match1.setLineCount(200);
 
     CpdAnalyser cpdAnalyser = new CpdAnalyser(project, context, cpdMapping);
@@ -116,9 +119,9 @@ public class CpdAnalyserTest {
     when(context.saveResource(resource2)).thenReturn("key2");
     when(context.saveResource(resource3)).thenReturn("key3");
 
-    Match match1 = new Match(5, new TokenEntry(null, file1.getAbsolutePath(), 5), new TokenEntry(null, file2.getAbsolutePath(), 15));
+    Match match1 = new Match(5, newTokenEntry(file1.getAbsolutePath(), 5), newTokenEntry(file2.getAbsolutePath(), 15));
     match1.setLineCount(200);
-    Match match2 = new Match(5, new TokenEntry(null, file1.getAbsolutePath(), 5), new TokenEntry(null, file3.getAbsolutePath(), 15));
+    Match match2 = new Match(5, newTokenEntry(file1.getAbsolutePath(), 5), newTokenEntry(file3.getAbsolutePath(), 15));
     match2.setLineCount(100);
 
     CpdAnalyser cpdAnalyser = new CpdAnalyser(project, context, cpdMapping);
@@ -254,7 +257,7 @@ public class CpdAnalyserTest {
     when(cpdMapping.createResource((File) anyObject(), anyList())).thenReturn(resource1).thenReturn(resource1);
     when(context.saveResource(resource1)).thenReturn("key1");
 
-    Match match1 = new Match(304, new TokenEntry(null, file1.getAbsolutePath(), 5), new TokenEntry(null, file1.getAbsolutePath(), 215));
+    Match match1 = new Match(304, newTokenEntry(file1.getAbsolutePath(), 5), newTokenEntry(file1.getAbsolutePath(), 215));
     match1.setLineCount(200);
 
     CpdAnalyser cpdAnalyser = new CpdAnalyser(project, context, cpdMapping);
@@ -272,8 +275,17 @@ public class CpdAnalyserTest {
     verify(context, atLeastOnce()).saveResource(resource1);
   }
 
-  private static TokenEntry createTokenEntry(String sourceId, int line) {
+  /**
+   * Tokens must be added to a {@link Tokens} to get distinct indexes.
+   */
+  private TokenEntry newTokenEntry(String sourceId, int line) {
     TokenEntry entry = new TokenEntry(null, sourceId, line);
+    tokens.add(entry);
+    return entry;
+  }
+
+  private TokenEntry createTokenEntry(String sourceId, int line) {
+    TokenEntry entry = newTokenEntry(sourceId, line);
     entry.setHashCode(sourceId.hashCode() + line);
     return entry;
   }
@@ -24,10 +24,15 @@ import org.junit.Test;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.CpdMapping;
 import org.sonar.api.resources.Project;
+import org.sonar.api.resources.ProjectFileSystem;
+
+import java.io.File;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class CpdSensorTest {
 
@@ -96,6 +101,44 @@ public class CpdSensorTest {
     assertEquals(33, sensor.getMinimumTokens(phpProject));
   }
 
+  @Test
+  public void tokenizeSequentiallyByDefault() {
+    Project project = createJavaProject().setConfiguration(new PropertiesConfiguration());
+
+    CpdSensor sensor = new CpdSensor(new CpdMapping[0]);
+    assertEquals(1, sensor.getTokenizerThreads(project));
+  }
+
+  @Test
+  public void crossProjectIsDisabledByDefault() {
+    Project project = createJavaProject().setConfiguration(new PropertiesConfiguration());
+
+    CpdSensor sensor = new CpdSensor(new CpdMapping[0]);
+    assertFalse(sensor.isCrossProject(project));
+  }
+
+  @Test
+  public void indexIsSharedByModules() {
+    ProjectFileSystem fileSystem = mock(ProjectFileSystem.class);
+    when(fileSystem.getSonarWorkingDirectory()).thenReturn(new File("target/sonar"));
+    Project root = createJavaProject().setFileSystem(fileSystem);
+    Project module = new Project("module").setLanguageKey("java").setConfiguration(new PropertiesConfiguration());
+    module.setParent(root);
+
+    CpdSensor sensor = new CpdSensor(new CpdMapping[0]);
+    assertEquals(new File("target/sonar/cpd"), sensor.getIndexDirectory(module));
+  }
+
+  @Test
+  public void indexDirectoryCanBeShared() {
+    PropertiesConfiguration conf = new PropertiesConfiguration();
+    conf.setProperty(CpdPlugin.INDEX_DIRECTORY_PROPERTY, "/var/sonar/cpd");
+    Project project = createJavaProject().setConfiguration(conf);
+
+    CpdSensor sensor = new CpdSensor(new CpdMapping[0]);
+    assertEquals(new File("/var/sonar/cpd"), sensor.getIndexDirectory(project));
+  }
+
   private Project createJavaProject() {
     return new Project("java_project").setLanguageKey("java");
   }
@@ -0,0 +1,190 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cpd.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.duplications.cpd.FileTokens;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BlockIndexTest {
+
+  private static final int MINIMUM_TOKENS = 20;
+  private static final String SETTINGS = "settings";
+  private static final String PROJECT = "project";
+  private static final List<String> MODULES = Arrays.asList("module1", "module2");
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldFindDuplicationsWithOtherModules() {
+    File directory = tempFolder.newFolder("cpd");
+    BlockIndex module1 = load(directory, "module1");
+    module1.add("module1:Foo", tokens("abcdefghijklmnopqrstuvwxyz0123456789"));
+    module1.save(PROJECT, "module1");
+
+    BlockIndex module2 = load(directory, "module2");
+    List<ExternalDuplication> duplications = module2.find(tokens("ABCDEklmnopqrstuvwxyz0123456789FGHIJ"));
+
+    assertThat(duplications.size(), is(1));
+    ExternalDuplication duplication = duplications.get(0);
+    assertThat(duplication.getTargetResourceKey(), is("module1:Foo"));
+    // the block indexed at offset 16 is the first one which is fully duplicated
+    assertThat(duplication.getStartLine(), is(12));
+    assertThat(duplication.getTargetStartLine(), is(17));
+    assertThat(duplication.getLines(), is(20));
+  }
+
+  @Test
+  public void shouldAlwaysFindDuplicationsLongerThanMinimumTokensPlusStride() {
+    File directory = tempFolder.newFolder("cpd");
+    String code = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    BlockIndex module1 = load(directory, "module1");
+    module1.add("module1:Foo", tokens(code));
+    module1.save(PROJECT, "module1");
+
+    BlockIndex module2 = load(directory, "module2");
+    for (int start = 0; start + MINIMUM_TOKENS + BlockIndex.STRIDE - 1 <= code.length(); start++) {
+      String duplicated = code.substring(start, start + MINIMUM_TOKENS + BlockIndex.STRIDE - 1);
+      assertThat(module2.find(tokens("0123" + duplicated + "4567")).size(), is(1));
+    }
+  }
+
+  @Test
+  public void shouldNotReportHashCollisionsAsDuplications() {
+    File directory = tempFolder.newFolder("cpd");
+    // "Aa" and "BB" have the same hash code
+    BlockIndex module1 = load(directory, "module1");
+    module1.add("module1:Foo", tokens(MINIMUM_TOKENS, "Aa"));
+    module1.save(PROJECT, "module1");
+
+    BlockIndex module2 = load(directory, "module2");
+    assertThat(module2.find(tokens(MINIMUM_TOKENS, "BB")).size(), is(0));
+    assertThat(module2.find(tokens(MINIMUM_TOKENS, "Aa")).size(), is(1));
+  }
+
+  @Test
+  public void shouldNotStoreTokens() {
+    File directory = tempFolder.newFolder("cpd");
+    BlockIndex module1 = load(directory, "module1");
+    module1.add("module1:Foo", tokens(1000, "averyveryverylongidentifier"));
+    module1.save(PROJECT, "module1");
+
+    // one block every 8 tokens
+    assertThat(new File(directory, "module1.blocks").length() < 1000L / BlockIndex.STRIDE * 30L, is(true));
+    assertThat(load(directory, "module2").find(tokens(40, "averyveryverylongidentifier")).isEmpty(), is(false));
+  }
+
+  @Test
+  public void shouldIgnoreBlocksOfCurrentModule() {
+    File directory = tempFolder.newFolder("cpd");
+    BlockIndex index = load(directory, "module1");
+    index.add("module1:Foo", tokens("abcdefghijklmnopqrstuvwxyz0123456789"));
+    index.save(PROJECT, "module1");
+
+    index = load(directory, "module1");
+    assertThat(index.find(tokens("abcdefghijklmnopqrstuvwxyz0123456789")).size(), is(0));
+  }
+
+  @Test
+  public void shouldIgnoreBlocksOfOtherTokenizerSettings() {
+    File directory = tempFolder.newFolder("cpd");
+    BlockIndex module1 = new BlockIndex(directory, MINIMUM_TOKENS, "ignore literals").load(PROJECT, MODULES, Arrays.asList("module1"));
+    module1.add("module1:Foo", tokens("abcdefghijklmnopqrstuvwxyz0123456789"));
+    module1.save(PROJECT, "module1");
+
+    BlockIndex module2 = new BlockIndex(directory, MINIMUM_TOKENS, "do not ignore literals").load(PROJECT, MODULES, Arrays.asList("module2"));
+    assertThat(module2.find(tokens("abcdefghijklmnopqrstuvwxyz0123456789")).size(), is(0));
+  }
+
+  @Test
+  public void shouldNotFindDuplicationsShorterThanMinimumTokens() {
+    File directory = tempFolder.newFolder("cpd");
+    BlockIndex module1 = load(directory, "module1");
+    module1.add("module1:Foo", tokens("abcdefghijklmnopqrstuvwxyz0123456789"));
+    module1.save(PROJECT, "module1");
+
+    BlockIndex module2 = load(directory, "module2");
+    assertThat(module2.find(tokens("abcdefghijklmnopqrs")).size(), is(0));
+  }
+
+  @Test
+  public void shouldDeleteFilesOfRemovedModules() throws Exception {
+    File directory = tempFolder.newFolder("cpd");
+    BlockIndex removedModule = load(directory, "module3");
+    removedModule.add("module3:Foo", tokens("abcdefghijklmnopqrstuvwxyz0123456789"));
+    removedModule.save(PROJECT, "module3");
+    FileTokensCache.getFile(directory, "module3").createNewFile();
+    BlockIndex otherProject = load(directory, "module4");
+    otherProject.add("other:Foo", tokens("abcdefghijklmnopqrstuvwxyz0123456789"));
+    otherProject.save("other", "module4");
+
+    BlockIndex module1 = load(directory, "module1");
+
+    assertThat(module1.find(tokens("abcdefghijklmnopqrstuvwxyz")).size(), is(1));
+    assertThat(directory.list().length, is(1));
+  }
+
+  @Test
+  public void shouldNotLeaveTemporaryFiles() {
+    File directory = tempFolder.newFolder("cpd");
+    BlockIndex module1 = load(directory, "module1");
+    module1.add("module1:Foo", tokens("abcdefghijklmnopqrstuvwxyz0123456789"));
+    module1.save(PROJECT, "module1");
+    module1.save(PROJECT, "module1");
+
+    assertThat(Arrays.asList(directory.list()), is(Arrays.asList("module1.blocks")));
+  }
+
+  private static BlockIndex load(File directory, String module) {
+    return new BlockIndex(directory, MINIMUM_TOKENS, SETTINGS).load(PROJECT, MODULES, Arrays.asList(module));
+  }
+
+  /**
+   * Every character is a token on its own line.
+   */
+  private static FileTokens tokens(String code) {
+    String[] images = new String[code.length()];
+    int[] lines = new int[code.length()];
+    for (int i = 0; i < code.length(); i++) {
+      images[i] = String.valueOf(code.charAt(i));
+      lines[i] = i + 1;
+    }
+    return new FileTokens(images, lines);
+  }
+
+  private static FileTokens tokens(int size, String image) {
+    String[] images = new String[size];
+    int[] lines = new int[size];
+    for (int i = 0; i < size; i++) {
+      images[i] = image;
+      lines[i] = i + 1;
+    }
+    return new FileTokens(images, lines);
+  }
+}
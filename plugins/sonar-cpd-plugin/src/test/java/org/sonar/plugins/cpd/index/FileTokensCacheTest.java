@@ -0,0 +1,97 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cpd.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.duplications.cpd.FileTokens;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class FileTokensCacheTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldReuseTokensOfUnchangedFiles() {
+    File file = new File(tempFolder.getRoot(), "cpd/module.tokens");
+    FileTokensCache cache = new FileTokensCache(file, "settings").load();
+    assertThat(cache.get("/src/Foo.java", "checksum"), nullValue());
+    cache.put("/src/Foo.java", "checksum", new FileTokens(new String[] { "class", "Foo", "{", "}", "Foo" }, new int[] { 1, 1, 1, 3, 4 }));
+    cache.save();
+
+    cache = new FileTokensCache(file, "settings").load();
+    FileTokens tokens = cache.get("/src/Foo.java", "checksum");
+    assertThat(tokens.size(), is(5));
+    assertThat(tokens.getImage(1), is("Foo"));
+    assertThat(tokens.getImage(4), is("Foo"));
+    assertThat(tokens.getLine(3), is(3));
+
+    assertThat(cache.get("/src/Foo.java", "other checksum"), nullValue());
+    assertThat(cache.get("/src/Bar.java", "checksum"), nullValue());
+  }
+
+  @Test
+  public void shouldKeepOnlyRegisteredFiles() {
+    File file = new File(tempFolder.getRoot(), "module.tokens");
+    FileTokensCache cache = new FileTokensCache(file, "settings").load();
+    cache.put("/src/Foo.java", "checksum", new FileTokens(new String[] { "foo" }, new int[] { 1 }));
+    cache.put("/src/Bar.java", "checksum", new FileTokens(new String[] { "bar" }, new int[] { 1 }));
+    cache.save();
+
+    cache = new FileTokensCache(file, "settings").load();
+    cache.put("/src/Foo.java", "checksum", cache.get("/src/Foo.java", "checksum"));
+    cache.save();
+
+    cache = new FileTokensCache(file, "settings").load();
+    assertThat(cache.get("/src/Foo.java", "checksum"), notNullValue());
+    assertThat(cache.get("/src/Bar.java", "checksum"), nullValue());
+  }
+
+  @Test
+  public void shouldIgnoreCacheWhenSettingsChange() {
+    File file = new File(tempFolder.getRoot(), "module.tokens");
+    FileTokensCache cache = new FileTokensCache(file, "ignore literals").load();
+    cache.put("/src/Foo.java", "checksum", new FileTokens(new String[] { "foo" }, new int[] { 1 }));
+    cache.save();
+
+    cache = new FileTokensCache(file, "do not ignore literals").load();
+    assertThat(cache.get("/src/Foo.java", "checksum"), nullValue());
+  }
+
+  @Test
+  public void shouldIgnoreCorruptedCache() throws Exception {
+    File file = new File(tempFolder.getRoot(), "module.tokens");
+    FileWriter writer = new FileWriter(file);
+    writer.write("not a cache");
+    writer.close();
+
+    FileTokensCache cache = new FileTokensCache(file, "settings").load();
+    assertThat(cache.get("/src/Foo.java", "checksum"), nullValue());
+  }
+}
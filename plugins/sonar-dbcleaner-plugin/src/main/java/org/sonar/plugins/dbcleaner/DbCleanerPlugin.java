@@ -23,11 +23,14 @@ import org.sonar.api.Properties;
 import org.sonar.api.Property;
 import org.sonar.api.SonarPlugin;
 import org.sonar.plugins.dbcleaner.api.DbCleanerConstants;
+import org.sonar.plugins.dbcleaner.api.SnapshotPurgeEngine;
 import org.sonar.plugins.dbcleaner.period.DefaultPeriodCleaner;
 import org.sonar.plugins.dbcleaner.period.PeriodPurge;
 import org.sonar.plugins.dbcleaner.purges.*;
 import org.sonar.plugins.dbcleaner.runner.PurgeRunner;
+import org.sonar.plugins.dbcleaner.runner.PurgeScheduler;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -42,20 +45,40 @@ import java.util.List;
             + "the DbCleaner keeps the first one and fully delete the other ones.", global = true, project = true),
     @Property(key = DbCleanerConstants.MONTHS_BEFORE_DELETING_ALL_SNAPSHOTS, defaultValue = DbCleanerConstants.FIVE_YEARS,
         name = "Number of months before starting to delete all remaining snapshots",
-        description = "After this number of months, all snapshots are fully deleted.", global = true, project = true)})
+        description = "After this number of months, all snapshots are fully deleted.", global = true, project = true),
+    @Property(key = DbCleanerConstants.ASYNC_PURGE, defaultValue = "false", name = "Asynchronous purges",
+        description = "If true, the analysis only queues the purges of the database and they are executed later by the server.",
+        global = true, project = true),
+    @Property(key = DbCleanerConstants.ASYNC_MAX_CONCURRENT_PURGES, defaultValue = "2", name = "Maximum number of concurrent purges",
+        description = "Maximum number of projects purged at the same time by the server when purges are asynchronous.", global = true,
+        project = false),
+    @Property(key = DbCleanerConstants.ASYNC_PEAK_HOURS, defaultValue = "", name = "Peak hours",
+        description = "Hours formatted as 'start-end', for example 8-19. During these hours the server purges only one project at a time, "
+            + "and pauses between two purges.", global = true, project = false),
+    @Property(key = DbCleanerConstants.ASYNC_PEAK_HOURS_PAUSE, defaultValue = "60", name = "Pause between purges during peak hours",
+        description = "Number of seconds.", global = true, project = false)})
 public final class DbCleanerPlugin extends SonarPlugin {
 
   public List getExtensions() {
-    return Arrays.asList(
+    List extensions = new ArrayList(getPurgeComponents());
+    // post-job
+    extensions.add(PurgeRunner.class);
+    // server-side execution of the purges, see DbCleanerConstants.ASYNC_PURGE
+    extensions.add(PurgeScheduler.class);
+    return extensions;
+  }
+
+  /**
+   * Components executed by {@link PurgeRunner}, or by {@link PurgeScheduler} when purges are asynchronous.
+   */
+  public static List<Class> getPurgeComponents() {
+    return Arrays.<Class> asList(
         // shared components
-        DefaultPeriodCleaner.class,
+        DefaultPeriodCleaner.class, SnapshotPurgeEngine.class,
 
         // purges
         PurgeOrphanResources.class, PurgeEntities.class, PurgeRuleMeasures.class, PurgeUnprocessed.class,
         PurgeDeletedResources.class, PurgeDeprecatedLast.class, PurgeDisabledResources.class,
-        PurgeResourceRoles.class, PurgeEventOrphans.class, PurgePropertyOrphans.class, PeriodPurge.class, PurgeDependencies.class,
-
-        // post-job
-        PurgeRunner.class);
+        PurgeResourceRoles.class, PurgeEventOrphans.class, PurgePropertyOrphans.class, PeriodPurge.class, PurgeDependencies.class);
   }
 }
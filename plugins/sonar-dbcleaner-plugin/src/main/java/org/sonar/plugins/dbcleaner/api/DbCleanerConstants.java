@@ -26,6 +26,15 @@ public interface DbCleanerConstants {
   String MONTHS_BEFORE_KEEPING_ONLY_ONE_SNAPSHOT_BY_WEEK = "sonar.dbcleaner.monthsBeforeKeepingOnlyOneSnapshotByWeek";
   String MONTHS_BEFORE_KEEPING_ONLY_ONE_SNAPSHOT_BY_MONTH = "sonar.dbcleaner.monthsBeforeKeepingOnlyOneSnapshotByMonth";
   String MONTHS_BEFORE_DELETING_ALL_SNAPSHOTS = "sonar.dbcleaner.monthsBeforeDeletingAllSnapshots";
+
+  /**
+   * @since 2.8
+   */
+  String ASYNC_PURGE = "sonar.dbcleaner.async";
+  String ASYNC_MAX_CONCURRENT_PURGES = "sonar.dbcleaner.async.maxConcurrentPurges";
+  String ASYNC_PEAK_HOURS = "sonar.dbcleaner.async.peakHours";
+  String ASYNC_PEAK_HOURS_PAUSE = "sonar.dbcleaner.async.peakHoursPauseInSeconds";
+
   String ONE_MONTH = "1";
   String ONE_YEAR = "12";
   String FIVE_YEARS = "60";
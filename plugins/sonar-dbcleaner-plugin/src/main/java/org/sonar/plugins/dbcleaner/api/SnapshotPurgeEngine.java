@@ -0,0 +1,204 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.dbcleaner.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.database.DatabaseSession;
+import org.sonar.api.database.model.Snapshot;
+import org.sonar.jpa.dialect.Dialect;
+import org.sonar.jpa.dialect.MsSql;
+import org.sonar.jpa.dialect.MySql;
+import org.sonar.jpa.dialect.PostgreSql;
+import org.sonar.jpa.session.DatabaseConnector;
+
+import javax.persistence.Query;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deletes trees of snapshots with one SQL request per table, instead of loading the ids of all the children snapshots and deleting
+ * them by pages of {@link PurgeUtils#MAX_IN_ELEMENTS}. Children are selected by the column root_snapshot_id, and by the column path
+ * when the top of the tree is not a project snapshot.
+ * <p/>
+ * Joined deletes are used on MySQL, MsSQL and PostgreSQL. Other databases use sub-selects.
+ *
+ * @since 2.8
+ */
+public class SnapshotPurgeEngine implements BatchExtension {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SnapshotPurgeEngine.class);
+
+  /**
+   * Tables referencing snapshots, in the order of deletion. The snapshots table is the last one.
+   */
+  private static final String[][] SNAPSHOT_COLUMNS = {
+      {"measure_data", "snapshot_id"},
+      {"project_measures", "snapshot_id"},
+      {"snapshot_sources", "snapshot_id"},
+      {"rule_failures", "snapshot_id"},
+      {"dependencies", "from_snapshot_id"},
+      {"dependencies", "to_snapshot_id"}};
+
+  private static final String SNAPSHOTS_TABLE = "snapshots";
+
+  private enum Syntax {
+    SUB_SELECT, JOIN, USING
+  }
+
+  private final DatabaseSession session;
+  private final Syntax syntax;
+
+  public SnapshotPurgeEngine(DatabaseSession session, DatabaseConnector connector) {
+    this(session, connector.getDialect());
+  }
+
+  /**
+   * For unit tests.
+   *
+   * @param dialect if null, the standard SQL syntax is used
+   */
+  SnapshotPurgeEngine(DatabaseSession session, Dialect dialect) {
+    this.session = session;
+    this.syntax = getSyntax(dialect);
+  }
+
+  private static Syntax getSyntax(Dialect dialect) {
+    if (dialect instanceof MySql || dialect instanceof MsSql) {
+      return Syntax.JOIN;
+    }
+    if (dialect instanceof PostgreSql) {
+      return Syntax.USING;
+    }
+    return Syntax.SUB_SELECT;
+  }
+
+  /**
+   * Deletes the given snapshots, their children and all the related data. Changes are committed after each request.
+   */
+  public Report deleteSnapshotTrees(List<Snapshot> snapshots) {
+    Report report = new Report();
+    for (Snapshot snapshot : snapshots) {
+      deleteSnapshotTree(snapshot, report);
+    }
+    if (LOG.isInfoEnabled() && !snapshots.isEmpty()) {
+      LOG.info("Purge of " + snapshots.size() + " snapshot trees: " + report);
+    }
+    return report;
+  }
+
+  private void deleteSnapshotTree(Snapshot snapshot, Report report) {
+    Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+    if (snapshot.getRootId() == null) {
+      parameters.put("root", snapshot.getId());
+    } else {
+      parameters.put("root", snapshot.getRootId());
+      parameters.put("path", (snapshot.getPath() == null ? "" : snapshot.getPath()) + snapshot.getId() + ".%");
+    }
+
+    for (String[] tableAndColumn : SNAPSHOT_COLUMNS) {
+      execute(report, tableAndColumn[0], toSql(tableAndColumn[0], tableAndColumn[1], getChildrenCondition(parameters, "s.")), parameters);
+    }
+    execute(report, SNAPSHOTS_TABLE, "DELETE FROM snapshots WHERE " + getChildrenCondition(parameters, ""), parameters);
+
+    Map<String, Object> idParameter = new LinkedHashMap<String, Object>();
+    idParameter.put("id", snapshot.getId());
+    for (String[] tableAndColumn : SNAPSHOT_COLUMNS) {
+      execute(report, tableAndColumn[0], "DELETE FROM " + tableAndColumn[0] + " WHERE " + tableAndColumn[1] + "=:id", idParameter);
+    }
+    execute(report, SNAPSHOTS_TABLE, "DELETE FROM snapshots WHERE id=:id", idParameter);
+  }
+
+  private static String getChildrenCondition(Map<String, Object> parameters, String alias) {
+    String condition = alias + "root_snapshot_id=:root";
+    if (parameters.containsKey("path")) {
+      condition += " AND " + alias + "path LIKE :path";
+    }
+    return condition;
+  }
+
+  String toSql(String table, String column, String childrenCondition) {
+    switch (syntax) {
+      case JOIN:
+        return "DELETE t FROM " + table + " t INNER JOIN snapshots s ON t." + column + "=s.id WHERE " + childrenCondition;
+      case USING:
+        return "DELETE FROM " + table + " t USING snapshots s WHERE t." + column + "=s.id AND " + childrenCondition;
+      default:
+        return "DELETE FROM " + table + " WHERE " + column + " IN (SELECT s.id FROM snapshots s WHERE " + childrenCondition + ")";
+    }
+  }
+
+  private void execute(Report report, String table, String sql, Map<String, Object> parameters) {
+    long start = System.currentTimeMillis();
+    Query query = session.createNativeQuery(sql);
+    for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+      query.setParameter(parameter.getKey(), parameter.getValue());
+    }
+    int rows = query.executeUpdate();
+    session.commit();
+    report.add(table, rows, System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Number of deleted rows and time spent by table.
+   */
+  public static final class Report {
+    private final Map<String, long[]> rowsAndTimeByTable = new LinkedHashMap<String, long[]>();
+
+    private void add(String table, int rows, long durationInMs) {
+      long[] rowsAndTime = rowsAndTimeByTable.get(table);
+      if (rowsAndTime == null) {
+        rowsAndTime = new long[2];
+        rowsAndTimeByTable.put(table, rowsAndTime);
+      }
+      rowsAndTime[0] += rows;
+      rowsAndTime[1] += durationInMs;
+    }
+
+    public long getDeletedRows(String table) {
+      long[] rowsAndTime = rowsAndTimeByTable.get(table);
+      return rowsAndTime == null ? 0L : rowsAndTime[0];
+    }
+
+    public long getDurationInMs(String table) {
+      long[] rowsAndTime = rowsAndTimeByTable.get(table);
+      return rowsAndTime == null ? 0L : rowsAndTime[1];
+    }
+
+    public long getDurationInMs() {
+      long total = 0L;
+      for (long[] rowsAndTime : rowsAndTimeByTable.values()) {
+        total += rowsAndTime[1];
+      }
+      return total;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      for (Map.Entry<String, long[]> entry : rowsAndTimeByTable.entrySet()) {
+        sb.append(entry.getKey()).append(": ").append(entry.getValue()[0]).append(" rows in ").append(entry.getValue()[1]).append(" ms, ");
+      }
+      return sb.append("total: ").append(getDurationInMs()).append(" ms").toString();
+    }
+  }
+}
@@ -26,7 +26,7 @@ import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.Project;
 import org.sonar.plugins.dbcleaner.api.PeriodCleaner;
-import org.sonar.plugins.dbcleaner.api.PurgeUtils;
+import org.sonar.plugins.dbcleaner.api.SnapshotPurgeEngine;
 
 import java.text.DateFormat;
 import java.util.Date;
@@ -37,11 +37,11 @@ public final class DefaultPeriodCleaner implements PeriodCleaner {
 
   private static final Logger LOG = LoggerFactory.getLogger(DefaultPeriodCleaner.class);
   private final SQLRequests sql;
-  private DatabaseSession session;
+  private final SnapshotPurgeEngine purgeEngine;
 
-  public DefaultPeriodCleaner(DatabaseSession session) {
-    this.session = session;
+  public DefaultPeriodCleaner(DatabaseSession session, SnapshotPurgeEngine purgeEngine) {
     this.sql = new SQLRequests(session);
+    this.purgeEngine = purgeEngine;
   }
 
   public void purge(Project project, int projectSnapshotId) {
@@ -69,19 +69,14 @@ public final class DefaultPeriodCleaner implements PeriodCleaner {
       return;
     }
 
-    List<Integer> ids = Lists.newArrayList();
-    for (Snapshot snapshot : snapshotHistory) {
-      ids.addAll(sql.getChildIds(snapshot));
-    }
-    LOG.info("There are " + snapshotHistory.size() + " snapshots and " + (ids.size() - snapshotHistory.size())
-        + " children snapshots which are obsolete and are going to be deleted.");
+    LOG.info("There are " + snapshotHistory.size() + " snapshots which are obsolete and are going to be deleted with their children.");
     if (LOG.isDebugEnabled()) {
       DateFormat format = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
       for (Snapshot snapshot : snapshotHistory) {
         LOG.debug("Delete snapshot created at " + format.format(snapshot.getCreatedAt()));
       }
     }
-    PurgeUtils.deleteSnapshotsData(session, ids);
+    purgeEngine.deleteSnapshotTrees(snapshotHistory);
   }
 
   private void applyFilters(List<Snapshot> snapshotHistory, List<SnapshotFilter> filters) {
@@ -41,11 +41,4 @@ final class SQLRequests {
     query.setParameter("id", oneProjectSnapshotId);
     return query.getResultList();
   }
-
-  List<Integer> getChildIds(Snapshot parentSnapshot) {
-    Query query = session.createQuery("select sp.id FROM " + Snapshot.class.getSimpleName()
-        + " sp WHERE sp.rootId  = :rootId or id = :rootId");
-    query.setParameter("rootId", parentSnapshot.getId());
-    return query.getResultList();
-  }
 }
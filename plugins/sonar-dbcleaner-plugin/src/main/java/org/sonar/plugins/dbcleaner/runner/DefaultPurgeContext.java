@@ -44,6 +44,15 @@ public final class DefaultPurgeContext implements org.sonar.api.batch.PurgeConte
     }
   }
 
+  /**
+   * @since 2.8
+   */
+  public DefaultPurgeContext(Project project, Integer currentSid, Integer previousSid) {
+    this.project = project;
+    this.currentSid = currentSid;
+    this.previousSid = previousSid;
+  }
+
   public DefaultPurgeContext setLastSnapshotId(Integer previousSid) {
     this.previousSid = previousSid;
     return this;
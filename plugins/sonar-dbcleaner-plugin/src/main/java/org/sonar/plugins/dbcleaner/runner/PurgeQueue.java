@@ -0,0 +1,82 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.dbcleaner.runner;
+
+import org.sonar.api.database.DatabaseSession;
+import org.sonar.api.resources.Project;
+import org.sonar.jpa.entity.PurgeRequest;
+import org.sonar.plugins.dbcleaner.api.PurgeContext;
+
+import javax.persistence.Query;
+import java.util.List;
+
+/**
+ * Purges waiting to be executed by the server, see {@link PurgeScheduler}. Requests are stored in the table PURGE_REQUESTS so that they
+ * survive to server restarts. They are executed in the order of their ids.
+ *
+ * @since 2.8
+ */
+public final class PurgeQueue {
+
+  private final DatabaseSession session;
+
+  public PurgeQueue(DatabaseSession session) {
+    this.session = session;
+  }
+
+  public void add(int projectId, PurgeContext context) {
+    session.save(new PurgeRequest(projectId, context.getSnapshotId(), context.getPreviousSnapshotId()));
+    session.commit();
+  }
+
+  public List<PurgeRequest> getPendingPurges() {
+    Query query = session.createQuery("FROM " + PurgeRequest.class.getSimpleName() + " r ORDER BY r.id");
+    return query.getResultList();
+  }
+
+  public void remove(PurgeRequest request) {
+    Query query = session.createQuery("DELETE FROM " + PurgeRequest.class.getSimpleName() + " r WHERE r.id=:id");
+    query.setParameter("id", request.getId());
+    query.executeUpdate();
+    session.commit();
+  }
+
+  /**
+   * Keeps a failed request in the queue, so that it is executed again.
+   */
+  public void incrementAttempts(PurgeRequest request) {
+    Query query = session.createQuery("UPDATE " + PurgeRequest.class.getSimpleName() + " r SET r.attempts=:attempts WHERE r.id=:id");
+    query.setParameter("attempts", request.getAttempts() + 1);
+    query.setParameter("id", request.getId());
+    query.executeUpdate();
+    session.commit();
+  }
+
+  static DefaultPurgeContext toContext(PurgeRequest request, Project project) {
+    return new DefaultPurgeContext(project, request.getSnapshotId(), request.getPreviousSnapshotId());
+  }
+
+  /**
+   * @return the date when the purge has been requested, in milliseconds
+   */
+  static long getQueuedAt(PurgeRequest request) {
+    return request.getCreatedAt() == null ? System.currentTimeMillis() : request.getCreatedAt().getTime();
+  }
+}
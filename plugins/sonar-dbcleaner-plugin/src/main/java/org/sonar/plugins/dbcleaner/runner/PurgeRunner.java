@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.dbcleaner.runner;
 
+import org.apache.commons.configuration.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.PostJob;
@@ -27,6 +28,7 @@ import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.TimeProfiler;
+import org.sonar.plugins.dbcleaner.api.DbCleanerConstants;
 import org.sonar.plugins.dbcleaner.api.Purge;
 
 import javax.persistence.Query;
@@ -71,10 +73,24 @@ public final class PurgeRunner implements PostJob {
     DefaultPurgeContext context = newContext();
     LOG.debug("Snapshots to purge: " + context);
     executeDeprecatedPurges(context);
-    executePurges(context);
+    if (isAsynchronous()) {
+      new PurgeQueue(session).add(snapshot.getResourceId(), context);
+      LOG.info("Purges are delegated to the server");
+    } else {
+      executePurges(context);
+    }
     profiler.stop();
   }
 
+  /**
+   * Purges of the DbCleaner are executed by the server when this property is enabled, see {@link PurgeScheduler}. Deprecated purges
+   * of other plugins are always executed by the batch.
+   */
+  private boolean isAsynchronous() {
+    Configuration configuration = project.getConfiguration();
+    return configuration != null && configuration.getBoolean(DbCleanerConstants.ASYNC_PURGE, false);
+  }
+
   private void executeDeprecatedPurges(DefaultPurgeContext context) {
     TimeProfiler profiler = new TimeProfiler();
     for (org.sonar.api.batch.Purge purge : deprecatedPurges) {
@@ -0,0 +1,400 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.dbcleaner.runner;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.lang.StringUtils;
+import org.picocontainer.Characteristics;
+import org.picocontainer.MutablePicoContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.ServerExtension;
+import org.sonar.api.database.DatabaseSession;
+import org.sonar.api.database.configuration.Property;
+import org.sonar.api.database.model.ResourceModel;
+import org.sonar.api.resources.Project;
+import org.sonar.api.utils.IocContainer;
+import org.sonar.api.utils.SonarException;
+import org.sonar.jpa.entity.PurgeRequest;
+import org.sonar.jpa.session.DatabaseConnector;
+import org.sonar.jpa.session.DatabaseSessionFactory;
+import org.sonar.plugins.dbcleaner.DbCleanerPlugin;
+import org.sonar.plugins.dbcleaner.api.DbCleanerConstants;
+import org.sonar.plugins.dbcleaner.api.Purge;
+import org.sonar.plugins.dbcleaner.period.PeriodPurge;
+import org.sonar.plugins.dbcleaner.purges.PurgeRuleMeasures;
+
+import javax.persistence.Query;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Executes the purges queued by the batch in {@link PurgeQueue}, so that analyses don't wait for the database housekeeping.
+ * <p/>
+ * The queue is polled in background. Requests of a same project are executed sequentially, in their order, and at most
+ * {@link DbCleanerConstants#ASYNC_MAX_CONCURRENT_PURGES} projects are purged at the same time. During the peak hours, only one project is
+ * purged at a time and the scheduler pauses between two purges.
+ * <p/>
+ * A request is executed only once, even if it is still seen in the queue by a poll which started before the end of its purge. A failed
+ * request is kept in the queue and executed again by a next poll, until {@link #MAX_ATTEMPTS} failures.
+ * <p/>
+ * Most purges are not related to the project of the request but clean the whole database. They are executed by only one worker at a
+ * time : a worker skips them if another worker is already executing them.
+ * <p/>
+ * The purges of the DbCleaner are instantiated for each request with the project configuration. Purges of other plugins are still
+ * executed by the batch.
+ *
+ * @since 2.8
+ */
+public final class PurgeScheduler implements ServerExtension {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PurgeScheduler.class);
+  private static final long POLL_DELAY_IN_SECONDS = 30L;
+  private static final int DEFAULT_MAX_CONCURRENT_PURGES = 2;
+  private static final int DEFAULT_PEAK_HOURS_PAUSE_IN_SECONDS = 60;
+  static final int MAX_ATTEMPTS = 3;
+
+  /**
+   * Purges of the snapshots of the project of the request. The other purges are global.
+   */
+  private static final Set<Class> PROJECT_PURGES = new HashSet<Class>(Arrays.<Class>asList(PurgeRuleMeasures.class, PeriodPurge.class));
+
+  private final DatabaseSessionFactory sessionFactory;
+  private final DatabaseConnector connector;
+  private final Configuration configuration;
+  private final int maxConcurrentPurges;
+  private final int[] peakHours;
+  private final long peakHoursPauseInMs;
+
+  private ScheduledExecutorService dispatcher;
+  private ExecutorService workers;
+
+  // guarded by this
+  private final Set<Integer> runningProjectIds = new HashSet<Integer>();
+  // guarded by this. Ids of the requests which have been dispatched and which were still in the queue at the last poll.
+  private final Set<Integer> dispatchedRequestIds = new HashSet<Integer>();
+  private long lastEndOfPurge = 0L;
+  private final Lock globalPurgesLock = new ReentrantLock();
+
+  private volatile int pendingPurges = 0;
+  private volatile long lagInMs = 0L;
+  private final AtomicLong completedPurges = new AtomicLong();
+  private final AtomicLong failedPurges = new AtomicLong();
+
+  public PurgeScheduler(DatabaseSessionFactory sessionFactory, DatabaseConnector connector, Configuration configuration) {
+    this.sessionFactory = sessionFactory;
+    this.connector = connector;
+    this.configuration = configuration;
+    this.maxConcurrentPurges = Math.max(1, configuration.getInt(DbCleanerConstants.ASYNC_MAX_CONCURRENT_PURGES,
+        DEFAULT_MAX_CONCURRENT_PURGES));
+    this.peakHours = parsePeakHours(configuration.getString(DbCleanerConstants.ASYNC_PEAK_HOURS, null));
+    this.peakHoursPauseInMs = 1000L * configuration.getInt(DbCleanerConstants.ASYNC_PEAK_HOURS_PAUSE,
+        DEFAULT_PEAK_HOURS_PAUSE_IN_SECONDS);
+  }
+
+  public void start() {
+    start(Executors.newFixedThreadPool(maxConcurrentPurges), Executors.newSingleThreadScheduledExecutor());
+  }
+
+  /**
+   * For unit tests.
+   */
+  void start(ExecutorService workers, ScheduledExecutorService dispatcher) {
+    this.workers = workers;
+    this.dispatcher = dispatcher;
+    dispatcher.scheduleWithFixedDelay(new Runnable() {
+      public void run() {
+        dispatch();
+      }
+    }, POLL_DELAY_IN_SECONDS, POLL_DELAY_IN_SECONDS, TimeUnit.SECONDS);
+  }
+
+  public void stop() {
+    if (dispatcher != null) {
+      dispatcher.shutdownNow();
+      workers.shutdownNow();
+      dispatcher = null;
+      workers = null;
+    }
+  }
+
+  /**
+   * Number of requests in the queue at the last poll, including the running ones.
+   */
+  public int getPendingPurges() {
+    return pendingPurges;
+  }
+
+  public synchronized int getRunningPurges() {
+    return runningProjectIds.size();
+  }
+
+  public long getCompletedPurges() {
+    return completedPurges.get();
+  }
+
+  public long getFailedPurges() {
+    return failedPurges.get();
+  }
+
+  /**
+   * Age of the oldest request of the queue at the last poll.
+   */
+  public long getLagInMs() {
+    return lagInMs;
+  }
+
+  void dispatch() {
+    try {
+      List<PurgeRequest> queue = new PurgeQueue(sessionFactory.getSession()).getPendingPurges();
+      pendingPurges = queue.size();
+      lagInMs = queue.isEmpty() ? 0L : System.currentTimeMillis() - PurgeQueue.getQueuedAt(queue.get(0));
+      if (!queue.isEmpty()) {
+        LOG.debug("Purge queue: " + pendingPurges + " requests, lag of " + lagInMs / 1000L + " s");
+      }
+
+      forgetRemovedRequests(queue);
+      Set<Integer> polledProjectIds = new HashSet<Integer>();
+      for (PurgeRequest request : queue) {
+        // only the oldest request of each project can be executed
+        if (polledProjectIds.add(request.getProjectId()) && !isDispatched(request)) {
+          if (!acquire(request)) {
+            break;
+          }
+          workers.execute(new PurgeJob(request));
+        }
+      }
+
+    } catch (RuntimeException e) {
+      LOG.error("Fail to poll the purge queue", e);
+
+    } finally {
+      sessionFactory.clear();
+    }
+  }
+
+  /**
+   * The requests executed before the poll of the queue are not returned anymore, they can be forgotten.
+   */
+  private synchronized void forgetRemovedRequests(List<PurgeRequest> queue) {
+    Set<Integer> queuedRequestIds = new HashSet<Integer>();
+    for (PurgeRequest request : queue) {
+      queuedRequestIds.add(request.getId());
+    }
+    dispatchedRequestIds.retainAll(queuedRequestIds);
+  }
+
+  private synchronized boolean isDispatched(PurgeRequest request) {
+    return runningProjectIds.contains(request.getProjectId()) || dispatchedRequestIds.contains(request.getId());
+  }
+
+  private synchronized boolean acquire(PurgeRequest request) {
+    boolean peak = isPeakHour(peakHours, Calendar.getInstance().get(Calendar.HOUR_OF_DAY));
+    if (runningProjectIds.size() >= (peak ? 1 : maxConcurrentPurges)) {
+      return false;
+    }
+    if (peak && System.currentTimeMillis() - lastEndOfPurge < peakHoursPauseInMs) {
+      return false;
+    }
+    runningProjectIds.add(request.getProjectId());
+    dispatchedRequestIds.add(request.getId());
+    return true;
+  }
+
+  /**
+   * The request has not been removed from the queue, it will be executed again.
+   */
+  private synchronized void redispatch(PurgeRequest request) {
+    dispatchedRequestIds.remove(request.getId());
+  }
+
+  private synchronized void release(Integer projectId) {
+    runningProjectIds.remove(projectId);
+    lastEndOfPurge = System.currentTimeMillis();
+  }
+
+  /**
+   * @param s hours formatted as "start-end", for example "8-19" or "22-6". Null or empty if there are no peak hours.
+   */
+  static int[] parsePeakHours(String s) {
+    if (StringUtils.isBlank(s)) {
+      return null;
+    }
+    String[] fields = StringUtils.split(s, '-');
+    if (fields.length == 2 && StringUtils.isNumeric(fields[0].trim()) && StringUtils.isNumeric(fields[1].trim())) {
+      int start = Integer.parseInt(fields[0].trim());
+      int end = Integer.parseInt(fields[1].trim());
+      if (start < 24 && end <= 24) {
+        return new int[] { start, end };
+      }
+    }
+    throw new SonarException("The property " + DbCleanerConstants.ASYNC_PEAK_HOURS + " must be formatted as 'start-end', for example 8-19: "
+        + s);
+  }
+
+  static boolean isPeakHour(int[] peakHours, int hour) {
+    if (peakHours == null) {
+      return false;
+    }
+    if (peakHours[0] <= peakHours[1]) {
+      return hour >= peakHours[0] && hour < peakHours[1];
+    }
+    return hour >= peakHours[0] || hour < peakHours[1];
+  }
+
+  private final class PurgeJob implements Runnable {
+    private final PurgeRequest request;
+
+    private PurgeJob(PurgeRequest request) {
+      this.request = request;
+    }
+
+    public void run() {
+      Integer projectId = request.getProjectId();
+      long start = System.currentTimeMillis();
+      try {
+        DatabaseSession session = sessionFactory.getSession();
+        ResourceModel resource = session.getEntity(ResourceModel.class, projectId);
+        if (resource != null) {
+          Project project = new Project(resource.getKey()).setName(resource.getName());
+          project.setConfiguration(getProjectConfiguration(session, projectId));
+          executePurges(createPurges(session, project.getConfiguration()), PurgeQueue.toContext(request, project));
+          LOG.info("Purge of " + resource.getKey() + " done in " + (System.currentTimeMillis() - start) + " ms");
+        }
+        new PurgeQueue(session).remove(request);
+        completedPurges.incrementAndGet();
+
+      } catch (RuntimeException e) {
+        failedPurges.incrementAndGet();
+        if (request.getAttempts() + 1 < MAX_ATTEMPTS) {
+          LOG.error("Fail to purge the project " + projectId + ", the request will be executed again", e);
+          retryFailedRequest();
+        } else {
+          LOG.error("Fail to purge the project " + projectId + " after " + MAX_ATTEMPTS + " attempts, the request is removed from the queue",
+              e);
+          removeFailedRequest();
+        }
+
+      } finally {
+        sessionFactory.clear();
+        release(projectId);
+      }
+      dispatchNextRequests();
+    }
+
+    private void executePurges(List<Purge> purges, DefaultPurgeContext context) {
+      boolean global = globalPurgesLock.tryLock();
+      if (!global) {
+        LOG.debug("Global purges are already executed by another worker");
+      }
+      try {
+        for (Purge purge : purges) {
+          if (global || PROJECT_PURGES.contains(purge.getClass())) {
+            purge.purge(context);
+          }
+        }
+      } finally {
+        if (global) {
+          globalPurgesLock.unlock();
+        }
+      }
+    }
+
+    private void retryFailedRequest() {
+      sessionFactory.clear();
+      try {
+        new PurgeQueue(sessionFactory.getSession()).incrementAttempts(request);
+      } catch (RuntimeException e) {
+        LOG.error("Fail to update the purge request " + request.getId(), e);
+      }
+      redispatch(request);
+    }
+
+    private void removeFailedRequest() {
+      sessionFactory.clear();
+      try {
+        new PurgeQueue(sessionFactory.getSession()).remove(request);
+      } catch (RuntimeException e) {
+        LOG.error("Fail to remove the purge request " + request.getId(), e);
+        redispatch(request);
+      }
+    }
+
+    private void dispatchNextRequests() {
+      ScheduledExecutorService executor = dispatcher;
+      long delay = isPeakHour(peakHours, Calendar.getInstance().get(Calendar.HOUR_OF_DAY)) ? peakHoursPauseInMs : 0L;
+      try {
+        if (executor != null) {
+          executor.schedule(new Runnable() {
+            public void run() {
+              dispatch();
+            }
+          }, delay, TimeUnit.MILLISECONDS);
+        }
+      } catch (RejectedExecutionException e) {
+        // the server is stopping
+      }
+    }
+  }
+
+  /**
+   * Properties of the project override the server configuration.
+   */
+  private Configuration getProjectConfiguration(DatabaseSession session, Integer projectId) {
+    BaseConfiguration projectProperties = new BaseConfiguration();
+    projectProperties.setDelimiterParsingDisabled(true);
+    Query query = session.createQuery("FROM " + Property.class.getSimpleName() + " p WHERE p.resourceId=:resourceId AND p.userId IS NULL");
+    query.setParameter("resourceId", projectId);
+    for (Property property : (List<Property>) query.getResultList()) {
+      projectProperties.setProperty(property.getKey(), property.getValue());
+    }
+    CompositeConfiguration result = new CompositeConfiguration();
+    result.addConfiguration(projectProperties);
+    result.addConfiguration(configuration);
+    return result;
+  }
+
+  /**
+   * The purges are the ones executed by the batch in synchronous mode, with the same dependencies.
+   */
+  private List<Purge> createPurges(DatabaseSession session, Configuration projectConfiguration) {
+    MutablePicoContainer container = IocContainer.buildPicoContainer();
+    container.addComponent(session);
+    container.addComponent(projectConfiguration);
+    container.addComponent(connector);
+    for (Class component : DbCleanerPlugin.getPurgeComponents()) {
+      container.as(Characteristics.CACHE).addComponent(component);
+    }
+    return container.getComponents(Purge.class);
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.dbcleaner.api;
+
+import org.junit.Test;
+import org.sonar.api.database.model.Snapshot;
+import org.sonar.jpa.dialect.Dialect;
+import org.sonar.jpa.dialect.MySql;
+import org.sonar.jpa.dialect.Oracle;
+import org.sonar.jpa.dialect.PostgreSql;
+import org.sonar.jpa.test.AbstractDbUnitTestCase;
+
+import java.util.Arrays;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class SnapshotPurgeEngineTest extends AbstractDbUnitTestCase {
+
+  private static final String[] TABLES = {"snapshots", "project_measures", "measure_data", "rule_failures", "snapshot_sources", "dependencies"};
+
+  @Test
+  public void shouldDeleteProjectTree() {
+    setupData("sharedFixture");
+
+    SnapshotPurgeEngine.Report report = new SnapshotPurgeEngine(getSession(), (Dialect) null)
+        .deleteSnapshotTrees(Arrays.asList(getSession().getEntity(Snapshot.class, 1)));
+
+    checkTables("deleteProjectTree", TABLES);
+    assertThat(report.getDeletedRows("snapshots"), is(4L));
+    assertThat(report.getDeletedRows("project_measures"), is(4L));
+    assertThat(report.getDeletedRows("dependencies"), is(2L));
+  }
+
+  @Test
+  public void shouldDeleteModuleTree() {
+    setupData("sharedFixture");
+
+    SnapshotPurgeEngine.Report report = new SnapshotPurgeEngine(getSession(), (Dialect) null)
+        .deleteSnapshotTrees(Arrays.asList(getSession().getEntity(Snapshot.class, 2)));
+
+    checkTables("deleteModuleTree", TABLES);
+    assertThat(report.getDeletedRows("snapshots"), is(3L));
+  }
+
+  @Test
+  public void shouldUseDialectSpecificDeletes() {
+    String condition = "s.root_snapshot_id=:root";
+
+    assertThat(new SnapshotPurgeEngine(getSession(), new MySql()).toSql("project_measures", "snapshot_id", condition),
+        is("DELETE t FROM project_measures t INNER JOIN snapshots s ON t.snapshot_id=s.id WHERE s.root_snapshot_id=:root"));
+    assertThat(new SnapshotPurgeEngine(getSession(), new PostgreSql()).toSql("project_measures", "snapshot_id", condition),
+        is("DELETE FROM project_measures t USING snapshots s WHERE t.snapshot_id=s.id AND s.root_snapshot_id=:root"));
+    assertThat(new SnapshotPurgeEngine(getSession(), new Oracle()).toSql("project_measures", "snapshot_id", condition),
+        is("DELETE FROM project_measures WHERE snapshot_id IN (SELECT s.id FROM snapshots s WHERE s.root_snapshot_id=:root)"));
+  }
+}
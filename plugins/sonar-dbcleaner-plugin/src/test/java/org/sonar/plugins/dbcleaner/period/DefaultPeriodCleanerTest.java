@@ -23,18 +23,22 @@ import org.apache.commons.configuration.PropertiesConfiguration;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.resources.Project;
+import org.sonar.jpa.session.DatabaseConnector;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
+import org.sonar.plugins.dbcleaner.api.SnapshotPurgeEngine;
 
 import java.util.Date;
 import java.util.GregorianCalendar;
 
+import static org.mockito.Mockito.mock;
+
 public class DefaultPeriodCleanerTest extends AbstractDbUnitTestCase {
 
   DefaultPeriodCleaner cleaner;
 
   @Before
   public void init() {
-    cleaner = new DefaultPeriodCleaner(getSession());
+    cleaner = new DefaultPeriodCleaner(getSession(), new SnapshotPurgeEngine(getSession(), mock(DatabaseConnector.class)));
   }
 
   @Test
@@ -0,0 +1,75 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.dbcleaner.runner;
+
+import org.junit.Test;
+import org.sonar.api.database.configuration.Property;
+import org.sonar.api.resources.Project;
+import org.sonar.jpa.entity.PurgeRequest;
+import org.sonar.jpa.test.AbstractDbUnitTestCase;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class PurgeQueueTest extends AbstractDbUnitTestCase {
+
+  @Test
+  public void shouldReturnRequestsInTheirOrder() {
+    setupData("shared");
+    PurgeQueue queue = new PurgeQueue(getSession());
+    Project project = new Project("mygroup:myartifact");
+    queue.add(1, new DefaultPurgeContext(project, 40, 30));
+
+    List<PurgeRequest> requests = queue.getPendingPurges();
+    assertThat(requests.size(), is(2));
+
+    DefaultPurgeContext first = PurgeQueue.toContext(requests.get(0), project);
+    assertThat(first.getSnapshotId(), is(30));
+    assertThat(first.getPreviousSnapshotId(), nullValue());
+
+    DefaultPurgeContext second = PurgeQueue.toContext(requests.get(1), project);
+    assertThat(second.getSnapshotId(), is(40));
+    assertThat(second.getPreviousSnapshotId(), is(30));
+    assertThat(second.getProject(), is(project));
+    assertThat(PurgeQueue.getQueuedAt(requests.get(1)), greaterThan(PurgeQueue.getQueuedAt(requests.get(0))));
+  }
+
+  @Test
+  public void shouldNotStoreRequestsInProperties() {
+    setupData("shared");
+    new PurgeQueue(getSession()).add(1, new DefaultPurgeContext(new Project("mygroup:myartifact"), 40, 30));
+
+    assertThat(getHQLCount(Property.class), is(1L));
+  }
+
+  @Test
+  public void shouldRemoveRequest() {
+    setupData("shared");
+    PurgeQueue queue = new PurgeQueue(getSession());
+    queue.remove(queue.getPendingPurges().get(0));
+
+    assertThat(queue.getPendingPurges().size(), is(0));
+    assertThat(getHQLCount(PurgeRequest.class), is(0L));
+  }
+}
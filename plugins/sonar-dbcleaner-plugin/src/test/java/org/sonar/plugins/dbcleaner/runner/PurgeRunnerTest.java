@@ -19,19 +19,29 @@
  */
 package org.sonar.plugins.dbcleaner.runner;
 
+import org.apache.commons.configuration.PropertiesConfiguration;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.junit.Test;
+import org.sonar.api.database.configuration.Property;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.Project;
+import org.sonar.jpa.entity.PurgeRequest;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
+import org.sonar.plugins.dbcleaner.api.DbCleanerConstants;
 import org.sonar.plugins.dbcleaner.api.Purge;
 import org.sonar.plugins.dbcleaner.api.PurgeContext;
 
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -109,6 +119,26 @@ public class PurgeRunnerTest extends AbstractDbUnitTestCase {
     }));
   }
 
+  @Test
+  public void shouldQueuePurgesWhenAsynchronous() {
+    setupData("shared");
+    Snapshot snapshot = getSession().getSingleResult(Snapshot.class, "id", 400);
+    Project project = new Project("key");
+    PropertiesConfiguration conf = new PropertiesConfiguration();
+    conf.setProperty(DbCleanerConstants.ASYNC_PURGE, "true");
+    project.setConfiguration(conf);
+    Purge purge = mock(Purge.class);
+
+    new PurgeRunner(getSession(), project, snapshot, new Purge[]{purge}).purge();
+
+    verify(purge, never()).purge((PurgeContext) anyObject());
+    List<PurgeRequest> requests = new PurgeQueue(getSession()).getPendingPurges();
+    assertThat(requests.size(), is(1));
+    assertThat(PurgeQueue.toContext(requests.get(0), project).getSnapshotId(), is(400));
+    assertThat(PurgeQueue.toContext(requests.get(0), project).getPreviousSnapshotId(), is(300));
+    assertThat(getHQLCount(Property.class), is(0L));
+  }
+
   @Test
   public void shouldExecuteOnlyOnRootProjects() {
     Project project = mock(Project.class);
@@ -0,0 +1,180 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.dbcleaner.runner;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.database.DatabaseSession;
+import org.sonar.api.utils.SonarException;
+import org.sonar.jpa.entity.PurgeRequest;
+import org.sonar.jpa.session.DatabaseConnector;
+import org.sonar.jpa.session.DatabaseSessionFactory;
+import org.sonar.jpa.test.AbstractDbUnitTestCase;
+import org.sonar.plugins.dbcleaner.api.DbCleanerConstants;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PurgeSchedulerTest extends AbstractDbUnitTestCase {
+
+  @Test
+  public void shouldExecuteRequestsOnce() {
+    setupData("shared");
+    ExecutorService workers = mock(ExecutorService.class);
+    PurgeScheduler scheduler = newScheduler(getSessionFactory(), new PropertiesConfiguration(), workers);
+
+    scheduler.dispatch();
+    scheduler.dispatch();
+    List<Runnable> jobs = getExecutedJobs(workers, 1);
+    assertThat(scheduler.getRunningPurges(), is(1));
+
+    jobs.get(0).run();
+    assertThat(scheduler.getRunningPurges(), is(0));
+    assertThat(scheduler.getCompletedPurges(), is(1L));
+    assertThat(new PurgeQueue(getSession()).getPendingPurges().size(), is(0));
+
+    // a poll which started before the end of the purge still sees the request
+    setupData("shared");
+    scheduler.dispatch();
+    getExecutedJobs(workers, 1);
+  }
+
+  @Test
+  public void shouldLimitConcurrentPurges() {
+    setupData("severalProjects");
+    PropertiesConfiguration configuration = new PropertiesConfiguration();
+    configuration.setProperty(DbCleanerConstants.ASYNC_MAX_CONCURRENT_PURGES, "2");
+    ExecutorService workers = mock(ExecutorService.class);
+    PurgeScheduler scheduler = newScheduler(getSessionFactory(), configuration, workers);
+
+    scheduler.dispatch();
+    List<Runnable> jobs = getExecutedJobs(workers, 2);
+    assertThat(scheduler.getRunningPurges(), is(2));
+    assertThat(scheduler.getPendingPurges(), is(4));
+
+    // the third project is purged, then the limit is reached again
+    jobs.get(0).run();
+    scheduler.dispatch();
+    getExecutedJobs(workers, 3);
+    assertThat(scheduler.getRunningPurges(), is(2));
+    assertThat(scheduler.getPendingPurges(), is(3));
+  }
+
+  @Test
+  public void shouldRetryFailedRequests() {
+    setupData("shared");
+    ExecutorService workers = mock(ExecutorService.class);
+    PurgeScheduler scheduler = newScheduler(newBrokenSessionFactory(), new PropertiesConfiguration(), workers);
+
+    scheduler.dispatch();
+    getExecutedJobs(workers, 1).get(0).run();
+
+    assertThat(scheduler.getFailedPurges(), is(1L));
+    assertThat(scheduler.getRunningPurges(), is(0));
+    List<PurgeRequest> queue = new PurgeQueue(getSession()).getPendingPurges();
+    assertThat(queue.size(), is(1));
+    assertThat(queue.get(0).getAttempts(), is(1));
+
+    // executed again by the next poll
+    scheduler.dispatch();
+    getExecutedJobs(workers, 2);
+  }
+
+  @Test
+  public void shouldRemoveRequestsWhichFailedTooManyTimes() {
+    setupData("failedTwice");
+    ExecutorService workers = mock(ExecutorService.class);
+    PurgeScheduler scheduler = newScheduler(newBrokenSessionFactory(), new PropertiesConfiguration(), workers);
+
+    scheduler.dispatch();
+    getExecutedJobs(workers, 1).get(0).run();
+
+    assertThat(scheduler.getFailedPurges(), is(1L));
+    assertThat(scheduler.getCompletedPurges(), is(0L));
+    assertThat(scheduler.getRunningPurges(), is(0));
+    assertThat(new PurgeQueue(getSession()).getPendingPurges().size(), is(0));
+  }
+
+  private DatabaseSessionFactory newBrokenSessionFactory() {
+    DatabaseSession brokenSession = mock(DatabaseSession.class);
+    when(brokenSession.createQuery(anyString())).thenThrow(new IllegalStateException("database is down"));
+    DatabaseSessionFactory sessionFactory = mock(DatabaseSessionFactory.class);
+    // poll of the queue, then execution of the purge, then update or removal of the failed request, then next polls
+    when(sessionFactory.getSession()).thenReturn(getSession(), brokenSession, getSession());
+    return sessionFactory;
+  }
+
+  private static PurgeScheduler newScheduler(DatabaseSessionFactory sessionFactory, PropertiesConfiguration configuration,
+      ExecutorService workers) {
+    PurgeScheduler scheduler = new PurgeScheduler(sessionFactory, mock(DatabaseConnector.class), configuration);
+    scheduler.start(workers, mock(ScheduledExecutorService.class));
+    return scheduler;
+  }
+
+  private static List<Runnable> getExecutedJobs(ExecutorService workers, int count) {
+    ArgumentCaptor<Runnable> jobs = ArgumentCaptor.forClass(Runnable.class);
+    verify(workers, times(count)).execute(jobs.capture());
+    return jobs.getAllValues();
+  }
+
+  @Test
+  public void shouldParsePeakHours() {
+    int[] hours = PurgeScheduler.parsePeakHours(" 8-19 ");
+    assertThat(hours[0], is(8));
+    assertThat(hours[1], is(19));
+    assertThat(PurgeScheduler.parsePeakHours(""), nullValue());
+    assertThat(PurgeScheduler.parsePeakHours(null), nullValue());
+  }
+
+  @Test(expected = SonarException.class)
+  public void shouldFailIfBadPeakHours() {
+    PurgeScheduler.parsePeakHours("8h-19h");
+  }
+
+  @Test
+  public void shouldCheckPeakHours() {
+    int[] dayHours = {8, 19};
+    assertThat(PurgeScheduler.isPeakHour(dayHours, 8), is(true));
+    assertThat(PurgeScheduler.isPeakHour(dayHours, 18), is(true));
+    assertThat(PurgeScheduler.isPeakHour(dayHours, 19), is(false));
+    assertThat(PurgeScheduler.isPeakHour(dayHours, 3), is(false));
+    assertThat(PurgeScheduler.isPeakHour(null, 10), is(false));
+  }
+
+  @Test
+  public void shouldCheckPeakHoursOverMidnight() {
+    int[] nightHours = {22, 6};
+    assertThat(PurgeScheduler.isPeakHour(nightHours, 23), is(true));
+    assertThat(PurgeScheduler.isPeakHour(nightHours, 2), is(true));
+    assertThat(PurgeScheduler.isPeakHour(nightHours, 6), is(false));
+    assertThat(PurgeScheduler.isPeakHour(nightHours, 12), is(false));
+  }
+}
@@ -61,28 +61,38 @@ public final class DsmSerializer {
       json.append(resource.getName());
       json.append("\",\"q\":\"");
       json.append(resource.getQualifier());
-      json.append("\",\"v\":[");
-      for (int x = 0; x < dsm.getDimension(); x++) {
-        if (x > 0) {
-          json.append(',');
-        }
-        serializeCell(y, x);
-      }
+      json.append("\",\"c\":[");
+      serializeCells(y);
       json.append("]");
     }
     json.append("}");
   }
 
-  private void serializeCell(int y, int x) {
-    DsmCell cell = dsm.getCell(x, y);
-    json.append('{');
-    if (cell.getEdge() != null && cell.getWeight() > 0) {
-      Dependency dep = (Dependency) cell.getEdge();
-      json.append("\"i\":");
-      json.append(dep.getId());
-      json.append(",\"w\":");
-      json.append(cell.getWeight());
+  /**
+   * Only the non-empty cells are written, with their column index. Empty cells are not read from the DSM.
+   */
+  private void serializeCells(int y) {
+    boolean first = true;
+    for (int x : dsm.getIncomingIndices(y)) {
+      DsmCell cell = dsm.getCell(x, y);
+      if (cell.getEdge() != null && cell.getWeight() > 0) {
+        if (!first) {
+          json.append(',');
+        }
+        serializeCell(x, cell);
+        first = false;
+      }
     }
+  }
+
+  private void serializeCell(int x, DsmCell cell) {
+    Dependency dep = (Dependency) cell.getEdge();
+    json.append("{\"x\":");
+    json.append(x);
+    json.append(",\"i\":");
+    json.append(dep.getId());
+    json.append(",\"w\":");
+    json.append(cell.getWeight());
     json.append('}');
   }
 
@@ -19,8 +19,10 @@
  */
 package org.sonar.plugins.design.batch;
 
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.measures.CoreMetrics;
 
+@ConcurrentExecution
 public class PackageTangleIndexDecorator extends TangleIndexDecorator {
 
   public PackageTangleIndexDecorator() {
@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.design.batch;
 
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.DependedUpon;
@@ -34,6 +35,7 @@ import org.sonar.api.resources.Scopes;
 import java.util.Collection;
 import java.util.List;
 
+@ConcurrentExecution
 public class SuspectLcom4DensityDecorator implements Decorator {
 
   public boolean shouldExecuteOnProject(Project project) {
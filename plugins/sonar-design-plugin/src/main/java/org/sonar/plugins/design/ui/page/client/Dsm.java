@@ -150,7 +150,7 @@ public class Dsm extends Composite {
     cells = new Label[size][size];
     for (int row = 0; row < size; row++) {
       DsmData.Row resource = data.get(row);
-      for (int col = 0; col < resource.size(); col++) {
+      for (int col = 0; col < size; col++) {
         Label cell = createGridCell(row, col, resource.getWeight(col));
         grid.setWidget(row, col, cell);
         cells[row][col] = cell;
@@ -192,7 +192,9 @@ public class Dsm extends Composite {
 
   private void displayDependencyInfo(int row, int col) {
     DsmData.Cell cell = data.get(row).getCell(col);
-    DependencyInfo.getInstance().showOrPopup(cell.getDependencyId());
+    if (cell != null) {
+      DependencyInfo.getInstance().showOrPopup(cell.getDependencyId());
+    }
   }
 
   public void onTitleClicked(int row) {
@@ -32,8 +32,28 @@ public final class DsmData {
     public final native String getId() /*-{ return this.i; }-*/;
     public final native String getName()  /*-{ return this.n;  }-*/;
     public final native String getQualifier() /*-{ return this.q; }-*/;
-    public final native Cell getCell(final int col)  /*-{ return this.v[col];  }-*/;
-    public final native int size()  /*-{ return this.v.length;  }-*/;
+
+    /**
+     * Rows store either all the cells in "v" (before 2.8), or only the non-empty cells in "c", each one having its column
+     * index in "x". The latter are indexed by column on first access.
+     *
+     * @return the cell, null if it's empty
+     */
+    public final native Cell getCell(final int col)  /*-{
+      if (this.v) {
+        return this.v[col];
+      }
+      if (!this.cellsByCol) {
+        this.cellsByCol = {};
+        if (this.c) {
+          for (var k = 0; k < this.c.length; k++) {
+            this.cellsByCol[this.c[k].x] = this.c[k];
+          }
+        }
+      }
+      return this.cellsByCol[col] || null;
+    }-*/;
+
     public final int getWeight(final int col) {
       Cell cell = getCell(col);
       return (cell==null) ? 0 : cell.getWeight();
@@ -21,6 +21,7 @@ package org.sonar.plugins.findbugs;
 
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.CoreProperties;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.profiles.RulesProfile;
@@ -34,6 +35,7 @@ import org.sonar.api.utils.Logs;
 import java.io.File;
 import java.util.List;
 
+@ConcurrentExecution
 public class FindbugsSensor implements Sensor {
   private RulesProfile profile;
   private RuleFinder ruleFinder;
@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.pmd;
 
+import org.apache.commons.configuration.Configuration;
 import org.sonar.api.BatchExtension;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
@@ -45,6 +46,11 @@ public class PmdConfiguration implements BatchExtension {
     return Arrays.asList(saveXmlFile().getAbsolutePath());
   }
 
+  public int getThreads() {
+    Configuration conf = project.getConfiguration();
+    return conf == null ? PmdConstants.THREADS_DEFAULT_VALUE : conf.getInt(PmdConstants.THREADS_PROPERTY, PmdConstants.THREADS_DEFAULT_VALUE);
+  }
+
   private File saveXmlFile() {
     try {
       StringWriter pmdConfiguration = new StringWriter();
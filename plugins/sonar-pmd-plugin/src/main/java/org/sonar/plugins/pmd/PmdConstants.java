@@ -30,6 +30,14 @@ public final class PmdConstants {
   public static final String XPATH_EXPRESSION_PARAM = "xpath";
   public static final String XPATH_MESSAGE_PARAM = "message";
 
+  /**
+   * Number of threads used to analyze the source files. Files are analyzed sequentially by default.
+   *
+   * @since 2.8
+   */
+  public static final String THREADS_PROPERTY = "sonar.pmd.threads";
+  public static final int THREADS_DEFAULT_VALUE = 1;
+
   private PmdConstants() {
   }
 }
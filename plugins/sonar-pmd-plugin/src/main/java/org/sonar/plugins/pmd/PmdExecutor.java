@@ -19,10 +19,8 @@
  */
 package org.sonar.plugins.pmd;
 
+import com.google.common.collect.Lists;
 import net.sourceforge.pmd.*;
-import net.sourceforge.pmd.renderers.Renderer;
-import net.sourceforge.pmd.renderers.XMLRenderer;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -35,11 +33,20 @@ import org.sonar.api.utils.TimeProfiler;
 import org.sonar.java.api.JavaUtils;
 
 import java.io.*;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class PmdExecutor implements BatchExtension {
 
   private static final Logger LOG = LoggerFactory.getLogger(PmdExecutor.class);
+  private static final int ANALYZED_FILES_PER_THREAD = 4;
 
   private PmdConfiguration configuration;
   private Project project;
@@ -49,60 +56,106 @@ public class PmdExecutor implements BatchExtension {
     this.configuration = configuration;
   }
 
-  public File execute() throws IOException, PMDException {
+  /**
+   * Each file gets its own PMD report, which is given to the recorder as soon as the file is analyzed. Reports are
+   * recorded by the calling thread, in the order of files.
+   */
+  public void execute(PmdViolationsRecorder recorder) {
     TimeProfiler profiler = new TimeProfiler().start("Execute PMD " + PmdVersion.getVersion());
 
     ClassLoader initialClassLoader = Thread.currentThread().getContextClassLoader();
     Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
     try {
-      PMD pmd = new PMD();
-      setJavaVersion(pmd, project);
-      RuleContext ruleContext = new RuleContext();
-      Report report = new Report();
-      ruleContext.setReport(report);
-
-      RuleSets rulesets = createRulesets();
-
-      for (File file : project.getFileSystem().getSourceFiles(Java.INSTANCE)) {
-        ruleContext.setSourceCodeFilename(file.getAbsolutePath());
-        Reader fileReader = new InputStreamReader(new FileInputStream(file), project.getFileSystem().getSourceCharset());
-        try {
-          pmd.processFile(fileReader, rulesets, ruleContext);
-
-        } catch (PMDException e) {
-          LOG.error("Fail to execute PMD. Following file is ignored: " + file, e.getCause());
-
-        } catch (Exception e) {
-          LOG.error("Fail to execute PMD. Following file is ignored: " + file, e);
-
-        } finally {
-          IOUtils.closeQuietly(fileReader);
+      List<byte[]> rulesets = loadRulesets();
+      List<File> files = project.getFileSystem().getSourceFiles(Java.INSTANCE);
+      int threads = configuration.getThreads();
+      if (threads > 1 && files.size() > 1) {
+        executeConcurrently(files, rulesets, threads, recorder);
+      } else {
+        FileAnalyzer analyzer = new FileAnalyzer(rulesets);
+        for (File file : files) {
+          recorder.record(analyzer.analyze(file));
         }
       }
 
-      return writeXmlReport(project, report);
-
     } finally {
       profiler.stop();
       Thread.currentThread().setContextClassLoader(initialClassLoader);
     }
   }
 
-  private RuleSets createRulesets() {
-    RuleSets rulesets = new RuleSets();
-    RuleSetFactory ruleSetFactory = new RuleSetFactory();
+  /**
+   * PMD rules are not thread-safe, so each thread creates its own rulesets. The threads of the pool inherit the context
+   * classloader of the calling thread.
+   */
+  private void executeConcurrently(List<File> files, final List<byte[]> rulesets, int threads, PmdViolationsRecorder recorder) {
+    final ThreadLocal<FileAnalyzer> analyzers = new ThreadLocal<FileAnalyzer>() {
+      @Override
+      protected FileAnalyzer initialValue() {
+        return new FileAnalyzer(rulesets);
+      }
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+    try {
+      LinkedList<Future<Report>> pendingFiles = Lists.newLinkedList();
+      Iterator<File> it = files.iterator();
+      while (it.hasNext() || !pendingFiles.isEmpty()) {
+        while (it.hasNext() && pendingFiles.size() < threads * ANALYZED_FILES_PER_THREAD) {
+          pendingFiles.add(executor.submit(new AnalyzeTask(it.next(), analyzers)));
+        }
+        recorder.record(getReport(pendingFiles.removeFirst()));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static Report getReport(Future<Report> future) {
+    try {
+      return future.get();
 
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException("Interrupted while executing PMD", e);
+
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new SonarException("Fail to execute PMD", e.getCause());
+    }
+  }
+
+  /**
+   * The rulesets are read once, then parsed by each thread.
+   */
+  private List<byte[]> loadRulesets() {
     List<String> rulesetPaths = configuration.getRulesets();
     LOG.info("PMD configuration: " + StringUtils.join(rulesetPaths, ", "));
 
+    List<byte[]> rulesets = Lists.newArrayList();
     for (String rulesetPath : rulesetPaths) {
       InputStream rulesInput = openRuleset(rulesetPath);
-      rulesets.addRuleSet(ruleSetFactory.createRuleSet(rulesInput));
-      IOUtils.closeQuietly(rulesInput);
+      try {
+        rulesets.add(IOUtils.toByteArray(rulesInput));
+      } catch (IOException e) {
+        throw new SonarException("Fail to read the PMD ruleset: " + rulesetPath, e);
+      } finally {
+        IOUtils.closeQuietly(rulesInput);
+      }
     }
     return rulesets;
   }
 
+  private static RuleSets createRulesets(List<byte[]> rulesets) {
+    RuleSets result = new RuleSets();
+    RuleSetFactory ruleSetFactory = new RuleSetFactory();
+    for (byte[] ruleset : rulesets) {
+      result.addRuleSet(ruleSetFactory.createRuleSet(new ByteArrayInputStream(ruleset)));
+    }
+    return result;
+  }
+
   private InputStream openRuleset(String rulesetPath) {
     try {
       File file = new File(rulesetPath);
@@ -127,20 +180,6 @@ public class PmdExecutor implements BatchExtension {
     }
   }
 
-  private File writeXmlReport(Project project, Report report) throws IOException {
-    Renderer xmlRenderer = new XMLRenderer();
-    Writer stringwriter = new StringWriter();
-    xmlRenderer.setWriter(stringwriter);
-    xmlRenderer.start();
-    xmlRenderer.renderFileReport(report);
-    xmlRenderer.end();
-
-    File xmlReport = new File(project.getFileSystem().getSonarWorkingDirectory(), "pmd-result.xml");
-    LOG.info("PMD output report: " + xmlReport.getAbsolutePath());
-    FileUtils.write(xmlReport, stringwriter.toString());
-    return xmlReport;
-  }
-
   static String getNormalizedJavaVersion(String javaVersion) {
     if (StringUtils.equals("1.1", javaVersion) || StringUtils.equals("1.2", javaVersion)) {
       javaVersion = "1.3";
@@ -164,4 +203,54 @@ public class PmdExecutor implements BatchExtension {
       }
     }
   }
+
+  /**
+   * PMD engine, rulesets and rule context of a thread.
+   */
+  private final class FileAnalyzer {
+    private final PMD pmd = new PMD();
+    private final RuleSets rulesets;
+    private final RuleContext ruleContext = new RuleContext();
+    private final Charset charset = project.getFileSystem().getSourceCharset();
+
+    private FileAnalyzer(List<byte[]> rulesets) {
+      setJavaVersion(pmd, project);
+      this.rulesets = createRulesets(rulesets);
+    }
+
+    private Report analyze(File file) {
+      Report report = new Report();
+      ruleContext.setReport(report);
+      ruleContext.setSourceCodeFilename(file.getAbsolutePath());
+      Reader fileReader = null;
+      try {
+        fileReader = new InputStreamReader(new FileInputStream(file), charset);
+        pmd.processFile(fileReader, rulesets, ruleContext);
+
+      } catch (PMDException e) {
+        LOG.error("Fail to execute PMD. Following file is ignored: " + file, e.getCause());
+
+      } catch (Exception e) {
+        LOG.error("Fail to execute PMD. Following file is ignored: " + file, e);
+
+      } finally {
+        IOUtils.closeQuietly(fileReader);
+      }
+      return report;
+    }
+  }
+
+  private static final class AnalyzeTask implements Callable<Report> {
+    private final File file;
+    private final ThreadLocal<FileAnalyzer> analyzers;
+
+    private AnalyzeTask(File file, ThreadLocal<FileAnalyzer> analyzers) {
+      this.file = file;
+      this.analyzers = analyzers;
+    }
+
+    public Report call() {
+      return analyzers.get().analyze(file);
+    }
+  }
 }
@@ -19,11 +19,22 @@
  */
 package org.sonar.plugins.pmd;
 
+import org.sonar.api.Properties;
+import org.sonar.api.Property;
 import org.sonar.api.SonarPlugin;
 
 import java.util.Arrays;
 import java.util.List;
 
+@Properties({
+    @Property(
+        key = PmdConstants.THREADS_PROPERTY,
+        defaultValue = PmdConstants.THREADS_DEFAULT_VALUE + "",
+        name = "Threads",
+        description = "Number of threads used to analyze the Java source files.",
+        project = true,
+        global = true)
+})
 public class PmdPlugin extends SonarPlugin {
 
   public List getExtensions() {
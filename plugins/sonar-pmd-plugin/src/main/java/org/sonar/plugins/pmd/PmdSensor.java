@@ -19,16 +19,15 @@
  */
 package org.sonar.plugins.pmd;
 
-import java.io.File;
-
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.utils.Logs;
-import org.sonar.api.utils.XmlParserException;
 
+@ConcurrentExecution
 public class PmdSensor implements Sensor {
 
   private RulesProfile profile;
@@ -42,14 +41,7 @@ public class PmdSensor implements Sensor {
   }
 
   public void analyse(Project project, SensorContext context) {
-    try {
-      File xmlReport = executor.execute();
-      getStaxParser(project, context).parse(xmlReport);
-
-    } catch (Exception e) {
-      // TOFIX
-      throw new XmlParserException(e);
-    }
+    executor.execute(new PmdViolationsRecorder(project, rulesFinder, context));
   }
 
   public boolean shouldExecuteOnProject(Project project) {
@@ -57,10 +49,6 @@ public class PmdSensor implements Sensor {
         !profile.getActiveRulesByRepository(PmdConstants.REPOSITORY_KEY).isEmpty();
   }
 
-  private PmdViolationsXmlParser getStaxParser(Project project, SensorContext context) {
-    return new PmdViolationsXmlParser(project, rulesFinder, context);
-  }
-
   @Override
   public String toString() {
     return getClass().getSimpleName();
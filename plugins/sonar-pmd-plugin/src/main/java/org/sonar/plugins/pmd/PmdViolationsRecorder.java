@@ -20,12 +20,12 @@
 package org.sonar.plugins.pmd;
 
 import java.io.File;
+import java.util.Iterator;
+import java.util.List;
 
-import javax.xml.stream.XMLStreamException;
-
+import net.sourceforge.pmd.IRuleViolation;
+import net.sourceforge.pmd.Report;
 import org.apache.commons.lang.StringUtils;
-import org.codehaus.staxmate.in.SMHierarchicCursor;
-import org.codehaus.staxmate.in.SMInputCursor;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.resources.JavaFile;
@@ -34,56 +34,48 @@ import org.sonar.api.resources.Resource;
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.Violation;
-import org.sonar.api.utils.StaxParser;
 
-class PmdViolationsXmlParser {
+/**
+ * Saves the violations of PMD reports. It replaces the parsing of the XML report written by PMD.
+ */
+class PmdViolationsRecorder {
 
   private Project project;
   private RuleFinder ruleFinder;
   private SensorContext context;
 
-  public PmdViolationsXmlParser(Project project, RuleFinder ruleFinder, SensorContext context) {
+  public PmdViolationsRecorder(Project project, RuleFinder ruleFinder, SensorContext context) {
     this.project = project;
     this.ruleFinder = ruleFinder;
     this.context = context;
   }
 
-  public void parse(File file) throws XMLStreamException {
-    StaxParser parser = new StaxParser(new StreamHandler(), true);
-    parser.parse(file);
-  }
-
-  private class StreamHandler implements StaxParser.XmlStreamHandler {
-    public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
-      rootCursor.advance();
-
-      SMInputCursor fileCursor = rootCursor.descendantElementCursor("file");
-      while (fileCursor.getNext() != null) {
-        String name = fileCursor.getAttrValue("name");
-        Resource resource = JavaFile.fromAbsolutePath(name, project.getFileSystem().getSourceDirs(), false);
-
+  /**
+   * @param report the violations of a single file
+   */
+  public void record(Report report) {
+    List<File> sourceDirs = project.getFileSystem().getSourceDirs();
+    String filename = null;
+    Resource resource = null;
+    for (Iterator<IRuleViolation> it = report.iterator(); it.hasNext();) {
+      IRuleViolation pmdViolation = it.next();
+      if (!StringUtils.equals(filename, pmdViolation.getFilename())) {
+        filename = pmdViolation.getFilename();
+        resource = JavaFile.fromAbsolutePath(filename, sourceDirs, false);
         // Save violations only for existing resources
-        if (context.getResource(resource) != null) {
-          streamViolations(fileCursor, resource);
+        if (context.getResource(resource) == null) {
+          resource = null;
         }
       }
-    }
-
-    private void streamViolations(SMInputCursor fileCursor, Resource resource) throws XMLStreamException {
-      SMInputCursor violationCursor = fileCursor.descendantElementCursor("violation");
-      while (violationCursor.getNext() != null) {
-        int lineId = Integer.parseInt(violationCursor.getAttrValue("beginline"));
-        String ruleKey = violationCursor.getAttrValue("rule");
-        String message = StringUtils.trim(violationCursor.collectDescendantText());
-
-        Rule rule = ruleFinder.findByKey(CoreProperties.PMD_PLUGIN, ruleKey);
+      if (resource != null) {
+        Rule rule = ruleFinder.findByKey(CoreProperties.PMD_PLUGIN, pmdViolation.getRule().getName());
         // Save violations only for enabled rules
         if (rule != null) {
-          Violation violation = Violation.create(rule, resource).setLineId(lineId).setMessage(message);
+          String message = StringUtils.trim(pmdViolation.getDescription());
+          Violation violation = Violation.create(rule, resource).setLineId(pmdViolation.getBeginLine()).setMessage(message);
           context.saveViolation(violation);
         }
       }
     }
   }
-
 }
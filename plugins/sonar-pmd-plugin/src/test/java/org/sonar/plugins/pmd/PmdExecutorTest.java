@@ -19,10 +19,10 @@
  */
 package org.sonar.plugins.pmd;
 
-import net.sourceforge.pmd.PMDException;
+import net.sourceforge.pmd.Report;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang.StringUtils;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.sonar.api.resources.Java;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.ProjectFileSystem;
@@ -37,20 +37,22 @@ import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.number.OrderingComparisons.greaterThan;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class PmdExecutorTest {
 
   @Test
-  public void executeOnManySourceDirs() throws URISyntaxException, IOException, PMDException {
+  public void executeOnManySourceDirs() throws URISyntaxException, IOException {
     Project project = new Project("two-source-dirs");
 
     ProjectFileSystem fs = mock(ProjectFileSystem.class);
     File root = new File(getClass().getResource("/org/sonar/plugins/pmd/PmdExecutorTest/executeOnManySourceDirs/").toURI());
     when(fs.getSourceFiles(Java.INSTANCE)).thenReturn(Arrays.asList(new File(root, "src1/FirstClass.java"), new File(root, "src2/SecondClass.java")));
     when(fs.getSourceCharset()).thenReturn(Charset.forName("UTF-8"));
-    when(fs.getSonarWorkingDirectory()).thenReturn(new File("target"));
     project.setFileSystem(fs);
 
     PmdConfiguration conf = mock(PmdConfiguration.class);
@@ -58,32 +60,59 @@ public class PmdExecutorTest {
     when(conf.getRulesets()).thenReturn(Arrays.asList(file.getAbsolutePath()));
 
     PmdExecutor executor = new PmdExecutor(project, conf);
-    File xmlReport = executor.execute();
-    assertThat(xmlReport.exists(), is(true));
-
-    String xml = FileUtils.readFileToString(xmlReport);
+    PmdViolationsRecorder recorder = mock(PmdViolationsRecorder.class);
+    executor.execute(recorder);
 
     // errors on the two source files
-    assertThat(StringUtils.countMatches(xml, "<file"), is(2));
-    assertThat(StringUtils.countMatches(xml, "<violation"), greaterThan(2));
+    ArgumentCaptor<Report> reports = ArgumentCaptor.forClass(Report.class);
+    verify(recorder, times(2)).record(reports.capture());
+    assertThat(reports.getAllValues().get(0).size() + reports.getAllValues().get(1).size(), greaterThan(2));
   }
 
   @Test
-  public void ignorePmdFailures() throws URISyntaxException, IOException, PMDException {
+  public void executeConcurrently() throws URISyntaxException, IOException {
+    Project project = new Project("two-source-dirs");
+
+    ProjectFileSystem fs = mock(ProjectFileSystem.class);
+    File root = new File(getClass().getResource("/org/sonar/plugins/pmd/PmdExecutorTest/executeOnManySourceDirs/").toURI());
+    File firstClass = new File(root, "src1/FirstClass.java");
+    File secondClass = new File(root, "src2/SecondClass.java");
+    when(fs.getSourceFiles(Java.INSTANCE)).thenReturn(Arrays.asList(firstClass, secondClass));
+    when(fs.getSourceCharset()).thenReturn(Charset.forName("UTF-8"));
+    project.setFileSystem(fs);
+
+    PmdConfiguration conf = mock(PmdConfiguration.class);
+    File file = FileUtils.toFile(getClass().getResource("/org/sonar/plugins/pmd/PmdExecutorTest/executeOnManySourceDirs/pmd.xml").toURI().toURL());
+    when(conf.getRulesets()).thenReturn(Arrays.asList(file.getAbsolutePath()));
+    when(conf.getThreads()).thenReturn(2);
+
+    PmdViolationsRecorder recorder = mock(PmdViolationsRecorder.class);
+    new PmdExecutor(project, conf).execute(recorder);
+
+    // reports are recorded in the order of files
+    ArgumentCaptor<Report> reports = ArgumentCaptor.forClass(Report.class);
+    verify(recorder, times(2)).record(reports.capture());
+    assertThat(reports.getAllValues().get(0).iterator().next().getFilename(), is(firstClass.getAbsolutePath()));
+    assertThat(reports.getAllValues().get(1).iterator().next().getFilename(), is(secondClass.getAbsolutePath()));
+  }
+
+  @Test
+  public void ignorePmdFailures() throws URISyntaxException, IOException {
     Project project = new Project("ignorePmdFailures");
 
     ProjectFileSystem fs = mock(ProjectFileSystem.class);
     when(fs.getSourceFiles(Java.INSTANCE)).thenReturn(Arrays.asList(new File("test-resources/ignorePmdFailures/DoesNotCompile.java")));
     when(fs.getSourceCharset()).thenReturn(Charset.forName("UTF-8"));
-    when(fs.getSonarWorkingDirectory()).thenReturn(new File("target"));
     project.setFileSystem(fs);
 
     PmdConfiguration conf = mock(PmdConfiguration.class);
     when(conf.getRulesets()).thenReturn(Arrays.asList(new File("test-resources/ignorePmdFailures/pmd.xml").getAbsolutePath()));
 
     PmdExecutor executor = new PmdExecutor(project, conf);
-    File xmlReport = executor.execute();
-    assertThat(xmlReport.exists(), is(true));
+    PmdViolationsRecorder recorder = mock(PmdViolationsRecorder.class);
+    executor.execute(recorder);
+
+    verify(recorder).record(any(Report.class));
   }
 
   @Test
@@ -0,0 +1,137 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.pmd;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.Arrays;
+
+import net.sourceforge.pmd.IRuleViolation;
+import net.sourceforge.pmd.Report;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.resources.JavaFile;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.ProjectFileSystem;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RuleFinder;
+import org.sonar.api.rules.Violation;
+import org.sonar.api.test.IsViolation;
+
+public class PmdViolationsRecorderTest {
+
+  private Project project;
+  private RuleFinder ruleFinder;
+  private SensorContext context;
+
+  @Before
+  public void setUp() {
+    ProjectFileSystem fileSystem = mock(ProjectFileSystem.class);
+    when(fileSystem.getSourceDirs()).thenReturn(Arrays.asList(new File("/test/src/main/java")));
+    project = mock(Project.class);
+    when(project.getFileSystem()).thenReturn(fileSystem);
+
+    ruleFinder = mock(RuleFinder.class);
+    when(ruleFinder.findByKey(anyString(), anyString())).thenAnswer(new Answer<Rule>() {
+      public Rule answer(InvocationOnMock invocation) throws Throwable {
+        Object[] args = invocation.getArguments();
+        return Rule.create((String) args[0], (String) args[1], "");
+      }
+    });
+
+    context = mock(SensorContext.class);
+    when(context.getResource((JavaFile) any())).thenReturn(new JavaFile(""));
+  }
+
+  @Test
+  public void shouldSaveViolationsOnClasses() {
+    String filename = new File("/test/src/main/java/ch/hortis/sonar/mvn/ClassWithComments.java").getAbsolutePath();
+    Report report = newReport(
+        newViolation(filename, "UnusedLocalVariable", 22, " Avoid unused local variables such as 'toto'. "),
+        newViolation(filename, "UnusedPrivateField", 30, "Avoid unused private fields such as 'foo'."));
+
+    new PmdViolationsRecorder(project, ruleFinder, context).record(report);
+
+    verify(context, times(2)).saveViolation(argThat(new IsViolation(Violation.create((Rule) null, new JavaFile("ch.hortis.sonar.mvn.ClassWithComments")))));
+    Violation wanted = Violation.create((Rule) null, new JavaFile("ch.hortis.sonar.mvn.ClassWithComments"))
+        .setMessage("Avoid unused local variables such as 'toto'.")
+        .setLineId(22);
+    verify(context, times(1)).saveViolation(argThat(new IsViolation(wanted)));
+  }
+
+  @Test
+  public void defaultPackageShouldBeSetOnClassWithoutPackage() {
+    String filename = new File("/test/src/main/java/ClassOnDefaultPackage.java").getAbsolutePath();
+    Report report = newReport(newViolation(filename, "UnusedLocalVariable", 3, "Avoid unused local variables such as 'toto'."));
+
+    new PmdViolationsRecorder(project, ruleFinder, context).record(report);
+
+    verify(context).saveViolation(argThat(new IsViolation(Violation.create((Rule) null, new JavaFile("ClassOnDefaultPackage")))));
+  }
+
+  @Test
+  public void shouldNotSaveViolationsOnUnknownFiles() {
+    when(context.getResource(any(Resource.class))).thenReturn(null);
+    String filename = new File("/test/src/main/java/org/foo/Bar.java").getAbsolutePath();
+
+    new PmdViolationsRecorder(project, ruleFinder, context).record(newReport(newViolation(filename, "UnusedLocalVariable", 3, "Unused")));
+
+    verify(context, never()).saveViolation(any(Violation.class));
+  }
+
+  @Test
+  public void shouldNotSaveViolationsOfDisabledRules() {
+    when(ruleFinder.findByKey(anyString(), anyString())).thenReturn(null);
+    String filename = new File("/test/src/main/java/org/foo/Bar.java").getAbsolutePath();
+
+    new PmdViolationsRecorder(project, ruleFinder, context).record(newReport(newViolation(filename, "UnusedLocalVariable", 3, "Unused")));
+
+    verify(context, never()).saveViolation(any(Violation.class));
+  }
+
+  private static Report newReport(IRuleViolation... violations) {
+    Report report = mock(Report.class);
+    when(report.iterator()).thenReturn(Arrays.asList(violations).iterator());
+    return report;
+  }
+
+  private static IRuleViolation newViolation(String filename, String ruleKey, int line, String message) {
+    net.sourceforge.pmd.Rule rule = mock(net.sourceforge.pmd.Rule.class);
+    when(rule.getName()).thenReturn(ruleKey);
+    IRuleViolation violation = mock(IRuleViolation.class);
+    when(violation.getFilename()).thenReturn(filename);
+    when(violation.getRule()).thenReturn(rule);
+    when(violation.getBeginLine()).thenReturn(line);
+    when(violation.getDescription()).thenReturn(message);
+    return violation;
+  }
+}
@@ -35,16 +35,27 @@ import org.sonar.squid.api.CodeVisitor;
 import org.sonar.squid.api.SourceCode;
 import org.xml.sax.InputSource;
 
+import antlr.RecognitionException;
+import antlr.TokenStreamException;
 import com.puppycrawl.tools.checkstyle.Checker;
 import com.puppycrawl.tools.checkstyle.ConfigurationLoader;
 import com.puppycrawl.tools.checkstyle.PropertiesExpander;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
 import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Squid uses Checkstyle to get an out-of-the-box java parser with AST generation and visitor pattern support.
@@ -52,6 +63,12 @@ import java.util.*;
 public class JavaAstScanner extends CodeScanner<JavaAstVisitor> {
 
   private static final Logger LOG = LoggerFactory.getLogger(JavaAstScanner.class);
+
+  /**
+   * Maximum number of parsed files waiting to be visited, per parser thread.
+   */
+  private static final int PARSED_FILES_PER_THREAD = 4;
+
   private JavaSquidConfiguration conf;
   private SourceCode project;
 
@@ -115,10 +132,144 @@ public class JavaAstScanner extends CodeScanner<JavaAstVisitor> {
     CheckstyleSquidBridge.setASTVisitors(getVisitors());
     CheckstyleSquidBridge.setSquidConfiguration(conf);
     CheckstyleSquidBridge.setInputFiles(inputFiles);
-    launchCheckstyle(InputFileUtils.toFiles(inputFiles), conf.getCharset());
+    if (conf.getParserThreads() > 1 && inputFiles.size() > 1) {
+      launchParallelParsing(InputFileUtils.toFiles(inputFiles), conf.getCharset(), conf.getParserThreads());
+    } else {
+      launchCheckstyle(InputFileUtils.toFiles(inputFiles), conf.getCharset());
+    }
     return this;
   }
 
+  /**
+   * The files are parsed concurrently, but the AST are visited sequentially in the order of files : the visitors, including the checks
+   * of plugins, share the stack of source codes and the index, and are not thread-safe. As in {@link #launchCheckstyle(Collection, Charset)},
+   * the parser threads and the visiting thread use the classloader of the plugin as context classloader.
+   */
+  private void launchParallelParsing(Collection<File> files, Charset charset, int threads) {
+    CheckstyleSquidBridge bridge = new CheckstyleSquidBridge();
+    ClassLoader pluginClassLoader = getClass().getClassLoader();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    ClassLoader initialClassLoader = Thread.currentThread().getContextClassLoader();
+    Thread.currentThread().setContextClassLoader(pluginClassLoader);
+    try {
+      LinkedList<Future<ParsedFile>> pendingFiles = Lists.newLinkedList();
+      Iterator<File> it = files.iterator();
+      while (it.hasNext() || !pendingFiles.isEmpty()) {
+        while (it.hasNext() && pendingFiles.size() < threads * PARSED_FILES_PER_THREAD) {
+          File file = it.next();
+          // same filter than the Checkstyle TreeWalker
+          if (file.getName().endsWith(".java")) {
+            pendingFiles.add(executor.submit(new ParseTask(file, charset, pluginClassLoader)));
+          }
+        }
+        if (pendingFiles.isEmpty()) {
+          break;
+        }
+        ParsedFile parsedFile = getParsedFile(pendingFiles.removeFirst());
+        if (parsedFile != null) {
+          walk(bridge, parsedFile);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+      Thread.currentThread().setContextClassLoader(initialClassLoader);
+    }
+  }
+
+  private static ParsedFile getParsedFile(Future<ParsedFile> future) {
+    try {
+      return future.get();
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AnalysisException("Interrupted while parsing Java files", e);
+
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new AnalysisException("Unable to parse Java file", e.getCause());
+    }
+  }
+
+  /**
+   * Same traversal than the Checkstyle TreeWalker.
+   */
+  private static void walk(CheckstyleSquidBridge bridge, ParsedFile parsedFile) {
+    bridge.setFileContents(parsedFile.contents);
+    bridge.beginTree(parsedFile.ast);
+    DetailAST node = parsedFile.ast;
+    while (node != null) {
+      bridge.visitToken(node);
+      DetailAST next = (DetailAST) node.getFirstChild();
+      while (node != null && next == null) {
+        bridge.leaveToken(node);
+        next = (DetailAST) node.getNextSibling();
+        if (next == null) {
+          node = node.getParent();
+        }
+      }
+      node = next;
+    }
+    bridge.finishTree(parsedFile.ast);
+  }
+
+  private static final class ParsedFile {
+    private final FileContents contents;
+    private final DetailAST ast;
+
+    private ParsedFile(FileContents contents, DetailAST ast) {
+      this.contents = contents;
+      this.ast = ast;
+    }
+  }
+
+  private static final class ParseTask implements Callable<ParsedFile> {
+    private final File file;
+    private final Charset charset;
+    private final ClassLoader classLoader;
+
+    private ParseTask(File file, Charset charset, ClassLoader classLoader) {
+      this.file = file;
+      this.charset = charset;
+      this.classLoader = classLoader;
+    }
+
+    /**
+     * @return null if the file must be ignored, see {@link CheckstyleAuditListener}
+     */
+    public ParsedFile call() throws IOException {
+      ClassLoader initialClassLoader = Thread.currentThread().getContextClassLoader();
+      Thread.currentThread().setContextClassLoader(classLoader);
+      try {
+        return parse();
+      } finally {
+        Thread.currentThread().setContextClassLoader(initialClassLoader);
+      }
+    }
+
+    private ParsedFile parse() throws IOException {
+      List<String> lines = FileUtils.readLines(file, charset.name());
+      FileContents contents = new FileContents(file.getPath(), lines.toArray(new String[lines.size()]));
+      try {
+        return new ParsedFile(contents, TreeWalker.parse(contents));
+
+      } catch (RecognitionException e) {
+        return onParsingError(e.getMessage(), e.getLine());
+
+      } catch (TokenStreamException e) {
+        return onParsingError(e.getMessage(), 0);
+      }
+    }
+
+    private ParsedFile onParsingError(String message, int line) {
+      if (message != null && message.contains("expecting EOF, found")) {
+        return null;
+      }
+      throw new AnalysisException(message + ", file : " + file.getPath() + ", line : " + line);
+    }
+  }
+
   private void launchCheckstyle(Collection<File> files, Charset charset) {
     Checker c = createChecker(charset);
     ClassLoader initialClassLoader = Thread.currentThread().getContextClassLoader();
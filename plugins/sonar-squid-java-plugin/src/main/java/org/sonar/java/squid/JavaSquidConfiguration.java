@@ -32,6 +32,7 @@ public class JavaSquidConfiguration extends SquidConfiguration {
 
   private static final double COMMENTED_CODE_DEFAULT_THRESHOLD = 0.9;
   private double commentedCodeThreshold = COMMENTED_CODE_DEFAULT_THRESHOLD;
+  private int parserThreads = 1;
 
   public JavaSquidConfiguration() {
   }
@@ -77,4 +78,23 @@ public class JavaSquidConfiguration extends SquidConfiguration {
   public double getCommentedCodeThreshold() {
     return commentedCodeThreshold;
   }
+
+  /**
+   * @since 2.8
+   */
+  public int getParserThreads() {
+    return parserThreads;
+  }
+
+  /**
+   * Number of threads used to parse the Java files. The AST are still visited by a single thread.
+   *
+   * @since 2.8
+   */
+  public void setParserThreads(int parserThreads) {
+    if (parserThreads < 1) {
+      throw new IllegalArgumentException("The number of parser threads must be positive. Current value : " + parserThreads);
+    }
+    this.parserThreads = parserThreads;
+  }
 }
\ No newline at end of file
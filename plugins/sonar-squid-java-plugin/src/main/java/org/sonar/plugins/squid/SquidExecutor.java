@@ -53,13 +53,22 @@ public final class SquidExecutor {
   private boolean sourceScanned = false;
   private boolean bytecodeScanned = false;
   private CheckFactory checkFactory;
+  private int designThreads;
 
   public SquidExecutor(boolean analyzePropertyAccessors, String fieldNamesToExcludeFromLcom4Computation, CheckFactory checkFactory,
                        Charset sourcesCharset) {
+    this(analyzePropertyAccessors, fieldNamesToExcludeFromLcom4Computation, checkFactory, sourcesCharset,
+        SquidPluginProperties.PARSER_THREADS_DEFAULT_VALUE, SquidPluginProperties.DESIGN_THREADS_DEFAULT_VALUE);
+  }
+
+  public SquidExecutor(boolean analyzePropertyAccessors, String fieldNamesToExcludeFromLcom4Computation, CheckFactory checkFactory,
+                       Charset sourcesCharset, int parserThreads, int designThreads) {
     JavaSquidConfiguration conf = createJavaSquidConfiguration(analyzePropertyAccessors, fieldNamesToExcludeFromLcom4Computation,
         sourcesCharset);
+    conf.setParserThreads(parserThreads);
     squid = new Squid(conf);
     this.checkFactory = checkFactory;
+    this.designThreads = designThreads;
   }
 
   private JavaSquidConfiguration createJavaSquidConfiguration(boolean analyzePropertyAccessors,
@@ -93,7 +102,8 @@ public final class SquidExecutor {
     if (sourceScanned) {
       TimeProfiler profiler = new TimeProfiler(getClass()).start("Squid extraction");
       ResourceIndex resourceIndex = new ResourceIndex().loadSquidResources(squid, context, project);
-      List<Bridge> bridges = BridgeFactory.create(bytecodeScanned, context, checkFactory, resourceIndex, squid, noSonarFilter);
+      List<Bridge> bridges = BridgeFactory.create(bytecodeScanned, context, checkFactory, resourceIndex, squid, noSonarFilter,
+          designThreads);
       saveProject(resourceIndex, bridges);
       savePackages(resourceIndex, bridges);
       saveFiles(resourceIndex, bridges);
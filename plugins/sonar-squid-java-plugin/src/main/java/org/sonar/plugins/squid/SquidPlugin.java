@@ -42,6 +42,16 @@ import java.util.List;
             "unexpectedly and artificially decrease the LCOM4 measure. "
             + "The best example is a logger used by all methods of a class. " +
             "All field names to exclude from LCOM4 computation must be separated by a comma.",
+        project = true, global = true),
+    @Property(key = SquidPluginProperties.PARSER_THREADS_PROPERTY,
+        defaultValue = SquidPluginProperties.PARSER_THREADS_DEFAULT_VALUE + "",
+        name = "Parser threads",
+        description = "Number of threads used to parse the Java source files. The syntax trees are still visited by a single thread.",
+        project = true, global = true),
+    @Property(key = SquidPluginProperties.DESIGN_THREADS_PROPERTY,
+        defaultValue = SquidPluginProperties.DESIGN_THREADS_DEFAULT_VALUE + "",
+        name = "Design analysis threads",
+        description = "Number of threads used to search the cycles and the feedback edges of the independent tangles of packages and files.",
         project = true, global = true)})
 public class SquidPlugin extends SonarPlugin {
 
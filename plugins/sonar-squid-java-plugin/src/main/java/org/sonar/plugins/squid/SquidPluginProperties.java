@@ -27,6 +27,12 @@ public final class SquidPluginProperties {
   public static final String FIELDS_TO_EXCLUDE_FROM_LCOM4_COMPUTATION = "sonar.squid.fieldsToExcludeFromLcom4Computation";
   public static final String FIELDS_TO_EXCLUDE_FROM_LCOM4_COMPUTATION_DEFAULT_VALUE = "LOG, logger";
 
+  public static final String PARSER_THREADS_PROPERTY = "sonar.squid.parser.threads";
+  public static final int PARSER_THREADS_DEFAULT_VALUE = 1;
+
+  public static final String DESIGN_THREADS_PROPERTY = "sonar.squid.design.threads";
+  public static final int DESIGN_THREADS_DEFAULT_VALUE = 1;
+
   private SquidPluginProperties() {
   }
 
@@ -70,11 +70,16 @@ public class SquidSensor implements Sensor {
     String fieldNamesToExcludeFromLcom4Computation = project.getConfiguration().getString(
         SquidPluginProperties.FIELDS_TO_EXCLUDE_FROM_LCOM4_COMPUTATION,
         SquidPluginProperties.FIELDS_TO_EXCLUDE_FROM_LCOM4_COMPUTATION_DEFAULT_VALUE);
+    int parserThreads = project.getConfiguration().getInt(SquidPluginProperties.PARSER_THREADS_PROPERTY,
+        SquidPluginProperties.PARSER_THREADS_DEFAULT_VALUE);
+    int designThreads = project.getConfiguration().getInt(SquidPluginProperties.DESIGN_THREADS_PROPERTY,
+        SquidPluginProperties.DESIGN_THREADS_DEFAULT_VALUE);
     Charset charset = project.getFileSystem().getSourceCharset();
 
     AnnotationCheckFactory factory = AnnotationCheckFactory.create(profile, SquidConstants.REPOSITORY_KEY, SquidRuleRepository.getCheckClasses());
 
-    SquidExecutor squidExecutor = new SquidExecutor(analyzePropertyAccessors, fieldNamesToExcludeFromLcom4Computation, factory, charset);
+    SquidExecutor squidExecutor = new SquidExecutor(analyzePropertyAccessors, fieldNamesToExcludeFromLcom4Computation, factory, charset,
+        parserThreads, designThreads);
     squidExecutor.scan(getMainSourceFiles(project), getMainBytecodeFiles(project));
     squidExecutor.save(project, context, noSonarFilter);
     squidExecutor.flush();
@@ -22,6 +22,7 @@ package org.sonar.plugins.squid.bridges;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.checks.CheckFactory;
 import org.sonar.api.checks.NoSonarFilter;
+import org.sonar.plugins.squid.SquidPluginProperties;
 import org.sonar.squid.Squid;
 
 import java.util.ArrayList;
@@ -34,17 +35,26 @@ public final class BridgeFactory {
     // only static methods
   }
 
-  private static List<Bridge> create(NoSonarFilter noSonarFilter) {
+  private static List<Bridge> create(NoSonarFilter noSonarFilter, int designThreads) {
     return Arrays.asList(new CopyBasicMeasuresBridge(), new PackagesBridge(), new PublicUndocumentedApiBridge(),
         new NoSonarFilterLoader(noSonarFilter),
-        new ChidamberKemererBridge(), new RobertCMartinBridge(), new DesignBridge(),
+        new ChidamberKemererBridge(), new RobertCMartinBridge(), new DesignBridge(designThreads),
         new Lcom4BlocksBridge(), new ChecksBridge());
   }
 
   public static List<Bridge> create(boolean bytecodeScanned, SensorContext context, CheckFactory checkFactory,
                                     ResourceIndex resourceIndex, Squid squid, NoSonarFilter noSonarFilter) {
+    return create(bytecodeScanned, context, checkFactory, resourceIndex, squid, noSonarFilter,
+        SquidPluginProperties.DESIGN_THREADS_DEFAULT_VALUE);
+  }
+
+  /**
+   * @param designThreads number of threads used to search the cycles of the independent tangles of packages and files
+   */
+  public static List<Bridge> create(boolean bytecodeScanned, SensorContext context, CheckFactory checkFactory,
+                                    ResourceIndex resourceIndex, Squid squid, NoSonarFilter noSonarFilter, int designThreads) {
     List<Bridge> result = new ArrayList<Bridge>();
-    for (Bridge bridge : create(noSonarFilter)) {
+    for (Bridge bridge : create(noSonarFilter, designThreads)) {
       bridge.setCheckFactory(checkFactory);
       if (!bridge.needsBytecode() || bytecodeScanned) {
         bridge.setContext(context);
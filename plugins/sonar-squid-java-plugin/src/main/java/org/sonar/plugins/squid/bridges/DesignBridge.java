@@ -49,9 +49,11 @@ public class DesignBridge extends Bridge {
    * This index is shared between onProject() and onPackage(). It works because onProject() is executed before onPackage().
    */
   private DependencyIndex dependencyIndex = new DependencyIndex();
+  private int threads;
 
-  protected DesignBridge() {
+  protected DesignBridge(int threads) {
     super(true);
+    this.threads = threads;
   }
 
   @Override
@@ -63,7 +65,7 @@ public class DesignBridge extends Bridge {
 
       savePackageDependencies(squidPackages);
 
-      IncrementalCyclesAndFESSolver<SourceCode> cyclesAndFESSolver = new IncrementalCyclesAndFESSolver<SourceCode>(squid, squidPackages);
+      SccCyclesAndFESSolver<SourceCode> cyclesAndFESSolver = new SccCyclesAndFESSolver<SourceCode>(squid, squidPackages, threads);
       LOG.debug("{} cycles", cyclesAndFESSolver.getCycles().size());
 
       Set<Edge> feedbackEdges = cyclesAndFESSolver.getFeedbackEdgeSet();
@@ -96,12 +98,10 @@ public class DesignBridge extends Bridge {
 
       saveFileDependencies(squidFiles);
 
-      IncrementalCyclesAndFESSolver<SourceCode> cycleDetector = new IncrementalCyclesAndFESSolver<SourceCode>(squid, squidFiles);
-      Set<Cycle> cycles = cycleDetector.getCycles();
-
-      MinimumFeedbackEdgeSetSolver solver = new MinimumFeedbackEdgeSetSolver(cycles);
-      Set<Edge> feedbackEdges = solver.getEdges();
-      int tangles = solver.getWeightOfFeedbackEdgeSet();
+      SccCyclesAndFESSolver<SourceCode> cyclesAndFESSolver = new SccCyclesAndFESSolver<SourceCode>(squid, squidFiles, threads);
+      Set<Cycle> cycles = cyclesAndFESSolver.getCycles();
+      Set<Edge> feedbackEdges = cyclesAndFESSolver.getFeedbackEdgeSet();
+      int tangles = cyclesAndFESSolver.getWeightOfFeedbackEdgeSet();
 
       savePositiveMeasure(sonarPackage, CoreMetrics.FILE_CYCLES, (double) cycles.size(), false);
       savePositiveMeasure(sonarPackage, CoreMetrics.FILE_FEEDBACK_EDGES, (double) feedbackEdges.size(), false);
@@ -66,27 +66,37 @@ public final class DsmSerializer {
       json.append(sonarResource.getName());
       json.append("\",\"q\":\"");
       json.append(sonarResource.getQualifier());
-      json.append("\",\"v\":[");
-      for (int x = 0; x < dsm.getDimension(); x++) {
-        if (x > 0) {
-          json.append(',');
-        }
-        serializeCell(y, x);
-      }
+      json.append("\",\"c\":[");
+      serializeCells(y);
       json.append("]");
     }
     json.append("}");
   }
 
-  private void serializeCell(int y, int x) {
-    DsmCell cell = dsm.getCell(x, y);
-    json.append('{');
-    if (cell.getEdge() != null && cell.getWeight() > 0) {
-      json.append("\"i\":");
-      json.append(dependencyIndex.get(cell.getEdge()).getId());
-      json.append(",\"w\":");
-      json.append(cell.getWeight());
+  /**
+   * Only the non-empty cells are written, with their column index. Empty cells are not read from the DSM.
+   */
+  private void serializeCells(int y) {
+    boolean first = true;
+    for (int x : dsm.getIncomingIndices(y)) {
+      DsmCell cell = dsm.getCell(x, y);
+      if (cell.getEdge() != null && cell.getWeight() > 0) {
+        if (!first) {
+          json.append(',');
+        }
+        serializeCell(x, cell);
+        first = false;
+      }
     }
+  }
+
+  private void serializeCell(int x, DsmCell cell) {
+    json.append("{\"x\":");
+    json.append(x);
+    json.append(",\"i\":");
+    json.append(dependencyIndex.get(cell.getEdge()).getId());
+    json.append(",\"w\":");
+    json.append(cell.getWeight());
     json.append('}');
   }
 
@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.squid.decorators;
 
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.DependedUpon;
@@ -32,6 +33,7 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.Scopes;
 
+@ConcurrentExecution
 public final class ChidamberKemererDistributionBuilder implements Decorator {
 
   public static final Integer[] LCOM4_LIMITS = {2, 3, 4, 5, 10};// 1 is excluded
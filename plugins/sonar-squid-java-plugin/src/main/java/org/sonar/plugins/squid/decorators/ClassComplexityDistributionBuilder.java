@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.squid.decorators;
 
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.DependedUpon;
@@ -32,6 +33,7 @@ import org.sonar.api.resources.Scopes;
 /**
  * @since 2.6
  */
+@ConcurrentExecution
 public final class ClassComplexityDistributionBuilder implements Decorator {
 
   public static final Number[] LIMITS = {0, 5, 10, 20, 30, 60, 90};
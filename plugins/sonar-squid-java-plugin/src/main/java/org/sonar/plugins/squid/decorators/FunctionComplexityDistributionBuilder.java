@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.squid.decorators;
 
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.DependedUpon;
@@ -33,6 +34,7 @@ import org.sonar.java.api.JavaMethod;
 /**
  * @since 2.6
  */
+@ConcurrentExecution
 public final class FunctionComplexityDistributionBuilder implements Decorator {
 
   public static final Number[] LIMITS = {1, 2, 4, 6, 8, 10, 12};
@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.squid.decorators;
 
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.measures.CoreMetrics;
@@ -29,6 +30,7 @@ import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.Scopes;
 import org.sonar.java.api.JavaMethod;
 
+@ConcurrentExecution
 public final class FunctionsDecorator implements Decorator {
 
   public void decorate(Resource resource, DecoratorContext context) {
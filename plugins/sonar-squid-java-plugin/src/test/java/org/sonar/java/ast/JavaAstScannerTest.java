@@ -22,19 +22,25 @@ package org.sonar.java.ast;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.charset.Charset;
 
 import org.apache.commons.lang.CharEncoding;
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.java.ast.visitor.JavaAstVisitor;
 import org.sonar.java.squid.JavaSquidConfiguration;
 import org.sonar.squid.Squid;
 import org.sonar.squid.api.AnalysisException;
 import org.sonar.squid.api.SourceProject;
 import org.sonar.squid.measures.Metric;
 
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+
 public class JavaAstScannerTest {
 
   private Squid squid;
@@ -166,4 +172,58 @@ public class JavaAstScannerTest {
     assertEquals(4, prj.getInt(Metric.LINES_OF_CODE));
     assertEquals(29, prj.getInt(Metric.LINES));
   }
+
+  @Test
+  public void testParallelParsing() {
+    squid.register(JavaAstScanner.class).scanDirectory(SquidTestUtils.getFile("/bytecode/src"));
+    SourceProject sequential = squid.aggregate();
+
+    JavaSquidConfiguration conf = new JavaSquidConfiguration(false, Charset.defaultCharset(), 0.9);
+    conf.setParserThreads(3);
+    squid = new Squid(conf);
+    squid.register(JavaAstScanner.class).scanDirectory(SquidTestUtils.getFile("/bytecode/src"));
+    SourceProject parallel = squid.aggregate();
+
+    for (Metric metric : new Metric[] { Metric.FILES, Metric.PACKAGES, Metric.CLASSES, Metric.METHODS, Metric.LINES,
+        Metric.LINES_OF_CODE, Metric.COMMENT_LINES, Metric.STATEMENTS, Metric.COMPLEXITY }) {
+      assertEquals(metric.name(), sequential.getInt(metric), parallel.getInt(metric));
+    }
+  }
+
+  @Test(expected = AnalysisException.class)
+  public void testParallelParsingWithWrongEncoding() {
+    JavaSquidConfiguration conf = new JavaSquidConfiguration(true, Charset.forName("MacRoman"));
+    conf.setParserThreads(2);
+    squid = new Squid(conf);
+    squid.register(JavaAstScanner.class).scanDirectory(SquidTestUtils.getFile("/special_cases/encoding"));
+  }
+
+  @Test
+  public void shouldUsePluginClassLoaderInParallelParsing() {
+    JavaSquidConfiguration conf = new JavaSquidConfiguration(false, Charset.defaultCharset(), 0.9);
+    conf.setParserThreads(2);
+    squid = new Squid(conf);
+    ContextClassLoaderVisitor visitor = new ContextClassLoaderVisitor();
+    squid.registerVisitor(visitor);
+
+    ClassLoader initialClassLoader = Thread.currentThread().getContextClassLoader();
+    ClassLoader otherClassLoader = new URLClassLoader(new URL[0], null);
+    Thread.currentThread().setContextClassLoader(otherClassLoader);
+    try {
+      squid.register(JavaAstScanner.class).scanDirectory(SquidTestUtils.getFile("/bytecode/src"));
+      assertSame(otherClassLoader, Thread.currentThread().getContextClassLoader());
+    } finally {
+      Thread.currentThread().setContextClassLoader(initialClassLoader);
+    }
+    assertSame(JavaAstScanner.class.getClassLoader(), visitor.contextClassLoader);
+  }
+
+  private static class ContextClassLoaderVisitor extends JavaAstVisitor {
+    private ClassLoader contextClassLoader;
+
+    @Override
+    public void visitFile(DetailAST ast) {
+      contextClassLoader = Thread.currentThread().getContextClassLoader();
+    }
+  }
 }
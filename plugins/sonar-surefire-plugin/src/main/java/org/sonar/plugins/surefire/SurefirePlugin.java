@@ -20,6 +20,7 @@
 package org.sonar.plugins.surefire;
 
 import org.sonar.api.*;
+import org.sonar.plugins.surefire.api.AbstractSurefireParser;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -31,7 +32,21 @@ import java.util.List;
         name = "Report path",
         description = "Path (absolute or relative) to XML report files.",
         project = true,
-        global = false)
+        global = false),
+    @Property(
+        key = AbstractSurefireParser.THREADS_PROPERTY,
+        defaultValue = AbstractSurefireParser.THREADS_DEFAULT_VALUE + "",
+        name = "Parser threads",
+        description = "Number of threads used to parse the XML report files.",
+        project = true,
+        global = true),
+    @Property(
+        key = AbstractSurefireParser.STACK_TRACE_MAX_LENGTH_PROPERTY,
+        defaultValue = AbstractSurefireParser.STACK_TRACE_MAX_LENGTH_DEFAULT_VALUE + "",
+        name = "Maximum length of stack traces",
+        description = "Stack traces of test errors and failures longer than this number of characters are truncated.",
+        project = true,
+        global = true)
 })
 public final class SurefirePlugin extends SonarPlugin {
 
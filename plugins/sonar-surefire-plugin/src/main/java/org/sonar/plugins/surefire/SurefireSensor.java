@@ -23,6 +23,7 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.AbstractCoverageExtension;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.DependsUpon;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
@@ -35,6 +36,7 @@ import org.sonar.plugins.surefire.api.SurefireUtils;
 
 import java.io.File;
 
+@ConcurrentExecution
 public class SurefireSensor implements Sensor {
 
   private static Logger logger = LoggerFactory.getLogger(SurefireSensor.class);
@@ -19,7 +19,10 @@
  */
 package org.sonar.plugins.surefire.api;
 
+import com.google.common.collect.Lists;
+import org.apache.commons.configuration.Configuration;
 import org.apache.commons.lang.StringUtils;
+import org.codehaus.staxmate.in.SMHierarchicCursor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
@@ -35,7 +38,14 @@ import org.sonar.plugins.surefire.data.UnitTestIndex;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -44,11 +54,32 @@ import javax.xml.stream.XMLStreamException;
  */
 public abstract class AbstractSurefireParser {
 
+  /**
+   * Number of threads used to parse the reports. The reports are parsed sequentially by default.
+   *
+   * @since 2.8
+   */
+  public static final String THREADS_PROPERTY = "sonar.surefire.parser.threads";
+  public static final int THREADS_DEFAULT_VALUE = 1;
+
+  /**
+   * Stack traces of errors and failures longer than this number of characters are truncated.
+   * <p/>
+   * The results of all the reports are kept in memory until they're saved, because the results of a class can be spread over several
+   * reports, for example with inner classes. This truncation is the only bound of the memory they use.
+   *
+   * @since 2.8
+   */
+  public static final String STACK_TRACE_MAX_LENGTH_PROPERTY = "sonar.surefire.stackTraceMaxLength";
+  public static final int STACK_TRACE_MAX_LENGTH_DEFAULT_VALUE = 8000;
+
+  private static final int PARSED_REPORTS_PER_THREAD = 4;
+
   public void collect(Project project, SensorContext context, File reportsDir) {
     File[] xmlFiles = getReports(reportsDir);
 
     if (xmlFiles.length != 0) {
-      parseFiles(context, xmlFiles);
+      parseFiles(project.getConfiguration(), context, xmlFiles);
     }
   }
 
@@ -63,22 +94,67 @@ public abstract class AbstractSurefireParser {
     });
   }
 
-  private void parseFiles(SensorContext context, File[] reports) {
+  private void parseFiles(Configuration configuration, SensorContext context, File[] reports) {
+    int threads = THREADS_DEFAULT_VALUE;
+    int stackTraceMaxLength = STACK_TRACE_MAX_LENGTH_DEFAULT_VALUE;
+    if (configuration != null) {
+      threads = configuration.getInt(THREADS_PROPERTY, THREADS_DEFAULT_VALUE);
+      stackTraceMaxLength = configuration.getInt(STACK_TRACE_MAX_LENGTH_PROPERTY, STACK_TRACE_MAX_LENGTH_DEFAULT_VALUE);
+    }
     UnitTestIndex index = new UnitTestIndex();
-    parseFiles(reports, index);
+    if (threads > 1 && reports.length > 1) {
+      parseFilesConcurrently(reports, index, threads, stackTraceMaxLength);
+    } else {
+      ReportParser parser = new ReportParser(stackTraceMaxLength);
+      for (File report : reports) {
+        parser.parse(report, index);
+      }
+    }
     sanitize(index);
     save(index, context);
   }
 
-  private void parseFiles(File[] reports, UnitTestIndex index) {
-    SurefireStaxHandler staxParser = new SurefireStaxHandler(index);
-    StaxParser parser = new StaxParser(staxParser, false);
-    for (File report : reports) {
-      try {
-        parser.parse(report);
-      } catch (XMLStreamException e) {
-        throw new SonarException("Fail to parse the Surefire report: " + report, e);
+  /**
+   * Each report is parsed into its own index by a worker thread, then the indexes are merged in the order of reports,
+   * so that results are the same than with a sequential parsing. The number of parsed reports waiting to be merged is bounded, but
+   * the merged index grows with all the reports.
+   */
+  private void parseFilesConcurrently(File[] reports, UnitTestIndex index, int threads, final int stackTraceMaxLength) {
+    final ThreadLocal<ReportParser> parsers = new ThreadLocal<ReportParser>() {
+      @Override
+      protected ReportParser initialValue() {
+        return new ReportParser(stackTraceMaxLength);
+      }
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, reports.length));
+    try {
+      LinkedList<Future<UnitTestIndex>> pendingReports = Lists.newLinkedList();
+      int next = 0;
+      while (next < reports.length || !pendingReports.isEmpty()) {
+        while (next < reports.length && pendingReports.size() < threads * PARSED_REPORTS_PER_THREAD) {
+          pendingReports.add(executor.submit(new ParseTask(reports[next], parsers)));
+          next++;
+        }
+        index.merge(getParsedReport(pendingReports.removeFirst()));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static UnitTestIndex getParsedReport(Future<UnitTestIndex> future) {
+    try {
+      return future.get();
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException("Interrupted while parsing the Surefire reports", e);
+
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
       }
+      throw new SonarException("Fail to parse the Surefire reports", e.getCause());
     }
   }
 
@@ -92,8 +168,14 @@ public abstract class AbstractSurefireParser {
     }
   }
 
+  /**
+   * The results of a class are removed from the index as soon as its measures are saved, so that they're not kept in memory
+   * twice, in the index and in the XML of the test details.
+   */
   private void save(UnitTestIndex index, SensorContext context) {
-    for (Map.Entry<String, UnitTestClassReport> entry : index.getIndexByClassname().entrySet()) {
+    Iterator<Map.Entry<String, UnitTestClassReport>> it = index.getIndexByClassname().entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, UnitTestClassReport> entry = it.next();
       UnitTestClassReport report = entry.getValue();
       if (report.getTests() > 0) {
         Resource resource = getUnitTestResource(entry.getKey());
@@ -110,6 +192,7 @@ public abstract class AbstractSurefireParser {
         }
         saveResults(context, resource, report);
       }
+      it.remove();
     }
   }
 
@@ -125,4 +208,48 @@ public abstract class AbstractSurefireParser {
 
   protected abstract Resource<?> getUnitTestResource(String classKey);
 
+  /**
+   * Parses reports into the given indexes. The Stax parser is created once, it's not thread-safe.
+   */
+  private static final class ReportParser implements StaxParser.XmlStreamHandler {
+    private final StaxParser parser;
+    private final int stackTraceMaxLength;
+    private UnitTestIndex index;
+
+    private ReportParser(int stackTraceMaxLength) {
+      this.stackTraceMaxLength = stackTraceMaxLength;
+      this.parser = new StaxParser(this, false);
+    }
+
+    private void parse(File report, UnitTestIndex index) {
+      this.index = index;
+      try {
+        parser.parse(report);
+      } catch (XMLStreamException e) {
+        throw new SonarException("Fail to parse the Surefire report: " + report, e);
+      } finally {
+        this.index = null;
+      }
+    }
+
+    public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
+      new SurefireStaxHandler(index, stackTraceMaxLength).stream(rootCursor);
+    }
+  }
+
+  private static final class ParseTask implements Callable<UnitTestIndex> {
+    private final File report;
+    private final ThreadLocal<ReportParser> parsers;
+
+    private ParseTask(File report, ThreadLocal<ReportParser> parsers) {
+      this.report = report;
+      this.parsers = parsers;
+    }
+
+    public UnitTestIndex call() {
+      UnitTestIndex index = new UnitTestIndex();
+      parsers.get().parse(report, index);
+      return index;
+    }
+  }
 }
@@ -34,10 +34,22 @@ import org.sonar.api.utils.StaxParser.XmlStreamHandler;
 
 public class SurefireStaxHandler implements XmlStreamHandler {
 
+  private static final String TRUNCATED_STACK_TRACE_SUFFIX = "\n...";
+
   private UnitTestIndex index;
+  private int stackTraceMaxLength;
 
   public SurefireStaxHandler(UnitTestIndex index) {
+    this(index, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param stackTraceMaxLength the stack traces longer than this number of characters are truncated
+   * @since 2.8
+   */
+  public SurefireStaxHandler(UnitTestIndex index, int stackTraceMaxLength) {
     this.index = index;
+    this.stackTraceMaxLength = stackTraceMaxLength;
   }
 
   public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
@@ -75,7 +87,15 @@ public class SurefireStaxHandler implements XmlStreamHandler {
   private void setStackAndMessage(UnitTestResult result, SMInputCursor stackAndMessageCursor) throws XMLStreamException {
     result.setMessage(stackAndMessageCursor.getAttrValue("message"));
     String stack = stackAndMessageCursor.collectDescendantText();
-    result.setStackTrace(stack);
+    result.setStackTrace(truncate(stack));
+  }
+
+  private String truncate(String stack) {
+    if (stack != null && stack.length() > stackTraceMaxLength) {
+      // the substring is copied, so that the characters of the whole stack trace can be garbage collected
+      return new String(stack.substring(0, stackTraceMaxLength)) + TRUNCATED_STACK_TRACE_SUFFIX;
+    }
+    return stack;
   }
 
   private UnitTestResult parseTestResult(SMInputCursor testCaseCursor) throws XMLStreamException {
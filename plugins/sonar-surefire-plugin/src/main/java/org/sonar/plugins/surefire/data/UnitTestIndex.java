@@ -71,6 +71,22 @@ public class UnitTestIndex {
     return null;
   }
 
+  /**
+   * Adds the reports of another index, for example the index of a file parsed by another thread. The reports of the
+   * classes that are not indexed yet are not copied, so the other index must not be used anymore.
+   */
+  public UnitTestIndex merge(UnitTestIndex other) {
+    for (Map.Entry<String, UnitTestClassReport> entry : other.indexByClassname.entrySet()) {
+      UnitTestClassReport report = indexByClassname.get(entry.getKey());
+      if (report == null) {
+        indexByClassname.put(entry.getKey(), entry.getValue());
+      } else {
+        report.add(entry.getValue());
+      }
+    }
+    return this;
+  }
+
   public void remove(String classname) {
     indexByClassname.remove(classname);
   }
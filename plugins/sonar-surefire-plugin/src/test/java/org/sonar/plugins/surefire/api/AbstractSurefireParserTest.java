@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.surefire.api;
 
+import org.apache.commons.configuration.BaseConfiguration;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.junit.Test;
@@ -102,6 +103,20 @@ public class AbstractSurefireParserTest {
     verify(context, never()).saveMeasure(argThat(new IsResource(Scopes.FILE, Qualifiers.FILE, "org.apache.commons.collections.bidimap.AbstractTestBidiMap$TestBidiMapEntrySet")), any(Metric.class), anyDouble());
   }
 
+  @Test
+  public void shouldParseReportsConcurrently() throws URISyntaxException {
+    AbstractSurefireParser parser = newParser();
+    SensorContext context = mockContext();
+    Project project = new Project("foo");
+    project.setConfiguration(new BaseConfiguration());
+    project.getConfiguration().setProperty(AbstractSurefireParser.THREADS_PROPERTY, 3);
+
+    parser.collect(project, context, getDir("multipleReports"));
+
+    verify(context, times(6)).saveMeasure(argThat(new IsResource(Scopes.FILE, Qualifiers.FILE)), eq(CoreMetrics.TESTS), anyDouble());
+    verify(context, times(6)).saveMeasure(argThat(new IsResource(Scopes.FILE, Qualifiers.FILE)), eq(CoreMetrics.TEST_ERRORS), anyDouble());
+    verify(context, times(6)).saveMeasure(argThat(new IsResource(Scopes.FILE, Qualifiers.FILE)), argThat(new IsMeasure(CoreMetrics.TEST_DATA)));
+  }
 
   private AbstractSurefireParser newParser() {
     return new AbstractSurefireParser() {
@@ -30,6 +30,7 @@ import javax.xml.stream.XMLStreamException;
 import java.io.File;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.eq;
@@ -118,9 +119,22 @@ public class SurefireStaxHandlerTest {
     assertThat(index.get("org.sonar.SecondTest").getTests(), is(4L));
   }
 
+  @Test
+  public void shouldTruncateStackTraces() throws XMLStreamException {
+    parse("errorsAndFailures.xml", 20);
+    UnitTestResult failure = index.get("org.sonar.Foo").getResults().get(0);
+    assertThat(failure.getStackTrace().length(), is(20 + 4));
+    assertThat(failure.getStackTrace(), endsWith("\n..."));
+    assertThat(failure.getMessage(), startsWith("expected"));
+  }
+
   private void parse(String path) throws XMLStreamException {
+    parse(path, Integer.MAX_VALUE);
+  }
+
+  private void parse(String path, int stackTraceMaxLength) throws XMLStreamException {
     File xml = TestUtils.getResource(getClass(), path);
-    SurefireStaxHandler staxParser = new SurefireStaxHandler(index);
+    SurefireStaxHandler staxParser = new SurefireStaxHandler(index, stackTraceMaxLength);
     StaxParser parser = new StaxParser(staxParser, false);
     parser.parse(xml);
   }
@@ -112,4 +112,22 @@ public class UnitTestIndexTest {
 
     assertThat(index.size(), is(0));
   }
+
+  @Test
+  public void shouldMergeIndexes() {
+    UnitTestIndex index = new UnitTestIndex();
+    index.index("org.sonar.Foo").add(new UnitTestResult().setStatus(UnitTestResult.STATUS_OK).setDurationMilliseconds(200L));
+    UnitTestIndex other = new UnitTestIndex();
+    other.index("org.sonar.Foo").add(new UnitTestResult().setStatus(UnitTestResult.STATUS_ERROR).setDurationMilliseconds(500L));
+    UnitTestClassReport bar = other.index("org.sonar.Bar");
+    bar.add(new UnitTestResult().setStatus(UnitTestResult.STATUS_FAILURE).setDurationMilliseconds(350L));
+
+    index.merge(other);
+
+    assertThat(index.size(), is(2));
+    assertThat(index.get("org.sonar.Foo").getTests(), is(2L));
+    assertThat(index.get("org.sonar.Foo").getErrors(), is(1L));
+    assertThat(index.get("org.sonar.Foo").getDurationMilliseconds(), is(200L + 500L));
+    assertSame(index.get("org.sonar.Bar"), bar);
+  }
 }
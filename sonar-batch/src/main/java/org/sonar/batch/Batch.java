@@ -88,8 +88,10 @@ public class Batch {
       addComponent(DependencyPersister.class);
       addComponent(EventPersister.class);
       addComponent(LinkPersister.class);
+      addComponent(JdbcBatchInserter.class);
       addComponent(MeasurePersister.class);
       addComponent(MemoryOptimizer.class);
+      addComponent(MeasuresSpill.class);
       addComponent(DefaultResourcePersister.class);
       addComponent(SourcePersister.class);
       addComponent(ViolationPersister.class);
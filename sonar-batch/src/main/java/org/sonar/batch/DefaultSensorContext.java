@@ -34,10 +34,13 @@ import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
+/**
+ * Thread-safe as long as the index is thread-safe, because sensors can be executed concurrently.
+ */
 public class DefaultSensorContext implements SensorContext {
 
-  private SonarIndex index;
-  private Project project;
+  private final SonarIndex index;
+  private final Project project;
 
   public DefaultSensorContext(SonarIndex index, Project project) {
     this.index = index;
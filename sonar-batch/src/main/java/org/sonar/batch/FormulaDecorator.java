@@ -20,6 +20,7 @@
 package org.sonar.batch;
 
 import org.sonar.api.batch.*;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.measures.FormulaData;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.Metric;
@@ -35,6 +36,7 @@ import java.util.Set;
  * A pre-implementation of a decorator using a simple calculation formula
  * @since 1.11
  */
+@ConcurrentExecution
 public final class FormulaDecorator implements Decorator {
 
   private Metric metric;
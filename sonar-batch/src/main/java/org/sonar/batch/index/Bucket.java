@@ -19,9 +19,8 @@
  */
 package org.sonar.batch.index;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.MeasuresFilter;
 import org.sonar.api.measures.MeasuresFilters;
@@ -29,14 +28,32 @@ import org.sonar.api.resources.Resource;
 import org.sonar.api.rules.Violation;
 import org.sonar.api.utils.SonarException;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public final class Bucket {
 
+  private static final int INITIAL_MEASURES_CAPACITY = 4;
+  private static final int INDEXED_MEASURES_THRESHOLD = 16;
+
   private Resource resource;
-  private ListMultimap<String, Measure> measuresByMetric = ArrayListMultimap.create();
+
+  /**
+   * Measures are stored in two parallel arrays instead of a multimap, which allocates a map entry and a list per metric.
+   * Huge projects have hundreds of thousands of buckets, so this overhead is significant.
+   * <p/>
+   * Buckets with more than {@link #INDEXED_MEASURES_THRESHOLD} measures, like projects and modules, also index the slots
+   * by metric key: the first and last slots of each metric, plus the chain of the next slot of the same metric.
+   */
+  private String[] metricKeys = new String[INITIAL_MEASURES_CAPACITY];
+  private Measure[] measures = new Measure[INITIAL_MEASURES_CAPACITY];
+  private int measuresCount = 0;
+  private Map<String, int[]> slotsByMetric = null;
+  private int[] nextSlots = null;
+
   private List<Violation> violations = Lists.newLinkedList();
 
   private Bucket parent;
@@ -80,35 +97,104 @@ public final class Bucket {
     return parent;
   }
 
-  public void addViolation(Violation violation) {
+  public synchronized void addViolation(Violation violation) {
     violations.add(violation);
   }
 
-  public List<Violation> getViolations() {
-    return violations;
+  /**
+   * @return a copy of the violations, which can be read while other threads add violations
+   */
+  public synchronized List<Violation> getViolations() {
+    return Lists.newArrayList(violations);
   }
 
-  public void addMeasure(Measure measure) {
-    List<Measure> metricMeasures = measuresByMetric.get(measure.getMetric().getKey());
-
-    boolean add = true;
-    if (metricMeasures != null) {
-      int index = metricMeasures.indexOf(measure);
-      if (index > -1) {
-        if (metricMeasures.get(index) == measure) {
-          add = false;
-        } else {
-          throw new SonarException("Can not add twice the same measure on " + resource + ": " + measure);
+  public synchronized void addMeasure(Measure measure) {
+    String metricKey = measure.getMetric().getKey();
+    for (int i = firstSlot(metricKey); i >= 0; i = nextSlot(metricKey, i)) {
+      if (measures[i].equals(measure)) {
+        if (measures[i] == measure) {
+          return;
         }
+        throw new SonarException("Can not add twice the same measure on " + resource + ": " + measure);
       }
     }
-    if (add) {
-      measuresByMetric.put(measure.getMetric().getKey(), measure);
+    if (measuresCount == measures.length) {
+      grow(measuresCount * 2);
+    }
+    int slot = measuresCount;
+    metricKeys[slot] = metricKey;
+    measures[slot] = measure;
+    measuresCount++;
+    if (slotsByMetric != null) {
+      link(slot);
+    } else if (measuresCount > INDEXED_MEASURES_THRESHOLD) {
+      index();
+    }
+  }
+
+  private void grow(int capacity) {
+    String[] newMetricKeys = new String[capacity];
+    Measure[] newMeasures = new Measure[capacity];
+    System.arraycopy(metricKeys, 0, newMetricKeys, 0, measuresCount);
+    System.arraycopy(measures, 0, newMeasures, 0, measuresCount);
+    metricKeys = newMetricKeys;
+    measures = newMeasures;
+    if (nextSlots != null) {
+      int[] newNextSlots = new int[capacity];
+      System.arraycopy(nextSlots, 0, newNextSlots, 0, measuresCount);
+      nextSlots = newNextSlots;
+    }
+  }
+
+  private void index() {
+    slotsByMetric = Maps.newHashMap();
+    nextSlots = new int[measures.length];
+    for (int i = 0; i < measuresCount; i++) {
+      link(i);
+    }
+  }
+
+  private void link(int slot) {
+    nextSlots[slot] = -1;
+    int[] firstAndLast = slotsByMetric.get(metricKeys[slot]);
+    if (firstAndLast == null) {
+      slotsByMetric.put(metricKeys[slot], new int[]{slot, slot});
+    } else {
+      nextSlots[firstAndLast[1]] = slot;
+      firstAndLast[1] = slot;
+    }
+  }
+
+  private int firstSlot(String metricKey) {
+    if (slotsByMetric != null) {
+      int[] firstAndLast = slotsByMetric.get(metricKey);
+      return firstAndLast == null ? -1 : firstAndLast[0];
+    }
+    return findSlot(metricKey, 0);
+  }
+
+  private int nextSlot(String metricKey, int slot) {
+    if (nextSlots != null) {
+      return nextSlots[slot];
+    }
+    return findSlot(metricKey, slot + 1);
+  }
+
+  private int findSlot(String metricKey, int from) {
+    for (int i = from; i < measuresCount; i++) {
+      if (metricKeys[i].equals(metricKey)) {
+        return i;
+      }
     }
+    return -1;
   }
 
-  public void clear() {
-    measuresByMetric = null;
+  public synchronized void clear() {
+    metricKeys = null;
+    measures = null;
+    measuresCount = 0;
+    slotsByMetric = null;
+    nextSlots = null;
     violations = null;
     children = null;
     if (parent != null) {
@@ -117,16 +203,36 @@ public final class Bucket {
     }
   }
 
-  public <M> M getMeasures(final MeasuresFilter<M> filter) {
+  public synchronized <M> M getMeasures(final MeasuresFilter<M> filter) {
     Collection<Measure> unfiltered;
     if (filter instanceof MeasuresFilters.MetricFilter) {
-      unfiltered = measuresByMetric.get(((MeasuresFilters.MetricFilter) filter).filterOnMetricKey());
+      unfiltered = getMeasuresOfMetric(((MeasuresFilters.MetricFilter) filter).filterOnMetricKey());
     } else {
-      unfiltered = measuresByMetric.values();
+      unfiltered = getAllMeasures();
     }
     return filter.filter(unfiltered);
   }
 
+  synchronized List<Measure> getAllMeasures() {
+    if (measuresCount == 0) {
+      return Collections.emptyList();
+    }
+    List<Measure> result = Lists.newArrayListWithCapacity(measuresCount);
+    result.addAll(Arrays.asList(measures).subList(0, measuresCount));
+    return result;
+  }
+
+  private List<Measure> getMeasuresOfMetric(String metricKey) {
+    List<Measure> result = null;
+    for (int i = firstSlot(metricKey); i >= 0; i = nextSlot(metricKey, i)) {
+      if (result == null) {
+        result = Lists.newArrayList();
+      }
+      result.add(measures[i]);
+    }
+    return result == null ? Collections.<Measure>emptyList() : result;
+  }
+
   public boolean isExcluded() {
     return resource.isExcluded();
   }
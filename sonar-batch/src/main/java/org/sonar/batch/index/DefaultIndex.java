@@ -60,6 +60,11 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
+/**
+ * Read and write methods are synchronized so that sensors and decorators can be executed concurrently,
+ * see {@link org.sonar.batch.phases.SensorsExecutor#THREADS_PROPERTY} and {@link org.sonar.batch.phases.DecoratorsExecutor#THREADS_PROPERTY}.
+ * The returned collections are copies taken under the lock, so they can be iterated while other threads write to the index.
+ */
 public class DefaultIndex extends SonarIndex {
 
   private static final Logger LOG = LoggerFactory.getLogger(DefaultIndex.class);
@@ -80,12 +85,22 @@ public class DefaultIndex extends SonarIndex {
   private Map<Resource, Map<Resource, Dependency>> outgoingDependenciesByResource = Maps.newHashMap();
   private Map<Resource, Map<Resource, Dependency>> incomingDependenciesByResource = Maps.newHashMap();
   private ProjectTree projectTree;
+  private MeasuresSpill spill;
+
+  /**
+   * for unit tests
+   */
+  DefaultIndex(PersistenceManager persistence, DefaultResourceCreationLock lock, ProjectTree projectTree, MetricFinder metricFinder) {
+    this(persistence, lock, projectTree, metricFinder, new MeasuresSpill(0L));
+  }
 
-  public DefaultIndex(PersistenceManager persistence, DefaultResourceCreationLock lock, ProjectTree projectTree, MetricFinder metricFinder) {
+  public DefaultIndex(PersistenceManager persistence, DefaultResourceCreationLock lock, ProjectTree projectTree, MetricFinder metricFinder,
+                      MeasuresSpill spill) {
     this.persistence = persistence;
     this.lock = lock;
     this.projectTree = projectTree;
     this.metricFinder = metricFinder;
+    this.spill = spill;
   }
 
   public void start() {
@@ -127,7 +142,7 @@ public class DefaultIndex extends SonarIndex {
   /**
    * Keep only project stuff
    */
-  public void clear() {
+  public synchronized void clear() {
     Iterator<Map.Entry<Resource, Bucket>> it = buckets.entrySet().iterator();
     while (it.hasNext()) {
       Map.Entry<Resource, Bucket> entry = it.next();
@@ -137,6 +152,7 @@ public class DefaultIndex extends SonarIndex {
         it.remove();
       }
     }
+    spill.clear();
 
     Set<Dependency> projectDependencies = getDependenciesBetweenProjects();
     dependencies.clear();
@@ -150,9 +166,10 @@ public class DefaultIndex extends SonarIndex {
     lock.unlock();
   }
 
-  public Measure getMeasure(Resource resource, Metric metric) {
+  public synchronized Measure getMeasure(Resource resource, Metric metric) {
     Bucket bucket = buckets.get(resource);
     if (bucket != null) {
+      spill.touch(bucket);
       Measure measure = bucket.getMeasures(MeasuresFilters.metric(metric));
       if (measure != null) {
         return persistence.reloadMeasure(measure);
@@ -161,9 +178,10 @@ public class DefaultIndex extends SonarIndex {
     return null;
   }
 
-  public <M> M getMeasures(Resource resource, MeasuresFilter<M> filter) {
+  public synchronized <M> M getMeasures(Resource resource, MeasuresFilter<M> filter) {
     Bucket bucket = buckets.get(resource);
     if (bucket != null) {
+      spill.touch(bucket);
       // TODO the data measures which are not kept in memory are not reloaded yet. Use getMeasure().
       return bucket.getMeasures(filter);
     }
@@ -173,7 +191,7 @@ public class DefaultIndex extends SonarIndex {
   /**
    * the measure is updated if it's already registered.
    */
-  public Measure addMeasure(Resource resource, Measure measure) {
+  public synchronized Measure addMeasure(Resource resource, Measure measure) {
     Bucket bucket = checkIndexed(resource);
     if (bucket != null && !bucket.isExcluded()) {
       Metric metric = metricFinder.findByKey(measure.getMetricKey());
@@ -182,6 +200,7 @@ public class DefaultIndex extends SonarIndex {
       }
       measure.setMetric(metric);
       bucket.addMeasure(measure);
+      spill.touch(bucket);
 
       if (measure.getPersistenceMode().useDatabase()) {
         persistence.saveMeasure(resource, measure);
@@ -198,7 +217,7 @@ public class DefaultIndex extends SonarIndex {
   //
   //
 
-  public Dependency addDependency(Dependency dependency) {
+  public synchronized Dependency addDependency(Dependency dependency) {
     Dependency existingDep = getEdge(dependency.getFrom(), dependency.getTo());
     if (existingDep != null) {
       return existingDep;
@@ -246,11 +265,11 @@ public class DefaultIndex extends SonarIndex {
     incomingDeps.put(dependency.getFrom(), dependency);
   }
 
-  public Set<Dependency> getDependencies() {
-    return dependencies;
+  public synchronized Set<Dependency> getDependencies() {
+    return Sets.newHashSet(dependencies);
   }
 
-  public Dependency getEdge(Resource from, Resource to) {
+  public synchronized Dependency getEdge(Resource from, Resource to) {
     Map<Resource, Dependency> map = outgoingDependenciesByResource.get(from);
     if (map != null) {
       return map.get(to);
@@ -258,26 +277,26 @@ public class DefaultIndex extends SonarIndex {
     return null;
   }
 
-  public boolean hasEdge(Resource from, Resource to) {
+  public synchronized boolean hasEdge(Resource from, Resource to) {
     return getEdge(from, to) != null;
   }
 
-  public Set<Resource> getVertices() {
-    return buckets.keySet();
+  public synchronized Set<Resource> getVertices() {
+    return Sets.newHashSet(buckets.keySet());
   }
 
-  public Collection<Dependency> getOutgoingEdges(Resource from) {
+  public synchronized Collection<Dependency> getOutgoingEdges(Resource from) {
     Map<Resource, Dependency> deps = outgoingDependenciesByResource.get(from);
     if (deps != null) {
-      return deps.values();
+      return Lists.newArrayList(deps.values());
     }
     return Collections.emptyList();
   }
 
-  public Collection<Dependency> getIncomingEdges(Resource to) {
+  public synchronized Collection<Dependency> getIncomingEdges(Resource to) {
     Map<Resource, Dependency> deps = incomingDependenciesByResource.get(to);
     if (deps != null) {
-      return deps.values();
+      return Lists.newArrayList(deps.values());
     }
     return Collections.emptyList();
   }
@@ -303,7 +322,7 @@ public class DefaultIndex extends SonarIndex {
   /**
    * {@inheritDoc}
    */
-  public List<Violation> getViolations(ViolationQuery violationQuery) {
+  public synchronized List<Violation> getViolations(ViolationQuery violationQuery) {
     Resource resource = violationQuery.getResource();
     if (resource == null) {
       throw new IllegalArgumentException("A resource must be set on the ViolationQuery in order to search for violations.");
@@ -322,7 +341,7 @@ public class DefaultIndex extends SonarIndex {
     return filteredViolations;
   }
 
-  public void addViolation(Violation violation, boolean force) {
+  public synchronized void addViolation(Violation violation, boolean force) {
     Resource resource = violation.getResource();
     if (resource == null) {
       violation.setResource(currentProject);
@@ -369,11 +388,11 @@ public class DefaultIndex extends SonarIndex {
   //
   //
 
-  public void addLink(ProjectLink link) {
+  public synchronized void addLink(ProjectLink link) {
     persistence.saveLink(currentProject, link);
   }
 
-  public void deleteLink(String key) {
+  public synchronized void deleteLink(String key) {
     persistence.deleteLink(currentProject, key);
   }
 
@@ -385,23 +404,23 @@ public class DefaultIndex extends SonarIndex {
   //
   //
 
-  public List<Event> getEvents(Resource resource) {
+  public synchronized List<Event> getEvents(Resource resource) {
     // currently events are not cached in memory
     return persistence.getEvents(resource);
   }
 
-  public void deleteEvent(Event event) {
+  public synchronized void deleteEvent(Event event) {
     persistence.deleteEvent(event);
   }
 
-  public Event addEvent(Resource resource, String name, String description, String category, Date date) {
+  public synchronized Event addEvent(Resource resource, String name, String description, String category, Date date) {
     Event event = new Event(name, description, category);
     event.setDate(date);
     persistence.saveEvent(resource, event);
     return null;
   }
 
-  public void setSource(Resource reference, String source) {
+  public synchronized void setSource(Resource reference, String source) {
     Bucket bucket = checkIndexed(reference);
     if (bucket != null && !bucket.isExcluded()) {
       persistence.setSource(reference, source);
@@ -411,12 +430,12 @@ public class DefaultIndex extends SonarIndex {
   /**
    * Does nothing if the resource is already registered.
    */
-  public Resource addResource(Resource resource) {
+  public synchronized Resource addResource(Resource resource) {
     Bucket bucket = doIndex(resource);
     return bucket != null ? bucket.getResource() : null;
   }
 
-  public <R extends Resource> R getResource(R reference) {
+  public synchronized <R extends Resource> R getResource(R reference) {
     Bucket bucket = buckets.get(reference);
     if (bucket != null) {
       return (R) bucket.getResource();
@@ -443,11 +462,11 @@ public class DefaultIndex extends SonarIndex {
     return excluded;
   }
 
-  public List<Resource> getChildren(Resource resource) {
+  public synchronized List<Resource> getChildren(Resource resource) {
     return getChildren(resource, false);
   }
 
-  public List<Resource> getChildren(Resource resource, boolean acceptExcluded) {
+  public synchronized List<Resource> getChildren(Resource resource, boolean acceptExcluded) {
     List<Resource> children = Lists.newLinkedList();
     Bucket bucket = getBucket(resource, acceptExcluded);
     if (bucket != null) {
@@ -460,7 +479,7 @@ public class DefaultIndex extends SonarIndex {
     return children;
   }
 
-  public Resource getParent(Resource resource) {
+  public synchronized Resource getParent(Resource resource) {
     Bucket bucket = getBucket(resource, false);
     if (bucket != null && bucket.getParent() != null) {
       return bucket.getParent().getResource();
@@ -468,7 +487,7 @@ public class DefaultIndex extends SonarIndex {
     return null;
   }
 
-  public boolean index(Resource resource) {
+  public synchronized boolean index(Resource resource) {
     Bucket bucket = doIndex(resource);
     return bucket != null && !bucket.isExcluded();
   }
@@ -480,7 +499,7 @@ public class DefaultIndex extends SonarIndex {
     return doIndex(resource, resource.getParent());
   }
 
-  public boolean index(Resource resource, Resource parentReference) {
+  public synchronized boolean index(Resource resource, Resource parentReference) {
     Bucket bucket = doIndex(resource, parentReference);
     return bucket != null && !bucket.isExcluded();
   }
@@ -542,12 +561,12 @@ public class DefaultIndex extends SonarIndex {
     return bucket;
   }
 
-  public boolean isExcluded(Resource reference) {
+  public synchronized boolean isExcluded(Resource reference) {
     Bucket bucket = getBucket(reference, true);
     return bucket != null && bucket.isExcluded();
   }
 
-  public boolean isIndexed(Resource reference, boolean acceptExcluded) {
+  public synchronized boolean isIndexed(Resource reference, boolean acceptExcluded) {
     return getBucket(reference, acceptExcluded) != null;
   }
 
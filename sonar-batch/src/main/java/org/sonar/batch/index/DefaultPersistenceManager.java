@@ -51,6 +51,7 @@ public final class DefaultPersistenceManager implements PersistenceManager {
   }
 
   public void clear() {
+    measurePersister.flush();
     resourcePersister.clear();
     sourcePersister.clear();
   }
@@ -35,6 +35,7 @@ import org.sonar.api.resources.Qualifiers;
 
 import org.sonar.api.resources.Scopes;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -45,6 +46,12 @@ public final class DefaultResourcePersister implements ResourcePersister {
 
   private Map<Resource, Snapshot> snapshotsByResource = Maps.newHashMap();
 
+  /**
+   * The existing files and directories of the current module, loaded with a single request when the first one is saved.
+   */
+  private Integer preloadedRootId;
+  private Map<String, ResourceModel> preloadedModels = Maps.newHashMap();
+
   public DefaultResourcePersister(DatabaseSession session) {
     this.session = session;
   }
@@ -179,19 +186,61 @@ public final class DefaultResourcePersister implements ResourcePersister {
    * Everything except project and library
    */
   private Snapshot persistFileOrDirectory(Project project, Resource resource, Resource parentReference) {
-    ResourceModel model = findOrCreateModel(resource);
     Snapshot projectSnapshot = snapshotsByResource.get(project);
-    model.setRootId(projectSnapshot.getResourceId());
-    model = session.save(model);
+    ResourceModel model = findOrCreatePreloadedModel(projectSnapshot.getResourceId(), resource);
     resource.setId(model.getId()); // TODO to be removed
 
     Snapshot parentSnapshot = (Snapshot) ObjectUtils.defaultIfNull(getSnapshot(parentReference), projectSnapshot);
     Snapshot snapshot = new Snapshot(model, parentSnapshot);
+    // the session is committed by blocks of DatabaseSession.BATCH_SIZE saves and at the end of the module, see clear()
     snapshot = session.save(snapshot);
-    session.commit();
     return snapshot;
   }
 
+  /**
+   * Files and directories are searched in the models preloaded for the module instead of requesting the database for each
+   * resource. Unchanged models are not saved again.
+   */
+  private ResourceModel findOrCreatePreloadedModel(Integer rootId, Resource resource) {
+    preload(rootId);
+    ResourceModel model = preloadedModels.remove(resource.getEffectiveKey());
+    if (model == null) {
+      // new resource, or resource moved from another module
+      model = findOrCreateModel(resource);
+      model.setRootId(rootId);
+      return session.save(model);
+    }
+
+    List<Object> fingerprint = fingerprint(model);
+    mergeModel(model, resource);
+    model.setRootId(rootId);
+    if (!session.contains(model) && !fingerprint.equals(fingerprint(model))) {
+      model = (ResourceModel) session.merge(model);
+    }
+    return model;
+  }
+
+  private void preload(Integer rootId) {
+    if (!rootId.equals(preloadedRootId)) {
+      preloadedModels.clear();
+      preloadedRootId = rootId;
+
+      Query query = session.createQuery("from " + ResourceModel.class.getSimpleName() + " r WHERE r.rootId=:rootId");
+      query.setParameter("rootId", rootId);
+      List<ResourceModel> models = query.getResultList();
+      for (ResourceModel model : models) {
+        if (preloadedModels.put(model.getKey(), model) != null) {
+          throw new SonarException("The resource '" + model.getKey() + "' is duplicated in database.");
+        }
+      }
+    }
+  }
+
+  private static List<Object> fingerprint(ResourceModel model) {
+    return Arrays.<Object>asList(model.getEnabled(), model.getName(), model.getLongName(), model.getDescription(), model.getScope(),
+        model.getQualifier(), model.getLanguageKey(), model.getRootId());
+  }
+
   public Snapshot getLastSnapshot(Snapshot snapshot, boolean onlyOlder) {
     String hql = "SELECT s FROM " + Snapshot.class.getSimpleName() + " s WHERE s.last=true AND s.resourceId=:resourceId";
     if (onlyOlder) {
@@ -206,6 +255,10 @@ public final class DefaultResourcePersister implements ResourcePersister {
   }
 
   public void clear() {
+    session.commit();
+    preloadedModels.clear();
+    preloadedRootId = null;
+
     // we keep cache of projects
     for (Iterator<Map.Entry<Resource, Snapshot>> it = snapshotsByResource.entrySet().iterator(); it.hasNext();) {
       Map.Entry<Resource, Snapshot> entry = it.next();
@@ -0,0 +1,330 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.batch.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.database.DatabaseSession;
+import org.sonar.api.database.model.MeasureData;
+import org.sonar.api.database.model.MeasureModel;
+import org.sonar.api.database.model.RuleFailureModel;
+import org.sonar.api.utils.SonarException;
+import org.sonar.jpa.dialect.Dialect;
+import org.sonar.jpa.dialect.Sequences;
+import org.sonar.jpa.session.DatabaseConnector;
+import org.sonar.jpa.session.JpaDatabaseSession;
+
+import java.sql.*;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buffers the new rows of the tables PROJECT_MEASURES, MEASURE_DATA and RULE_FAILURES and inserts them with JDBC batches.
+ * Ids are allocated by blocks from the database sequences, so they are known before the rows are inserted.
+ * This mode is available only on the databases that generate ids with sequences.
+ * <p/>
+ * The rows are inserted on the connection of the current transaction of the {@link DatabaseSession}, after the pending
+ * changes of the session (for example the new snapshots). They are committed with the session.
+ *
+ * @since 2.8
+ */
+public class JdbcBatchInserter {
+
+  public static final String ENABLED_PROPERTY = "sonar.batch.jdbcBatchInserts";
+  public static final boolean ENABLED_DEFAULT_VALUE = true;
+
+  static final int ID_BLOCK_SIZE = 500;
+  static final int MAX_BUFFERED_ROWS = 5000;
+
+  private static final Logger LOG = LoggerFactory.getLogger(JdbcBatchInserter.class);
+
+  private static final String INSERT_MEASURE = "INSERT INTO project_measures (id, value, text_value, tendency, metric_id, snapshot_id, "
+      + "project_id, description, measure_date, rule_id, rule_priority, alert_status, alert_text, variation_value_1, "
+      + "variation_value_2, variation_value_3, variation_value_4, variation_value_5, url, characteristic_id) "
+      + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  private static final String INSERT_MEASURE_DATA = "INSERT INTO measure_data (id, measure_id, snapshot_id, data) VALUES (?, ?, ?, ?)";
+
+  private static final String INSERT_VIOLATION = "INSERT INTO rule_failures (id, snapshot_id, rule_id, failure_level, message, line, "
+      + "cost, created_at, checksum, permanent_id, switched_off) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  private DatabaseSession session;
+  private DatabaseConnector connector;
+  private boolean enabled;
+  private Map<Long, MeasureModel> measuresById = Maps.newLinkedHashMap();
+  private List<RuleFailureModel> violations = Lists.newArrayList();
+  private LinkedList<Long> measureIds = Lists.newLinkedList();
+  private LinkedList<Long> measureDataIds = Lists.newLinkedList();
+  private LinkedList<Long> violationIds = Lists.newLinkedList();
+
+  public JdbcBatchInserter(DatabaseSession session, DatabaseConnector connector, Configuration configuration) {
+    this(session, connector, configuration.getBoolean(ENABLED_PROPERTY, ENABLED_DEFAULT_VALUE)
+        && Sequences.isSupported(connector.getDialect()) && session instanceof JpaDatabaseSession);
+  }
+
+  JdbcBatchInserter(DatabaseSession session, DatabaseConnector connector, boolean enabled) {
+    this.session = session;
+    this.connector = connector;
+    this.enabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Allocates the ids of the measure and of its data, then buffers it until the next flush. The measure data, if any, is
+   * inserted too. As the id of the data is known, {@link MemoryOptimizer} can evict it before it's inserted.
+   */
+  public synchronized void insertMeasure(MeasureModel model) {
+    model.setId(nextId(measureIds, "project_measures"));
+    allocateMeasureDataId(model);
+    measuresById.put(model.getId(), model);
+    flushIfFull();
+  }
+
+  /**
+   * Allocates the id of the new data of a measure which is still buffered.
+   */
+  public synchronized void updateBufferedMeasure(MeasureModel model) {
+    allocateMeasureDataId(model);
+  }
+
+  private void allocateMeasureDataId(MeasureModel model) {
+    MeasureData data = model.getMeasureData();
+    if (data != null && data.getId() == null) {
+      data.setId(nextId(measureDataIds, "measure_data").intValue());
+    }
+  }
+
+  /**
+   * @return the measure which has been buffered with the given id, null if it's not found or if it has been already inserted.
+   */
+  public synchronized MeasureModel getBufferedMeasure(Long id) {
+    return measuresById.get(id);
+  }
+
+  /**
+   * Allocates the id of the violation and buffers it until the next flush. The permanent id is set to the id when it's not defined.
+   */
+  public synchronized void insertViolation(RuleFailureModel model) {
+    model.setId(nextId(violationIds, "rule_failures").intValue());
+    if (model.getPermanentId() == null) {
+      model.setPermanentId(model.getId());
+    }
+    violations.add(model);
+    flushIfFull();
+  }
+
+  synchronized int getBufferedRows() {
+    return measuresById.size() + violations.size();
+  }
+
+  private void flushIfFull() {
+    if (getBufferedRows() >= MAX_BUFFERED_ROWS) {
+      flush();
+    }
+  }
+
+  /**
+   * Inserts all the buffered rows in the current transaction of the session. They are not committed.
+   */
+  public synchronized void flush() {
+    if (getBufferedRows() == 0) {
+      return;
+    }
+    try {
+      Connection connection = getConnection();
+      insertMeasures(connection);
+      insertMeasureData(connection);
+      insertViolations(connection);
+      LOG.debug("{} measures and {} violations inserted", measuresById.size(), violations.size());
+      measuresById.clear();
+      violations.clear();
+
+    } catch (SQLException e) {
+      throw new SonarException("Fail to insert measures and violations", e);
+    }
+  }
+
+  private Connection getConnection() {
+    return ((JpaDatabaseSession) session).getConnection();
+  }
+
+  private void insertMeasures(Connection connection) throws SQLException {
+    PreparedStatement stmt = connection.prepareStatement(INSERT_MEASURE);
+    try {
+      int count = 0;
+      for (MeasureModel model : measuresById.values()) {
+        stmt.setLong(1, model.getId());
+        setDouble(stmt, 2, model.getValue());
+        stmt.setString(3, model.getTextValue());
+        setInteger(stmt, 4, model.getTendency());
+        setInteger(stmt, 5, model.getMetricId());
+        setInteger(stmt, 6, model.getSnapshotId());
+        setInteger(stmt, 7, model.getProjectId());
+        stmt.setString(8, model.getDescription());
+        setTimestamp(stmt, 9, model.getMeasureDate());
+        setInteger(stmt, 10, model.getRuleId());
+        setInteger(stmt, 11, model.getRulePriority() != null ? model.getRulePriority().ordinal() : null);
+        stmt.setString(12, model.getAlertStatus() != null ? model.getAlertStatus().toString() : null);
+        stmt.setString(13, model.getAlertText());
+        setDouble(stmt, 14, model.getVariationValue1());
+        setDouble(stmt, 15, model.getVariationValue2());
+        setDouble(stmt, 16, model.getVariationValue3());
+        setDouble(stmt, 17, model.getVariationValue4());
+        setDouble(stmt, 18, model.getVariationValue5());
+        stmt.setString(19, model.getUrl());
+        setInteger(stmt, 20, model.getCharacteristic() != null ? model.getCharacteristic().getId() : null);
+        stmt.addBatch();
+        if (++count % DatabaseSession.BATCH_SIZE == 0) {
+          stmt.executeBatch();
+        }
+      }
+      stmt.executeBatch();
+    } finally {
+      stmt.close();
+    }
+  }
+
+  private void insertMeasureData(Connection connection) throws SQLException {
+    PreparedStatement stmt = null;
+    try {
+      int count = 0;
+      for (MeasureModel model : measuresById.values()) {
+        MeasureData data = model.getMeasureData();
+        if (data != null) {
+          if (stmt == null) {
+            stmt = connection.prepareStatement(INSERT_MEASURE_DATA);
+          }
+          allocateMeasureDataId(model);
+          data.setMeasure(model);
+          data.setSnapshotId(model.getSnapshotId());
+          stmt.setInt(1, data.getId());
+          stmt.setLong(2, model.getId());
+          setInteger(stmt, 3, data.getSnapshotId());
+          stmt.setBytes(4, data.getData());
+          stmt.addBatch();
+          if (++count % DatabaseSession.BATCH_SIZE == 0) {
+            stmt.executeBatch();
+          }
+        }
+      }
+      if (stmt != null) {
+        stmt.executeBatch();
+      }
+    } finally {
+      if (stmt != null) {
+        stmt.close();
+      }
+    }
+  }
+
+  private void insertViolations(Connection connection) throws SQLException {
+    PreparedStatement stmt = connection.prepareStatement(INSERT_VIOLATION);
+    try {
+      int count = 0;
+      for (RuleFailureModel model : violations) {
+        stmt.setInt(1, model.getId());
+        setInteger(stmt, 2, model.getSnapshotId());
+        setInteger(stmt, 3, model.getRuleId());
+        stmt.setInt(4, model.getPriority().ordinal());
+        stmt.setString(5, model.getMessage());
+        setInteger(stmt, 6, model.getLine());
+        setDouble(stmt, 7, model.getCost());
+        setTimestamp(stmt, 8, model.getCreatedAt());
+        stmt.setString(9, model.getChecksum());
+        setInteger(stmt, 10, model.getPermanentId());
+        stmt.setBoolean(11, model.isSwitchedOff());
+        stmt.addBatch();
+        if (++count % DatabaseSession.BATCH_SIZE == 0) {
+          stmt.executeBatch();
+        }
+      }
+      stmt.executeBatch();
+    } finally {
+      stmt.close();
+    }
+  }
+
+  private Long nextId(LinkedList<Long> ids, String tableName) {
+    if (ids.isEmpty()) {
+      ids.addAll(allocateIds(tableName));
+    }
+    return ids.removeFirst();
+  }
+
+  /**
+   * Overridden by tests, as the in-memory database does not generate ids with sequences.
+   */
+  List<Long> allocateIds(String tableName) {
+    Dialect dialect = connector.getDialect();
+    String sql = Sequences.getNextValuesSql(dialect, Sequences.getSequenceName(dialect, tableName, "id"), ID_BLOCK_SIZE);
+    try {
+      Statement stmt = getConnection().createStatement();
+      try {
+        ResultSet rs = stmt.executeQuery(sql);
+        List<Long> ids = Lists.newArrayListWithExpectedSize(ID_BLOCK_SIZE);
+        while (rs.next()) {
+          ids.add(rs.getLong(1));
+        }
+        rs.close();
+        if (ids.isEmpty()) {
+          throw new SonarException("The sequence of the table " + tableName + " does not return values");
+        }
+        return ids;
+      } finally {
+        stmt.close();
+      }
+
+    } catch (SQLException e) {
+      throw new SonarException("Fail to allocate ids of the table " + tableName, e);
+    }
+  }
+
+  private static void setInteger(PreparedStatement stmt, int index, Integer value) throws SQLException {
+    if (value == null) {
+      stmt.setNull(index, Types.INTEGER);
+    } else {
+      stmt.setInt(index, value);
+    }
+  }
+
+  private static void setDouble(PreparedStatement stmt, int index, Double value) throws SQLException {
+    if (value == null) {
+      stmt.setNull(index, Types.DOUBLE);
+    } else {
+      stmt.setDouble(index, value);
+    }
+  }
+
+  private static void setTimestamp(PreparedStatement stmt, int index, Date value) throws SQLException {
+    if (value == null) {
+      stmt.setNull(index, Types.TIMESTAMP);
+    } else {
+      stmt.setTimestamp(index, new Timestamp(value.getTime()));
+    }
+  }
+}
@@ -46,13 +46,17 @@ public final class MeasurePersister {
   private ResourcePersister resourcePersister;
   private RuleFinder ruleFinder;
   private MemoryOptimizer memoryOptimizer;
+  private JdbcBatchInserter batchInserter;
+  private MeasuresSpill spill;
 
-
-  public MeasurePersister(DatabaseSession session, ResourcePersister resourcePersister, RuleFinder ruleFinder, MemoryOptimizer memoryOptimizer) {
+  public MeasurePersister(DatabaseSession session, ResourcePersister resourcePersister, RuleFinder ruleFinder,
+                          MemoryOptimizer memoryOptimizer, JdbcBatchInserter batchInserter, MeasuresSpill spill) {
     this.session = session;
     this.resourcePersister = resourcePersister;
     this.ruleFinder = ruleFinder;
     this.memoryOptimizer = memoryOptimizer;
+    this.batchInserter = batchInserter;
+    this.spill = spill;
   }
 
   public void setDelayedMode(boolean delayedMode) {
@@ -69,15 +73,22 @@ public final class MeasurePersister {
       MeasureModel model = null;
       if (measure.getId() != null) {
         // update
-        model = session.reattach(MeasureModel.class, measure.getId());
-        model = mergeModel(measure, model);
-        model.save(session);
+        model = batchInserter.getBufferedMeasure(measure.getId());
+        if (model != null) {
+          // not inserted yet
+          mergeModel(measure, model);
+          batchInserter.updateBufferedMeasure(model);
+        } else {
+          model = session.reattach(MeasureModel.class, measure.getId());
+          model = mergeModel(measure, model);
+          model.save(session);
+        }
 
       } else if (shouldPersistMeasure(resource, measure)) {
         // insert
         model = createModel(measure);
         model.setSnapshotId(snapshot.getId());
-        model.save(session);
+        insert(model);
         measure.setId(model.getId()); // could be removed
       }
       if (model != null) {
@@ -87,13 +98,24 @@ public final class MeasurePersister {
   }
 
   public Measure reloadMeasure(Measure measure) {
+    if (measure.getId() != null && !measure.hasData() && batchInserter.getBufferedMeasure(measure.getId()) != null) {
+      // the evicted data is reloaded from database
+      batchInserter.flush();
+    }
     return memoryOptimizer.reloadMeasure(measure);
   }
 
   static boolean shouldPersistMeasure(Resource resource, Measure measure) {
+    return shouldPersistMeasure(resource, measure, measure.getData());
+  }
+
+  /**
+   * @param data the data of the measure, which is not in memory anymore when it has been spilled to disk
+   */
+  static boolean shouldPersistMeasure(Resource resource, Measure measure, String data) {
     Metric metric = measure.getMetric();
     return measure.getPersistenceMode().useDatabase() &&
-        !(ResourceUtils.isEntity(resource) && isBestValueMeasure(measure, metric));
+        !(ResourceUtils.isEntity(resource) && data == null && isBestValueMeasure(measure, metric));
   }
 
   static boolean isBestValueMeasure(Measure measure, Metric metric) {
@@ -120,18 +142,34 @@ public final class MeasurePersister {
       Resource resource = entry.getKey();
       Snapshot snapshot = resourcePersister.getSnapshot(entry.getKey());
       for (Measure measure : entry.getValue()) {
-        if (shouldPersistMeasure(resource, measure)) {
+        // the data of files can have been spilled to disk since the measure was saved
+        String data = spill.getData(resource, measure);
+        if (shouldPersistMeasure(resource, measure, data)) {
           MeasureModel model = createModel(measure);
+          model.setData(data);
           model.setSnapshotId(snapshot.getId());
-          model.save(session);
+          insert(model);
         }
       }
     }
 
+    batchInserter.flush();
     session.commit();
     unsavedMeasuresByResource.clear();
   }
 
+  private void insert(MeasureModel model) {
+    if (batchInserter.isEnabled()) {
+      batchInserter.insertMeasure(model);
+    } else {
+      model.save(session);
+    }
+  }
+
+  public void flush() {
+    batchInserter.flush();
+  }
+
   MeasureModel createModel(Measure measure) {
     return mergeModel(measure, new MeasureModel());
   }
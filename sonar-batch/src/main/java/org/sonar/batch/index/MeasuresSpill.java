@@ -0,0 +1,312 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.batch.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.PersistenceMode;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.ResourceUtils;
+import org.sonar.api.utils.SonarException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the data of the measures of files under a memory budget. When the budget is exceeded, the data of the least recently
+ * used files are written to a temporary file and are reloaded when the measures of these files are requested again.
+ * <p/>
+ * The files of the same directory are never spilled while one of them is used, because decorators of the directory read
+ * the measures of all its files before using their data. The budget can therefore be exceeded by the data of the files of
+ * one directory. Measures waiting to be saved in database are not reloaded, {@link MeasurePersister} reads their data
+ * with {@link #getData(Resource, Measure)}.
+ * <p/>
+ * When decorators are executed by several threads, a thread must not spill the buckets read by the others. The buckets
+ * in use are pinned by {@link org.sonar.batch.phases.DecoratorsExecutor} and are never spilled until they are unpinned.
+ * <p/>
+ * The data of measures persisted in database are not managed here, they are already evicted by {@link MemoryOptimizer}.
+ *
+ * @since 2.8
+ */
+public class MeasuresSpill {
+
+  /**
+   * Maximum size in Mb of the data of file measures kept in memory. Zero disables the spill.
+   */
+  public static final String MEMORY_BUDGET_PROPERTY = "sonar.batch.measures.memoryBudget";
+  public static final int MEMORY_BUDGET_DEFAULT_VALUE = 0;
+
+  /**
+   * Data smaller than this number of characters, like alert levels, are always kept in memory.
+   */
+  static final int MIN_SPILLED_DATA_LENGTH = 256;
+
+  private static final Logger LOG = LoggerFactory.getLogger(MeasuresSpill.class);
+  private static final String ENCODING = "UTF-8";
+
+  private final long budget;
+  private long inMemory = 0;
+
+  // size in characters of the data kept in memory, ordered from the least to the most recently used bucket
+  private LinkedHashMap<Bucket, Long> sizeByBucket = new LinkedHashMap<Bucket, Long>(16, 0.75f, true);
+  private Map<Resource, SpilledMeasures> spilledByResource = Maps.newHashMap();
+  // number of threads using each resource
+  private Map<Resource, Integer> pinCounts = Maps.newHashMap();
+
+  private File file;
+  private RandomAccessFile randomAccessFile;
+  private long fileLength = 0;
+
+  public MeasuresSpill(Configuration configuration) {
+    this(configuration.getLong(MEMORY_BUDGET_PROPERTY, MEMORY_BUDGET_DEFAULT_VALUE) * 1024L * 1024L);
+  }
+
+  /**
+   * @param budget maximum number of characters of data kept in memory
+   */
+  MeasuresSpill(long budget) {
+    this.budget = budget;
+  }
+
+  public boolean isEnabled() {
+    return budget > 0;
+  }
+
+  /**
+   * Reloads the spilled data of the bucket, then evicts the data of the least recently used buckets if the budget is exceeded.
+   */
+  public synchronized void touch(Bucket bucket) {
+    if (!isEnabled() || !ResourceUtils.isEntity(bucket.getResource())) {
+      return;
+    }
+    reload(bucket);
+    Long previousSize = sizeByBucket.put(bucket, dataLength(bucket));
+    inMemory += sizeByBucket.get(bucket) - (previousSize == null ? 0L : previousSize);
+
+    Iterator<Map.Entry<Bucket, Long>> it = sizeByBucket.entrySet().iterator();
+    while (inMemory > budget && it.hasNext()) {
+      Map.Entry<Bucket, Long> entry = it.next();
+      if (entry.getKey() != bucket && !isSibling(entry.getKey(), bucket) && !pinCounts.containsKey(entry.getKey().getResource())) {
+        spill(entry.getKey());
+        inMemory -= entry.getValue();
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * The data of the resource is not spilled until it's unpinned as many times as it has been pinned.
+   */
+  public synchronized void pin(Resource resource) {
+    Integer count = pinCounts.get(resource);
+    pinCounts.put(resource, count == null ? 1 : count + 1);
+  }
+
+  public synchronized void unpin(Resource resource) {
+    Integer count = pinCounts.get(resource);
+    if (count == null || count <= 1) {
+      pinCounts.remove(resource);
+    } else {
+      pinCounts.put(resource, count - 1);
+    }
+  }
+
+  /**
+   * Forgets all the buckets. The temporary file is reused by the next module.
+   */
+  public synchronized void clear() {
+    sizeByBucket.clear();
+    spilledByResource.clear();
+    pinCounts.clear();
+    inMemory = 0;
+    fileLength = 0;
+  }
+
+  public synchronized void stop() {
+    clear();
+    if (randomAccessFile != null) {
+      try {
+        randomAccessFile.close();
+      } catch (IOException e) {
+        LOG.warn("Fail to close the file " + file, e);
+      }
+      randomAccessFile = null;
+      FileUtils.deleteQuietly(file);
+    }
+  }
+
+  /**
+   * @return the data of the measure of the given resource, read from the temporary file if it has been spilled. The
+   * measure is not reloaded.
+   */
+  public synchronized String getData(Resource resource, Measure measure) {
+    SpilledMeasures spilled = spilledByResource.get(resource);
+    if (spilled != null) {
+      for (int i = 0; i < spilled.measures.size(); i++) {
+        if (spilled.measures.get(i) == measure) {
+          return decode(read(spilled.offsets[i], spilled.lengths[i]));
+        }
+      }
+    }
+    return measure.getData();
+  }
+
+  synchronized boolean isSpilled(Bucket bucket) {
+    return spilledByResource.containsKey(bucket.getResource());
+  }
+
+  synchronized long getMemoryUsage() {
+    return inMemory;
+  }
+
+  private static long dataLength(Bucket bucket) {
+    long length = 0L;
+    for (Measure measure : bucket.getAllMeasures()) {
+      if (isSpillable(measure)) {
+        length += measure.getData().length();
+      }
+    }
+    return length;
+  }
+
+  private static boolean isSibling(Bucket bucket, Bucket other) {
+    return other.getParent() != null && bucket.getParent() == other.getParent();
+  }
+
+  private static boolean isSpillable(Measure measure) {
+    return measure.hasData() && measure.getData().length() >= MIN_SPILLED_DATA_LENGTH
+        && !PersistenceMode.DATABASE.equals(measure.getPersistenceMode());
+  }
+
+  private void spill(Bucket bucket) {
+    SpilledMeasures spilled = new SpilledMeasures();
+    for (Measure measure : bucket.getAllMeasures()) {
+      if (isSpillable(measure)) {
+        byte[] bytes = encode(measure.getData());
+        write(bytes);
+        spilled.add(measure, fileLength, bytes.length);
+        fileLength += bytes.length;
+        measure.unsetData();
+      }
+    }
+    if (!spilled.measures.isEmpty()) {
+      spilledByResource.put(bucket.getResource(), spilled);
+    }
+  }
+
+  private void reload(Bucket bucket) {
+    SpilledMeasures spilled = spilledByResource.remove(bucket.getResource());
+    if (spilled != null) {
+      for (int i = 0; i < spilled.measures.size(); i++) {
+        spilled.measures.get(i).setData(decode(read(spilled.offsets[i], spilled.lengths[i])));
+      }
+    }
+  }
+
+  private void write(byte[] bytes) {
+    try {
+      FileChannel channel = getChannel();
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      long position = fileLength;
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+    } catch (IOException e) {
+      throw new SonarException("Fail to write measures to " + file, e);
+    }
+  }
+
+  private byte[] read(long offset, int length) {
+    try {
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      FileChannel channel = getChannel();
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, offset + buffer.position()) < 0) {
+          throw new SonarException("Unexpected end of file " + file);
+        }
+      }
+      return buffer.array();
+    } catch (IOException e) {
+      throw new SonarException("Fail to read measures from " + file, e);
+    }
+  }
+
+  private FileChannel getChannel() throws IOException {
+    if (randomAccessFile == null) {
+      file = File.createTempFile("sonar-measures", ".spill");
+      file.deleteOnExit();
+      randomAccessFile = new RandomAccessFile(file, "rw");
+      LOG.info("Measures exceeding the memory budget are stored in " + file.getAbsolutePath());
+    }
+    return randomAccessFile.getChannel();
+  }
+
+  private static byte[] encode(String data) {
+    try {
+      return data.getBytes(ENCODING);
+    } catch (IOException e) {
+      throw new SonarException(e);
+    }
+  }
+
+  private static String decode(byte[] bytes) {
+    try {
+      return new String(bytes, ENCODING);
+    } catch (IOException e) {
+      throw new SonarException(e);
+    }
+  }
+
+  /**
+   * Positions of the spilled data in the temporary file, stored in primitive arrays.
+   */
+  private static final class SpilledMeasures {
+    private List<Measure> measures = Lists.newArrayList();
+    private long[] offsets = new long[4];
+    private int[] lengths = new int[4];
+
+    private void add(Measure measure, long offset, int length) {
+      int index = measures.size();
+      if (index == offsets.length) {
+        long[] newOffsets = new long[index * 2];
+        int[] newLengths = new int[index * 2];
+        System.arraycopy(offsets, 0, newOffsets, 0, index);
+        System.arraycopy(lengths, 0, newLengths, 0, index);
+        offsets = newOffsets;
+        lengths = newLengths;
+      }
+      measures.add(measure);
+      offsets[index] = offset;
+      lengths[index] = length;
+    }
+  }
+}
@@ -45,6 +45,8 @@ public class MemoryOptimizer implements SensorExecutionHandler, DecoratorExecuti
   private List<Measure> loadedMeasures = Lists.newArrayList();
   private Map<Long, Integer> dataIdByMeasureId = Maps.newHashMap();
   private DatabaseSession session;
+  private int runningSensors = 0;
+  private int runningDecorators = 0;
 
   public MemoryOptimizer(DatabaseSession session) {
     this.session = session;
@@ -53,7 +55,7 @@ public class MemoryOptimizer implements SensorExecutionHandler, DecoratorExecuti
   /**
    * Remove data of a database measure from memory.
    */
-  public void evictDataMeasure(Measure measure, MeasureModel model) {
+  public synchronized void evictDataMeasure(Measure measure, MeasureModel model) {
     if (PersistenceMode.DATABASE.equals(measure.getPersistenceMode())) {
       MeasureData data = model.getMeasureData();
       if (data != null && data.getId() != null) {
@@ -66,7 +68,7 @@ public class MemoryOptimizer implements SensorExecutionHandler, DecoratorExecuti
     }
   }
 
-  public Measure reloadMeasure(Measure measure) {
+  public synchronized Measure reloadMeasure(Measure measure) {
     if (measure.getId() != null && dataIdByMeasureId.containsKey(measure.getId()) && !measure.hasData()) {
       Integer dataId = dataIdByMeasureId.get(measure.getId());
       MeasureData data = session.getSingleResult(MeasureData.class, "id", dataId);
@@ -84,7 +86,7 @@ public class MemoryOptimizer implements SensorExecutionHandler, DecoratorExecuti
     return measure;
   }
 
-  public void flushMemory() {
+  public synchronized void flushMemory() {
     if (LOG.isDebugEnabled() && !loadedMeasures.isEmpty()) {
       LOG.debug("Flush " + loadedMeasures.size() + " data measures from memory: ");
     }
@@ -94,25 +96,36 @@ public class MemoryOptimizer implements SensorExecutionHandler, DecoratorExecuti
     loadedMeasures.clear();
   }
 
-  boolean isTracked(Long measureId) {
+  synchronized boolean isTracked(Long measureId) {
     return dataIdByMeasureId.get(measureId) != null;
   }
 
-  public void onSensorExecution(SensorExecutionEvent event) {
-    if (event.isEnd()) {
+  /**
+   * When sensors are executed concurrently, the session is committed only when no more sensors are running.
+   */
+  public synchronized void onSensorExecution(SensorExecutionEvent event) {
+    if (event.isStart()) {
+      runningSensors++;
+    } else if (--runningSensors == 0) {
       flushMemory();
       session.commit();
     }
   }
 
-  public void onDecoratorExecution(DecoratorExecutionEvent event) {
-    if (event.isEnd()) {
+  /**
+   * When decorators are executed concurrently, the reloaded data measures are kept until no more decorators are running.
+   */
+  public synchronized void onDecoratorExecution(DecoratorExecutionEvent event) {
+    if (event.isStart()) {
+      runningDecorators++;
+    } else if (--runningDecorators == 0) {
       flushMemory();
     }
   }
 
   public void onDecoratorsPhase(DecoratorsPhaseEvent event) {
     if (event.isEnd()) {
+      flushMemory();
       session.commit();
     }
   }
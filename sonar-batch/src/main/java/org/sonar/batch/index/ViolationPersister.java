@@ -32,11 +32,14 @@ public final class ViolationPersister {
   private DatabaseSession session;
   private ResourcePersister resourcePersister;
   private RuleFinder ruleFinder;
+  private JdbcBatchInserter batchInserter;
 
-  public ViolationPersister(DatabaseSession session, ResourcePersister resourcePersister, RuleFinder ruleFinder) {
+  public ViolationPersister(DatabaseSession session, ResourcePersister resourcePersister, RuleFinder ruleFinder,
+                            JdbcBatchInserter batchInserter) {
     this.session = session;
     this.resourcePersister = resourcePersister;
     this.ruleFinder = ruleFinder;
+    this.batchInserter = batchInserter;
   }
 
   void saveViolation(Project project, Violation violation) {
@@ -57,11 +60,16 @@ public final class ViolationPersister {
     }
     model.setSnapshotId(snapshot.getId());
     model.setChecksum(checksum);
-    session.save(model);
+    if (batchInserter.isEnabled()) {
+      // the permanent id is set with the pre-allocated id, so a single insert is executed
+      batchInserter.insertViolation(model);
 
-    if (model.getPermanentId()==null) {
-      model.setPermanentId(model.getId());
+    } else {
       session.save(model);
+      if (model.getPermanentId()==null) {
+        model.setPermanentId(model.getId());
+        session.save(model);
+      }
     }
 
     // the following fields can have been changed
@@ -70,7 +78,11 @@ public final class ViolationPersister {
     violation.setSwitchedOff(model.isSwitchedOff());
   }
   
+  /**
+   * Violations are read from database by other decorators (see ReviewsDecorator), so buffered violations are flushed too.
+   */
   public void commit() {
+    batchInserter.flush();
     session.commit();
   }
 
@@ -20,8 +20,11 @@
 package org.sonar.batch.phases;
 
 import com.google.common.collect.Lists;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.batch.BatchExtensionDictionnary;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
@@ -31,26 +34,73 @@ import org.sonar.api.utils.SonarException;
 import org.sonar.batch.DecoratorsSelector;
 import org.sonar.batch.DefaultDecoratorContext;
 import org.sonar.batch.events.EventBus;
+import org.sonar.batch.index.MeasuresSpill;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class DecoratorsExecutor implements BatchComponent {
 
+  /**
+   * Number of threads used to decorate sibling resources. The value 1 (default) keeps the sequential execution.
+   * When greater than 1, a decorator instance is never executed by two threads at the same time. Only the decorators
+   * annotated with {@link ConcurrentExecution} are executed concurrently with other decorators. The others hold the lock
+   * of the index, which is also held by all the index methods, so the database session is never used by two threads.
+   * The resources being decorated and their children are pinned in {@link MeasuresSpill}, so their data is not spilled
+   * by the other threads.
+   *
+   * @since 2.8
+   */
+  public static final String THREADS_PROPERTY = "sonar.batch.decorators.threads";
+  public static final int THREADS_DEFAULT_VALUE = 1;
+
   private DecoratorsSelector decoratorsSelector;
   private SonarIndex index;
   private EventBus eventBus;
+  private MeasuresSpill spill;
+  private int threads;
+
+  /**
+   * for unit tests
+   */
+  DecoratorsExecutor(BatchExtensionDictionnary extensionDictionnary, SonarIndex index, EventBus eventBus) {
+    this(extensionDictionnary, index, eventBus, THREADS_DEFAULT_VALUE);
+  }
+
+  /**
+   * for unit tests
+   */
+  DecoratorsExecutor(BatchExtensionDictionnary extensionDictionnary, SonarIndex index, EventBus eventBus, int threads) {
+    this(extensionDictionnary, index, eventBus, new MeasuresSpill(new BaseConfiguration()), threads);
+  }
+
+  public DecoratorsExecutor(BatchExtensionDictionnary extensionDictionnary, SonarIndex index, EventBus eventBus, MeasuresSpill spill,
+                            Configuration configuration) {
+    this(extensionDictionnary, index, eventBus, spill, configuration.getInt(THREADS_PROPERTY, THREADS_DEFAULT_VALUE));
+  }
 
-  public DecoratorsExecutor(BatchExtensionDictionnary extensionDictionnary, SonarIndex index, EventBus eventBus) {
+  DecoratorsExecutor(BatchExtensionDictionnary extensionDictionnary, SonarIndex index, EventBus eventBus, MeasuresSpill spill, int threads) {
     this.decoratorsSelector = new DecoratorsSelector(extensionDictionnary);
     this.index = index;
     this.eventBus = eventBus;
+    this.spill = spill;
+    this.threads = threads;
   }
 
   public void execute(Project project) {
     Collection<Decorator> decorators = decoratorsSelector.select(project);
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), true));
-    decorateResource(project, decorators, true);
+    if (threads > 1) {
+      new ParallelDecoration(decorators).execute(project);
+    } else {
+      decorateResource(project, decorators, true);
+    }
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), false));
   }
 
@@ -72,15 +122,167 @@ public class DecoratorsExecutor implements BatchComponent {
   }
 
   void executeDecorator(Decorator decorator, DefaultDecoratorContext context, Resource resource) {
+    eventBus.fireEvent(new DecoratorExecutionEvent(decorator, true));
     try {
-      eventBus.fireEvent(new DecoratorExecutionEvent(decorator, true));
       decorator.decorate(resource, context);
-      eventBus.fireEvent(new DecoratorExecutionEvent(decorator, false));
-      
+
     } catch (Exception e) {
       // SONAR-2278 the resource should not be lost in exception stacktrace.
       throw new SonarException("Fail to decorate '" + resource + "'", e);
+
+    } finally {
+      // the handlers counting the running decorators, like MemoryOptimizer, must be notified even on failure
+      eventBus.fireEvent(new DecoratorExecutionEvent(decorator, false));
+    }
+  }
+
+  /**
+   * Decorates the resource tree from the leaves to the root. A resource is submitted to the thread pool as soon as
+   * all its children are decorated, so workers never wait for each other.
+   */
+  private class ParallelDecoration {
+    private Collection<Decorator> decorators;
+    private ExecutorService pool;
+    private CountDownLatch rootDone = new CountDownLatch(1);
+    private AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+
+    ParallelDecoration(Collection<Decorator> decorators) {
+      this.decorators = decorators;
+    }
+
+    void execute(Project project) {
+      Node root = new Node(project, null, true);
+      List<Node> leaves = Lists.newArrayList();
+      buildTree(root, leaves);
+
+      pool = Executors.newFixedThreadPool(threads);
+      try {
+        for (Node leaf : leaves) {
+          submit(leaf);
+        }
+        rootDone.await();
+
+      } catch (InterruptedException e) {
+        throw new SonarException("Decoration has been interrupted", e);
+
+      } finally {
+        pool.shutdownNow();
+        awaitTermination();
+      }
+      if (failure.get() != null) {
+        throw failure.get();
+      }
+    }
+
+    /**
+     * On failure, the decorators being executed by the other threads must be finished before leaving the phase.
+     */
+    private void awaitTermination() {
+      try {
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private void buildTree(Node node, List<Node> leaves) {
+      for (Resource child : index.getChildren(node.resource)) {
+        boolean isModule = (child instanceof Project);
+        Node childNode = new Node(child, node, !isModule);
+        node.children.add(childNode);
+        buildTree(childNode, leaves);
+      }
+      node.pendingChildren.set(node.children.size());
+      if (node.children.isEmpty()) {
+        leaves.add(node);
+      }
+    }
+
+    private void executeDecorators(Node node, DefaultDecoratorContext context) {
+      for (Decorator decorator : decorators) {
+        synchronized (decorator) {
+          if (decorator.getClass().isAnnotationPresent(ConcurrentExecution.class)) {
+            executeDecorator(decorator, context, node.resource);
+          } else {
+            synchronized (index) {
+              executeDecorator(decorator, context, node.resource);
+            }
+          }
+        }
+      }
+    }
+
+    private void pin(Node node) {
+      spill.pin(node.resource);
+      for (Node child : node.children) {
+        spill.pin(child.resource);
+      }
+    }
+
+    private void unpin(Node node) {
+      spill.unpin(node.resource);
+      for (Node child : node.children) {
+        spill.unpin(child.resource);
+      }
+    }
+
+    private void submit(final Node node) {
+      pool.execute(new Runnable() {
+        public void run() {
+          try {
+            decorate(node);
+          } catch (Throwable e) {
+            // errors like NoClassDefFoundError must not hang the main thread
+            failure.compareAndSet(null, e instanceof RuntimeException ? (RuntimeException) e : new SonarException(e));
+            rootDone.countDown();
+          }
+        }
+      });
+    }
+
+    private void decorate(Node node) {
+      if (failure.get() != null) {
+        return;
+      }
+      List<DecoratorContext> childrenContexts = Lists.newArrayList();
+      for (Node child : node.children) {
+        childrenContexts.add(child.context);
+      }
+      DefaultDecoratorContext context = new DefaultDecoratorContext(node.resource, index, childrenContexts);
+      if (node.executeDecorators) {
+        pin(node);
+        try {
+          executeDecorators(node, context);
+        } finally {
+          unpin(node);
+        }
+      }
+      node.children = null;
+
+      if (node.parent == null) {
+        node.context = context;
+        rootDone.countDown();
+      } else {
+        node.context = context.setReadOnly(true);
+        if (node.parent.pendingChildren.decrementAndGet() == 0) {
+          submit(node.parent);
+        }
+      }
     }
   }
 
+  private static final class Node {
+    private Resource resource;
+    private Node parent;
+    private boolean executeDecorators;
+    private List<Node> children = Lists.newArrayList();
+    private AtomicInteger pendingChildren = new AtomicInteger();
+    private volatile DefaultDecoratorContext context;
+
+    private Node(Resource resource, Node parent, boolean executeDecorators) {
+      this.resource = resource;
+      this.parent = parent;
+      this.executeDecorators = executeDecorators;
+    }
+  }
 }
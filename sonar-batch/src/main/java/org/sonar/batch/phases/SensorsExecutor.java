@@ -20,55 +20,235 @@
 package org.sonar.batch.phases;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.commons.configuration.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.batch.BatchExtensionDictionnary;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.SonarIndex;
 import org.sonar.api.batch.maven.DependsUponMavenPlugin;
 import org.sonar.api.batch.maven.MavenPluginHandler;
 import org.sonar.api.resources.Project;
+import org.sonar.api.utils.SonarException;
 import org.sonar.api.utils.TimeProfiler;
 import org.sonar.batch.MavenPluginExecutor;
 import org.sonar.batch.events.EventBus;
+import org.sonar.jpa.session.DatabaseSessionFactory;
 
 import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class SensorsExecutor implements BatchComponent {
   private static final Logger LOG = LoggerFactory.getLogger(SensorsExecutor.class);
 
+  /**
+   * Number of threads used to execute the sensors which do not depend on each other. The value 1 (default) keeps the
+   * sequential execution. Dependencies are declared with {@link org.sonar.api.batch.DependsUpon}, {@link org.sonar.api.batch.DependedUpon}
+   * and {@link org.sonar.api.batch.Phase}. Only the sensors annotated with {@link ConcurrentExecution} are executed concurrently
+   * with other sensors. The others hold the lock of the index, which is also held by all the index methods, so the database
+   * session is never used by two threads. The session opened by a thread of the pool, for example to find rules, is closed
+   * when the sensor is executed.
+   *
+   * @since 2.8
+   */
+  public static final String THREADS_PROPERTY = "sonar.batch.sensors.threads";
+  public static final int THREADS_DEFAULT_VALUE = 1;
+
   private Collection<Sensor> sensors;
   private MavenPluginExecutor mavenExecutor;
   private EventBus eventBus;
+  private SonarIndex index;
+  private DatabaseSessionFactory sessionFactory;
+  private int threads;
+
+  /**
+   * for unit tests
+   */
+  SensorsExecutor(BatchExtensionDictionnary selector, Project project, MavenPluginExecutor mavenExecutor, EventBus eventBus) {
+    this(selector, project, mavenExecutor, eventBus, null, null, THREADS_DEFAULT_VALUE);
+  }
+
+  public SensorsExecutor(BatchExtensionDictionnary selector, Project project, MavenPluginExecutor mavenExecutor, EventBus eventBus,
+                         SonarIndex index, DatabaseSessionFactory sessionFactory, Configuration configuration) {
+    this(selector, project, mavenExecutor, eventBus, index, sessionFactory, configuration.getInt(THREADS_PROPERTY, THREADS_DEFAULT_VALUE));
+  }
 
-  public SensorsExecutor(BatchExtensionDictionnary selector, Project project, MavenPluginExecutor mavenExecutor, EventBus eventBus) {
+  SensorsExecutor(BatchExtensionDictionnary selector, Project project, MavenPluginExecutor mavenExecutor, EventBus eventBus,
+                  SonarIndex index, DatabaseSessionFactory sessionFactory, int threads) {
     this.sensors = selector.select(Sensor.class, project, true);
     this.mavenExecutor = mavenExecutor;
     this.eventBus = eventBus;
+    this.index = index;
+    this.sessionFactory = sessionFactory;
+    this.threads = threads;
   }
 
   public void execute(Project project, SensorContext context) {
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), true));
 
-    for (Sensor sensor : sensors) {
-      executeMavenPlugin(project, sensor);
+    if (threads > 1 && sensors.size() > 1) {
+      new ParallelExecution(project, context).execute();
+    } else {
+      for (Sensor sensor : sensors) {
+        executeSensor(project, context, sensor);
+      }
+    }
+
+    eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), false));
+  }
+
+  private void executeSensor(Project project, SensorContext context, Sensor sensor) {
+    executeMavenPlugin(project, sensor);
 
-      eventBus.fireEvent(new SensorExecutionEvent(sensor, true));
+    eventBus.fireEvent(new SensorExecutionEvent(sensor, true));
+    try {
       sensor.analyse(project, context);
+
+    } finally {
+      // the handlers counting the running sensors, like MemoryOptimizer, must be notified even on failure
       eventBus.fireEvent(new SensorExecutionEvent(sensor, false));
     }
+  }
 
-    eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), false));
+  /**
+   * A sensor is submitted to the thread pool as soon as all the sensors it depends upon are executed. The counters of
+   * prerequisites and the submitted sensors are guarded by <code>pendingPrerequisites</code>.
+   */
+  private class ParallelExecution {
+    private Project project;
+    private SensorContext context;
+    private SensorsGraph graph;
+    private Map<Sensor, Integer> pendingPrerequisites;
+    private Set<Sensor> submittedSensors = Sets.newHashSet();
+    private ExecutorService pool;
+    private CountDownLatch done = new CountDownLatch(sensors.size());
+    private AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+
+    ParallelExecution(Project project, SensorContext context) {
+      this.project = project;
+      this.context = context;
+      this.graph = new SensorsGraph(sensors);
+      this.pendingPrerequisites = graph.countPrerequisites();
+    }
+
+    void execute() {
+      pool = Executors.newFixedThreadPool(threads);
+      try {
+        // the roots are listed before submitting any sensor, as the workers update the counters
+        synchronized (pendingPrerequisites) {
+          for (Sensor sensor : sensors) {
+            if (pendingPrerequisites.get(sensor) == 0) {
+              submit(sensor);
+            }
+          }
+        }
+        done.await();
+
+      } catch (InterruptedException e) {
+        throw new SonarException("Execution of sensors has been interrupted", e);
+
+      } finally {
+        pool.shutdownNow();
+        awaitTermination();
+      }
+      if (failure.get() != null) {
+        throw failure.get();
+      }
+    }
+
+    /**
+     * On failure, the sensors being executed by the other threads must be finished before leaving the phase.
+     */
+    private void awaitTermination() {
+      try {
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Must be called while holding <code>pendingPrerequisites</code>. A sensor is never submitted twice.
+     */
+    private void submit(final Sensor sensor) {
+      if (!submittedSensors.add(sensor)) {
+        return;
+      }
+      pool.execute(new Runnable() {
+        public void run() {
+          boolean succeeded = false;
+          try {
+            if (sensor.getClass().isAnnotationPresent(ConcurrentExecution.class)) {
+              executeSensor(project, context, sensor);
+            } else {
+              synchronized (index) {
+                executeSensor(project, context, sensor);
+              }
+            }
+            submitDependents(sensor);
+            succeeded = true;
+
+          } catch (Throwable e) {
+            // errors like NoClassDefFoundError must not hang the main thread
+            failure.compareAndSet(null, e instanceof RuntimeException ? (RuntimeException) e : new SonarException(e));
+
+          } finally {
+            try {
+              sessionFactory.clear();
+            } finally {
+              release(succeeded);
+            }
+          }
+        }
+      });
+    }
+
+    private void submitDependents(Sensor sensor) {
+      synchronized (pendingPrerequisites) {
+        for (Sensor dependent : graph.getDependents(sensor)) {
+          int pending = pendingPrerequisites.get(dependent) - 1;
+          pendingPrerequisites.put(dependent, pending);
+          if (pending == 0 && failure.get() == null) {
+            submit(dependent);
+          }
+        }
+      }
+    }
+
+    /**
+     * On failure, the main thread is unlocked without waiting for the other sensors.
+     */
+    private void release(boolean succeeded) {
+      if (succeeded) {
+        done.countDown();
+      } else {
+        while (done.getCount() > 0) {
+          done.countDown();
+        }
+      }
+    }
   }
 
   private void executeMavenPlugin(Project project, Sensor sensor) {
     if (sensor instanceof DependsUponMavenPlugin) {
       MavenPluginHandler handler = ((DependsUponMavenPlugin) sensor).getMavenPluginHandler(project);
       if (handler != null) {
-        TimeProfiler profiler = new TimeProfiler(LOG).start("Execute maven plugin " + handler.getArtifactId());
-        mavenExecutor.execute(project, handler);
-        profiler.stop();
+        // Maven executions are not thread-safe
+        synchronized (mavenExecutor) {
+          TimeProfiler profiler = new TimeProfiler(LOG).start("Execute maven plugin " + handler.getArtifactId());
+          mavenExecutor.execute(project, handler);
+          profiler.stop();
+        }
       }
     }
   }
@@ -0,0 +1,134 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.batch.phases;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import org.picocontainer.MutablePicoContainer;
+import org.sonar.api.batch.BatchExtensionDictionnary;
+import org.sonar.api.batch.Phase;
+import org.sonar.api.batch.Sensor;
+
+import java.util.*;
+
+/**
+ * Dependencies between sensors, computed from the same metadata than {@link BatchExtensionDictionnary#sort(java.util.Collection)} :
+ * {@link org.sonar.api.batch.DependsUpon}, {@link org.sonar.api.batch.DependedUpon} and {@link Phase}. Intermediate objects
+ * like metrics or string keys are walked through, so only the sensors remain.
+ *
+ * @since 2.8
+ */
+final class SensorsGraph {
+
+  private final List<Sensor> sensors;
+  private final Map<Sensor, Set<Sensor>> prerequisites = new IdentityHashMap<Sensor, Set<Sensor>>();
+
+  SensorsGraph(Collection<Sensor> sensors) {
+    this.sensors = Lists.newArrayList(sensors);
+    Metadata dictionnary = new Metadata();
+
+    // edges from an object to the objects which must be executed before
+    SetMultimap<Object, Object> before = HashMultimap.create();
+    for (Sensor sensor : sensors) {
+      for (Object dependency : dictionnary.dependencies(sensor)) {
+        before.put(sensor, dependency);
+      }
+      for (Object dependent : dictionnary.getDependents(sensor)) {
+        before.put(dependent, sensor);
+      }
+    }
+
+    Map<Sensor, Phase.Name> phases = new IdentityHashMap<Sensor, Phase.Name>();
+    for (Sensor sensor : sensors) {
+      phases.put(sensor, dictionnary.phase(sensor));
+    }
+
+    for (Sensor sensor : sensors) {
+      Set<Sensor> result = Sets.newHashSet();
+      collectSensors(sensor, before, result, Sets.newHashSet());
+      for (Sensor other : sensors) {
+        if (phases.get(other).compareTo(phases.get(sensor)) < 0) {
+          result.add(other);
+        }
+      }
+      result.remove(sensor);
+      prerequisites.put(sensor, result);
+    }
+  }
+
+  private void collectSensors(Object node, SetMultimap<Object, Object> before, Set<Sensor> result, Set<Object> visited) {
+    for (Object previous : before.get(node)) {
+      if (visited.add(previous)) {
+        if (previous instanceof Sensor && sensors.contains(previous)) {
+          result.add((Sensor) previous);
+        }
+        collectSensors(previous, before, result, visited);
+      }
+    }
+  }
+
+  /**
+   * @return the sensors which must be executed before the given sensor, transitively
+   */
+  Set<Sensor> getPrerequisites(Sensor sensor) {
+    return prerequisites.get(sensor);
+  }
+
+  /**
+   * @return the sensors which can be executed only after the given sensor
+   */
+  List<Sensor> getDependents(Sensor sensor) {
+    List<Sensor> result = Lists.newArrayList();
+    for (Sensor other : sensors) {
+      if (prerequisites.get(other).contains(sensor)) {
+        result.add(other);
+      }
+    }
+    return result;
+  }
+
+  Map<Sensor, Integer> countPrerequisites() {
+    Map<Sensor, Integer> result = Maps.newHashMap();
+    for (Sensor sensor : sensors) {
+      result.put(sensor, prerequisites.get(sensor).size());
+    }
+    return result;
+  }
+
+  /**
+   * Reads the annotations of extensions with the protected methods of the dictionnary, which do not use the container.
+   */
+  private static final class Metadata extends BatchExtensionDictionnary {
+    private Metadata() {
+      super((MutablePicoContainer) null);
+    }
+
+    private List dependencies(Object extension) {
+      return getDependencies(extension);
+    }
+
+    private Phase.Name phase(Object extension) {
+      return evaluatePhase(extension);
+    }
+  }
+}
@@ -23,6 +23,7 @@ import org.junit.Test;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.MeasuresFilters;
 import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.RuleMeasure;
 import org.sonar.api.resources.JavaFile;
 import org.sonar.api.resources.JavaPackage;
 import org.sonar.api.rules.Rule;
@@ -30,6 +31,7 @@ import org.sonar.api.rules.Violation;
 import org.sonar.api.utils.SonarException;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.core.IsNot.not;
 import static org.junit.Assert.*;
 import static org.junit.internal.matchers.IsCollectionContaining.hasItem;
@@ -86,6 +88,43 @@ public class BucketTest {
     assertThat(fileBucket.getMeasures(MeasuresFilters.metric(ncloc)).getValue(), is(500.0));
   }
 
+  @Test
+  public void shouldAddManyMeasures() {
+    Bucket fileBucket = new Bucket(javaFile);
+    for (int i = 0; i < 20; i++) {
+      fileBucket.addMeasure(new Measure(new Metric("metric" + i)).setValue((double) i));
+    }
+
+    assertThat(fileBucket.getMeasures(MeasuresFilters.all()).size(), is(20));
+    assertThat(fileBucket.getMeasures(MeasuresFilters.metric("metric13")).getValue(), is(13.0));
+  }
+
+  @Test
+  public void shouldGetMeasuresOfMetricOnBigBuckets() {
+    Bucket packageBucket = new Bucket(javaPackage);
+    Metric violations = new Metric("violations");
+    packageBucket.addMeasure(new Measure(violations).setValue(300.0));
+    for (int i = 0; i < 100; i++) {
+      packageBucket.addMeasure(new Measure(new Metric("metric" + i)).setValue((double) i));
+      packageBucket.addMeasure(RuleMeasure.createForRule(violations, Rule.create("checkstyle", "rule" + i, "Rule " + i), 3.0));
+    }
+
+    assertThat(packageBucket.getMeasures(MeasuresFilters.all()).size(), is(201));
+    assertThat(packageBucket.getMeasures(MeasuresFilters.metric("metric13")).getValue(), is(13.0));
+    assertThat(packageBucket.getMeasures(MeasuresFilters.metric(violations)).getValue(), is(300.0));
+    assertThat(packageBucket.getMeasures(MeasuresFilters.rules(violations)).size(), is(100));
+    assertThat(packageBucket.getMeasures(MeasuresFilters.metric("unknown")), nullValue());
+  }
+
+  @Test(expected = SonarException.class)
+  public void shouldFailIfAddingSameMeasuresOnBigBuckets() {
+    Bucket packageBucket = new Bucket(javaPackage);
+    for (int i = 0; i < 100; i++) {
+      packageBucket.addMeasure(new Measure(new Metric("metric" + i)).setValue((double) i));
+    }
+    packageBucket.addMeasure(new Measure(new Metric("metric13")).setValue(500.0));
+  }
+
   @Test(expected = SonarException.class)
   public void shouldFailIfAddingSameMeasures() {
     Bucket fileBucket = new Bucket(javaFile);
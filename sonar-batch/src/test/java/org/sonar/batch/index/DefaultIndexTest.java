@@ -29,6 +29,7 @@ import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.batch.ResourceFilter;
+import org.sonar.api.design.Dependency;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.MeasuresFilters;
@@ -52,6 +53,9 @@ import org.sonar.batch.ProjectTree;
 import org.sonar.batch.ResourceFilters;
 import org.sonar.batch.ViolationFilters;
 
+import java.util.Collection;
+import java.util.Set;
+
 public class DefaultIndexTest {
 
   private DefaultIndex index = null;
@@ -123,6 +127,27 @@ public class DefaultIndexTest {
     assertThat(index.getParent(fileRef), is(Directory.class));
   }
 
+  @Test
+  public void shouldReturnCopiesOfCollections() {
+    Directory directory = new Directory("org/foo");
+    File file = new File("org/foo/Bar.java");
+    index.index(directory);
+    index.index(file, directory);
+    index.addDependency(new Dependency(file, directory));
+
+    Set<Resource> vertices = index.getVertices();
+    Collection<Dependency> outgoingEdges = index.getOutgoingEdges(file);
+    Set<Dependency> dependencies = index.getDependencies();
+    File other = new File("org/foo/Other.java");
+    index.index(other, directory);
+    index.addDependency(new Dependency(file, other));
+
+    assertThat(vertices.contains(other), is(false));
+    assertThat(outgoingEdges.size(), is(1));
+    assertThat(dependencies.size(), is(1));
+    assertThat(index.getOutgoingEdges(file).size(), is(2));
+  }
+
   @Test
   public void shouldIndexLibraryOutsideProjectTree() {
     Library lib = new Library("junit", "4.8");
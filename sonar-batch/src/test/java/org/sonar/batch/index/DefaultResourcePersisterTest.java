@@ -21,6 +21,7 @@ package org.sonar.batch.index;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.api.database.model.ResourceModel;
 import org.sonar.api.resources.JavaFile;
 import org.sonar.api.resources.JavaPackage;
 import org.sonar.api.resources.Library;
@@ -125,6 +126,38 @@ public class DefaultResourcePersisterTest extends AbstractDbUnitTestCase {
     assertThat(persister.getSnapshotsByResource().get(moduleA), notNullValue());
   }
 
+  @Test
+  public void shouldReuseExistingResourcesOfModule() {
+    setupData("shouldReuseExistingResourcesOfModule");
+
+    DefaultResourcePersister persister = new DefaultResourcePersister(getSession());
+    persister.saveProject(singleProject, null);
+    JavaPackage javaPackage = new JavaPackage("org.foo");
+    persister.saveResource(singleProject, javaPackage.setEffectiveKey("foo:org.foo"));
+    persister.saveResource(singleProject, new JavaFile("org.foo.Bar").setEffectiveKey("foo:org.foo.Bar"), javaPackage);
+    persister.clear();
+
+    assertThat(javaPackage.getId(), is(1002));
+    checkTables("shouldReuseExistingResourcesOfModule", "projects", "snapshots");
+  }
+
+  @Test
+  public void shouldNotPreloadResourcesOfBranches() {
+    setupData("shouldNotPreloadResourcesOfBranches");
+
+    DefaultResourcePersister persister = new DefaultResourcePersister(getSession());
+    Project project = new Project("foo");
+    project.setName("Foo").setLanguageKey("java").setAnalysisDate(singleProject.getAnalysisDate());
+    persister.saveProject(project, null);
+    JavaPackage javaPackage = new JavaPackage("org.foo");
+    persister.saveResource(project, javaPackage.setEffectiveKey("foo:org.foo"));
+    persister.clear();
+
+    assertThat(javaPackage.getId(), is(1002));
+    assertThat(getSession().getSingleResult(ResourceModel.class, "key", "foo:org.foo").getRootId(), is(1001));
+    assertThat(getSession().getSingleResult(ResourceModel.class, "key", "foo:BRANCH:org.foo").getRootId(), is(1003));
+  }
+
   @Test
   public void shouldUpdateExistingResource() {
     setupData("shouldUpdateExistingResource");
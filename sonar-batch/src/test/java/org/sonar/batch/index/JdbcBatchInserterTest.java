@@ -0,0 +1,186 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.batch.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.database.model.MeasureModel;
+import org.sonar.api.database.model.RuleFailureModel;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.PersistenceMode;
+import org.sonar.api.rules.RulePriority;
+import org.sonar.jpa.dialect.Derby;
+import org.sonar.jpa.dialect.PostgreSql;
+import org.sonar.jpa.session.DatabaseConnector;
+import org.sonar.jpa.test.AbstractDbUnitTestCase;
+
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JdbcBatchInserterTest extends AbstractDbUnitTestCase {
+
+  private JdbcBatchInserter inserter;
+
+  @Before
+  public void createInserter() {
+    setupData("shared");
+    inserter = new JdbcBatchInserter(getSession(), null, true) {
+      // the in-memory database does not support sequences
+      private Map<String, Long> nextIds = Maps.newHashMap();
+
+      @Override
+      List<Long> allocateIds(String tableName) {
+        Long nextId = nextIds.containsKey(tableName) ? nextIds.get(tableName) : 10L;
+        List<Long> ids = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+          ids.add(nextId++);
+        }
+        nextIds.put(tableName, nextId);
+        return ids;
+      }
+    };
+  }
+
+  @Test
+  public void shouldBeEnabledOnlyOnDatabasesWithSequences() {
+    DatabaseConnector connector = mock(DatabaseConnector.class);
+    when(connector.getDialect()).thenReturn(new PostgreSql());
+    assertThat(new JdbcBatchInserter(getSession(), connector, new PropertiesConfiguration()).isEnabled(), is(true));
+
+    PropertiesConfiguration conf = new PropertiesConfiguration();
+    conf.setProperty(JdbcBatchInserter.ENABLED_PROPERTY, "false");
+    assertThat(new JdbcBatchInserter(getSession(), connector, conf).isEnabled(), is(false));
+
+    when(connector.getDialect()).thenReturn(new Derby());
+    assertThat(new JdbcBatchInserter(getSession(), connector, new PropertiesConfiguration()).isEnabled(), is(false));
+  }
+
+  @Test
+  public void shouldPreAllocateMeasureIds() {
+    MeasureModel first = new MeasureModel(1, 200.0);
+    MeasureModel second = new MeasureModel(1, 300.0);
+    inserter.insertMeasure(first);
+    inserter.insertMeasure(second);
+
+    assertThat(first.getId(), is(10L));
+    assertThat(second.getId(), is(11L));
+    assertThat(inserter.getBufferedMeasure(11L), sameInstance(second));
+    assertThat(inserter.getBufferedRows(), is(2));
+  }
+
+  @Test
+  public void shouldEvictDataOfBufferedMeasures() {
+    String data = StringUtils.repeat("0=1;", 100);
+    MeasureModel model = new MeasureModel();
+    model.setMetricId(1);
+    model.setSnapshotId(1000);
+    model.setData(data);
+    inserter.insertMeasure(model);
+    assertThat(model.getMeasureData().getId(), is(10));
+
+    MemoryOptimizer optimizer = new MemoryOptimizer(getSession());
+    Measure measure = new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA, data)
+        .setPersistenceMode(PersistenceMode.DATABASE)
+        .setId(model.getId());
+    optimizer.evictDataMeasure(measure, model);
+    assertThat(measure.hasData(), is(false));
+
+    inserter.flush();
+    optimizer.reloadMeasure(measure);
+    assertThat(measure.getData(), is(data));
+  }
+
+  @Test
+  public void shouldSetPermanentIdOfNewViolations() {
+    RuleFailureModel newViolation = new RuleFailureModel();
+    RuleFailureModel trackedViolation = new RuleFailureModel();
+    trackedViolation.setPermanentId(3);
+
+    inserter.insertViolation(newViolation);
+    inserter.insertViolation(trackedViolation);
+
+    assertThat(newViolation.getId(), is(10));
+    assertThat(newViolation.getPermanentId(), is(10));
+    assertThat(trackedViolation.getId(), is(11));
+    assertThat(trackedViolation.getPermanentId(), is(3));
+  }
+
+  @Test
+  public void shouldInsertBufferedRowsOnFlush() throws Exception {
+    MeasureModel ruleMeasure = new MeasureModel(1, 200.0);
+    ruleMeasure.setSnapshotId(1000);
+    ruleMeasure.setProjectId(200);
+    ruleMeasure.setMeasureDate(new SimpleDateFormat("yyyy-MM-dd HH:mm").parse("2008-11-01 13:58"));
+    ruleMeasure.setRuleId(30);
+    ruleMeasure.setRulePriority(RulePriority.MAJOR);
+    inserter.insertMeasure(ruleMeasure);
+
+    MeasureModel dataMeasure = new MeasureModel();
+    dataMeasure.setMetricId(1);
+    dataMeasure.setValue(null);
+    dataMeasure.setSnapshotId(1000);
+    String data = StringUtils.repeat("0=1;", 100);
+    dataMeasure.setData(data);
+    inserter.insertMeasure(dataMeasure);
+
+    RuleFailureModel violation = new RuleFailureModel();
+    violation.setSnapshotId(1000);
+    violation.setRuleId(30);
+    violation.setPriority(RulePriority.MAJOR);
+    violation.setMessage("the message");
+    violation.setLine(20);
+    violation.setCreatedAt(new SimpleDateFormat("yyyy-MM-dd HH:mm").parse("2008-11-01 13:58"));
+    inserter.insertViolation(violation);
+
+    inserter.flush();
+
+    assertThat(inserter.getBufferedRows(), is(0));
+    assertThat(inserter.getBufferedMeasure(10L), nullValue());
+    checkTables("shouldInsertBufferedRowsOnFlush", "project_measures", "rule_failures");
+    MeasureModel reloaded = getSession().getEntity(MeasureModel.class, 11L);
+    assertThat(reloaded.getMeasureData().getText(), is(data));
+    assertThat(reloaded.getMeasureData().getSnapshotId(), is(1000));
+  }
+
+  @Test
+  public void shouldInsertInTransactionOfSession() {
+    MeasureModel measure = new MeasureModel(1, 200.0);
+    measure.setSnapshotId(1000);
+    inserter.insertMeasure(measure);
+    inserter.flush();
+
+    getSession().rollback();
+
+    assertEmptyTables("project_measures");
+  }
+}
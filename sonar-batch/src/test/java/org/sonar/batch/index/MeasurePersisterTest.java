@@ -19,6 +19,7 @@
  */
 package org.sonar.batch.index;
 
+import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -51,6 +52,7 @@ public class MeasurePersisterTest extends AbstractDbUnitTestCase {
   public static final int PACKAGE_SNAPSHOT_ID = 3002;
   public static final int FILE_SNAPSHOT_ID = 3003;
   public static final int COVERAGE_METRIC_ID = 2;
+  public static final int LINE_HITS_METRIC_ID = 3;
 
   private ResourcePersister resourcePersister;
   private MeasurePersister measurePersister;
@@ -58,7 +60,7 @@ public class MeasurePersisterTest extends AbstractDbUnitTestCase {
   private JavaPackage aPackage = new JavaPackage("org.foo");
   private JavaFile aFile = new JavaFile("org.foo.Bar");
   private Snapshot projectSnapshot, packageSnapshot, fileSnapshot;
-  private Metric ncloc, coverage;
+  private Metric ncloc, coverage, lineHits;
   private MemoryOptimizer memoryOptimizer;
 
   @Before
@@ -70,6 +72,7 @@ public class MeasurePersisterTest extends AbstractDbUnitTestCase {
     fileSnapshot = getSession().getSingleResult(Snapshot.class, "id", FILE_SNAPSHOT_ID);
     ncloc = getSession().getSingleResult(Metric.class, "key", "ncloc");
     coverage = getSession().getSingleResult(Metric.class, "key", "coverage");
+    lineHits = getSession().getSingleResult(Metric.class, "key", "coverage_line_hits_data");
     when(resourcePersister.getSnapshotOrFail(eq(project))).thenReturn(projectSnapshot);
     when(resourcePersister.getSnapshotOrFail(eq(aPackage))).thenReturn(packageSnapshot);
     when(resourcePersister.getSnapshotOrFail(eq(aFile))).thenReturn(fileSnapshot);
@@ -77,7 +80,7 @@ public class MeasurePersisterTest extends AbstractDbUnitTestCase {
     when(resourcePersister.getSnapshot(aPackage)).thenReturn(packageSnapshot);
     when(resourcePersister.getSnapshot(aFile)).thenReturn(fileSnapshot);
     memoryOptimizer = mock(MemoryOptimizer.class);
-    measurePersister = new MeasurePersister(getSession(), resourcePersister, new DefaultRuleFinder(getSessionFactory()), memoryOptimizer);
+    measurePersister = new MeasurePersister(getSession(), resourcePersister, new DefaultRuleFinder(getSessionFactory()), memoryOptimizer, new JdbcBatchInserter(getSession(), null, false), new MeasuresSpill(0L));
   }
 
   @Test
@@ -131,6 +134,30 @@ public class MeasurePersisterTest extends AbstractDbUnitTestCase {
 
   }
 
+  @Test
+  public void shouldDumpSpilledData() {
+    String data = StringUtils.repeat("1=2;", 100);
+    MeasuresSpill spill = new MeasuresSpill(data.length());
+    measurePersister = new MeasurePersister(getSession(), resourcePersister, new DefaultRuleFinder(getSessionFactory()), memoryOptimizer, new JdbcBatchInserter(getSession(), null, false), spill);
+    measurePersister.setDelayedMode(true);
+    Measure measure = new Measure(lineHits, data);
+    Bucket bucket = new Bucket(aFile);
+    bucket.addMeasure(measure);
+    spill.touch(bucket);
+    measurePersister.saveMeasure(aFile, measure);
+
+    Bucket otherBucket = new Bucket(new JavaFile("org.foo.Other"));
+    otherBucket.addMeasure(new Measure(lineHits, data));
+    spill.touch(otherBucket);
+    assertThat(spill.isSpilled(bucket), is(true));
+
+    measurePersister.dump();
+    spill.stop();
+
+    MeasureModel model = getSession().getSingleResult(MeasureModel.class, "snapshotId", FILE_SNAPSHOT_ID, "metricId", LINE_HITS_METRIC_ID);
+    assertThat(model.getMeasureData().getText(), is(data));
+  }
+
   @Test
   public void shouldDelaySaving() {
     measurePersister.setDelayedMode(true);
@@ -0,0 +1,176 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.batch.index;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.After;
+import org.junit.Test;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.PersistenceMode;
+import org.sonar.api.resources.JavaFile;
+import org.sonar.api.resources.JavaPackage;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class MeasuresSpillTest {
+
+  private static final String DATA = StringUtils.repeat("1=2;", 100);
+
+  private Metric metric = new Metric("distribution", Metric.ValueType.DATA);
+  private MeasuresSpill spill = new MeasuresSpill(2L * DATA.length());
+
+  @After
+  public void stop() {
+    spill.stop();
+  }
+
+  @Test
+  public void shouldSpillLeastRecentlyUsedBuckets() {
+    Bucket first = newBucket("First", DATA);
+    Bucket second = newBucket("Second", DATA);
+    Bucket third = newBucket("Third", DATA);
+    spill.touch(first);
+    spill.touch(second);
+    assertThat(spill.isSpilled(first), is(false));
+
+    spill.touch(third);
+    assertThat(spill.isSpilled(first), is(true));
+    assertThat(spill.isSpilled(second), is(false));
+    assertThat(getMeasure(first).getData(), nullValue());
+    assertThat(spill.getMemoryUsage(), is(2L * DATA.length()));
+  }
+
+  @Test
+  public void shouldReloadSpilledData() {
+    Bucket first = newBucket("First", DATA);
+    Bucket second = newBucket("Second", DATA + "3=4;");
+    Bucket third = newBucket("Third", DATA);
+    spill.touch(first);
+    spill.touch(second);
+    spill.touch(third);
+    spill.touch(first);
+
+    assertThat(spill.isSpilled(first), is(false));
+    assertThat(spill.isSpilled(second), is(true));
+    assertThat(getMeasure(first).getData(), is(DATA));
+
+    spill.touch(second);
+    assertThat(getMeasure(second).getData(), is(DATA + "3=4;"));
+  }
+
+  @Test
+  public void shouldKeepSmallDataAndDatabaseMeasuresInMemory() {
+    Bucket first = newBucket("First", "OK");
+    Bucket second = newBucket("Second", DATA);
+    getMeasure(second).setPersistenceMode(PersistenceMode.DATABASE);
+    spill.touch(first);
+    spill.touch(second);
+    spill.touch(newBucket("Third", DATA));
+    spill.touch(newBucket("Fourth", DATA));
+    spill.touch(newBucket("Fifth", DATA));
+
+    assertThat(spill.isSpilled(first), is(false));
+    assertThat(getMeasure(first).getData(), is("OK"));
+    assertThat(getMeasure(second).getData(), is(DATA));
+  }
+
+  @Test
+  public void shouldNotSpillFilesOfSameDirectory() {
+    Bucket directory = new Bucket(new JavaPackage("org.foo"));
+    Bucket first = newBucket("First", DATA).setParent(directory);
+    Bucket second = newBucket("Second", DATA).setParent(directory);
+    Bucket third = newBucket("Third", DATA).setParent(directory);
+    spill.touch(first);
+    spill.touch(second);
+    spill.touch(third);
+
+    assertThat(spill.isSpilled(first), is(false));
+    assertThat(getMeasure(first).getData(), is(DATA));
+
+    spill.touch(newBucket("Fourth", DATA));
+    assertThat(spill.isSpilled(first), is(true));
+    assertThat(spill.isSpilled(second), is(true));
+  }
+
+  @Test
+  public void shouldNotSpillPinnedBuckets() {
+    Bucket first = newBucket("First", DATA);
+    spill.pin(first.getResource());
+    spill.pin(first.getResource());
+    spill.touch(first);
+    spill.touch(newBucket("Second", DATA));
+    spill.touch(newBucket("Third", DATA));
+    assertThat(spill.isSpilled(first), is(false));
+
+    spill.unpin(first.getResource());
+    spill.touch(newBucket("Fourth", DATA));
+    assertThat(spill.isSpilled(first), is(false));
+
+    spill.unpin(first.getResource());
+    spill.touch(newBucket("Fifth", DATA));
+    assertThat(spill.isSpilled(first), is(true));
+  }
+
+  @Test
+  public void shouldReadSpilledDataWithoutReloading() {
+    Bucket first = newBucket("First", DATA);
+    spill.touch(first);
+    spill.touch(newBucket("Second", DATA));
+    spill.touch(newBucket("Third", DATA));
+
+    assertThat(spill.getData(first.getResource(), getMeasure(first)), is(DATA));
+    assertThat(spill.isSpilled(first), is(true));
+    assertThat(getMeasure(first).getData(), nullValue());
+  }
+
+  @Test
+  public void shouldNotSpillPackages() {
+    Bucket bucket = new Bucket(new JavaPackage("org.foo"));
+    bucket.addMeasure(new Measure(metric, DATA + DATA + DATA));
+    spill.touch(bucket);
+    spill.touch(newBucket("First", DATA));
+
+    assertThat(spill.isSpilled(bucket), is(false));
+    assertThat(spill.getMemoryUsage(), is((long) DATA.length()));
+  }
+
+  @Test
+  public void shouldBeDisabledByDefault() {
+    MeasuresSpill disabled = new MeasuresSpill(0L);
+    Bucket bucket = newBucket("First", DATA);
+    disabled.touch(bucket);
+
+    assertThat(disabled.isEnabled(), is(false));
+    assertThat(disabled.getMemoryUsage(), is(0L));
+  }
+
+  private Bucket newBucket(String className, String data) {
+    Bucket bucket = new Bucket(new JavaFile("org.foo." + className));
+    bucket.addMeasure(new Measure(metric, data));
+    return bucket;
+  }
+
+  private Measure getMeasure(Bucket bucket) {
+    return bucket.getAllMeasures().get(0);
+  }
+}
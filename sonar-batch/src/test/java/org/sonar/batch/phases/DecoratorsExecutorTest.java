@@ -19,11 +19,16 @@
  */
 package org.sonar.batch.phases;
 
+import com.google.common.collect.Lists;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.picocontainer.containers.TransientPicoContainer;
 import org.sonar.api.batch.BatchExtensionDictionnary;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
@@ -31,6 +36,11 @@ import org.sonar.api.utils.SonarException;
 import org.sonar.batch.DefaultDecoratorContext;
 import org.sonar.batch.events.EventBus;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.number.OrderingComparisons.greaterThanOrEqualTo;
 import static org.hamcrest.number.OrderingComparisons.lessThan;
 import static org.junit.Assert.assertThat;
@@ -40,6 +50,9 @@ import static org.mockito.Matchers.any;
 
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class DecoratorsExecutorTest {
 
@@ -76,6 +89,173 @@ public class DecoratorsExecutorTest {
     }
   }
 
+  @Test
+  public void shouldNotifyEndOfDecoratorOnFailure() {
+    Decorator decorator = mock(Decorator.class);
+    doThrow(new IllegalStateException()).when(decorator).decorate(any(Resource.class), any(DecoratorContext.class));
+    EventBus eventBus = mock(EventBus.class);
+
+    DecoratorsExecutor executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), mock(SonarIndex.class), eventBus);
+    try {
+      executor.executeDecorator(decorator, mock(DefaultDecoratorContext.class), new File("org/foo/Bar.java"));
+      fail("Exception has not been thrown");
+
+    } catch (SonarException e) {
+      ArgumentCaptor<DecoratorExecutionEvent> events = ArgumentCaptor.forClass(DecoratorExecutionEvent.class);
+      verify(eventBus, times(2)).fireEvent(events.capture());
+      assertThat(events.getAllValues().get(0).isStart(), is(true));
+      assertThat(events.getAllValues().get(1).isStart(), is(false));
+    }
+  }
+
+  @Test
+  public void shouldLockIndexWhenDecoratorIsNotConcurrent() {
+    Project project = new Project("foo");
+    SonarIndex index = mock(SonarIndex.class);
+    when(index.getChildren(project)).thenReturn(Arrays.<Resource>asList(new File("org/foo/Bar.java")));
+    LockCheckingDecorator sequentialDecorator = new LockCheckingDecorator(index);
+    ConcurrentLockCheckingDecorator concurrentDecorator = new ConcurrentLockCheckingDecorator(index);
+
+    DecoratorsExecutor executor = new DecoratorsExecutor(newDictionnary(sequentialDecorator, concurrentDecorator), index, mock(EventBus.class), 2);
+    executor.execute(project);
+
+    assertThat(sequentialDecorator.locks, is(Arrays.asList(true, true)));
+    assertThat(concurrentDecorator.locks, is(Arrays.asList(false, false)));
+  }
+
+  @Test
+  public void shouldDecorateChildrenBeforeParentsInParallelMode() {
+    Project project = new Project("foo");
+    Directory dirA = new Directory("a");
+    Directory dirB = new Directory("b");
+    File file1 = new File("a/One.java");
+    File file2 = new File("a/Two.java");
+    File file3 = new File("b/Three.java");
+    SonarIndex index = mock(SonarIndex.class);
+    when(index.getChildren(project)).thenReturn(Arrays.<Resource>asList(dirA, dirB));
+    when(index.getChildren(dirA)).thenReturn(Arrays.<Resource>asList(file1, file2));
+    when(index.getChildren(dirB)).thenReturn(Arrays.<Resource>asList(file3));
+
+    RecordingDecorator decorator = new RecordingDecorator();
+    DecoratorsExecutor executor = new DecoratorsExecutor(newDictionnary(decorator), index, mock(EventBus.class), 4);
+
+    executor.execute(project);
+
+    List<Resource> decorated = decorator.decorated;
+    assertThat(decorated.size(), is(6));
+    assertThat(decorated.indexOf(file1), lessThan(decorated.indexOf(dirA)));
+    assertThat(decorated.indexOf(file2), lessThan(decorated.indexOf(dirA)));
+    assertThat(decorated.indexOf(file3), lessThan(decorated.indexOf(dirB)));
+    assertThat(decorated.indexOf(dirA), lessThan(decorated.indexOf(project)));
+    assertThat(decorated.indexOf(dirB), lessThan(decorated.indexOf(project)));
+    assertThat(decorator.childrenCount.get(decorated.indexOf(dirA)), is(2));
+    assertThat(decorator.childrenCount.get(decorated.indexOf(project)), is(2));
+  }
+
+  @Test
+  public void shouldFailInParallelMode() {
+    Project project = new Project("foo");
+    File file = new File("org/foo/Bar.java");
+    SonarIndex index = mock(SonarIndex.class);
+    when(index.getChildren(project)).thenReturn(Arrays.<Resource>asList(file));
+
+    DecoratorsExecutor executor = new DecoratorsExecutor(newDictionnary(new FailingDecorator()), index, mock(EventBus.class), 2);
+
+    try {
+      executor.execute(project);
+      fail("Exception has not been thrown");
+
+    } catch (SonarException e) {
+      assertThat(e.getMessage(), containsString("org/foo/Bar.java"));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void shouldNotHangOnErrorInParallelMode() {
+    Project project = new Project("foo");
+    File file = new File("org/foo/Bar.java");
+    SonarIndex index = mock(SonarIndex.class);
+    when(index.getChildren(project)).thenReturn(Arrays.<Resource>asList(file));
+
+    DecoratorsExecutor executor = new DecoratorsExecutor(newDictionnary(new ErrorDecorator()), index, mock(EventBus.class), 2);
+
+    try {
+      executor.execute(project);
+      fail("Exception has not been thrown");
+
+    } catch (SonarException e) {
+      assertThat(e.getCause() instanceof NoClassDefFoundError, is(true));
+    }
+  }
+
+  private BatchExtensionDictionnary newDictionnary(Object... extensions) {
+    TransientPicoContainer ioc = new TransientPicoContainer();
+    int index = 0;
+    for (Object extension : extensions) {
+      ioc.addComponent("" + index, extension);
+      index++;
+    }
+    return new BatchExtensionDictionnary(ioc);
+  }
+
+  static class ErrorDecorator implements Decorator {
+    public void decorate(Resource resource, DecoratorContext context) {
+      throw new NoClassDefFoundError("org/foo/Bar");
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
+  static class FailingDecorator implements Decorator {
+    public void decorate(Resource resource, DecoratorContext context) {
+      throw new IllegalStateException();
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
+  static class LockCheckingDecorator implements Decorator {
+    Object lock;
+    List<Boolean> locks = Collections.synchronizedList(Lists.<Boolean>newArrayList());
+
+    LockCheckingDecorator(Object lock) {
+      this.lock = lock;
+    }
+
+    public void decorate(Resource resource, DecoratorContext context) {
+      locks.add(Thread.holdsLock(lock));
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
+  @ConcurrentExecution
+  static class ConcurrentLockCheckingDecorator extends LockCheckingDecorator {
+    ConcurrentLockCheckingDecorator(Object lock) {
+      super(lock);
+    }
+  }
+
+  static class RecordingDecorator implements Decorator {
+    List<Resource> decorated = Collections.synchronizedList(Lists.<Resource>newArrayList());
+    List<Integer> childrenCount = Collections.synchronizedList(Lists.<Integer>newArrayList());
+
+    public void decorate(Resource resource, DecoratorContext context) {
+      decorated.add(resource);
+      childrenCount.add(context.getChildren().size());
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
   static class Decorator1 implements Decorator {
     public void decorate(Resource resource, DecoratorContext context) {
     }
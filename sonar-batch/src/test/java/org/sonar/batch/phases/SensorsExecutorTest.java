@@ -0,0 +1,279 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.batch.phases;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.picocontainer.containers.TransientPicoContainer;
+import org.sonar.api.batch.BatchExtensionDictionnary;
+import org.sonar.api.batch.ConcurrentExecution;
+import org.sonar.api.batch.DependedUpon;
+import org.sonar.api.batch.DependsUpon;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.resources.Project;
+import org.sonar.api.utils.SonarException;
+import org.sonar.batch.MavenPluginExecutor;
+import org.sonar.batch.events.EventBus;
+import org.sonar.jpa.session.DatabaseSessionFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.internal.matchers.IsCollectionContaining.hasItem;
+import static org.hamcrest.number.OrderingComparisons.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class SensorsExecutorTest {
+
+  private List<String> executions = Collections.synchronizedList(Lists.<String>newArrayList());
+
+  private BatchExtensionDictionnary newDictionnary(Object... extensions) {
+    TransientPicoContainer ioc = new TransientPicoContainer();
+    int index = 0;
+    for (Object extension : extensions) {
+      ioc.addComponent("" + index, extension);
+      index++;
+    }
+    return new BatchExtensionDictionnary(ioc);
+  }
+
+  @Test
+  public void shouldRespectDependenciesInParallelMode() {
+    Project project = new Project("foo");
+    BatchExtensionDictionnary dictionnary = newDictionnary(new ConsumerSensor(), new ProducerSensor(), new IndependentSensor());
+    SensorsExecutor executor = new SensorsExecutor(dictionnary, project, mock(MavenPluginExecutor.class), mock(EventBus.class), mock(SonarIndex.class), mock(DatabaseSessionFactory.class), 3);
+
+    executor.execute(project, mock(SensorContext.class));
+
+    assertThat(executions.size(), is(3));
+    assertThat(executions.indexOf("producer"), lessThan(executions.indexOf("consumer")));
+  }
+
+  @Test
+  public void shouldExecuteSequentiallyByDefault() {
+    Project project = new Project("foo");
+    BatchExtensionDictionnary dictionnary = newDictionnary(new ConsumerSensor(), new ProducerSensor());
+    SensorsExecutor executor = new SensorsExecutor(dictionnary, project, mock(MavenPluginExecutor.class), mock(EventBus.class));
+
+    executor.execute(project, mock(SensorContext.class));
+
+    assertThat(executions, is((List<String>) Lists.newArrayList("producer", "consumer")));
+  }
+
+  @Test
+  public void shouldFailInParallelMode() {
+    Project project = new Project("foo");
+    BatchExtensionDictionnary dictionnary = newDictionnary(new FailingSensor(), new IndependentSensor());
+    SensorsExecutor executor = new SensorsExecutor(dictionnary, project, mock(MavenPluginExecutor.class), mock(EventBus.class), mock(SonarIndex.class), mock(DatabaseSessionFactory.class), 2);
+
+    try {
+      executor.execute(project, mock(SensorContext.class));
+      fail("Exception has not been thrown");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void shouldNotHangOnErrorInParallelMode() {
+    Project project = new Project("foo");
+    BatchExtensionDictionnary dictionnary = newDictionnary(new ErrorSensor(), new IndependentSensor());
+    SensorsExecutor executor = new SensorsExecutor(dictionnary, project, mock(MavenPluginExecutor.class), mock(EventBus.class), mock(SonarIndex.class), mock(DatabaseSessionFactory.class), 2);
+
+    try {
+      executor.execute(project, mock(SensorContext.class));
+      fail("Exception has not been thrown");
+    } catch (SonarException e) {
+      assertThat(e.getCause(), instanceOf(NoClassDefFoundError.class));
+    }
+  }
+
+  @Test
+  public void shouldWaitForRunningSensorsOnFailure() {
+    Project project = new Project("foo");
+    CountDownLatch started = new CountDownLatch(1);
+    BatchExtensionDictionnary dictionnary = newDictionnary(new FailingAfterStartSensor(started), new SlowSensor(started));
+    SensorsExecutor executor = new SensorsExecutor(dictionnary, project, mock(MavenPluginExecutor.class), mock(EventBus.class), mock(SonarIndex.class), mock(DatabaseSessionFactory.class), 2);
+
+    try {
+      executor.execute(project, mock(SensorContext.class));
+      fail("Exception has not been thrown");
+    } catch (IllegalStateException e) {
+      assertThat(executions, hasItem("slow"));
+    }
+  }
+
+  @Test
+  public void shouldLockIndexWhenSensorIsNotConcurrent() {
+    Project project = new Project("foo");
+    SonarIndex index = mock(SonarIndex.class);
+    LockCheckingSensor sequentialSensor = new LockCheckingSensor(index);
+    ConcurrentLockCheckingSensor concurrentSensor = new ConcurrentLockCheckingSensor(index);
+    BatchExtensionDictionnary dictionnary = newDictionnary(sequentialSensor, concurrentSensor);
+    SensorsExecutor executor = new SensorsExecutor(dictionnary, project, mock(MavenPluginExecutor.class), mock(EventBus.class), index, mock(DatabaseSessionFactory.class), 2);
+
+    executor.execute(project, mock(SensorContext.class));
+
+    assertThat(sequentialSensor.locked, is(true));
+    assertThat(concurrentSensor.locked, is(false));
+  }
+
+  @Test
+  public void shouldCloseSessionsOfThreads() {
+    Project project = new Project("foo");
+    BatchExtensionDictionnary dictionnary = newDictionnary(new ProducerSensor(), new IndependentSensor());
+    DatabaseSessionFactory sessionFactory = mock(DatabaseSessionFactory.class);
+    SensorsExecutor executor = new SensorsExecutor(dictionnary, project, mock(MavenPluginExecutor.class), mock(EventBus.class), mock(SonarIndex.class), sessionFactory, 2);
+
+    executor.execute(project, mock(SensorContext.class));
+
+    verify(sessionFactory, times(2)).clear();
+  }
+
+  @DependedUpon("foo")
+  class ProducerSensor extends RecordingSensor {
+    ProducerSensor() {
+      super("producer");
+    }
+  }
+
+  @DependsUpon("foo")
+  class ConsumerSensor extends RecordingSensor {
+    ConsumerSensor() {
+      super("consumer");
+    }
+  }
+
+  class IndependentSensor extends RecordingSensor {
+    IndependentSensor() {
+      super("independent");
+    }
+  }
+
+  class FailingSensor extends RecordingSensor {
+    FailingSensor() {
+      super("failing");
+    }
+
+    @Override
+    public void analyse(Project project, SensorContext context) {
+      throw new IllegalStateException();
+    }
+  }
+
+  class ErrorSensor extends RecordingSensor {
+    ErrorSensor() {
+      super("error");
+    }
+
+    @Override
+    public void analyse(Project project, SensorContext context) {
+      throw new NoClassDefFoundError("org/foo/Bar");
+    }
+  }
+
+  @ConcurrentExecution
+  class FailingAfterStartSensor extends RecordingSensor {
+    private CountDownLatch started;
+
+    FailingAfterStartSensor(CountDownLatch started) {
+      super("failing");
+      this.started = started;
+    }
+
+    @Override
+    public void analyse(Project project, SensorContext context) {
+      try {
+        started.await();
+      } catch (InterruptedException e) {
+        // fail anyway
+      }
+      throw new IllegalStateException();
+    }
+  }
+
+  @ConcurrentExecution
+  class SlowSensor extends RecordingSensor {
+    private CountDownLatch started;
+
+    SlowSensor(CountDownLatch started) {
+      super("slow");
+      this.started = started;
+    }
+
+    @Override
+    public void analyse(Project project, SensorContext context) {
+      started.countDown();
+      // busy loop, so the execution is not stopped by the interruption of the thread
+      long end = System.currentTimeMillis() + 200;
+      while (System.currentTimeMillis() < end) {
+        Thread.yield();
+      }
+      super.analyse(project, context);
+    }
+  }
+
+  class LockCheckingSensor extends RecordingSensor {
+    private Object lock;
+    volatile boolean locked;
+
+    LockCheckingSensor(Object lock) {
+      super("lock");
+      this.lock = lock;
+    }
+
+    @Override
+    public void analyse(Project project, SensorContext context) {
+      locked = Thread.holdsLock(lock);
+    }
+  }
+
+  @ConcurrentExecution
+  class ConcurrentLockCheckingSensor extends LockCheckingSensor {
+    ConcurrentLockCheckingSensor(Object lock) {
+      super(lock);
+    }
+  }
+
+  class RecordingSensor implements Sensor {
+    private String name;
+
+    RecordingSensor(String name) {
+      this.name = name;
+    }
+
+    public void analyse(Project project, SensorContext context) {
+      executions.add(name);
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+}
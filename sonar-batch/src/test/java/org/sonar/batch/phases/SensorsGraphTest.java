@@ -0,0 +1,90 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.batch.phases;
+
+import org.junit.Test;
+import org.sonar.api.batch.DependedUpon;
+import org.sonar.api.batch.DependsUpon;
+import org.sonar.api.batch.Phase;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.resources.Project;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.internal.matchers.IsCollectionContaining.hasItem;
+import static org.junit.internal.matchers.IsCollectionContaining.hasItems;
+
+public class SensorsGraphTest {
+
+  private Sensor producer = new ProducerSensor();
+  private Sensor consumer = new ConsumerSensor();
+  private Sensor independent = new IndependentSensor();
+  private Sensor post = new PostSensor();
+
+  private SensorsGraph newGraph(Sensor... sensors) {
+    return new SensorsGraph(Arrays.asList(sensors));
+  }
+
+  @Test
+  public void shouldFollowDependenciesThroughIntermediateObjects() {
+    SensorsGraph graph = newGraph(producer, consumer, independent);
+
+    assertThat(graph.getPrerequisites(consumer).size(), is(1));
+    assertThat(graph.getPrerequisites(consumer), hasItem(producer));
+    assertThat(graph.getPrerequisites(producer).isEmpty(), is(true));
+    assertThat(graph.getPrerequisites(independent).isEmpty(), is(true));
+    assertThat(graph.getDependents(producer), hasItem(consumer));
+  }
+
+  @Test
+  public void shouldExecutePhasesInOrder() {
+    SensorsGraph graph = newGraph(producer, independent, post);
+
+    assertThat(graph.getPrerequisites(post), hasItems(producer, independent));
+    assertThat(graph.getPrerequisites(producer).isEmpty(), is(true));
+  }
+
+  @DependedUpon("foo")
+  static class ProducerSensor extends FakeSensor {
+  }
+
+  @DependsUpon("foo")
+  static class ConsumerSensor extends FakeSensor {
+  }
+
+  static class IndependentSensor extends FakeSensor {
+  }
+
+  @Phase(name = Phase.Name.POST)
+  static class PostSensor extends FakeSensor {
+  }
+
+  static class FakeSensor implements Sensor {
+    public void analyse(Project project, SensorContext context) {
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+}
@@ -32,4 +32,17 @@ public abstract class Channel<OUTPUT> {
    * @return false if the Channel doesn't want to consume the character stream, true otherwise.
    */
   public abstract boolean consume(CodeReader code, OUTPUT output);
+
+  /**
+   * Quick check used by dispatchers to skip the channels which can't consume a token starting with the given character, without
+   * calling {@link #consume(CodeReader, Object)}. The default implementation does not filter anything, so channels whose tokens can
+   * start with any character, or which depend on a state, don't have to override it.
+   * 
+   * @param firstChar
+   *          the next character of the stream
+   * @return false if the Channel can't consume the character stream when it starts with this character, true otherwise.
+   */
+  public boolean canConsume(int firstChar) {
+    return true;
+  }
 }
@@ -31,8 +31,7 @@ public class ChannelDispatcher<OUTPUT> extends Channel<OUTPUT> {
   private static final Logger logger = LoggerFactory.getLogger(ChannelDispatcher.class);
   private final boolean failIfNoChannelToConsumeOneCharacter;
 
-  @SuppressWarnings("rawtypes")
-  private final Channel[] channels;
+  private final ChannelIndex<OUTPUT> channels;
 
   @SuppressWarnings("rawtypes")
   public ChannelDispatcher(List<Channel> channels) {
@@ -46,7 +45,7 @@ public class ChannelDispatcher<OUTPUT> extends Channel<OUTPUT> {
 
   @SuppressWarnings("rawtypes")
   public ChannelDispatcher(List<Channel> channels, boolean failIfNoChannelToConsumeOneCharacter) {
-    this.channels = channels.toArray(new Channel[channels.size()]);
+    this.channels = new ChannelIndex<OUTPUT>(channels.toArray(new Channel[channels.size()]));
     this.failIfNoChannelToConsumeOneCharacter = failIfNoChannelToConsumeOneCharacter;
   }
 
@@ -54,7 +53,7 @@ public class ChannelDispatcher<OUTPUT> extends Channel<OUTPUT> {
     int nextChar = code.peek();
     while (nextChar != -1) {
       boolean channelConsumed = false;
-      for (Channel<OUTPUT> channel : channels) {
+      for (Channel<OUTPUT> channel : channels.getChannels(nextChar)) {
         if (channel.consume(code, output)) {
           channelConsumed = true;
           break;
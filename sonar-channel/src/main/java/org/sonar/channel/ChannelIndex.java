@@ -0,0 +1,58 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.channel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Channels indexed by the ASCII characters they can start with, see {@link Channel#canConsume(int)}. The order of the channels is
+ * kept for each character. Other characters are submitted to all the channels.
+ */
+public final class ChannelIndex<OUTPUT> {
+
+  private static final int INDEXED_CHARS = 128;
+
+  private final Channel<OUTPUT>[] channels;
+  private final Channel<OUTPUT>[][] channelsByFirstChar;
+
+  @SuppressWarnings("unchecked")
+  public ChannelIndex(Channel<OUTPUT>[] channels) {
+    this.channels = channels;
+    this.channelsByFirstChar = new Channel[INDEXED_CHARS][];
+    List<Channel<OUTPUT>> candidates = new ArrayList<Channel<OUTPUT>>(channels.length);
+    for (int c = 0; c < INDEXED_CHARS; c++) {
+      candidates.clear();
+      for (Channel<OUTPUT> channel : channels) {
+        if (channel.canConsume(c)) {
+          candidates.add(channel);
+        }
+      }
+      channelsByFirstChar[c] = candidates.size() == channels.length ? channels : candidates.toArray(new Channel[candidates.size()]);
+    }
+  }
+
+  /**
+   * @return the channels which can consume a token starting with the given character. The returned array must not be modified.
+   */
+  public Channel<OUTPUT>[] getChannels(int firstChar) {
+    return firstChar >= 0 && firstChar < INDEXED_CHARS ? channelsByFirstChar[firstChar] : channels;
+  }
+}
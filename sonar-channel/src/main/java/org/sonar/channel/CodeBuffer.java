@@ -19,10 +19,12 @@
  */
 package org.sonar.channel;
 
+import java.io.CharArrayReader;
 import java.io.FilterReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.CharBuffer;
 
 import org.apache.commons.io.IOUtils;
 
@@ -35,10 +37,13 @@ import org.apache.commons.io.IOUtils;
  * <li>Read without consuming character at the specified index after the cursor</li>
  * <li>Position of the pending cursor : line and column</li>
  * </ul>
+ * 
+ * The code is either read by chunks from a Reader, or is entirely available in a CharBuffer. In the second case the characters are never
+ * copied: the buffer is not refilled and recorded characters are views on the buffer.
  */
 public class CodeBuffer implements CharSequence {
 
-  private final Reader code;
+  private Reader code;
   private int lastChar = -1;
   private Cursor cursor;
   private int bufferCapacity;
@@ -52,13 +57,50 @@ public class CodeBuffer implements CharSequence {
 
   private boolean recordingMode = false;
   private StringBuilder recordedCharacters = new StringBuilder();
+  // position of the first recorded character when the whole code is in the buffer, else -1
+  private int recordingStart = -1;
 
   protected CodeBuffer(Reader initialCodeReader, CodeReaderConfiguration configuration) {
     this.configuration = configuration;
-    lastChar = -1;
     cursor = new Cursor();
-    bufferCapacity = configuration.getBufferCapacity();
     tabWidth = configuration.getTabWidth();
+    readByChunks(initialCodeReader);
+  }
+
+  protected CodeBuffer(String code, CodeReaderConfiguration configuration) {
+    this(new StringReader(code), configuration);
+  }
+
+  /**
+   * The whole code is read from the given buffer. Characters are copied only if the buffer is not backed by an accessible array, or if
+   * some CodeReaderFilters must be applied. The buffer must not be modified while it's read.
+   */
+  protected CodeBuffer(CharBuffer code, CodeReaderConfiguration configuration) {
+    this.configuration = configuration;
+    cursor = new Cursor();
+    tabWidth = configuration.getTabWidth();
+    char[] chars;
+    int offset;
+    if (code.hasArray()) {
+      chars = code.array();
+      offset = code.arrayOffset() + code.position();
+    } else {
+      chars = new char[code.remaining()];
+      code.duplicate().get(chars);
+      offset = 0;
+    }
+    if (configuration.getCodeReaderFilters().length > 0) {
+      readByChunks(new CharArrayReader(chars, offset, code.remaining()));
+    } else {
+      buffer = chars;
+      bufferPosition = offset;
+      bufferSize = offset + code.remaining();
+      bufferCapacity = bufferSize;
+    }
+  }
+
+  private void readByChunks(Reader initialCodeReader) {
+    bufferCapacity = configuration.getBufferCapacity();
     buffer = new char[bufferCapacity];
     Reader reader = initialCodeReader;
     for (CodeReaderFilter<?> codeReaderFilter : configuration.getCodeReaderFilters()) {
@@ -68,8 +110,11 @@ public class CodeBuffer implements CharSequence {
     fillBuffer();
   }
 
-  protected CodeBuffer(String code, CodeReaderConfiguration configuration) {
-    this(new StringReader(code), configuration);
+  /**
+   * @return true if the whole code is in the buffer, false if it's read by chunks
+   */
+  protected final boolean isFullyBuffered() {
+    return code == null;
   }
 
   /**
@@ -81,12 +126,12 @@ public class CodeBuffer implements CharSequence {
     if (bufferPosition == bufferSize) {
       fillBuffer();
     }
-    if (bufferSize == 0) {
+    if (bufferPosition == bufferSize) {
       return -1;
     }
     int character = buffer[bufferPosition++];
     updateCursorPosition(character);
-    if (recordingMode) {
+    if (recordingMode && recordingStart < 0) {
       recordedCharacters.append((char) character);
     }
     lastChar = character;
@@ -106,6 +151,9 @@ public class CodeBuffer implements CharSequence {
   }
 
   private int fillBuffer() {
+    if (isFullyBuffered()) {
+      return 0;
+    }
     try {
       int offset = bufferSize - bufferPosition;
       if (offset != 0) {
@@ -148,8 +196,14 @@ public class CodeBuffer implements CharSequence {
    *          the character sequences to push into the CodeBuffer
    */
   public void push(CharSequence chars) {
+    if (recordingStart >= 0) {
+      // the recorded characters are going to be replaced in the buffer
+      recordedCharacters.append(buffer, recordingStart, bufferPosition - recordingStart);
+      recordingStart = -1;
+    }
     int length = chars.length();
-    if (bufferPosition >= length) {
+    // when the whole code is in the buffer, it's never modified because it can be shared with recorded sequences
+    if (bufferPosition >= length && !isFullyBuffered()) {
       for (int index = 0; index < length; index++) {
         buffer[bufferPosition + index - length] = chars.charAt(index);
       }
@@ -208,12 +262,21 @@ public class CodeBuffer implements CharSequence {
 
   public final void startRecording() {
     recordingMode = true;
+    if (isFullyBuffered() && recordingStart < 0 && recordedCharacters.length() == 0) {
+      recordingStart = bufferPosition;
+    }
   }
 
   public final CharSequence stopRecording() {
     recordingMode = false;
-    CharSequence result = recordedCharacters;
-    recordedCharacters = new StringBuilder();
+    CharSequence result;
+    if (recordingStart >= 0) {
+      result = CharBuffer.wrap(buffer, recordingStart, bufferPosition - recordingStart);
+      recordingStart = -1;
+    } else {
+      result = recordedCharacters;
+      recordedCharacters = new StringBuilder();
+    }
     return result;
   }
 
@@ -240,18 +303,33 @@ public class CodeBuffer implements CharSequence {
   }
 
   /**
-   * Warning : this method always returns Integer.MAX_VALUE as the length of the stream can't be known before having consumed all
-   * characters.
+   * Warning : when the code is read by chunks, this method always returns Integer.MAX_VALUE as the length of the stream can't be known
+   * before having consumed all characters.
    * 
    * Integer.MAX_VALUE is returned to prevent regular expression matchers to stop consuming the stream of characters (see
    * http://jira.codehaus.org/browse/SONAR-2010)
+   * 
+   * When the whole code is in the buffer, the number of characters after the cursor is returned. It decreases each time a character is
+   * consumed, and indexes given to {@link #charAt(int)} and {@link #subSequence(int, int)} are relative to the cursor.
    */
   public final int length() {
+    if (isFullyBuffered()) {
+      return bufferSize - bufferPosition;
+    }
     return (bufferSize == bufferCapacity ? Integer.MAX_VALUE : bufferSize);
   }
 
+  /**
+   * Supported only when the whole code is in the buffer. The returned sequence is a view on the buffer, characters are not copied.
+   */
   public final CharSequence subSequence(int start, int end) {
-    throw new UnsupportedOperationException();
+    if ( !isFullyBuffered()) {
+      throw new UnsupportedOperationException();
+    }
+    if (start < 0 || start > end || end > length()) {
+      throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + length());
+    }
+    return CharBuffer.wrap(buffer, bufferPosition + start, end - start);
   }
 
   @Override
@@ -19,10 +19,19 @@
  */
 package org.sonar.channel;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
 import java.util.regex.Matcher;
 
+import org.apache.commons.io.IOUtils;
+
 /**
  * The CodeReader class provides some advanced features to read a source code. The most important one is the ability to try consuming the
  * next characters in the stream according to a regular expression.
@@ -69,6 +78,57 @@ public class CodeReader extends CodeBuffer {
     super(code, configuration);
   }
 
+  /**
+   * Creates a code reader on the whole code, which is not copied.
+   * 
+   * @param code
+   *          the code itself
+   */
+  public CodeReader(CharBuffer code) {
+    super(code, new CodeReaderConfiguration());
+  }
+
+  /**
+   * Creates a code reader on the whole code, which is not copied.
+   * 
+   * @param code
+   *          the code itself
+   * @param configuration
+   *          the configuration parameters
+   */
+  public CodeReader(CharBuffer code, CodeReaderConfiguration configuration) {
+    super(code, configuration);
+  }
+
+  /**
+   * Creates a code reader on a file, which is memory-mapped and decoded at once.
+   * 
+   * @param file
+   *          the file to read code from
+   * @param charset
+   *          the encoding of the file
+   * @param configuration
+   *          the configuration parameters
+   */
+  public CodeReader(File file, Charset charset, CodeReaderConfiguration configuration) {
+    super(decode(file, charset), configuration);
+  }
+
+  private static CharBuffer decode(File file, Charset charset) {
+    FileInputStream input = null;
+    try {
+      input = new FileInputStream(file);
+      FileChannel channel = input.getChannel();
+      MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE)
+          .decode(bytes);
+    } catch (IOException e) {
+      throw new ChannelException("Fail to read the file " + file.getAbsolutePath(), e);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
   /**
    * Read and consume the next character
    * 
@@ -184,10 +244,19 @@ public class CodeReader extends CodeBuffer {
           }
         }
         previousCursor = getCursor().clone();
-        for (int i = 0; i < matcher.end(); i++) {
-          appendable.append((char) pop());
+        int end = matcher.end();
+        if (isFullyBuffered()) {
+          appendable.append(this, 0, end);
+          for (int i = 0; i < end; i++) {
+            pop();
+          }
+        } else {
+          // subSequence() is not supported when the code is read by chunks
+          for (int i = 0; i < end; i++) {
+            appendable.append((char) pop());
+          }
         }
-        return matcher.end();
+        return end;
       }
     } catch (IndexOutOfBoundsException e) {
       return -1;
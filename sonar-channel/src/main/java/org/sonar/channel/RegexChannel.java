@@ -30,6 +30,7 @@ public abstract class RegexChannel<OUTPUT> extends Channel<OUTPUT> {
   private final StringBuilder tmpBuilder = new StringBuilder();
   private final Matcher matcher;
   private final String regex;
+  private final boolean[] firstChars;
 
   /**
    * Create a RegexChannel object with the required regular expression
@@ -40,6 +41,26 @@ public abstract class RegexChannel<OUTPUT> extends Channel<OUTPUT> {
   public RegexChannel(String regex) {
     matcher = Pattern.compile(regex).matcher("");
     this.regex = regex;
+    this.firstChars = computeFirstChars(matcher);
+  }
+
+  /**
+   * An ASCII character can start a token if the regular expression matches it, or if it needs more characters to decide. The
+   * expression is never evaluated again for the other characters, see {@link ChannelDispatcher}.
+   */
+  private static boolean[] computeFirstChars(Matcher matcher) {
+    boolean[] result = new boolean[128];
+    for (int c = 0; c < result.length; c++) {
+      matcher.reset(String.valueOf((char) c));
+      result[c] = matcher.lookingAt() || matcher.hitEnd();
+    }
+    matcher.reset("");
+    return result;
+  }
+
+  @Override
+  public boolean canConsume(int firstChar) {
+    return firstChar < 0 || firstChar >= firstChars.length || firstChars[firstChar];
   }
 
   @Override
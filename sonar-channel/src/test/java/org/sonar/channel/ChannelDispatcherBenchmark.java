@@ -0,0 +1,126 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.channel;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the throughput of a Java-like lexer made of regular expression channels, with and without the first character table of
+ * {@link ChannelDispatcher}. It's not executed by the build. Usage: java ChannelDispatcherBenchmark [number of lines]
+ */
+public final class ChannelDispatcherBenchmark {
+
+  private static final String[] KEYWORDS = { "abstract", "boolean", "break", "class", "else", "extends", "final", "for", "if", "import",
+      "int", "new", "package", "private", "protected", "public", "return", "static", "this", "void", "while" };
+
+  private static final String[] LINES = { "  public static void main(String[] args) {", "    int count = 42 + args.length;",
+      "    // increments the counter", "    if (count > 0x1F && !done) {", "      return \"value\" + count;", "    } else {",
+      "      this.items.add(new Item(3.14f, 'c'));", "    }", "  /* private field */ private final List<Item> items;", "}" };
+
+  private ChannelDispatcherBenchmark() {
+  }
+
+  public static void main(String[] args) {
+    int lineCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    char[] code = generateCode(lineCount);
+    for (int i = 0; i < 5; i++) {
+      run("without prefilter", new ChannelDispatcher<Counter>(createChannels(false)), code);
+      run("with prefilter", new ChannelDispatcher<Counter>(createChannels(true)), code);
+    }
+  }
+
+  private static char[] generateCode(int lineCount) {
+    Random random = new Random(1);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < lineCount; i++) {
+      sb.append(LINES[random.nextInt(LINES.length)]).append('\n');
+    }
+    return sb.toString().toCharArray();
+  }
+
+  private static void run(String name, ChannelDispatcher<Counter> dispatcher, char[] code) {
+    Counter counter = new Counter();
+    long start = System.currentTimeMillis();
+    dispatcher.consume(new CodeReader(CharBuffer.wrap(code)), counter);
+    long duration = Math.max(1L, System.currentTimeMillis() - start);
+    System.out.println(name + ": " + counter.tokens + " tokens in " + duration + " ms, " + (counter.tokens * 1000L / duration)
+      + " tokens/s");
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private static List<Channel> createChannels(boolean prefilter) {
+    List<Channel> channels = new ArrayList<Channel>();
+    channels.add(new TokenChannel("//[^\\n\\r]*+"));
+    channels.add(new TokenChannel("/\\*[\\s\\S]*?\\*/"));
+    channels.add(new TokenChannel("\"([^\"\\\\]*+(\\\\[\\s\\S])?+)*+\""));
+    channels.add(new TokenChannel("'([^'\\\\]*+(\\\\[\\s\\S])?+)*+'"));
+    for (String keyword : KEYWORDS) {
+      channels.add(new TokenChannel(keyword + "\\b"));
+    }
+    channels.add(new TokenChannel("0[xX][0-9a-fA-F]++"));
+    channels.add(new TokenChannel("[0-9]++(\\.[0-9]++)?+[fFdDlL]?+"));
+    channels.add(new TokenChannel("[a-zA-Z_$][a-zA-Z0-9_$]*+"));
+    channels.add(new TokenChannel("[=!<>+\\-*/&|]=?+|&&|\\|\\|"));
+    channels.add(new TokenChannel("[(){}\\[\\];,.]"));
+    channels.add(new TokenChannel("\\s++"));
+    if (!prefilter) {
+      for (int i = 0; i < channels.size(); i++) {
+        channels.set(i, new UnfilteredChannel(channels.get(i)));
+      }
+    }
+    return channels;
+  }
+
+  private static final class Counter {
+    private long tokens = 0;
+  }
+
+  private static final class TokenChannel extends RegexChannel<Counter> {
+
+    private TokenChannel(String regex) {
+      super(regex);
+    }
+
+    @Override
+    protected void consume(CharSequence token, Counter output) {
+      output.tokens++;
+    }
+  }
+
+  /**
+   * Hides the first characters declared by the channel, so that the dispatcher tries it on every token.
+   */
+  private static final class UnfilteredChannel extends Channel<Counter> {
+
+    private final Channel<Counter> channel;
+
+    private UnfilteredChannel(Channel<Counter> channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public boolean consume(CodeReader code, Counter output) {
+      return channel.consume(code, output);
+    }
+  }
+}
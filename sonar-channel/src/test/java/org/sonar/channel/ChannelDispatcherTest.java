@@ -0,0 +1,102 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.channel;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ChannelDispatcherTest {
+
+  @Test
+  public void shouldNotCallChannelsWhichCantConsumeTheFirstCharacter() {
+    CharChannel aChannel = new CharChannel('a');
+    CharChannel bChannel = new CharChannel('b');
+    ChannelDispatcher<StringBuilder> dispatcher = new ChannelDispatcher<StringBuilder>(aChannel, bChannel);
+    StringBuilder output = new StringBuilder();
+    dispatcher.consume(new CodeReader(CharBuffer.wrap("abbb")), output);
+
+    assertThat(output.toString(), is("<a><b><b><b>"));
+    assertThat(aChannel.calls, is(1));
+    assertThat(bChannel.calls, is(3));
+  }
+
+  @Test
+  public void shouldKeepTheOrderOfChannels() {
+    ChannelDispatcher<StringBuilder> dispatcher = new ChannelDispatcher<StringBuilder>(new CharChannel('a', "first"), new CharChannel('a',
+        "second"));
+    StringBuilder output = new StringBuilder();
+    dispatcher.consume(new CodeReader(CharBuffer.wrap("aa")), output);
+
+    assertThat(output.toString(), is("<first><first>"));
+  }
+
+  @Test
+  public void shouldSubmitNonAsciiCharactersToAllChannels() {
+    CharChannel channel = new CharChannel('\u00e9');
+    ChannelDispatcher<StringBuilder> dispatcher = new ChannelDispatcher<StringBuilder>(channel);
+    StringBuilder output = new StringBuilder();
+    dispatcher.consume(new CodeReader(CharBuffer.wrap("\u00e9")), output);
+
+    assertThat(output.toString(), is("<\u00e9>"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldFailIfNoChannelCanConsumeTheFirstCharacter() {
+    ChannelDispatcher<StringBuilder> dispatcher = new ChannelDispatcher<StringBuilder>(Arrays.<Channel> asList(new CharChannel('a')), true);
+    dispatcher.consume(new CodeReader(CharBuffer.wrap("ab")), new StringBuilder());
+  }
+
+  private static class CharChannel extends Channel<StringBuilder> {
+
+    private final char c;
+    private final String tag;
+    private int calls = 0;
+
+    CharChannel(char c) {
+      this(c, String.valueOf(c));
+    }
+
+    CharChannel(char c, String tag) {
+      this.c = c;
+      this.tag = tag;
+    }
+
+    @Override
+    public boolean consume(CodeReader code, StringBuilder output) {
+      calls++;
+      if (code.peek() == c) {
+        code.pop();
+        output.append('<').append(tag).append('>');
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public boolean canConsume(int firstChar) {
+      return firstChar == c;
+    }
+  }
+}
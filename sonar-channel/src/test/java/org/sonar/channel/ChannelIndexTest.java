@@ -0,0 +1,74 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.channel;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class ChannelIndexTest {
+
+  private Channel<StringBuilder> aChannel = new FirstCharChannel('a');
+  private Channel<StringBuilder> bChannel = new FirstCharChannel('b');
+  private Channel<StringBuilder> anyChannel = new FirstCharChannel(-1);
+
+  @Test
+  public void shouldKeepTheOrderOfChannelsWhichCanConsumeTheCharacter() {
+    ChannelIndex<StringBuilder> index = new ChannelIndex<StringBuilder>(channels(anyChannel, aChannel, bChannel));
+
+    Channel<StringBuilder>[] channels = index.getChannels('a');
+    assertThat(channels.length, is(2));
+    assertThat(channels[0], is(anyChannel));
+    assertThat(channels[1], is(aChannel));
+  }
+
+  @Test
+  public void shouldReturnAllTheChannelsForNonAsciiCharacters() {
+    ChannelIndex<StringBuilder> index = new ChannelIndex<StringBuilder>(channels(aChannel, bChannel));
+
+    assertThat(index.getChannels('\u00e9').length, is(2));
+    assertThat(index.getChannels(-1).length, is(2));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Channel<StringBuilder>[] channels(Channel<StringBuilder>... channels) {
+    return channels;
+  }
+
+  private static class FirstCharChannel extends Channel<StringBuilder> {
+
+    private final int firstChar;
+
+    FirstCharChannel(int firstChar) {
+      this.firstChar = firstChar;
+    }
+
+    @Override
+    public boolean consume(CodeReader code, StringBuilder output) {
+      return false;
+    }
+
+    @Override
+    public boolean canConsume(int c) {
+      return firstChar == -1 || c == firstChar;
+    }
+  }
+}
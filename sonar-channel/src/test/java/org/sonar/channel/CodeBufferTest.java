@@ -24,6 +24,7 @@ import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 
 import java.io.IOException;
+import java.nio.CharBuffer;
 import java.util.regex.Pattern;
 
 import org.junit.Test;
@@ -109,6 +110,57 @@ public class CodeBufferTest {
     assertEquals("", reader.stopRecording().toString());
   }
 
+  @Test
+  public void shouldRecordWholeCodeWithoutCopy() {
+    char[] chars = "123456".toCharArray();
+    CodeBuffer reader = new CodeBuffer(CharBuffer.wrap(chars), defaulConfiguration);
+    reader.pop();
+    reader.startRecording();
+    reader.pop();
+    reader.pop();
+    CharSequence recorded = reader.stopRecording();
+    assertEquals("23", recorded.toString());
+    assertEquals("", reader.stopRecording().toString());
+
+    // the recorded characters are a view on the code
+    chars[1] = 'x';
+    assertEquals("x3", recorded.toString());
+  }
+
+  @Test
+  public void shouldRecordPushedCharacters() {
+    CodeBuffer reader = new CodeBuffer(CharBuffer.wrap("123456"), defaulConfiguration);
+    reader.startRecording();
+    reader.pop();
+    reader.pop();
+    CharSequence beforePush = reader.subSequence(0, 2);
+    reader.push("ab");
+    reader.pop();
+    assertEquals("12a", reader.stopRecording().toString());
+    assertEquals("34", beforePush.toString());
+    assertEquals('b', (char) reader.peek());
+  }
+
+  @Test
+  public void theLengthShouldBeTheNumberOfRemainingCharactersOfWholeCode() {
+    CodeReaderConfiguration conf = new CodeReaderConfiguration();
+    conf.setBufferCapacity(2);
+    CodeBuffer reader = new CodeBuffer(CharBuffer.wrap("myCode"), conf);
+    assertThat(reader.length(), is(6));
+    reader.pop();
+    assertThat(reader.length(), is(5));
+    assertEquals("Code", reader.subSequence(1, 5).toString());
+  }
+
+  @Test
+  public void shouldApplyFiltersOnWholeCode() {
+    CodeReaderConfiguration configuration = new CodeReaderConfiguration();
+    configuration.setCodeReaderFilters(new ReplaceNumbersFilter());
+    CodeBuffer code = new CodeBuffer(CharBuffer.wrap("ab12"), configuration);
+    assertEquals('a', code.charAt(0));
+    assertEquals('-', code.charAt(2));
+  }
+
   @Test
   public void testCharAt() {
     CodeBuffer reader = new CodeBuffer("123456", defaulConfiguration);
@@ -23,14 +23,25 @@ import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class CodeReaderTest {
 
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
   @Test
   public void testPopWithAppendable() {
     CodeReader reader = new CodeReader("package org.sonar;");
@@ -123,4 +134,40 @@ public class CodeReaderTest {
     assertEquals(3, new CodeReader(new StringReader("123ABC")).popTo(digitMatcher, alphabeticMatcher, token));
     assertEquals("123", token.toString());
   }
+
+  @Test
+  public void testPopToWithWholeCode() {
+    CodeReader reader = new CodeReader(CharBuffer.wrap("123 foo"));
+    StringBuilder token = new StringBuilder();
+    assertThat(reader.popTo(Pattern.compile("\\d+").matcher(""), token), is(3));
+    assertThat(token.toString(), is("123"));
+    assertThat(reader.length(), is(4));
+    assertThat(reader.subSequence(1, 4).toString(), is("foo"));
+  }
+
+  @Test
+  public void testPopToWithCodeReadByChunks() {
+    CodeReaderConfiguration configuration = new CodeReaderConfiguration();
+    configuration.setBufferCapacity(10);
+    CodeReader reader = new CodeReader(new StringReader("123 foo"), configuration);
+    StringWriter token = new StringWriter();
+    assertThat(reader.popTo(Pattern.compile("\\d+").matcher(""), token), is(3));
+    assertThat(token.toString(), is("123"));
+    assertThat((char) reader.pop(), is(' '));
+  }
+
+  @Test
+  public void testReadMappedFile() throws IOException {
+    File file = tempFolder.newFile("Foo.java");
+    FileUtils.writeStringToFile(file, "class Caf\u00e9 {\n}", "UTF-8");
+
+    CodeReader reader = new CodeReader(file, Charset.forName("UTF-8"), new CodeReaderConfiguration());
+    StringBuilder line = new StringBuilder();
+    reader.popTo(Pattern.compile("[^\\n]*+").matcher(""), line);
+    assertThat(line.toString(), is("class Caf\u00e9 {"));
+    reader.pop();
+    assertThat(reader.getLinePosition(), is(2));
+    assertThat((char) reader.pop(), is('}'));
+    assertThat(reader.pop(), is(-1));
+  }
 }
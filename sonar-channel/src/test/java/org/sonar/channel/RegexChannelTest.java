@@ -34,6 +34,27 @@ public class RegexChannelTest {
     assertThat(output.toString(), is("<w>my</w> <w>word</w>"));
   }
 
+  @Test
+  public void shouldDeduceFirstCharactersFromRegex() {
+    RegexChannel<StringBuilder> channel = new MyWordChannel();
+    assertThat(channel.canConsume('a'), is(true));
+    assertThat(channel.canConsume('_'), is(true));
+    assertThat(channel.canConsume(' '), is(false));
+    assertThat(channel.canConsume('\u00e9'), is(true));
+  }
+
+  @Test
+  public void shouldAcceptFirstCharactersOfLongerTokens() {
+    RegexChannel<StringBuilder> channel = new RegexChannel<StringBuilder>("https?://\\S++") {
+
+      @Override
+      protected void consume(CharSequence token, StringBuilder output) {
+      }
+    };
+    assertThat(channel.canConsume('h'), is(true));
+    assertThat(channel.canConsume('t'), is(false));
+  }
+
   private class MyWordChannel extends RegexChannel<StringBuilder> {
 
     public MyWordChannel() {
@@ -20,6 +20,7 @@
 package org.sonar.colorizer;
 
 import java.io.Reader;
+import java.io.Writer;
 import java.util.List;
 
 public class CodeColorizer {
@@ -43,6 +44,14 @@ public class CodeColorizer {
     return new HtmlRenderer(opts).render(code, tokenizers);
   }
 
+  /**
+   * Streams the HTML to the output, which is not closed.
+   */
+  public void toHtml(Reader code, HtmlOptions options, Writer output) {
+    HtmlOptions opts = (options == null ? HtmlOptions.DEFAULT : options);
+    new HtmlRenderer(opts).render(code, tokenizers, output);
+  }
+
   public static String javaToHtml(Reader code, HtmlOptions options) {
     return new CodeColorizer(Format.JAVA).toHtml(code, options);
   }
@@ -19,19 +19,36 @@
  */
 package org.sonar.colorizer;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
 
 public class HtmlCodeBuilder implements Appendable {
 
+  /**
+   * When the HTML is streamed to a Writer, the buffer is flushed between two tokens once it exceeds this number of characters.
+   */
+  static final int FLUSH_THRESHOLD = 8192;
+
   private StringBuilder colorizedCode = new StringBuilder();
   private Map variables = new HashMap(); // stateful data
+  private Writer output = null;
+  private char[] outputBuffer = null;
+
+  public HtmlCodeBuilder() {
+  }
+
+  /**
+   * The HTML is written to the given output instead of being kept in memory. In this case {@link #toString()} and
+   * {@link #getColorizedCode()} return only the HTML which has not been flushed yet.
+   */
+  public HtmlCodeBuilder(Writer output) {
+    this.output = output;
+  }
 
   public Appendable append(CharSequence csq) {
-    for (int i = 0; i < csq.length(); i++) {
-      append(csq.charAt(i));
-    }
-    return this;
+    return append(csq, 0, csq.length());
   }
 
   public Appendable append(char c) {
@@ -45,10 +62,20 @@ public class HtmlCodeBuilder implements Appendable {
     return this;
   }
 
+  /**
+   * Characters which don't need to be escaped are appended by ranges.
+   */
   public Appendable append(CharSequence csq, int start, int end) {
+    int from = start;
     for (int i = start; i < end; i++) {
-      append(csq.charAt(i));
+      char c = csq.charAt(i);
+      if (c == '<' || c == '>') {
+        colorizedCode.append(csq, from, i);
+        colorizedCode.append(c == '<' ? "&lt;" : "&gt;");
+        from = i + 1;
+      }
     }
+    colorizedCode.append(csq, from, end);
     return this;
   }
 
@@ -64,6 +91,35 @@ public class HtmlCodeBuilder implements Appendable {
     return colorizedCode;
   }
 
+  /**
+   * Must be called only between two tokens, because some tokenizers read the HTML of the current token.
+   */
+  void flushIfFull() {
+    if (output != null && colorizedCode.length() > FLUSH_THRESHOLD) {
+      flush();
+    }
+  }
+
+  /**
+   * Writes the buffered HTML to the output, if any.
+   */
+  public void flush() {
+    if (output != null) {
+      try {
+        int length = colorizedCode.length();
+        if (outputBuffer == null || outputBuffer.length < length) {
+          outputBuffer = new char[Math.max(length, FLUSH_THRESHOLD * 2)];
+        }
+        colorizedCode.getChars(0, length, outputBuffer, 0);
+        output.write(outputBuffer, 0, length);
+        output.flush();
+        colorizedCode.setLength(0);
+      } catch (IOException e) {
+        throw new SynhtaxHighlightingException("Can not write the colorized code", e);
+      }
+    }
+  }
+
   /**
    * Save a stateful variable.
    * 
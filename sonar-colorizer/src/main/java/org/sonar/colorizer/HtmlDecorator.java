@@ -32,6 +32,9 @@ public class HtmlDecorator extends Tokenizer {
   private HtmlOptions options;
   private int lineId;
 
+  private static final String LINE_SEPARATOR_START = "</pre></td></tr><tr id=\"";
+  private static final String LINE_SEPARATOR_END = "\"><td><pre>";
+
   private static final int LF = (int) '\n';
   private static final int CR = (int) '\r';
 
@@ -73,14 +76,19 @@ public class HtmlDecorator extends Tokenizer {
     return "</pre></td></tr>";
   }
 
+  @Override
+  public boolean canConsume(int firstChar) {
+    return firstChar == LF || firstChar == CR;
+  }
+
   @Override
   public boolean consume(CodeReader code, HtmlCodeBuilder codeBuilder) {
     int lineNumber = code.getLinePosition();
     if (code.peek() == LF || code.peek() == CR) {
       code.pop();
       if (lineNumber != code.getLinePosition()) {
-        codeBuilder.appendWithoutTransforming(getTagAfter());
-        codeBuilder.appendWithoutTransforming(getTagBefore());
+        // same as getTagAfter() + getTagBefore(), without creating temporary strings on each line
+        codeBuilder.getColorizedCode().append(LINE_SEPARATOR_START).append(lineId++).append(LINE_SEPARATOR_END);
       }
       return true;
     }
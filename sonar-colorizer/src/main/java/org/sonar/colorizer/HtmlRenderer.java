@@ -20,9 +20,12 @@
 package org.sonar.colorizer;
 
 import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.commons.io.IOUtils;
 import org.sonar.channel.Channel;
 import org.sonar.channel.CodeReader;
 
@@ -39,9 +42,23 @@ public class HtmlRenderer extends Renderer {
   }
 
   public String render(Reader code, List<? extends Channel<HtmlCodeBuilder>> tokenizers) {
+    HtmlCodeBuilder codeBuilder = new HtmlCodeBuilder();
+    render(code, tokenizers, codeBuilder);
+    return codeBuilder.toString();
+  }
+
+  /**
+   * Streams the HTML to the output instead of keeping the whole colorized code in memory. The output is not closed.
+   */
+  public void render(Reader code, List<? extends Channel<HtmlCodeBuilder>> tokenizers, Writer output) {
+    HtmlCodeBuilder codeBuilder = new HtmlCodeBuilder(output);
+    render(code, tokenizers, codeBuilder);
+    codeBuilder.flush();
+  }
+
+  private void render(Reader code, List<? extends Channel<HtmlCodeBuilder>> tokenizers, HtmlCodeBuilder codeBuilder) {
     try {
       List<Channel<HtmlCodeBuilder>> allTokenizers = new ArrayList<Channel<HtmlCodeBuilder>>();
-      HtmlCodeBuilder codeBuilder = new HtmlCodeBuilder();
       HtmlDecorator htmlDecorator = new HtmlDecorator(options);
 
       // optimization
@@ -51,14 +68,14 @@ public class HtmlRenderer extends Renderer {
       }
       allTokenizers.addAll(tokenizers);
 
-      new TokenizerDispatcher(allTokenizers).colorize(new CodeReader(code), codeBuilder);
+      // the whole code is loaded at once, so that the reader does not copy it by chunks
+      new TokenizerDispatcher(allTokenizers).colorize(new CodeReader(CharBuffer.wrap(IOUtils.toCharArray(code))), codeBuilder);
       // optimization
       if (options != null && options.isGenerateTable()) {
         codeBuilder.appendWithoutTransforming(htmlDecorator.getTagEndOfFile());
       }
-      return codeBuilder.toString();
     } catch (Exception e) {
       throw new SynhtaxHighlightingException("Can not render code", e);
     }
   }
-}
\ No newline at end of file
+}
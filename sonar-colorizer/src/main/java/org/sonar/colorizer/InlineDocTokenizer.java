@@ -37,6 +37,11 @@ public abstract class InlineDocTokenizer extends Tokenizer {
     this.startToken = startToken.toCharArray();
   }
 
+  @Override
+  public boolean canConsume(int firstChar) {
+    return firstChar == startToken[0];
+  }
+
   public boolean consume(CodeReader code, HtmlCodeBuilder codeBuilder) {
     if (code.peek() == startToken[0] && Arrays.equals(code.peek(startToken.length), startToken)) {
       codeBuilder.appendWithoutTransforming(tagBefore);
@@ -39,6 +39,11 @@ public class JavaAnnotationTokenizer extends Tokenizer {
     }
   };
 
+  @Override
+  public boolean canConsume(int firstChar) {
+    return firstChar == '@';
+  }
+
   @Override
   public boolean consume(CodeReader code, HtmlCodeBuilder codeBuilder) {
     if (code.peek() == '@') {
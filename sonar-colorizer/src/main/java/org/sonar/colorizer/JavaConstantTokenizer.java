@@ -50,6 +50,11 @@ public class JavaConstantTokenizer extends Tokenizer {
     return false;
   }
 
+  @Override
+  public boolean canConsume(int firstChar) {
+    return isJavaConstantStart(firstChar);
+  }
+
   @Override
   public boolean consume(CodeReader code, HtmlCodeBuilder codeBuilder) {
     if (hasNextToken(code)) {
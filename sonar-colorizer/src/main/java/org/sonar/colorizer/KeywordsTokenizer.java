@@ -59,6 +59,14 @@ public class KeywordsTokenizer extends NotThreadSafeTokenizer {
     this.matcher = Pattern.compile(defaultRegex).matcher("");
   }
 
+  @Override
+  public boolean canConsume(int firstChar) {
+    if (!defaultRegex.equals(matcher.pattern().pattern())) {
+      return true;
+    }
+    return firstChar == '_' || (firstChar >= 'a' && firstChar <= 'z') || (firstChar >= 'A' && firstChar <= 'Z');
+  }
+
   public boolean consume(CodeReader code, HtmlCodeBuilder codeBuilder) {
     if (code.popTo(matcher, tmpBuilder) > 0) {
       if (isKeyword(tmpBuilder.toString())) {
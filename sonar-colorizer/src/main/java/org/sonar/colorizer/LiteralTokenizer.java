@@ -36,6 +36,11 @@ public class LiteralTokenizer extends Tokenizer {
     this("", "");
   }
 
+  @Override
+  public boolean canConsume(int firstChar) {
+    return firstChar == '\'' || firstChar == '\"';
+  }
+
   @Override
   public boolean consume(CodeReader code, HtmlCodeBuilder codeBuilder) {
     if (code.peek() == '\'' || code.peek() == '\"') {
@@ -51,8 +51,7 @@ public class MultilinesDocTokenizer extends Tokenizer {
   public boolean hasNextToken(CodeReader code, HtmlCodeBuilder codeBuilder) {
     return code.peek() != '\n'
         && code.peek() != '\r'
-        && (isCommentStartedOnPreviousLine(codeBuilder) || (code.peek() == startToken[0] && Arrays.equals(code.peek(startToken.length),
-            startToken)));
+        && ((code.peek() == startToken[0] && Arrays.equals(code.peek(startToken.length), startToken)) || isCommentStartedOnPreviousLine(codeBuilder));
   }
 
   public boolean consume(CodeReader code, HtmlCodeBuilder codeBuilder) {
@@ -33,6 +33,11 @@ public class StringTokenizer extends Tokenizer {
     tokenizer = new LiteralTokenizer("", "");
   }
 
+  @Override
+  public boolean canConsume(int firstChar) {
+    return tokenizer.canConsume(firstChar);
+  }
+
   @Override
   public boolean consume(CodeReader code, HtmlCodeBuilder output) {
     return tokenizer.consume(code, output);
@@ -19,9 +19,11 @@
  */
 package org.sonar.colorizer;
 
+import java.nio.CharBuffer;
 import java.util.List;
 
 import org.sonar.channel.Channel;
+import org.sonar.channel.ChannelIndex;
 import org.sonar.channel.CodeReader;
 
 public class TokenizerDispatcher {
@@ -38,28 +40,39 @@ public class TokenizerDispatcher {
 
   public final String colorize(String code) {
     HtmlCodeBuilder colorizedCode = new HtmlCodeBuilder();
-    colorize(new CodeReader(code), colorizedCode);
+    colorize(new CodeReader(CharBuffer.wrap(code)), colorizedCode);
     return colorizedCode.toString();
   }
 
   public final void colorize(CodeReader code, HtmlCodeBuilder colorizedCode) {
-    cloneNotThreadSafeTokenizers();
-    nextChar: while (code.peek() != -1) {
-      for (Channel<HtmlCodeBuilder> codeTokenizer : tokenizers) {
+    ChannelIndex<HtmlCodeBuilder> index = new ChannelIndex<HtmlCodeBuilder>(cloneNotThreadSafeTokenizers());
+    int nextChar = code.peek();
+    nextChar: while (nextChar != -1) {
+      for (Channel<HtmlCodeBuilder> codeTokenizer : index.getChannels(nextChar)) {
         if (codeTokenizer.consume(code, colorizedCode)) {
+          colorizedCode.flushIfFull();
+          nextChar = code.peek();
           continue nextChar;
         }
       }
       colorizedCode.append((char) code.pop());
+      nextChar = code.peek();
     }
     code.close();
   }
 
-  private void cloneNotThreadSafeTokenizers() {
+  /**
+   * The shared array is not modified, so that the dispatcher can be used by several threads.
+   */
+  private Channel<HtmlCodeBuilder>[] cloneNotThreadSafeTokenizers() {
+    Channel<HtmlCodeBuilder>[] clones = new Channel[tokenizers.length];
     for (int i = 0; i < tokenizers.length; i++) {
       if (tokenizers[i] instanceof NotThreadSafeTokenizer) {
-        tokenizers[i] = ((NotThreadSafeTokenizer) tokenizers[i]).clone();
+        clones[i] = ((NotThreadSafeTokenizer) tokenizers[i]).clone();
+      } else {
+        clones[i] = tokenizers[i];
       }
     }
+    return clones;
   }
 }
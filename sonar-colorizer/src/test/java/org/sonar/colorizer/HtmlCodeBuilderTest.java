@@ -22,6 +22,8 @@ package org.sonar.colorizer;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.StringWriter;
+
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertEquals;
@@ -56,6 +58,31 @@ public class HtmlCodeBuilderTest {
     assertEquals("fr", builder.toString());
   }
 
+  @Test
+  public void testAppendCharSequenceWithSeveralSpecialCharacters() {
+    builder.append("<<a>b>", 1, 6);
+    assertEquals("&lt;a&gt;b&gt;", builder.toString());
+  }
+
+  @Test
+  public void shouldStreamToWriter() {
+    StringWriter output = new StringWriter();
+    builder = new HtmlCodeBuilder(output);
+    builder.append("a < b");
+    builder.flushIfFull();
+    assertEquals("", output.toString());
+
+    String longLine = new String(new char[HtmlCodeBuilder.FLUSH_THRESHOLD]).replace('\0', 'x');
+    builder.append(longLine);
+    builder.flushIfFull();
+    assertEquals("a &lt; b" + longLine, output.toString());
+    assertEquals("", builder.toString());
+
+    builder.appendWithoutTransforming("<end/>");
+    builder.flush();
+    assertEquals("a &lt; b" + longLine + "<end/>", output.toString());
+  }
+
   @Test
   public void testAppendWithoutTransforming() {
     builder.appendWithoutTransforming("<inside>outside");
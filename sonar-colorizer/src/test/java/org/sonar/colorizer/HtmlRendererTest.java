@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.Arrays;
 
 import org.apache.commons.io.FileUtils;
@@ -53,6 +54,17 @@ public class HtmlRendererTest {
     assertThat(html, is("foo(<s>\"&lt;html&gt;\"</s>);"));
   }
 
+  @Test
+  public void shouldStreamHtml() throws IOException {
+    File java = FileUtils.toFile(getClass().getResource("/org/sonar/colorizer/HtmlRendererTest/Sample.java"));
+    StringWriter output = new StringWriter();
+
+    new HtmlRenderer().render(new FileReader(java), Arrays.<Channel<HtmlCodeBuilder>> asList(javaKeywordTokenizer), output);
+
+    String html = new HtmlRenderer().render(new FileReader(java), Arrays.<Channel<HtmlCodeBuilder>> asList(javaKeywordTokenizer));
+    assertThat(output.toString(), is(html));
+  }
+
   @Test
   public void renderJavaFile() throws IOException {
     File java = FileUtils.toFile(getClass().getResource("/org/sonar/colorizer/HtmlRendererTest/Sample.java"));
@@ -20,6 +20,7 @@
 package org.sonar.colorizer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Before;
@@ -56,4 +57,12 @@ public class LiteralTokenizerTest {
     assertTrue(tokenizer.consume(new CodeReader("\"to\\'to\""), codeBuilder));
     assertEquals("<s>\"to\\'to\"</s>", codeBuilder.toString());
   }
+
+  @Test
+  public void canConsumeOnlyQuotes() {
+    LiteralTokenizer tokenizer = new LiteralTokenizer("<s>", "</s>");
+    assertTrue(tokenizer.canConsume('"'));
+    assertTrue(tokenizer.canConsume('\''));
+    assertFalse(tokenizer.canConsume('a'));
+  }
 }
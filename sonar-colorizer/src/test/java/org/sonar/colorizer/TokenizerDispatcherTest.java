@@ -56,6 +56,29 @@ public class TokenizerDispatcherTest {
     assertThat(colorization.colorize("assert(\"message\"); //comment"), is("<k>assert</k>(<s>\"message\"</s>); <c>//comment</c>"));
   }
 
+  @Test
+  public void shouldOnlyCallTokenizersWhichCanConsumeFirstCharacter() {
+    Tokenizer onlyQuotes = new Tokenizer() {
+
+      @Override
+      public boolean canConsume(int firstChar) {
+        return firstChar == '\'';
+      }
+
+      @Override
+      public boolean consume(CodeReader code, HtmlCodeBuilder output) {
+        if (code.peek() != '\'') {
+          throw new IllegalStateException("Must not be called on " + (char) code.peek());
+        }
+        output.appendWithoutTransforming("<q/>");
+        code.pop();
+        return true;
+      }
+    };
+    TokenizerDispatcher colorization = newColorizer(onlyQuotes, new KeywordsTokenizer("<k>", "</k>", JavaKeywords.get()));
+    assertThat(colorization.colorize("char c='x'"), is("<k>char</k> c=<q/>x<q/>"));
+  }
+
   @Test(expected = IllegalStateException.class)
   public void testCloneNotThreadSafeTokenizers() {
     NotThreadSafeTokenizer tokenizer = new NotThreadSafeTokenizer() {
@@ -27,6 +27,9 @@ import org.sonar.jpa.session.DatabaseSessionFactory;
 
 import java.util.Map;
 
+/**
+ * The cache is shared by the sensors and decorators executed concurrently, so it's synchronized.
+ */
 public final class CacheRuleFinder extends DefaultRuleFinder {
 
   private BiMap<Integer, Rule> rulesById = HashBiMap.create();
@@ -37,7 +40,7 @@ public final class CacheRuleFinder extends DefaultRuleFinder {
   }
 
   @Override
-  public Rule findById(int ruleId) {
+  public synchronized Rule findById(int ruleId) {
     Rule rule = rulesById.get(ruleId);
     if (rule==null) {
       rule = doFindById(ruleId);
@@ -47,7 +50,7 @@ public final class CacheRuleFinder extends DefaultRuleFinder {
   }
 
   @Override
-  public Rule findByKey(String repositoryKey, String key) {
+  public synchronized Rule findByKey(String repositoryKey, String key) {
     Map<String,Rule> repoRules = rulesByKey.get(repositoryKey);
     Rule rule = null;
     if (repoRules!=null) {
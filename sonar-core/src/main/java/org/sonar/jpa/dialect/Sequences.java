@@ -0,0 +1,67 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.jpa.dialect;
+
+/**
+ * Gives access to the sequences used by {@link OracleSequenceGenerator} and {@link PostgreSQLSequenceGenerator},
+ * so that ids can be allocated outside of Hibernate, for example before JDBC batch inserts.
+ *
+ * @since 2.8
+ */
+public final class Sequences {
+
+  private Sequences() {
+  }
+
+  /**
+   * @return true if ids of the given dialect are generated by sequences, false if they are generated by identity columns.
+   */
+  public static boolean isSupported(Dialect dialect) {
+    return dialect instanceof Oracle || dialect instanceof PostgreSql;
+  }
+
+  /**
+   * @return the name of the sequence used to generate the primary key of the table, or null if the dialect does not use sequences
+   */
+  public static String getSequenceName(Dialect dialect, String tableName, String pkColumnName) {
+    if (dialect instanceof Oracle) {
+      return (tableName + OracleSequenceGenerator.SEQUENCE_NAME_SUFFIX).toUpperCase();
+    }
+    if (dialect instanceof PostgreSql) {
+      return tableName + PostgreSQLSequenceGenerator.SEQUENCE_NAME_SEPARATOR + pkColumnName
+          + PostgreSQLSequenceGenerator.SEQUENCE_NAME_SEPARATOR + PostgreSQLSequenceGenerator.SEQUENCE_NAME_SUFFIX;
+    }
+    return null;
+  }
+
+  /**
+   * @return a SQL request returning <code>count</code> rows, each row containing a new value of the sequence. Null if the dialect
+   *         does not use sequences.
+   */
+  public static String getNextValuesSql(Dialect dialect, String sequenceName, int count) {
+    if (dialect instanceof Oracle) {
+      return "SELECT " + sequenceName + ".NEXTVAL FROM DUAL CONNECT BY LEVEL <= " + count;
+    }
+    if (dialect instanceof PostgreSql) {
+      return "SELECT nextval('" + sequenceName + "') FROM generate_series(1, " + count + ")";
+    }
+    return null;
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.jpa.entity;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.sonar.api.database.BaseIdentifiable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import java.util.Date;
+
+/**
+ * Purge of a project waiting to be executed by the server.
+ *
+ * @since 2.8
+ */
+@Entity
+@Table(name = "purge_requests")
+public class PurgeRequest extends BaseIdentifiable {
+
+  @Column(name = "project_id", updatable = false, nullable = false)
+  private Integer projectId;
+
+  @Column(name = "snapshot_id", updatable = false, nullable = false)
+  private Integer snapshotId;
+
+  @Column(name = "previous_snapshot_id", updatable = false, nullable = true)
+  private Integer previousSnapshotId;
+
+  @Temporal(TemporalType.TIMESTAMP)
+  @Column(name = "created_at", updatable = false, nullable = true)
+  private Date createdAt;
+
+  @Column(name = "attempts", updatable = true, nullable = true)
+  private Integer attempts;
+
+  public PurgeRequest() {
+  }
+
+  public PurgeRequest(Integer projectId, Integer snapshotId, Integer previousSnapshotId) {
+    this.projectId = projectId;
+    this.snapshotId = snapshotId;
+    this.previousSnapshotId = previousSnapshotId;
+    this.createdAt = new Date();
+  }
+
+  public Integer getProjectId() {
+    return projectId;
+  }
+
+  public void setProjectId(Integer projectId) {
+    this.projectId = projectId;
+  }
+
+  public Integer getSnapshotId() {
+    return snapshotId;
+  }
+
+  public void setSnapshotId(Integer snapshotId) {
+    this.snapshotId = snapshotId;
+  }
+
+  public Integer getPreviousSnapshotId() {
+    return previousSnapshotId;
+  }
+
+  public void setPreviousSnapshotId(Integer previousSnapshotId) {
+    this.previousSnapshotId = previousSnapshotId;
+  }
+
+  public Date getCreatedAt() {
+    return createdAt;
+  }
+
+  public void setCreatedAt(Date createdAt) {
+    this.createdAt = createdAt;
+  }
+
+  /**
+   * @return the number of failed executions
+   */
+  public int getAttempts() {
+    return attempts == null ? 0 : attempts;
+  }
+
+  public void setAttempts(Integer attempts) {
+    this.attempts = attempts;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("id", getId())
+        .append("projectId", projectId)
+        .append("snapshotId", snapshotId)
+        .append("previousSnapshotId", previousSnapshotId)
+        .append("createdAt", createdAt)
+        .append("attempts", attempts)
+        .toString();
+  }
+}
@@ -20,8 +20,10 @@
 package org.sonar.jpa.session;
 
 import org.apache.commons.lang.StringUtils;
+import org.hibernate.Session;
 import org.sonar.api.database.DatabaseSession;
 
+import java.sql.Connection;
 import java.util.*;
 
 import javax.persistence.EntityManager;
@@ -145,6 +147,19 @@ public class JpaDatabaseSession extends DatabaseSession {
     return entityManager.getReference(entityClass, primaryKey);
   }
 
+  /**
+   * Gives access to the JDBC connection of the current transaction, for example to execute JDBC batches. The pending changes
+   * of the session are flushed before, so the statements executed on this connection can reference them. The connection
+   * must not be committed nor closed : it's done by {@link #commit()} and {@link #stop()}.
+   *
+   * @since 2.8
+   */
+  public Connection getConnection() {
+    startTransaction();
+    entityManager.flush();
+    return ((Session) entityManager.getDelegate()).connection();
+  }
+
   private void startTransaction() {
     if (!inTransaction) {
       entityManager.getTransaction().begin();
@@ -0,0 +1,51 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.jpa.dialect;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SequencesTest {
+
+  @Test
+  public void shouldSupportOnlyDialectsWithSequences() {
+    assertThat(Sequences.isSupported(new Oracle()), is(true));
+    assertThat(Sequences.isSupported(new PostgreSql()), is(true));
+    assertThat(Sequences.isSupported(new MySql()), is(false));
+    assertThat(Sequences.isSupported(new Derby()), is(false));
+  }
+
+  @Test
+  public void shouldFollowNamingOfSequenceGenerators() {
+    assertThat(Sequences.getSequenceName(new Oracle(), "project_measures", "id"), is("PROJECT_MEASURES_SEQ"));
+    assertThat(Sequences.getSequenceName(new PostgreSql(), "project_measures", "id"), is("project_measures_id_seq"));
+    assertThat(Sequences.getSequenceName(new MySql(), "project_measures", "id"), nullValue());
+  }
+
+  @Test
+  public void shouldSelectSeveralValues() {
+    assertThat(Sequences.getNextValuesSql(new Oracle(), "RULE_FAILURES_SEQ", 10), is("SELECT RULE_FAILURES_SEQ.NEXTVAL FROM DUAL CONNECT BY LEVEL <= 10"));
+    assertThat(Sequences.getNextValuesSql(new PostgreSql(), "rule_failures_id_seq", 10), is("SELECT nextval('rule_failures_id_seq') FROM generate_series(1, 10)"));
+    assertThat(Sequences.getNextValuesSql(new Derby(), "rule_failures", 10), nullValue());
+  }
+}
@@ -23,47 +23,56 @@
  */
 package net.sourceforge.pmd.cpd;
 
-import java.util.HashMap;
-import java.util.Map;
-
+/**
+ * A token of a source file. The index and the identifier of the token are given by the {@link Tokens} which the token
+ * is added to, so that several CPD analyses can run at the same time.
+ */
 public class TokenEntry implements Comparable<TokenEntry> {
 
     public static final TokenEntry EOF = new TokenEntry();
 
+    private String image;
     private String tokenSrcID;
     private int beginLine;
     private int index;
     private int identifier;
     private int hashCode;
 
-    private final static Map<String, Integer> Tokens = new HashMap<String, Integer>();
-    private static int TokenCount = 0;
-
     private TokenEntry() {
         this.identifier = 0;
         this.tokenSrcID = "EOFMarker";
     }
 
     public TokenEntry(String image, String tokenSrcID, int beginLine) {
-        Integer i = Tokens.get(image);
-        if (i == null) {
-            i = Tokens.size() + 1;
-            Tokens.put(image, i);
-        }
-        this.identifier = i.intValue();
+        this.image = image;
         this.tokenSrcID = tokenSrcID;
         this.beginLine = beginLine;
-        this.index = TokenCount++;
     }
 
     public static TokenEntry getEOF() {
-        TokenCount++;
         return EOF;
     }
 
+    /**
+     * Images are not shared between analyses anymore, so there's nothing to clear.
+     *
+     * @deprecated since 2.8, the identifiers of tokens are given by {@link Tokens}
+     */
+    @Deprecated
     public static void clearImages() {
-        Tokens.clear();
-        TokenCount = 0;
+    }
+
+    void bind(int index, int identifier, String image) {
+        this.index = index;
+        this.identifier = identifier;
+        this.image = image;
+    }
+
+    /**
+     * @since 2.8
+     */
+    public String getImage() {
+        return image;
     }
 
     public String getTokenSrcID() {
@@ -26,14 +26,35 @@ package net.sourceforge.pmd.cpd;
 import org.sonar.duplications.cpd.Match;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * The tokens of a CPD analysis. Each instance has its own dictionary of images, so that the identifiers and the
+ * indexes of tokens do not depend on other analyses. This class is not thread-safe.
+ */
 public class Tokens {
 
     private List<TokenEntry> tokens = new ArrayList<TokenEntry>();
+    private Map<String, Integer> identifiers = new HashMap<String, Integer>();
+    private List<String> images = new ArrayList<String>();
 
+    /**
+     * Gives to the token its index in this list and the identifier of its image. A token added to another instance
+     * of Tokens is given a new index and a new identifier.
+     */
     public void add(TokenEntry tokenEntry) {
+        if (tokenEntry != TokenEntry.EOF) {
+            Integer identifier = identifiers.get(tokenEntry.getImage());
+            if (identifier == null) {
+                images.add(tokenEntry.getImage());
+                identifier = images.size();
+                identifiers.put(tokenEntry.getImage(), identifier);
+            }
+            tokenEntry.bind(tokens.size(), identifier, images.get(identifier - 1));
+        }
         this.tokens.add(tokenEntry);
     }
 
@@ -0,0 +1,138 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.duplications.cpd;
+
+import net.sourceforge.pmd.cpd.CPDListener;
+import net.sourceforge.pmd.cpd.CPDNullListener;
+import net.sourceforge.pmd.cpd.SourceCode;
+import net.sourceforge.pmd.cpd.TokenEntry;
+import net.sourceforge.pmd.cpd.Tokens;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Duplication engine which indexes the tiles of tokens in primitive arrays instead of a map of {@link TokenEntry}.
+ * <p>
+ * The identifiers of the tokens are copied in an <code>int[]</code>. The hash of every tile of {@link #getMinimumTileSize()} tokens
+ * is packed with the index of its first token in a <code>long</code>, so that sorting a single <code>long[]</code> puts the
+ * candidate duplications side by side. The groups are then given to the same {@link MatchCollector} than the legacy
+ * {@link MatchAlgorithm}, so the matches are the same. Only the order in which the groups are collected changes: it is the order
+ * of the hashes instead of the undefined order of a hash map.
+ * </p>
+ *
+ * @since 2.8
+ */
+public class BlockHashMatchAlgorithm extends MatchAlgorithm {
+
+  private static final int MOD = 37;
+  private static final int EOF_IDENTIFIER = 0;
+
+  private int[] identifiers;
+
+  public BlockHashMatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min) {
+    this(sourceCode, tokens, min, new CPDNullListener());
+  }
+
+  public BlockHashMatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min, CPDListener listener) {
+    super(sourceCode, tokens, min, listener);
+  }
+
+  @Override
+  boolean tokensMatch(int offset, TokenEntry mark1, TokenEntry mark2) {
+    int identifier = identifiers[mark1.getIndex() + offset];
+    return identifier != EOF_IDENTIFIER && identifier == identifiers[mark2.getIndex() + offset];
+  }
+
+  @Override
+  protected void collectMarkGroups(MatchCollector matchCollector) {
+    getListener().phaseUpdate(CPDListener.HASH);
+    List<TokenEntry> code = getCode();
+    identifiers = new int[code.size()];
+    for (int i = 0; i < identifiers.length; i++) {
+      identifiers[i] = code.get(i).getIdentifier();
+    }
+    long[] tiles = new long[identifiers.length];
+    int tileCount = hash(code, tiles);
+    Arrays.sort(tiles, 0, tileCount);
+
+    getListener().phaseUpdate(CPDListener.MATCH);
+    int start = 0;
+    while (start < tileCount) {
+      int end = start + 1;
+      while (end < tileCount && hashOf(tiles[end]) == hashOf(tiles[start])) {
+        end++;
+      }
+      if (end - start > 1) {
+        List<TokenEntry> marks = new ArrayList<TokenEntry>(end - start);
+        for (int i = start; i < end; i++) {
+          marks.add(code.get(indexOf(tiles[i])));
+        }
+        matchCollector.collect(marks);
+      }
+      start = end;
+    }
+  }
+
+  /**
+   * Computes the same rolling hash than the legacy engine : the hash of the tile starting at index i is the sum of
+   * identifier[i + k] * 37^k for k in [0, min[. Tiles which overlap the end of a file are ignored.
+   *
+   * @return the number of tiles written in the array
+   */
+  private int hash(List<TokenEntry> code, long[] tiles) {
+    int min = getMinimumTileSize();
+    int lastMod = 1;
+    for (int i = 0; i < min; i++) {
+      lastMod *= MOD;
+    }
+    int tileCount = 0;
+    int hash = 0;
+    int tokensBeforeEof = 0;
+    for (int i = identifiers.length - 1; i >= 0; i--) {
+      int identifier = identifiers[i];
+      if (identifier == EOF_IDENTIFIER) {
+        hash = 0;
+        tokensBeforeEof = 0;
+      } else {
+        tokensBeforeEof++;
+        hash = MOD * hash + identifier;
+        if (tokensBeforeEof > min) {
+          hash -= lastMod * identifiers[i + min];
+        }
+        if (tokensBeforeEof >= min) {
+          code.get(i).setHashCode(hash);
+          tiles[tileCount++] = ((long) hash << 32) | i;
+        }
+      }
+    }
+    return tileCount;
+  }
+
+  private static int hashOf(long tile) {
+    return (int) (tile >> 32);
+  }
+
+  private static int indexOf(long tile) {
+    return (int) tile;
+  }
+}
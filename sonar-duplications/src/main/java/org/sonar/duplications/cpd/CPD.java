@@ -29,11 +29,14 @@ import net.sourceforge.pmd.util.FileFinder;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.*;
 
+/**
+ * A CPD analysis. Instances are independent, so several analyses can run at the same time in different threads, but
+ * an instance must not be shared between threads.
+ */
 public class CPD {
 
   private Map<String, SourceCode> source = new HashMap<String, SourceCode>();
@@ -44,9 +47,9 @@ public class CPD {
   private Language language;
   private boolean loadSourceCodeSlices = true;
   private String encoding = System.getProperty("file.encoding");
+  private int tokenizerThreads = 1;
 
   public CPD(int minimumTileSize, Language language) {
-    TokenEntry.clearImages(); // workaround for bug 1947823
     this.minimumTileSize = minimumTileSize;
     this.language = language;
   }
@@ -63,9 +66,19 @@ public class CPD {
     this.loadSourceCodeSlices = loadSourceCodeSlices;
   }
 
+  /**
+   * Number of threads used to tokenize the files given to {@link #add(List)} and {@link #addAndGetTokens(List)}.
+   * When greater than 1, the tokenizer of the language must be thread-safe. Tokens are added in the order of files,
+   * so the result does not depend on the number of threads. Default value is 1.
+   *
+   * @since 2.8
+   */
+  public void setTokenizerThreads(int tokenizerThreads) {
+    this.tokenizerThreads = tokenizerThreads;
+  }
+
   public void go() {
-    TokenEntry.clearImages();
-    matchAlgorithm = new MatchAlgorithm(source, tokens, minimumTileSize, listener);
+    matchAlgorithm = new BlockHashMatchAlgorithm(source, tokens, minimumTileSize, listener);
     matchAlgorithm.setLoadSourceCodeSlices(loadSourceCodeSlices);
     matchAlgorithm.findMatches();
   }
@@ -75,7 +88,43 @@ public class CPD {
   }
 
   public void add(File file) throws IOException {
-    add(1, file);
+    add(Arrays.asList(file), false);
+  }
+
+  /**
+   * Same as {@link #add(File)}, but also returns the tokens of the file so that they can be reused by next analyses.
+   *
+   * @return the tokens, or null if the file is skipped
+   * @since 2.8
+   */
+  public FileTokens addAndGetTokens(File file) throws IOException {
+    return add(Arrays.asList(file), true).get(file);
+  }
+
+  /**
+   * Same as {@link #add(List)}, but also returns the tokens of the files so that they can be reused by next analyses.
+   *
+   * @return the tokens by file. Skipped files are excluded.
+   * @since 2.8
+   */
+  public Map<File, FileTokens> addAndGetTokens(List<File> files) throws IOException {
+    return add(files, true);
+  }
+
+  /**
+   * Adds a file which has already been tokenized, for example by a previous analysis. The file is read only if
+   * source code slices are loaded.
+   *
+   * @since 2.8
+   */
+  public void add(File file, FileTokens fileTokens) {
+    SourceCode sourceCode = new SourceCode(new FileCodeLoaderWithoutCache(file, encoding));
+    String fileName = sourceCode.getFileName();
+    for (int i = 0; i < fileTokens.size(); i++) {
+      tokens.add(new TokenEntry(fileTokens.getImage(i), fileName, fileTokens.getLine(i)));
+    }
+    tokens.add(TokenEntry.getEOF());
+    source.put(fileName, sourceCode);
   }
 
   public void addAllInDirectory(String dir) throws IOException {
@@ -87,9 +136,7 @@ public class CPD {
   }
 
   public void add(List<File> files) throws IOException {
-    for (File f : files) {
-      add(files.size(), f);
-    }
+    add(files, false);
   }
 
   private void addDirectory(String dir, boolean recurse) throws IOException {
@@ -101,17 +148,100 @@ public class CPD {
     add(finder.findFilesFrom(dir, language.getFileFilter(), recurse));
   }
 
-  private void add(int fileCount, File file) throws IOException {
-    if (!file.getCanonicalPath().equals(new File(file.getAbsolutePath()).getCanonicalPath())) {
-      System.out.println("Skipping " + file + " since it appears to be a symlink");
-      return;
+  private Map<File, FileTokens> add(List<File> files, boolean returnTokens) throws IOException {
+    List<File> acceptedFiles = new ArrayList<File>();
+    for (File file : files) {
+      if (!file.getCanonicalPath().equals(new File(file.getAbsolutePath()).getCanonicalPath())) {
+        System.out.println("Skipping " + file + " since it appears to be a symlink");
+      } else {
+        acceptedFiles.add(file);
+      }
     }
 
-    listener.addedFile(fileCount, file);
-    SourceCode sourceCode = new SourceCode(new FileCodeLoaderWithoutCache(file, encoding));
-    language.getTokenizer().tokenize(sourceCode, tokens);
-    source.put(sourceCode.getFileName(), sourceCode);
+    Map<File, FileTokens> result = new LinkedHashMap<File, FileTokens>();
+    if (tokenizerThreads > 1 && acceptedFiles.size() > 1) {
+      tokenizeInParallel(files.size(), acceptedFiles, returnTokens, result);
+
+    } else {
+      for (File file : acceptedFiles) {
+        listener.addedFile(files.size(), file);
+        SourceCode sourceCode = new SourceCode(new FileCodeLoaderWithoutCache(file, encoding));
+        int start = tokens.size();
+        language.getTokenizer().tokenize(sourceCode, tokens);
+        register(file, sourceCode, start, returnTokens, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Every file is tokenized by a worker thread in its own {@link Tokens}. The tokens are then moved by the current
+   * thread, in the order of files, as soon as they are available.
+   */
+  private void tokenizeInParallel(int fileCount, List<File> files, boolean returnTokens, Map<File, FileTokens> result)
+      throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(tokenizerThreads, files.size()));
+    try {
+      List<SourceCode> sourceCodes = new ArrayList<SourceCode>();
+      List<Future<Tokens>> futures = new ArrayList<Future<Tokens>>();
+      for (File file : files) {
+        final SourceCode sourceCode = new SourceCode(new FileCodeLoaderWithoutCache(file, encoding));
+        sourceCodes.add(sourceCode);
+        futures.add(executor.submit(new Callable<Tokens>() {
+          public Tokens call() throws IOException {
+            Tokens fileTokens = new Tokens();
+            language.getTokenizer().tokenize(sourceCode, fileTokens);
+            return fileTokens;
+          }
+        }));
+      }
+
+      for (int i = 0; i < files.size(); i++) {
+        File file = files.get(i);
+        Tokens fileTokens = getTokens(file, futures.get(i));
+        futures.set(i, null);
+        listener.addedFile(fileCount, file);
+        int start = tokens.size();
+        for (TokenEntry tokenEntry : fileTokens.getTokens()) {
+          tokens.add(tokenEntry);
+        }
+        register(file, sourceCodes.get(i), start, returnTokens, result);
+      }
+
+    } finally {
+      executor.shutdownNow();
+    }
   }
 
+  private static Tokens getTokens(File file, Future<Tokens> future) throws IOException {
+    try {
+      return future.get();
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while tokenizing " + file);
+
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      IOException exception = new IOException("Fail to tokenize " + file);
+      exception.initCause(cause);
+      throw exception;
+    }
+  }
 
+  private void register(File file, SourceCode sourceCode, int start, boolean returnTokens, Map<File, FileTokens> result) {
+    source.put(sourceCode.getFileName(), sourceCode);
+    if (returnTokens) {
+      result.put(file, FileTokens.create(tokens.getTokens().subList(start, tokens.size())));
+    }
+  }
 }
@@ -0,0 +1,74 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.duplications.cpd;
+
+import net.sourceforge.pmd.cpd.TokenEntry;
+
+import java.util.List;
+
+/**
+ * The tokens of a source file, detached from the identifiers of {@link TokenEntry} so that they can be stored
+ * and reused by next analyses when the file does not change.
+ *
+ * @since 2.8
+ */
+public final class FileTokens {
+
+  private final String[] images;
+  private final int[] lines;
+
+  public FileTokens(String[] images, int[] lines) {
+    if (images.length != lines.length) {
+      throw new IllegalArgumentException("Images and lines must have the same length");
+    }
+    this.images = images;
+    this.lines = lines;
+  }
+
+  /**
+   * @param entries the tokens of a single file. The end of file marker is ignored.
+   */
+  public static FileTokens create(List<TokenEntry> entries) {
+    int size = entries.size();
+    if (size > 0 && entries.get(size - 1) == TokenEntry.EOF) {
+      size--;
+    }
+    String[] images = new String[size];
+    int[] lines = new int[size];
+    for (int i = 0; i < size; i++) {
+      TokenEntry entry = entries.get(i);
+      images[i] = entry.getImage();
+      lines[i] = entry.getBeginLine();
+    }
+    return new FileTokens(images, lines);
+  }
+
+  public int size() {
+    return images.length;
+  }
+
+  public String getImage(int index) {
+    return images[index];
+  }
+
+  public int getLine(int index) {
+    return lines[index];
+  }
+}
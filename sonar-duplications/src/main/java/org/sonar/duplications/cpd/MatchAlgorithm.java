@@ -76,22 +76,27 @@ public class MatchAlgorithm {
     return this.min;
   }
 
-  public void findMatches() {
-    cpdListener.phaseUpdate(CPDListener.HASH);
-    Map<TokenEntry, Object> markGroups = hash();
+  protected List<TokenEntry> getCode() {
+    return code;
+  }
 
-    cpdListener.phaseUpdate(CPDListener.MATCH);
+  protected CPDListener getListener() {
+    return cpdListener;
+  }
+
+  /**
+   * @return true if the tokens located at the given offset of both marks are the same, excluding the end of files
+   */
+  boolean tokensMatch(int offset, TokenEntry mark1, TokenEntry mark2) {
+    TokenEntry token1 = tokenAt(offset, mark1);
+    TokenEntry token2 = tokenAt(offset, mark2);
+    return token1.getIdentifier() == token2.getIdentifier() && token1 != TokenEntry.EOF && token2 != TokenEntry.EOF;
+  }
+
+  public void findMatches() {
     MatchCollector matchCollector = new MatchCollector(this);
-    for (Iterator<Object> i = markGroups.values().iterator(); i.hasNext();) {
-      Object o = i.next();
-      if (o instanceof List) {
-        List<TokenEntry> l = (List<TokenEntry>) o;
+    collectMarkGroups(matchCollector);
 
-        Collections.reverse(l);
-        matchCollector.collect(l);
-      }
-      i.remove();
-    }
     cpdListener.phaseUpdate(CPDListener.GROUPING);
     matches = matchCollector.getMatches();
 
@@ -110,6 +115,27 @@ public class MatchAlgorithm {
     cpdListener.phaseUpdate(CPDListener.DONE);
   }
 
+  /**
+   * Groups the marks which start with the same tile of tokens and gives every group of at least two marks,
+   * sorted by index, to the collector.
+   */
+  protected void collectMarkGroups(MatchCollector matchCollector) {
+    cpdListener.phaseUpdate(CPDListener.HASH);
+    Map<TokenEntry, Object> markGroups = hash();
+
+    cpdListener.phaseUpdate(CPDListener.MATCH);
+    for (Iterator<Object> i = markGroups.values().iterator(); i.hasNext();) {
+      Object o = i.next();
+      if (o instanceof List) {
+        List<TokenEntry> l = (List<TokenEntry>) o;
+
+        Collections.reverse(l);
+        matchCollector.collect(l);
+      }
+      i.remove();
+    }
+  }
+
   @SuppressWarnings("PMD.JumbledIncrementer")
   private Map<TokenEntry, Object> hash() {
     Map<TokenEntry, Object> markGroups = new HashMap<TokenEntry, Object>(tokens.size());
@@ -170,18 +170,14 @@ public class MatchCollector {
     if (mark1.getIndex() == 0) {
       return false;
     }
-    return !matchEnded(ma.tokenAt( -1, mark1), ma.tokenAt( -1, mark2));
+    return ma.tokensMatch( -1, mark1, mark2);
   }
 
   private int countDuplicateTokens(TokenEntry mark1, TokenEntry mark2) {
     int index = 0;
-    while ( !matchEnded(ma.tokenAt(index, mark1), ma.tokenAt(index, mark2))) {
+    while (ma.tokensMatch(index, mark1, mark2)) {
       index++;
     }
     return index;
   }
-
-  private boolean matchEnded(TokenEntry token1, TokenEntry token2) {
-    return token1.getIdentifier() != token2.getIdentifier() || token1 == TokenEntry.EOF || token2 == TokenEntry.EOF;
-  }
 }
\ No newline at end of file
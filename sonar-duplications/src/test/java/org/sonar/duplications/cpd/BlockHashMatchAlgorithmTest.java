@@ -0,0 +1,159 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.duplications.cpd;
+
+import net.sourceforge.pmd.cpd.JavaTokenizer;
+import net.sourceforge.pmd.cpd.SourceCode;
+import net.sourceforge.pmd.cpd.TokenEntry;
+import net.sourceforge.pmd.cpd.Tokens;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BlockHashMatchAlgorithmTest {
+
+  private Map<String, SourceCode> sources;
+  private Tokens tokens;
+
+  @Before
+  public void init() {
+    sources = new HashMap<String, SourceCode>();
+    tokens = new Tokens();
+  }
+
+  @Test
+  public void shouldFindSameMatchesThanLegacyAlgorithmOnJavaFiles() throws Exception {
+    for (String name : new String[] { "CPDFile1.java", "CPDFile2.java", "CPDFile3.java" }) {
+      File file = new File("test-resources/org/sonar/duplications/cpd/CPDTest/" + name);
+      SourceCode sourceCode = new SourceCode(new FileCodeLoaderWithoutCache(file, Charset.defaultCharset().name()));
+      new JavaTokenizer().tokenize(sourceCode, tokens);
+      sources.put(sourceCode.getFileName(), sourceCode);
+    }
+
+    for (int min = 10; min <= 50; min += 10) {
+      assertThat(describe(newBlockHashAlgorithm(min)), is(describe(newLegacyAlgorithm(min))));
+    }
+  }
+
+  @Test
+  public void shouldFindSameMatchesThanLegacyAlgorithmOnRandomFiles() {
+    Random random = new Random(42);
+    for (int round = 0; round < 100; round++) {
+      init();
+      List<String> blocks = new ArrayList<String>();
+      for (int i = 0; i < 5; i++) {
+        blocks.add(randomTokens(random, 20 + random.nextInt(150)));
+      }
+      int fileCount = 1 + random.nextInt(4);
+      for (int file = 0; file < fileCount; file++) {
+        StringBuilder code = new StringBuilder();
+        int blockCount = random.nextInt(6);
+        for (int i = 0; i < blockCount; i++) {
+          code.append(random.nextBoolean() ? blocks.get(random.nextInt(blocks.size())) : randomTokens(random, 2));
+        }
+        addFile("file" + file, code.toString(), random);
+      }
+
+      int min = 10 + random.nextInt(90);
+      assertThat(describe(newBlockHashAlgorithm(min)), is(describe(newLegacyAlgorithm(min))));
+    }
+  }
+
+  @Test
+  public void shouldNotMatchTilesOverlappingTheEndOfFiles() {
+    addFile("file1", "abcdefgh", null);
+    addFile("file2", "efghabcd", null);
+
+    assertThat(describe(newBlockHashAlgorithm(5)).size(), is(0));
+    assertThat(describe(newBlockHashAlgorithm(4)).size(), is(2));
+  }
+
+  @Test
+  public void shouldFindDuplicationsInSameFile() {
+    addFile("file1", "abcdefxyzabcdef", null);
+
+    assertThat(describe(newBlockHashAlgorithm(6)), is(Collections.singletonList("6 tokens at 0,9")));
+  }
+
+  private String randomTokens(Random random, int length) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      sb.append((char) ('a' + random.nextInt(20)));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Every character is a token.
+   */
+  private void addFile(String name, String code, Random random) {
+    int line = 1;
+    for (int i = 0; i < code.length(); i++) {
+      tokens.add(new TokenEntry(String.valueOf(code.charAt(i)), name, line));
+      if (random != null && random.nextInt(4) == 0) {
+        line++;
+      }
+    }
+    tokens.add(TokenEntry.getEOF());
+  }
+
+  private MatchAlgorithm newLegacyAlgorithm(int min) {
+    return find(new MatchAlgorithm(sources, tokens, min));
+  }
+
+  private MatchAlgorithm newBlockHashAlgorithm(int min) {
+    return find(new BlockHashMatchAlgorithm(sources, tokens, min));
+  }
+
+  private MatchAlgorithm find(MatchAlgorithm algorithm) {
+    algorithm.setLoadSourceCodeSlices(false);
+    algorithm.findMatches();
+    return algorithm;
+  }
+
+  /**
+   * The order of matches with the same number of tokens is not specified, so they are compared as sorted descriptions.
+   */
+  private List<String> describe(MatchAlgorithm algorithm) {
+    List<String> descriptions = new ArrayList<String>();
+    for (Iterator<Match> matches = algorithm.matches(); matches.hasNext();) {
+      Match match = matches.next();
+      StringBuilder sb = new StringBuilder().append(match.getTokenCount()).append(" tokens at ");
+      for (Iterator<TokenEntry> marks = match.iterator(); marks.hasNext();) {
+        sb.append(marks.next().getIndex()).append(marks.hasNext() ? "," : "");
+      }
+      descriptions.add(sb.toString());
+    }
+    Collections.sort(descriptions);
+    return descriptions;
+  }
+}
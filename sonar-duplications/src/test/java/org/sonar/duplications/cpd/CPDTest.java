@@ -22,15 +22,16 @@ package org.sonar.duplications.cpd;
 
 import net.sourceforge.pmd.cpd.AbstractLanguage;
 import net.sourceforge.pmd.cpd.JavaTokenizer;
-import net.sourceforge.pmd.cpd.TokenEntry;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
@@ -40,7 +41,6 @@ public class CPDTest {
 
   @Test
   public void testSetLoadSourceCodeSlicesToFalse() throws IOException {
-    TokenEntry.clearImages();
     AbstractLanguage cpdLanguage = new AbstractLanguage(new JavaTokenizer()) {
     };
     CPD cpd = new CPD(20, cpdLanguage);
@@ -61,7 +61,6 @@ public class CPDTest {
   
   @Test
   public void testDuplicationOnSameFile() throws IOException {
-    TokenEntry.clearImages();
     AbstractLanguage cpdLanguage = new AbstractLanguage(new JavaTokenizer()) {
     };
     CPD cpd = new CPD(20, cpdLanguage);
@@ -79,6 +78,95 @@ public class CPDTest {
     assertThat(match.getSourceCodeSlice(), is(nullValue()));
   }
 
+  @Test
+  public void testReuseTokensOfPreviousAnalysis() throws IOException {
+    File file1 = new File("test-resources/org/sonar/duplications/cpd/CPDTest/CPDFile1.java");
+    File file2 = new File("test-resources/org/sonar/duplications/cpd/CPDTest/CPDFile2.java");
+    AbstractLanguage cpdLanguage = new AbstractLanguage(new JavaTokenizer()) {
+    };
+    CPD cpd = new CPD(20, cpdLanguage);
+    cpd.setEncoding(Charset.defaultCharset().name());
+    cpd.setLoadSourceCodeSlices(false);
+    FileTokens tokens1 = cpd.addAndGetTokens(file1);
+    FileTokens tokens2 = cpd.addAndGetTokens(file2);
+
+    cpd = new CPD(20, cpdLanguage);
+    cpd.setEncoding(Charset.defaultCharset().name());
+    cpd.setLoadSourceCodeSlices(false);
+    cpd.add(file1, tokens1);
+    cpd.add(file2, tokens2);
+    cpd.go();
+
+    List<Match> matches = getMatches(cpd);
+    assertThat(matches.size(), is(1));
+    assertThat(matches.get(0).getLineCount(), is(26));
+    assertThat(matches.get(0).getFirstMark().getBeginLine(), is(16));
+    assertThat(matches.get(0).getFirstMark().getTokenSrcID(), is(file1.getAbsolutePath()));
+  }
+
+  @Test
+  public void testIndependentAnalyses() throws IOException {
+    AbstractLanguage cpdLanguage = new AbstractLanguage(new JavaTokenizer()) {
+    };
+    CPD cpd1 = new CPD(20, cpdLanguage);
+    cpd1.setEncoding(Charset.defaultCharset().name());
+    cpd1.setLoadSourceCodeSlices(false);
+    CPD cpd2 = new CPD(20, cpdLanguage);
+    cpd2.setEncoding(Charset.defaultCharset().name());
+    cpd2.setLoadSourceCodeSlices(false);
+
+    cpd1.add(new File("test-resources/org/sonar/duplications/cpd/CPDTest/CPDFile1.java"));
+    cpd2.add(new File("test-resources/org/sonar/duplications/cpd/CPDTest/CPDFile3.java"));
+    cpd1.add(new File("test-resources/org/sonar/duplications/cpd/CPDTest/CPDFile2.java"));
+    cpd2.go();
+    cpd1.go();
+
+    List<Match> matches = getMatches(cpd1);
+    assertThat(matches.size(), is(1));
+    assertThat(matches.get(0).getLineCount(), is(26));
+    assertThat(matches.get(0).getFirstMark().getBeginLine(), is(16));
+
+    matches = getMatches(cpd2);
+    assertThat(matches.size(), is(1));
+    assertThat(matches.get(0).getLineCount(), is(16));
+    assertThat(matches.get(0).getFirstMark().getBeginLine(), is(29));
+  }
+
+  @Test
+  public void testTokenizeInParallel() throws IOException {
+    AbstractLanguage cpdLanguage = new AbstractLanguage(new JavaTokenizer()) {
+    };
+    CPD cpd = new CPD(20, cpdLanguage);
+    cpd.setEncoding(Charset.defaultCharset().name());
+    cpd.setLoadSourceCodeSlices(false);
+    cpd.setTokenizerThreads(3);
+    File file1 = new File("test-resources/org/sonar/duplications/cpd/CPDTest/CPDFile1.java");
+    File file2 = new File("test-resources/org/sonar/duplications/cpd/CPDTest/CPDFile2.java");
+    File file3 = new File("test-resources/org/sonar/duplications/cpd/CPDTest/CPDFile3.java");
+    Map<File, FileTokens> tokens = cpd.addAndGetTokens(Arrays.asList(file1, file2, file3));
+    cpd.go();
+
+    assertThat(tokens.size(), is(3));
+    assertThat(describe(getMatches(cpd)), is(describe(getMatches(analyseSequentially(cpdLanguage, file1, file2, file3)))));
+  }
+
+  private List<String> describe(List<Match> matches) {
+    List<String> descriptions = new ArrayList<String>();
+    for (Match match : matches) {
+      descriptions.add(match.getTokenCount() + " tokens at " + match.getFirstMark().getIndex() + "," + match.getSecondMark().getIndex());
+    }
+    return descriptions;
+  }
+
+  private CPD analyseSequentially(AbstractLanguage cpdLanguage, File... files) throws IOException {
+    CPD cpd = new CPD(20, cpdLanguage);
+    cpd.setEncoding(Charset.defaultCharset().name());
+    cpd.setLoadSourceCodeSlices(false);
+    cpd.add(Arrays.asList(files));
+    cpd.go();
+    return cpd;
+  }
+
   private List<Match> getMatches(CPD cpd) {
     List<Match> matches = new ArrayList<org.sonar.duplications.cpd.Match>();
     Iterator<Match> matchesIter = cpd.getMatches();
@@ -19,23 +19,49 @@
  */
 package org.sonar.graph;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Dependency structure matrix. Only the edges are stored, in compressed adjacency arrays, and rows and columns are permuted
+ * through a permutation vector, so that the memory and the construction time are proportional to the number of edges
+ * rather than to the square of the number of vertices.
+ * <p/>
+ * The cell (x, y) contains the edge from the vertex at index x to the vertex at index y.
+ */
 public class Dsm<V> {
 
+  private static final DsmCell EMPTY_CELL = new DsmCell(null, false);
+
+  // vertices by id, the id being the position in the initial collection
   private V[] vertices;
-  private DsmCell[][] cells;
+  private Map<V, Integer> idByVertex;
   private int dimension;
-  private DirectedGraphAccessor<V, ? extends Edge<V>> graph;
+
+  // permutation vector
+  private int[] idByIndex;
+  private int[] indexById;
+
+  // outgoing edges of the vertex with id i are in [outgoingStart[i], outgoingStart[i + 1]), sorted by id of target
+  private int[] outgoingStart;
+  private int[] targets;
+  private Edge[] edges;
+  private boolean[] feedbackEdges;
+
+  // incoming edges of the vertex with id i are in [incomingStart[i], incomingStart[i + 1]), as offsets in the outgoing arrays
+  private int[] incomingStart;
+  private int[] sources;
+  private int[] incomingEdges;
 
   public Dsm(DirectedGraphAccessor<V, ? extends Edge<V>> graph, Collection<V> vertices, Set<Edge> feedbackEdges) {
-    this.graph = graph;
     this.dimension = vertices.size();
-    this.cells = new DsmCell[dimension][dimension];
     initVertices(vertices);
-    initCells(feedbackEdges);
+    initOutgoingEdges(graph, feedbackEdges);
+    initIncomingEdges();
   }
 
   public Dsm(DirectedGraphAccessor<V, ? extends Edge<V>> acyclicGraph, Set<Edge> feedbackEdges) {
@@ -46,31 +72,112 @@ public class Dsm<V> {
     this(acyclicGraph, acyclicGraph.getVertices(), Collections.<Edge>emptySet());
   }
 
-  private void initCells(Set<Edge> feedbackEdges) {
-    for (int x = 0; x < dimension; x++) {
-      for (int y = 0; y < dimension; y++) {
-        V from = vertices[x];
-        V to = vertices[y];
-
-        Edge<V> edge = graph.getEdge(from, to);
-        boolean isFeedbackEdge = (edge != null && feedbackEdges.contains(edge));
-        DsmCell cell = new DsmCell(edge, isFeedbackEdge);
-        cells[x][y] = cell;
-      }
-    }
-  }
-
   private void initVertices(Collection<V> verticesCol) {
     this.vertices = (V[]) new Object[dimension];
+    this.idByVertex = new HashMap<V, Integer>(dimension * 2);
+    this.idByIndex = new int[dimension];
+    this.indexById = new int[dimension];
     int i = 0;
     for (V vertex : verticesCol) {
       vertices[i] = vertex;
+      idByVertex.put(vertex, i);
+      idByIndex[i] = i;
+      indexById[i] = i;
       i++;
     }
   }
 
+  private void initOutgoingEdges(DirectedGraphAccessor<V, ? extends Edge<V>> graph, Set<Edge> feedbackEdgeSet) {
+    outgoingStart = new int[dimension + 1];
+    targets = new int[dimension];
+    edges = new Edge[dimension];
+    int count = 0;
+    for (int from = 0; from < dimension; from++) {
+      outgoingStart[from] = count;
+      Collection<? extends Edge<V>> outgoingEdges = graph.getOutgoingEdges(vertices[from]);
+      if (outgoingEdges != null) {
+        for (Edge<V> edge : outgoingEdges) {
+          Integer to = idByVertex.get(edge.getTo());
+          if (to != null) {
+            ensureEdgesCapacity(count + 1);
+            targets[count] = to;
+            edges[count] = edge;
+            count++;
+          }
+        }
+      }
+      sortByTarget(outgoingStart[from], count);
+    }
+    outgoingStart[dimension] = count;
+
+    feedbackEdges = new boolean[count];
+    if (!feedbackEdgeSet.isEmpty()) {
+      for (int i = 0; i < count; i++) {
+        feedbackEdges[i] = feedbackEdgeSet.contains(edges[i]);
+      }
+    }
+  }
+
+  private void ensureEdgesCapacity(int capacity) {
+    if (capacity > targets.length) {
+      int newLength = Math.max(capacity, targets.length * 2);
+      int[] newTargets = new int[newLength];
+      Edge[] newEdges = new Edge[newLength];
+      System.arraycopy(targets, 0, newTargets, 0, targets.length);
+      System.arraycopy(edges, 0, newEdges, 0, edges.length);
+      targets = newTargets;
+      edges = newEdges;
+    }
+  }
+
+  private void sortByTarget(int start, int end) {
+    if (end - start > 1) {
+      long[] keys = new long[end - start];
+      for (int i = start; i < end; i++) {
+        keys[i - start] = ((long) targets[i] << 32) | (i - start);
+      }
+      Arrays.sort(keys);
+      Edge[] sortedEdges = new Edge[end - start];
+      for (int i = 0; i < keys.length; i++) {
+        targets[start + i] = (int) (keys[i] >>> 32);
+        sortedEdges[i] = edges[start + (int) keys[i]];
+      }
+      System.arraycopy(sortedEdges, 0, edges, start, sortedEdges.length);
+    }
+  }
+
+  private void initIncomingEdges() {
+    int count = outgoingStart[dimension];
+    incomingStart = new int[dimension + 1];
+    for (int i = 0; i < count; i++) {
+      incomingStart[targets[i] + 1]++;
+    }
+    for (int id = 0; id < dimension; id++) {
+      incomingStart[id + 1] += incomingStart[id];
+    }
+    sources = new int[count];
+    incomingEdges = new int[count];
+    int[] next = new int[dimension];
+    System.arraycopy(incomingStart, 0, next, 0, dimension);
+    for (int from = 0; from < dimension; from++) {
+      for (int i = outgoingStart[from]; i < outgoingStart[from + 1]; i++) {
+        int offset = next[targets[i]]++;
+        sources[offset] = from;
+        incomingEdges[offset] = i;
+      }
+    }
+  }
+
   public V getVertex(int rowIndex) {
-    return vertices[rowIndex];
+    return vertices[idByIndex[rowIndex]];
+  }
+
+  /**
+   * @return the current index of the vertex, or -1 if the vertex is not contained in the DSM
+   */
+  public int indexOf(V vertex) {
+    Integer id = idByVertex.get(vertex);
+    return id == null ? -1 : indexById[id];
   }
 
   public int getDimension() {
@@ -80,9 +187,28 @@ public class Dsm<V> {
   public void permute(int fromIndex, int toIndex) {
     if (fromIndex != toIndex) {
       checkIndicesBoudaries(fromIndex, toIndex);
-      permuteVertice(fromIndex, toIndex);
-      permuteColumns(fromIndex, toIndex);
-      permuteRows(fromIndex, toIndex);
+      int fromId = idByIndex[fromIndex];
+      int toId = idByIndex[toIndex];
+      idByIndex[fromIndex] = toId;
+      idByIndex[toIndex] = fromId;
+      indexById[toId] = fromIndex;
+      indexById[fromId] = toIndex;
+    }
+  }
+
+  /**
+   * Moves all the vertices at once.
+   *
+   * @param order the current indices of the vertices, in the desired order
+   */
+  void reorder(int[] order) {
+    int[] newIdByIndex = new int[dimension];
+    for (int index = 0; index < dimension; index++) {
+      newIdByIndex[index] = idByIndex[order[index]];
+    }
+    idByIndex = newIdByIndex;
+    for (int index = 0; index < dimension; index++) {
+      indexById[idByIndex[index]] = index;
     }
   }
 
@@ -99,37 +225,12 @@ public class Dsm<V> {
     }
   }
 
-  private void permuteVertice(int fromIndex, int toIndex) {
-    V fromVertex = vertices[fromIndex];
-    V toVertex = vertices[toIndex];
-    vertices[fromIndex] = toVertex;
-    vertices[toIndex] = fromVertex;
-  }
-
-  private void permuteRows(int fromYIndex, int toYIndex) {
-    for (int x = 0; x < dimension; x++) {
-      permuteCells(x, fromYIndex, x, toYIndex);
-    }
-  }
-
-  private void permuteColumns(int fromXIndex, int toXIndex) {
-    for (int y = 0; y < dimension; y++) {
-      permuteCells(fromXIndex, y, toXIndex, y);
-    }
-  }
-
-  private void permuteCells(int fromXIndex, int fromYIndex, int toXIndex, int toYIndex) {
-    DsmCell fromCell = cells[fromXIndex][fromYIndex];
-    DsmCell toCell = cells[toXIndex][toYIndex];
-    cells[toXIndex][toYIndex] = fromCell;
-    cells[fromXIndex][fromYIndex] = toCell;
-  }
-
   public int getNumberOfIncomingEdges(int y, int from, int to) {
     int incomingEdges = 0;
-    for (int x = from; x <= to; x++) {
-      DsmCell cell = cells[x][y];
-      if (cell.getWeight() != 0 && !cell.isFeedbackEdge()) {
+    int id = idByIndex[y];
+    for (int i = incomingStart[id]; i < incomingStart[id + 1]; i++) {
+      int x = indexById[sources[i]];
+      if (x >= from && x <= to && isDependency(this.incomingEdges[i])) {
         incomingEdges++;
       }
     }
@@ -138,22 +239,91 @@ public class Dsm<V> {
 
   public int getNumberOfOutgoingEdges(int x, int from, int to) {
     int outgoingEdges = 0;
-    for (int y = from; y <= to; y++) {
-      DsmCell cell = cells[x][y];
-      if (cell.getWeight() != 0 && !cell.isFeedbackEdge()) {
+    int id = idByIndex[x];
+    for (int i = outgoingStart[id]; i < outgoingStart[id + 1]; i++) {
+      int y = indexById[targets[i]];
+      if (y >= from && y <= to && isDependency(i)) {
         outgoingEdges++;
       }
     }
     return outgoingEdges;
   }
 
+  private boolean isDependency(int edge) {
+    return edges[edge].getWeight() != 0 && !feedbackEdges[edge];
+  }
+
+  /**
+   * @return the indices of the vertices targeted by the vertex at index x, excluding the feedback edges and the edges
+   *         without weight
+   */
+  int[] getDependencies(int x) {
+    int id = idByIndex[x];
+    int[] result = new int[outgoingStart[id + 1] - outgoingStart[id]];
+    int count = 0;
+    for (int i = outgoingStart[id]; i < outgoingStart[id + 1]; i++) {
+      if (isDependency(i)) {
+        result[count++] = indexById[targets[i]];
+      }
+    }
+    return count == result.length ? result : copyOf(result, count);
+  }
+
+  /**
+   * @return the sorted indices of the vertices having an edge to the vertex at index y, i.e. the non-empty cells of the row y
+   */
+  public int[] getIncomingIndices(int y) {
+    int id = idByIndex[y];
+    int[] result = new int[incomingStart[id + 1] - incomingStart[id]];
+    for (int i = incomingStart[id]; i < incomingStart[id + 1]; i++) {
+      result[i - incomingStart[id]] = indexById[sources[i]];
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * @return the sorted indices of the vertices targeted by the vertex at index x, i.e. the non-empty cells of the column x
+   */
+  public int[] getOutgoingIndices(int x) {
+    int id = idByIndex[x];
+    int[] result = new int[outgoingStart[id + 1] - outgoingStart[id]];
+    for (int i = outgoingStart[id]; i < outgoingStart[id + 1]; i++) {
+      result[i - outgoingStart[id]] = indexById[targets[i]];
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
   public DsmCell getCell(int x, int y) {
-    return cells[x][y];
+    int fromId = idByIndex[x];
+    int toId = idByIndex[y];
+    int low = outgoingStart[fromId];
+    int high = outgoingStart[fromId + 1] - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (targets[middle] < toId) {
+        low = middle + 1;
+      } else if (targets[middle] > toId) {
+        high = middle - 1;
+      } else {
+        return new DsmCell(edges[middle], feedbackEdges[middle]);
+      }
+    }
+    return EMPTY_CELL;
   }
 
   public V[] getVertices() {
-    V[] verticesCopy = (V[]) new Object[vertices.length];
-    System.arraycopy(vertices, 0, verticesCopy, 0, vertices.length);
+    V[] verticesCopy = (V[]) new Object[dimension];
+    for (int index = 0; index < dimension; index++) {
+      verticesCopy[index] = vertices[idByIndex[index]];
+    }
     return verticesCopy;
   }
+
+  private static int[] copyOf(int[] array, int length) {
+    int[] copy = new int[length];
+    System.arraycopy(array, 0, copy, 0, length);
+    return copy;
+  }
 }
@@ -50,12 +50,11 @@ public final class DsmManualSorter<V> {
   }
 
   private int getCurrentIndex(V v) {
-    for (int currentIndex = 0; currentIndex < dsm.getVertices().length; currentIndex++) {
-      if (dsm.getVertices()[currentIndex].equals(v)) {
-        return currentIndex;
-      }
+    int currentIndex = dsm.indexOf(v);
+    if (currentIndex < 0) {
+      throw new IllegalStateException("Vertex " + v + " is not contained in the DSM.");
     }
-    throw new IllegalStateException("Vertex " + v + " is not contained in the DSM.");
+    return currentIndex;
   }
 
 }
@@ -19,53 +19,55 @@
  */
 package org.sonar.graph;
 
+/**
+ * Sorts the vertices of the DSM so that the dependencies are below the diagonal, the feedback edges being ignored.
+ * Vertices without remaining dependents are moved in turn to the top, in O(vertices + edges).
+ */
 public final class DsmTopologicalSorter<V> {
 
   private final Dsm<V> dsm;
-  private int leftOrderedIndex;
-  private int rightOrderedIndex;
+  private final int[][] dependencies;
+  private final int[] dependents;
 
   private DsmTopologicalSorter(Dsm<V> dsm) {
     this.dsm = dsm;
-    leftOrderedIndex = 0;
-    rightOrderedIndex = dsm.getDimension() - 1;
+    int dimension = dsm.getDimension();
+    dependencies = new int[dimension][];
+    dependents = new int[dimension];
+    for (int x = 0; x < dimension; x++) {
+      dependencies[x] = dsm.getDependencies(x);
+      for (int y : dependencies[x]) {
+        dependents[y]++;
+      }
+    }
   }
 
   public static <V> void sort(Dsm<V> dsm) {
     DsmTopologicalSorter<V> partitionner = new DsmTopologicalSorter<V>(dsm);
-    boolean dsmCanBeSorted = true;
-    while (dsmCanBeSorted) {
-      boolean dsmCanBeSortedOnLeft = partitionner.pushToLeftVerticesWithoutIncomingEdges();
-      boolean dsmCanBeSortedOnRight = partitionner.pushToRightVerticesWithoutOutgointEdges();
-      dsmCanBeSorted = dsmCanBeSortedOnLeft || dsmCanBeSortedOnRight;
-    }
-    boolean isCyclicGraph = (partitionner.leftOrderedIndex < partitionner.rightOrderedIndex);
-    if (isCyclicGraph) {
-      throw new IllegalStateException("Can't sort a cyclic graph.");
-    }
+    partitionner.sort();
   }
 
-  private boolean pushToLeftVerticesWithoutIncomingEdges() {
-    boolean permutationsDone = false;
-    for (int i = leftOrderedIndex; i <= rightOrderedIndex; i++) {
-      if (dsm.getNumberOfIncomingEdges(i, leftOrderedIndex, rightOrderedIndex) == 0) {
-        dsm.permute(i, leftOrderedIndex);
-        leftOrderedIndex++;
-        permutationsDone = true;
+  private void sort() {
+    int dimension = dsm.getDimension();
+    int[] order = new int[dimension];
+    int orderedCount = 0;
+    for (int i = 0; i < dimension; i++) {
+      if (dependents[i] == 0) {
+        order[orderedCount++] = i;
       }
     }
-    return permutationsDone;
-  }
-
-  private boolean pushToRightVerticesWithoutOutgointEdges() {
-    boolean permutationsDone = false;
-    for (int i = leftOrderedIndex; i <= rightOrderedIndex; i++) {
-      if (dsm.getNumberOfOutgoingEdges(i, leftOrderedIndex, rightOrderedIndex) == 0) {
-        dsm.permute(i, rightOrderedIndex);
-        rightOrderedIndex--;
-        permutationsDone = true;
+    for (int next = 0; next < orderedCount; next++) {
+      for (int dependency : dependencies[order[next]]) {
+        dependents[dependency]--;
+        if (dependents[dependency] == 0) {
+          order[orderedCount++] = dependency;
+        }
       }
     }
-    return permutationsDone;
+    boolean isCyclicGraph = orderedCount < dimension;
+    if (isCyclicGraph) {
+      throw new IllegalStateException("Can't sort a cyclic graph.");
+    }
+    dsm.reorder(order);
   }
 }
@@ -0,0 +1,415 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches cycles and a feedback edge set like {@link IncrementalCyclesAndFESSolver}, but separately in each strongly connected
+ * component of the graph, as a cycle can't span several components. Components are computed with the Tarjan algorithm, then
+ * vertices are replaced by their index in adjacency arrays. As the feedback edge set is searched on the cycles of a single
+ * component, {@link MinimumFeedbackEdgeSetSolver} can run its exhaustive search more often. Components can be processed
+ * concurrently.
+ *
+ * @since 2.8
+ */
+public class SccCyclesAndFESSolver<V> {
+
+  private static final int DEFAULT_MAX_SEARCH_DEPTH_AT_FIRST = 3;
+  private static final int DEFAULT_MAX_CYCLES_TO_FOUND_BY_ITERATION = 100;
+
+  private Set<Cycle> cycles = new HashSet<Cycle>();
+  private Set<Edge> feedbackEdges = new HashSet<Edge>();
+  private int weightOfFeedbackEdgeSet = 0;
+  private int cyclicComponents = 0;
+  private long searchCyclesCalls = 0;
+
+  public SccCyclesAndFESSolver(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices) {
+    this(graph, vertices, 1);
+  }
+
+  public SccCyclesAndFESSolver(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices, int threads) {
+    this(graph, vertices, DEFAULT_MAX_SEARCH_DEPTH_AT_FIRST, DEFAULT_MAX_CYCLES_TO_FOUND_BY_ITERATION, threads);
+  }
+
+  public SccCyclesAndFESSolver(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices, int maxSearchDepthAtFirst,
+      int maxCyclesToFoundByIteration, int threads) {
+    List<ComponentSolver> solvers = new ArrayList<ComponentSolver>();
+    for (Component component : new IndexedGraph<V>(graph, vertices).getCyclicComponents()) {
+      solvers.add(new ComponentSolver(component, maxSearchDepthAtFirst, maxCyclesToFoundByIteration));
+    }
+    cyclicComponents = solvers.size();
+    if (threads > 1 && solvers.size() > 1) {
+      solveConcurrently(solvers, threads);
+    } else {
+      for (ComponentSolver solver : solvers) {
+        solver.call();
+      }
+    }
+    for (ComponentSolver solver : solvers) {
+      cycles.addAll(solver.cycles);
+      feedbackEdges.addAll(solver.solver.getEdges());
+      weightOfFeedbackEdgeSet += solver.solver.getWeightOfFeedbackEdgeSet();
+      searchCyclesCalls += solver.searchCyclesCalls;
+    }
+  }
+
+  private static void solveConcurrently(List<ComponentSolver> solvers, int threads) {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, solvers.size()));
+    try {
+      List<Future<ComponentSolver>> futures = executor.invokeAll(solvers);
+      for (Future<ComponentSolver> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while searching cycles", e);
+
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Fail to search cycles", e.getCause());
+
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public int getWeightOfFeedbackEdgeSet() {
+    return weightOfFeedbackEdgeSet;
+  }
+
+  public Set<Edge> getFeedbackEdgeSet() {
+    return feedbackEdges;
+  }
+
+  public Set<Cycle> getCycles() {
+    return cycles;
+  }
+
+  public boolean isAcyclicGraph() {
+    return cycles.isEmpty();
+  }
+
+  /**
+   * @return the number of strongly connected components containing at least one cycle
+   */
+  public int getCyclicComponents() {
+    return cyclicComponents;
+  }
+
+  public long getSearchCyclesCalls() {
+    return searchCyclesCalls;
+  }
+
+  /**
+   * Adjacency arrays of the vertices, restricted to the edges between the given vertices.
+   */
+  private static final class IndexedGraph<V> {
+    private final int[][] targets;
+    private final Edge[][] edges;
+
+    private IndexedGraph(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices) {
+      List<V> vertexList = new ArrayList<V>(new HashSet<V>(vertices));
+      Map<V, Integer> indexes = new HashMap<V, Integer>();
+      for (V vertex : vertexList) {
+        indexes.put(vertex, indexes.size());
+      }
+      targets = new int[vertexList.size()][];
+      edges = new Edge[vertexList.size()][];
+      for (int i = 0; i < vertexList.size(); i++) {
+        List<Edge> outgoingEdges = new ArrayList<Edge>();
+        for (Edge edge : graph.getOutgoingEdges(vertexList.get(i))) {
+          if (indexes.containsKey(edge.getTo())) {
+            outgoingEdges.add(edge);
+          }
+        }
+        targets[i] = new int[outgoingEdges.size()];
+        edges[i] = outgoingEdges.toArray(new Edge[outgoingEdges.size()]);
+        for (int j = 0; j < edges[i].length; j++) {
+          targets[i][j] = indexes.get(edges[i][j].getTo());
+        }
+      }
+    }
+
+    /**
+     * Iterative version of the Tarjan algorithm, so that long chains of dependencies don't overflow the stack.
+     *
+     * @return the strongly connected components having more than one vertex or a vertex depending on itself
+     */
+    private List<Component> getCyclicComponents() {
+      int size = targets.length;
+      int[] index = new int[size];
+      int[] lowLink = new int[size];
+      int[] nextTarget = new int[size];
+      boolean[] onStack = new boolean[size];
+      int[] stack = new int[size];
+      int stackSize = 0;
+      int[] callStack = new int[size];
+      int callStackSize = 0;
+      int counter = 0;
+      Arrays.fill(index, -1);
+
+      List<Component> components = new ArrayList<Component>();
+      for (int root = 0; root < size; root++) {
+        if (index[root] != -1) {
+          continue;
+        }
+        index[root] = lowLink[root] = counter++;
+        stack[stackSize++] = root;
+        onStack[root] = true;
+        callStack[callStackSize++] = root;
+
+        while (callStackSize > 0) {
+          int vertex = callStack[callStackSize - 1];
+          if (nextTarget[vertex] < targets[vertex].length) {
+            int target = targets[vertex][nextTarget[vertex]++];
+            if (index[target] == -1) {
+              index[target] = lowLink[target] = counter++;
+              stack[stackSize++] = target;
+              onStack[target] = true;
+              callStack[callStackSize++] = target;
+            } else if (onStack[target]) {
+              lowLink[vertex] = Math.min(lowLink[vertex], index[target]);
+            }
+
+          } else {
+            callStackSize--;
+            if (callStackSize > 0) {
+              int parent = callStack[callStackSize - 1];
+              lowLink[parent] = Math.min(lowLink[parent], lowLink[vertex]);
+            }
+            if (lowLink[vertex] == index[vertex]) {
+              int start = stackSize;
+              do {
+                start--;
+                onStack[stack[start]] = false;
+              } while (stack[start] != vertex);
+              int[] members = new int[stackSize - start];
+              System.arraycopy(stack, start, members, 0, members.length);
+              stackSize = start;
+              if (members.length > 1 || hasSelfEdge(vertex)) {
+                components.add(new Component(this, members));
+              }
+            }
+          }
+        }
+      }
+      return components;
+    }
+
+    private boolean hasSelfEdge(int vertex) {
+      for (int target : targets[vertex]) {
+        if (target == vertex) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * A strongly connected component. Vertices and edges are renumbered from zero.
+   */
+  private static final class Component {
+    private final int[][] targets;
+    private final int[][] edgeIds;
+    private final Edge[] edges;
+
+    private Component(IndexedGraph graph, int[] members) {
+      int[] localIndexes = new int[graph.targets.length];
+      Arrays.fill(localIndexes, -1);
+      for (int i = 0; i < members.length; i++) {
+        localIndexes[members[i]] = i;
+      }
+      targets = new int[members.length][];
+      edgeIds = new int[members.length][];
+      List<Edge> componentEdges = new ArrayList<Edge>();
+      for (int i = 0; i < members.length; i++) {
+        int[] globalTargets = graph.targets[members[i]];
+        int count = 0;
+        for (int target : globalTargets) {
+          if (localIndexes[target] != -1) {
+            count++;
+          }
+        }
+        targets[i] = new int[count];
+        edgeIds[i] = new int[count];
+        count = 0;
+        for (int j = 0; j < globalTargets.length; j++) {
+          if (localIndexes[globalTargets[j]] != -1) {
+            targets[i][count] = localIndexes[globalTargets[j]];
+            edgeIds[i][count] = componentEdges.size();
+            componentEdges.add(graph.edges[members[i]][j]);
+            count++;
+          }
+        }
+      }
+      edges = componentEdges.toArray(new Edge[componentEdges.size()]);
+    }
+
+    private int size() {
+      return targets.length;
+    }
+  }
+
+  /**
+   * Same iterations than {@link IncrementalCyclesAndFESSolver}, restricted to a component.
+   */
+  private static final class ComponentSolver implements Callable<ComponentSolver> {
+    private final Component component;
+    private final int maxSearchDepthAtFirst;
+    private final int maxCyclesToFoundByIteration;
+    private Set<Cycle> cycles = new HashSet<Cycle>();
+    private MinimumFeedbackEdgeSetSolver solver;
+    private long searchCyclesCalls = 0;
+
+    private ComponentSolver(Component component, int maxSearchDepthAtFirst, int maxCyclesToFoundByIteration) {
+      this.component = component;
+      this.maxSearchDepthAtFirst = maxSearchDepthAtFirst;
+      this.maxCyclesToFoundByIteration = maxCyclesToFoundByIteration;
+    }
+
+    public ComponentSolver call() {
+      boolean[] excludedEdges = new boolean[component.edges.length];
+      CycleSearch search = new CycleSearch(component, excludedEdges, maxSearchDepthAtFirst, Integer.MAX_VALUE);
+      cycles.addAll(search.run());
+      searchCyclesCalls += search.calls;
+      solver = new MinimumFeedbackEdgeSetSolver(cycles);
+
+      Set<Cycle> newCycles;
+      do {
+        Set<Edge> edgesToExclude = solver.getEdges();
+        for (int i = 0; i < component.edges.length; i++) {
+          excludedEdges[i] = edgesToExclude.contains(component.edges[i]);
+        }
+        search = new CycleSearch(component, excludedEdges, -1, maxCyclesToFoundByIteration);
+        newCycles = search.run();
+        searchCyclesCalls += search.calls;
+        cycles.addAll(newCycles);
+        solver = new MinimumFeedbackEdgeSetSolver(cycles);
+      } while (!newCycles.isEmpty());
+      return this;
+    }
+  }
+
+  /**
+   * Same search than {@link CycleDetector}, but the current path is stored in arrays : checking if a vertex is on the path is
+   * done in constant time.
+   */
+  private static final class CycleSearch {
+    private final Component component;
+    private final boolean[] excludedEdges;
+    private final boolean maxSearchDepthActivated;
+    private final int maxSearchDepth;
+    private final int maxCyclesToFound;
+    private final Set<Cycle> cycles = new HashSet<Cycle>();
+    private final boolean[] analyzedVertices;
+    private final boolean[] tmpAnalyzedVertices;
+    private final int[] tmpAnalyzedList;
+    private int tmpAnalyzedCount;
+    private final int[] positionInPath;
+    private final int[] pathEdges;
+    private int pathLength = 0;
+    private long calls = 0;
+
+    private CycleSearch(Component component, boolean[] excludedEdges, int maxSearchDepth, int maxCyclesToFound) {
+      this.component = component;
+      this.excludedEdges = excludedEdges;
+      this.maxSearchDepthActivated = maxSearchDepth > 1;
+      this.maxSearchDepth = maxSearchDepth;
+      this.maxCyclesToFound = maxCyclesToFound;
+      int size = component.size();
+      analyzedVertices = new boolean[size];
+      tmpAnalyzedVertices = new boolean[size];
+      tmpAnalyzedList = new int[size];
+      positionInPath = new int[size];
+      Arrays.fill(positionInPath, -1);
+      pathEdges = new int[size];
+    }
+
+    private Set<Cycle> run() {
+      try {
+        for (int vertex = 0; vertex < component.size(); vertex++) {
+          if (maxSearchDepthActivated || !analyzedVertices[vertex]) {
+            tmpAnalyzedCount = 0;
+            searchCycles(vertex);
+            for (int i = 0; i < tmpAnalyzedCount; i++) {
+              analyzedVertices[tmpAnalyzedList[i]] = true;
+              tmpAnalyzedVertices[tmpAnalyzedList[i]] = false;
+            }
+          }
+        }
+      } catch (MaximumCyclesToFoundException e) {
+        // the limit is reached
+      }
+      return cycles;
+    }
+
+    private void searchCycles(int fromVertex) {
+      calls++;
+      positionInPath[fromVertex] = pathLength++;
+      if (!tmpAnalyzedVertices[fromVertex]) {
+        tmpAnalyzedVertices[fromVertex] = true;
+        tmpAnalyzedList[tmpAnalyzedCount++] = fromVertex;
+      }
+      int[] targets = component.targets[fromVertex];
+      for (int i = 0; i < targets.length; i++) {
+        int toVertex = targets[i];
+        int edgeId = component.edgeIds[fromVertex][i];
+        if (!excludedEdges[edgeId] && (maxSearchDepthActivated || !analyzedVertices[toVertex])) {
+          if (positionInPath[toVertex] != -1) {
+            addCycle(positionInPath[toVertex], edgeId);
+            if (cycles.size() >= maxCyclesToFound) {
+              throw new MaximumCyclesToFoundException();
+            }
+          } else if (!maxSearchDepthActivated || pathLength < maxSearchDepth) {
+            pathEdges[pathLength - 1] = edgeId;
+            searchCycles(toVertex);
+          }
+        }
+      }
+      pathLength--;
+      positionInPath[fromVertex] = -1;
+    }
+
+    private void addCycle(int startPosition, int closingEdgeId) {
+      List<Edge> edges = new ArrayList<Edge>(pathLength - startPosition);
+      for (int position = startPosition; position < pathLength - 1; position++) {
+        edges.add(component.edges[pathEdges[position]]);
+      }
+      edges.add(component.edges[closingEdgeId]);
+      cycles.add(new Cycle(edges));
+    }
+  }
+}
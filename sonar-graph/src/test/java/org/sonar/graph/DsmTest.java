@@ -24,7 +24,11 @@ import org.junit.Test;
 import org.sonar.graph.Dsm;
 import org.sonar.graph.DsmScanner;
 
+import java.util.Collections;
+
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
@@ -74,4 +78,35 @@ public class DsmTest {
     assertThat(dsm.getNumberOfIncomingEdges(0, 0, 4), equalTo(1));
     assertThat(dsm.getNumberOfIncomingEdges(4, 0, 4), equalTo(0));
   }
+
+  @Test
+  public void testIndexOf() {
+    assertEquals(3, dsm.indexOf("D"));
+    assertEquals(-1, dsm.indexOf("Z"));
+
+    dsm.permute(0, 3);
+    assertEquals(0, dsm.indexOf("D"));
+    assertEquals(3, dsm.indexOf("A"));
+  }
+
+  @Test
+  public void testGetIncomingAndOutgoingIndices() {
+    DirectedGraph<String, StringEdge> graph = DirectedGraph.createStringDirectedGraph();
+    graph.addVertex("A");
+    graph.addEdge("B", "A", 2).addEdge("C", "A", 4).addEdge("D", "B", 7);
+    Dsm<String> sparseDsm = new Dsm<String>(graph, graph.getVertices(), Collections.<Edge>emptySet());
+    DsmManualSorter.sort(sparseDsm, "A", "B", "C", "D");
+
+    assertArrayEquals(new int[] { 1, 2 }, sparseDsm.getIncomingIndices(0));
+    assertArrayEquals(new int[] { 0 }, sparseDsm.getOutgoingIndices(1));
+    assertArrayEquals(new int[] { 3 }, sparseDsm.getIncomingIndices(1));
+    assertThat(sparseDsm.getOutgoingIndices(0).length, equalTo(0));
+    assertThat(sparseDsm.getCell(2, 3).getEdge(), nullValue());
+    assertEquals(0, sparseDsm.getCell(2, 3).getWeight());
+
+    sparseDsm.permute(0, 3);
+    assertArrayEquals(new int[] { 1, 2 }, sparseDsm.getIncomingIndices(3));
+    assertArrayEquals(new int[] { 3 }, sparseDsm.getOutgoingIndices(1));
+    assertEquals(4, sparseDsm.getCell(2, 3).getWeight());
+  }
 }
@@ -109,4 +109,17 @@ public class DsmTopologicalSorterTest {
     assertEquals(expectedDsm.toString(), DsmPrinter.print(dsm));
   }
 
+  @Test
+  public void sortLongChainOfDependencies() {
+    DirectedGraph<String, StringEdge> dag = DirectedGraph.createStringDirectedGraph();
+    for (int i = 0; i < 3000; i++) {
+      dag.addEdge("V" + (i + 1), "V" + i, 1);
+    }
+    Dsm<String> dsm = new Dsm<String>(dag);
+    DsmTopologicalSorter.sort(dsm);
+
+    for (int i = 0; i <= 3000; i++) {
+      assertEquals("V" + (3000 - i), dsm.getVertex(i));
+    }
+  }
 }
@@ -0,0 +1,118 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.graph;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SccCyclesAndFESSolverTest {
+
+  @Test
+  public void testSimpleCase() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "C").addEdge("C", "D").addEdge("D", "A");
+    dcg.addEdge("C", "A");
+    dcg.addEdge("B", "A");
+    dcg.addEdge("A", "E").addEdge("E", "C");
+    dcg.addEdge("E", "D");
+    dcg.addEdge("E", "F");
+    dcg.addEdge("F", "C");
+
+    SccCyclesAndFESSolver<String> solver = new SccCyclesAndFESSolver<String>(dcg, dcg.getVertices(), 3, Integer.MAX_VALUE, 1);
+    assertThat(solver.getCycles().size(), is(4));
+    assertThat(solver.getFeedbackEdgeSet().size(), is(2));
+    assertThat(solver.getWeightOfFeedbackEdgeSet(), is(2));
+    assertThat(solver.getCyclicComponents(), is(1));
+  }
+
+  @Test
+  public void testWithNoCycleUnderTheThreshold() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "C").addEdge("C", "D").addEdge("D", "A");
+
+    SccCyclesAndFESSolver<String> solver = new SccCyclesAndFESSolver<String>(dcg, dcg.getVertices(), 2, Integer.MAX_VALUE, 1);
+    assertThat(solver.getCycles().size(), is(1));
+    assertThat(solver.getFeedbackEdgeSet().size(), is(1));
+    assertThat(solver.getWeightOfFeedbackEdgeSet(), is(1));
+  }
+
+  @Test
+  public void testSeveralComponents() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "C").addEdge("C", "D").addEdge("D", "A");
+    dcg.addEdge("E", "F").addEdge("F", "G").addEdge("G", "E");
+    dcg.addEdge("H", "I").addEdge("I", "H");
+    dcg.addEdge("D", "E").addEdge("G", "H").addEdge("I", "J");
+
+    for (int threads = 1; threads <= 3; threads++) {
+      SccCyclesAndFESSolver<String> solver = new SccCyclesAndFESSolver<String>(dcg, dcg.getVertices(), threads);
+      assertThat(solver.getCyclicComponents(), is(3));
+      assertThat(solver.getCycles().size(), is(3));
+      assertThat(solver.getFeedbackEdgeSet().size(), is(3));
+      assertThat(solver.getWeightOfFeedbackEdgeSet(), is(3));
+    }
+  }
+
+  @Test
+  public void testAcyclicGraph() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "C").addEdge("A", "C");
+
+    SccCyclesAndFESSolver<String> solver = new SccCyclesAndFESSolver<String>(dcg, dcg.getVertices());
+    assertThat(solver.isAcyclicGraph(), is(true));
+    assertThat(solver.getCyclicComponents(), is(0));
+    assertThat(solver.getFeedbackEdgeSet().size(), is(0));
+    assertThat(solver.getWeightOfFeedbackEdgeSet(), is(0));
+  }
+
+  @Test
+  public void testEdgeToItself() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "A").addEdge("A", "B");
+
+    SccCyclesAndFESSolver<String> solver = new SccCyclesAndFESSolver<String>(dcg, dcg.getVertices());
+    assertThat(solver.getCycles().size(), is(1));
+    assertThat(solver.getFeedbackEdgeSet().size(), is(1));
+  }
+
+  @Test
+  public void testOnlyEdgesBetweenTheGivenVertices() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "C").addEdge("C", "A");
+
+    SccCyclesAndFESSolver<String> solver = new SccCyclesAndFESSolver<String>(dcg, java.util.Arrays.asList("A", "B"));
+    assertThat(solver.isAcyclicGraph(), is(true));
+  }
+
+  @Test
+  public void testLongChainOfDependencies() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    for (int i = 0; i < 50000; i++) {
+      dcg.addEdge("V" + i, "V" + (i + 1));
+    }
+    dcg.addEdge("V50000", "V49999");
+
+    SccCyclesAndFESSolver<String> solver = new SccCyclesAndFESSolver<String>(dcg, dcg.getVertices());
+    assertThat(solver.getCyclicComponents(), is(1));
+    assertThat(solver.getCycles().size(), is(1));
+  }
+}
@@ -19,6 +19,7 @@
  */
 package org.sonar.markdown;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -49,7 +50,7 @@ public class MarkdownEngine {
 
   public static String convertToHtml(String input) {
     MarkdownEngine engine = new MarkdownEngine();
-    engine.dispatcher.consume(new CodeReader(input), engine.output);
+    engine.dispatcher.consume(new CodeReader(CharBuffer.wrap(input)), engine.output);
     return engine.output.toString();
   }
 }
@@ -128,7 +128,7 @@ public class BatchExtensionDictionnary {
   /**
    * Extension dependencies
    */
-  private <T> List getDependencies(T extension) {
+  protected <T> List getDependencies(T extension) {
     return evaluateAnnotatedClasses(extension, DependsUpon.class);
   }
 
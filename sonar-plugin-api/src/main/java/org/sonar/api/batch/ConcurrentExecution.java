@@ -17,30 +17,23 @@
  * License along with Sonar; if not, write to the Free Software
  * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
  */
-package org.sonar.server.filters;
+package org.sonar.api.batch;
 
-import org.junit.Test;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
-
-import static org.hamcrest.core.Is.is;
-import static org.hamcrest.core.IsNull.nullValue;
-import static org.junit.Assert.assertThat;
-
-public class FilterResultTest {
-
-  @Test
-  public void sortWithNullElements() {
-    List<String[]> list = Arrays.asList(new String[]{"foo"}, new String[]{null}, new String[]{"bar"}, new String[]{null}, new String[]{null}, new String[]{"toto"});
-    Collections.sort(list, new FilterResult.RowComparator(0));
-
-    assertThat(list.get(0)[0], nullValue());
-    assertThat(list.get(1)[0], nullValue());
-    assertThat(list.get(2)[0], nullValue());
-    assertThat(list.get(3)[0], is("bar"));
-    assertThat(list.get(4)[0], is("foo"));
-    assertThat(list.get(5)[0], is("toto"));
-  }
+/**
+ * Marks a sensor or a decorator which can be executed concurrently with other extensions when the batch is configured to
+ * use several threads. Such an extension must not use the database session, directly or through components like
+ * {@link TimeMachine}, and must not share unsynchronized state. The {@link org.sonar.api.rules.RuleFinder} can be used, it
+ * opens a session per thread. The extensions which are not marked are executed one at a time.
+ * This annotation is not inherited.
+ *
+ * @since 2.8
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ConcurrentExecution {
 }
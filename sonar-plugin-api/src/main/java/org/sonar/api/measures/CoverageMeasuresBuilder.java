@@ -21,11 +21,14 @@ package org.sonar.api.measures;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import org.sonar.api.utils.KeyValueFormat;
 
 import java.util.*;
 
 /**
+ * Hits and conditions are stored in primitive arrays indexed by line, so that large coverage reports can be loaded
+ * without boxing. Lines beyond the first 100,000 ones, and negative lines of odd reports, are stored in sorted maps, so
+ * that an unexpected line id doesn't allocate huge arrays. This class is not thread-safe, but a builder can be filled by any thread.
+ *
  * @since 2.7
  */
 public final class CoverageMeasuresBuilder {
@@ -38,11 +41,23 @@ public final class CoverageMeasuresBuilder {
       CoreMetrics.CONDITIONS_TO_COVER, CoreMetrics.UNCOVERED_CONDITIONS, CoreMetrics.CONDITIONS_BY_LINE,
       CoreMetrics.COVERED_CONDITIONS_BY_LINE);
 
+  private static final int INITIAL_LINES = 64;
+  static final int MAX_INDEXED_LINES = 100000;
 
   private int totalCoveredLines = 0, totalConditions = 0, totalCoveredConditions = 0;
-  private SortedMap<Integer, Integer> hitsByLine = Maps.newTreeMap();
-  private SortedMap<Integer, Integer> conditionsByLine = Maps.newTreeMap();
-  private SortedMap<Integer, Integer> coveredConditionsByLine = Maps.newTreeMap();
+  private int linesToCover = 0, linesWithConditions = 0;
+
+  // indexed by line, the lines with hits are set in hitLines : any value of hits, even negative, is kept
+  private int[] hitsByLine = new int[0];
+  private final BitSet hitLines = new BitSet();
+  // indexed by line, zero when the line has no conditions
+  private int[] conditionsByLine = new int[0];
+  private int[] coveredConditionsByLine = new int[0];
+
+  // lines which are not indexed by the arrays
+  private final SortedMap<Integer, Integer> sparseHitsByLine = Maps.newTreeMap();
+  private final SortedMap<Integer, Integer> sparseConditionsByLine = Maps.newTreeMap();
+  private final SortedMap<Integer, Integer> sparseCoveredConditionsByLine = Maps.newTreeMap();
 
   private CoverageMeasuresBuilder() {
     // use the factory
@@ -52,40 +67,95 @@ public final class CoverageMeasuresBuilder {
     totalCoveredLines = 0;
     totalConditions = 0;
     totalCoveredConditions = 0;
-    hitsByLine.clear();
-    conditionsByLine.clear();
-    coveredConditionsByLine.clear();
+    linesToCover = 0;
+    linesWithConditions = 0;
+    Arrays.fill(hitsByLine, 0);
+    hitLines.clear();
+    Arrays.fill(conditionsByLine, 0);
+    Arrays.fill(coveredConditionsByLine, 0);
+    sparseHitsByLine.clear();
+    sparseConditionsByLine.clear();
+    sparseCoveredConditionsByLine.clear();
     return this;
   }
 
+  /**
+   * Only the first hits of a line are kept.
+   */
   public CoverageMeasuresBuilder setHits(int lineId, int hits) {
-    if (!hitsByLine.containsKey(lineId)) {
-      hitsByLine.put(lineId, hits);
-      if (hits > 0) {
-        totalCoveredLines += 1;
+    if (isSparse(lineId)) {
+      if (!sparseHitsByLine.containsKey(lineId)) {
+        sparseHitsByLine.put(lineId, hits);
+        addHits(hits);
+      }
+    } else {
+      if (lineId >= hitsByLine.length) {
+        hitsByLine = grow(hitsByLine, lineId);
+      }
+      if (!hitLines.get(lineId)) {
+        hitLines.set(lineId);
+        hitsByLine[lineId] = hits;
+        addHits(hits);
       }
     }
     return this;
   }
 
+  private void addHits(int hits) {
+    linesToCover++;
+    if (hits > 0) {
+      totalCoveredLines += 1;
+    }
+  }
+
+  /**
+   * Only the first conditions of a line are kept. Lines without conditions are ignored.
+   */
   public CoverageMeasuresBuilder setConditions(int lineId, int conditions, int coveredConditions) {
-    if (!conditionsByLine.containsKey(lineId)) {
-      if (conditions > 0) {
-        totalConditions += conditions;
-        totalCoveredConditions += coveredConditions;
-        conditionsByLine.put(lineId, conditions);
-        coveredConditionsByLine.put(lineId, coveredConditions);
+    if (conditions > 0) {
+      if (isSparse(lineId)) {
+        if (!sparseConditionsByLine.containsKey(lineId)) {
+          sparseConditionsByLine.put(lineId, conditions);
+          sparseCoveredConditionsByLine.put(lineId, coveredConditions);
+          addConditions(conditions, coveredConditions);
+        }
+      } else {
+        if (lineId >= conditionsByLine.length) {
+          conditionsByLine = grow(conditionsByLine, lineId);
+          coveredConditionsByLine = grow(coveredConditionsByLine, lineId);
+        }
+        if (conditionsByLine[lineId] == 0) {
+          conditionsByLine[lineId] = conditions;
+          coveredConditionsByLine[lineId] = coveredConditions;
+          addConditions(conditions, coveredConditions);
+        }
       }
     }
     return this;
   }
 
+  private void addConditions(int conditions, int coveredConditions) {
+    totalConditions += conditions;
+    totalCoveredConditions += coveredConditions;
+    linesWithConditions++;
+  }
+
+  private static boolean isSparse(int lineId) {
+    return lineId < 0 || lineId >= MAX_INDEXED_LINES;
+  }
+
+  private static int[] grow(int[] array, int lineId) {
+    int[] newArray = new int[Math.min(MAX_INDEXED_LINES, Math.max(lineId + 1, Math.max(INITIAL_LINES, array.length * 2)))];
+    System.arraycopy(array, 0, newArray, 0, array.length);
+    return newArray;
+  }
+
   public int getCoveredLines() {
     return totalCoveredLines;
   }
 
   public int getLinesToCover() {
-    return hitsByLine.size();
+    return linesToCover;
   }
 
   public int getConditions() {
@@ -97,15 +167,31 @@ public final class CoverageMeasuresBuilder {
   }
 
   public SortedMap<Integer, Integer> getHitsByLine() {
-    return Collections.unmodifiableSortedMap(hitsByLine);
+    SortedMap<Integer, Integer> map = Maps.newTreeMap();
+    for (int lineId = hitLines.nextSetBit(0); lineId >= 0; lineId = hitLines.nextSetBit(lineId + 1)) {
+      map.put(lineId, hitsByLine[lineId]);
+    }
+    map.putAll(sparseHitsByLine);
+    return Collections.unmodifiableSortedMap(map);
   }
 
   public SortedMap<Integer, Integer> getConditionsByLine() {
-    return Collections.unmodifiableSortedMap(conditionsByLine);
+    return Collections.unmodifiableSortedMap(toConditionsMap(conditionsByLine, sparseConditionsByLine));
   }
 
   public SortedMap<Integer, Integer> getCoveredConditionsByLine() {
-    return Collections.unmodifiableSortedMap(coveredConditionsByLine);
+    return Collections.unmodifiableSortedMap(toConditionsMap(coveredConditionsByLine, sparseCoveredConditionsByLine));
+  }
+
+  private SortedMap<Integer, Integer> toConditionsMap(int[] values, SortedMap<Integer, Integer> sparseValues) {
+    SortedMap<Integer, Integer> map = Maps.newTreeMap();
+    for (int lineId = 0; lineId < conditionsByLine.length; lineId++) {
+      if (conditionsByLine[lineId] > 0) {
+        map.put(lineId, values[lineId]);
+      }
+    }
+    map.putAll(sparseValues);
+    return map;
   }
 
   public Collection<Measure> createMeasures() {
@@ -113,7 +199,7 @@ public final class CoverageMeasuresBuilder {
     if (getLinesToCover() > 0) {
       measures.add(new Measure(CoreMetrics.LINES_TO_COVER, (double) getLinesToCover()));
       measures.add(new Measure(CoreMetrics.UNCOVERED_LINES, (double) (getLinesToCover() - getCoveredLines())));
-      measures.add(new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA).setData(KeyValueFormat.format(hitsByLine)).setPersistenceMode(PersistenceMode.DATABASE));
+      measures.add(new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA).setData(formatHitsByLine()).setPersistenceMode(PersistenceMode.DATABASE));
     }
     if (getConditions() > 0) {
       measures.add(new Measure(CoreMetrics.CONDITIONS_TO_COVER, (double) getConditions()));
@@ -126,16 +212,57 @@ public final class CoverageMeasuresBuilder {
 
   private Measure createCoveredConditionsByLine() {
     return new Measure(CoreMetrics.COVERED_CONDITIONS_BY_LINE)
-        .setData(KeyValueFormat.format(coveredConditionsByLine))
+        .setData(formatConditions(coveredConditionsByLine, sparseCoveredConditionsByLine))
         .setPersistenceMode(PersistenceMode.DATABASE);
   }
 
   private Measure createConditionsByLine() {
     return new Measure(CoreMetrics.CONDITIONS_BY_LINE)
-        .setData(KeyValueFormat.format(conditionsByLine))
+        .setData(formatConditions(conditionsByLine, sparseConditionsByLine))
         .setPersistenceMode(PersistenceMode.DATABASE);
   }
 
+  /**
+   * Same format than {@link org.sonar.api.utils.KeyValueFormat#format(Map)}, without boxing the values.
+   */
+  private String formatHitsByLine() {
+    StringBuilder sb = new StringBuilder(linesToCover * 6);
+    appendPairs(sb, sparseHitsByLine.headMap(0));
+    for (int lineId = hitLines.nextSetBit(0); lineId >= 0; lineId = hitLines.nextSetBit(lineId + 1)) {
+      appendPair(sb, lineId, hitsByLine[lineId]);
+    }
+    appendPairs(sb, sparseHitsByLine.tailMap(0));
+    return sb.toString();
+  }
+
+  private String formatConditions(int[] values, SortedMap<Integer, Integer> sparseValues) {
+    StringBuilder sb = new StringBuilder(linesWithConditions * 6);
+    appendPairs(sb, sparseValues.headMap(0));
+    for (int lineId = 0; lineId < conditionsByLine.length; lineId++) {
+      if (conditionsByLine[lineId] > 0) {
+        appendPair(sb, lineId, values[lineId]);
+      }
+    }
+    appendPairs(sb, sparseValues.tailMap(0));
+    return sb.toString();
+  }
+
+  /**
+   * Sparse lines are negative lines, formatted before the indexed ones, and huge lines, formatted after them.
+   */
+  private static void appendPairs(StringBuilder sb, SortedMap<Integer, Integer> sparseValues) {
+    for (Map.Entry<Integer, Integer> entry : sparseValues.entrySet()) {
+      appendPair(sb, entry.getKey(), entry.getValue());
+    }
+  }
+
+  private static void appendPair(StringBuilder sb, int key, int value) {
+    if (sb.length() > 0) {
+      sb.append(';');
+    }
+    sb.append(key).append('=').append(value);
+  }
+
   public static CoverageMeasuresBuilder create() {
     return new CoverageMeasuresBuilder();
   }
@@ -43,6 +43,17 @@ public class CoverageMeasuresBuilderTest {
     assertThat(find(builder.createMeasures(), CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY).getData(), is("1=0;2=3;4=2"));
   }
 
+  @Test
+  public void shouldKeepNegativeHits() {
+    CoverageMeasuresBuilder builder = CoverageMeasuresBuilder.create();
+    builder.setHits(1, -1);
+    builder.setHits(1, 5);
+    builder.setHits(2, 3);
+    assertThat(builder.getLinesToCover(), is(2));
+    assertThat(builder.getHitsByLine().get(1), is(-1));
+    assertThat(find(builder.createMeasures(), CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY).getData(), is("1=-1;2=3"));
+  }
+
   @Test
   public void shouldCreateUncoveredLines() {
     CoverageMeasuresBuilder builder = CoverageMeasuresBuilder.create();
@@ -123,6 +134,60 @@ public class CoverageMeasuresBuilderTest {
     assertThat(builder.getCoveredConditionsByLine().size(), is(0));
   }
 
+  @Test
+  public void shouldSortLinesInData() {
+    CoverageMeasuresBuilder builder = CoverageMeasuresBuilder.create();
+    builder.setHits(1500, 1);
+    builder.setHits(3, 0);
+    builder.setConditions(1500, 2, 1);
+    builder.setConditions(70, 4, 4);
+    assertThat(find(builder.createMeasures(), CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY).getData(), is("3=0;1500=1"));
+    assertThat(find(builder.createMeasures(), CoreMetrics.CONDITIONS_BY_LINE_KEY).getData(), is("70=4;1500=2"));
+    assertThat(find(builder.createMeasures(), CoreMetrics.COVERED_CONDITIONS_BY_LINE_KEY).getData(), is("70=4;1500=1"));
+    assertThat(builder.getHitsByLine().firstKey(), is(3));
+  }
+
+  @Test
+  public void shouldAcceptNegativeLines() {
+    CoverageMeasuresBuilder builder = CoverageMeasuresBuilder.create();
+    builder.setHits(2, 0);
+    builder.setHits(-1, 2);
+    builder.setConditions(2, 2, 1);
+    builder.setConditions(-3, 4, 4);
+    assertThat(builder.getLinesToCover(), is(2));
+    assertThat(builder.getHitsByLine().firstKey(), is(-1));
+    Collection<Measure> measures = builder.createMeasures();
+    assertThat(find(measures, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY).getData(), is("-1=2;2=0"));
+    assertThat(find(measures, CoreMetrics.CONDITIONS_BY_LINE_KEY).getData(), is("-3=4;2=2"));
+    assertThat(find(measures, CoreMetrics.COVERED_CONDITIONS_BY_LINE_KEY).getData(), is("-3=4;2=1"));
+  }
+
+  @Test
+  public void shouldNotIndexHugeLines() {
+    int hugeLine = Integer.MAX_VALUE;
+    int bigLine = CoverageMeasuresBuilder.MAX_INDEXED_LINES;
+    CoverageMeasuresBuilder builder = CoverageMeasuresBuilder.create();
+    builder.setHits(hugeLine, 1);
+    builder.setHits(hugeLine, 0);
+    builder.setHits(bigLine, 0);
+    builder.setHits(3, 2);
+    builder.setConditions(hugeLine, 2, 1);
+    builder.setConditions(3, 4, 4);
+
+    assertThat(builder.getLinesToCover(), is(3));
+    assertThat(builder.getCoveredLines(), is(2));
+    assertThat(builder.getConditions(), is(6));
+    assertThat(builder.getCoveredConditions(), is(5));
+    assertThat(builder.getHitsByLine().lastKey(), is(hugeLine));
+    assertThat(find(builder.createMeasures(), CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY).getData(),
+        is("3=2;" + bigLine + "=0;" + hugeLine + "=1"));
+    assertThat(find(builder.createMeasures(), CoreMetrics.COVERED_CONDITIONS_BY_LINE_KEY).getData(), is("3=4;" + hugeLine + "=1"));
+
+    builder.reset();
+    assertThat(builder.getHitsByLine().size(), is(0));
+    assertThat(builder.getConditionsByLine().size(), is(0));
+  }
+
   private Measure find(Collection<Measure> measures, String metricKey) {
     for (Measure measure : measures) {
       if (metricKey.equals(measure.getMetricKey())) {
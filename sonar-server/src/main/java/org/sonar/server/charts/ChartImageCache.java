@@ -0,0 +1,160 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.server.charts;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the PNG images of the last rendered charts. Charts are identified by their normalized parameters. The least
+ * recently used images are evicted when the total number of bytes exceeds the limit, and images expire after a delay
+ * because charts provided by plugins can load their data from database.
+ * <p/>
+ * This class is thread-safe.
+ *
+ * @since 2.8
+ */
+public class ChartImageCache {
+
+  static final int DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+  static final long DEFAULT_TIME_TO_LIVE_MS = 10L * 60L * 1000L;
+
+  private final long maxBytes;
+  private final long timeToLive;
+  private final LinkedHashMap<String, Image> imagesByKey = new LinkedHashMap<String, Image>(16, 0.75f, true);
+  private long bytes = 0;
+
+  public ChartImageCache() {
+    this(DEFAULT_MAX_BYTES, DEFAULT_TIME_TO_LIVE_MS);
+  }
+
+  /**
+   * @param maxBytes   maximum size of all the cached images. Zero disables the cache.
+   * @param timeToLive delay in milliseconds after which an image must be rendered again
+   */
+  ChartImageCache(long maxBytes, long timeToLive) {
+    this.maxBytes = maxBytes;
+    this.timeToLive = timeToLive;
+  }
+
+  public boolean isEnabled() {
+    return maxBytes > 0;
+  }
+
+  /**
+   * @return the cached image, null if the chart has not been rendered recently
+   */
+  public synchronized Image get(String key) {
+    Image image = imagesByKey.get(key);
+    if (image != null && System.currentTimeMillis() - image.createdAt > timeToLive) {
+      remove(key);
+      image = null;
+    }
+    return image;
+  }
+
+  /**
+   * Images larger than the limit are not cached but are still returned, so that they can be sent with their ETag.
+   */
+  public synchronized Image put(String key, byte[] data) {
+    Image image = new Image(data);
+    if (isEnabled() && data.length <= maxBytes) {
+      remove(key);
+      imagesByKey.put(key, image);
+      bytes += data.length;
+      Iterator<Image> it = imagesByKey.values().iterator();
+      while (bytes > maxBytes && it.hasNext()) {
+        bytes -= it.next().getData().length;
+        it.remove();
+      }
+    }
+    return image;
+  }
+
+  public synchronized void clear() {
+    imagesByKey.clear();
+    bytes = 0;
+  }
+
+  public synchronized int size() {
+    return imagesByKey.size();
+  }
+
+  synchronized long getBytes() {
+    return bytes;
+  }
+
+  private void remove(String key) {
+    Image previous = imagesByKey.remove(key);
+    if (previous != null) {
+      bytes -= previous.getData().length;
+    }
+  }
+
+  /**
+   * Parameters are sorted by name, so that the order of the URL parameters does not matter. Null values are ignored.
+   */
+  public static String createKey(Map<String, String> params) {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, String> entry : new TreeMap<String, String>(params).entrySet()) {
+      if (entry.getValue() != null) {
+        sb.append(entry.getKey()).append('=').append(entry.getValue()).append('&');
+      }
+    }
+    return sb.toString();
+  }
+
+  public static final class Image {
+    private final byte[] data;
+    private final String etag;
+    private final long createdAt;
+
+    private Image(byte[] data) {
+      this.data = data;
+      this.etag = "\"" + DigestUtils.md5Hex(data) + "\"";
+      this.createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Encoded PNG image. It's shared between requests, so it must not be modified.
+     */
+    public byte[] getData() {
+      return data;
+    }
+
+    /**
+     * Quoted MD5 hash of the image, as expected by the HTTP header ETag.
+     */
+    public String getEtag() {
+      return etag;
+    }
+
+    /**
+     * @param ifNoneMatch value of the HTTP header If-None-Match, can be null
+     */
+    public boolean matches(String ifNoneMatch) {
+      return ifNoneMatch != null && ("*".equals(ifNoneMatch.trim()) || ifNoneMatch.contains(etag));
+    }
+  }
+}
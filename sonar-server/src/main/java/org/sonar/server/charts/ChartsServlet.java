@@ -19,12 +19,12 @@
  */
 package org.sonar.server.charts;
 
-import org.apache.commons.io.IOUtils;
 import org.jfree.chart.encoders.KeypointPNGEncoderAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.charts.Chart;
 import org.sonar.api.charts.ChartParameters;
+import org.sonar.jpa.session.DatabaseSessionFactory;
 import org.sonar.server.charts.deprecated.*;
 import org.sonar.server.platform.Platform;
 
@@ -33,43 +33,109 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.*;
 
+/**
+ * Charts are rendered by a bounded pool of threads, so that many concurrent requests can not use all the CPU and all
+ * the threads of the servlet container. Rendered images are cached and are identified by an ETag.
+ */
 public class ChartsServlet extends HttpServlet {
 
   private static final Logger LOG = LoggerFactory.getLogger(ChartsServlet.class);
+  private static final int MAX_QUEUED_RENDERINGS = 200;
+  private static final long RENDERING_TIMEOUT_SECONDS = 30L;
+
+  private transient ExecutorService renderers;
+  private transient ChartImageCache cache;
+
+  @Override
+  public void init() throws ServletException {
+    int threads = Runtime.getRuntime().availableProcessors();
+    renderers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(MAX_QUEUED_RENDERINGS));
+    cache = new ChartImageCache();
+  }
+
+  @Override
+  public void destroy() {
+    renderers.shutdownNow();
+    cache.clear();
+  }
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
-    if (isDeprecatedChart(request)) {
-      deprecatedDoGet(request, response);
-
-    } else {
-      ChartFactory chartFactory = Platform.getInstance().getContainer().getComponent(ChartFactory.class);
-      Chart chart = chartFactory.getChart(request.getParameter("ck"));
-      if (chart != null) {
-        BufferedImage image = chart.generateImage(getParams(request));
-        OutputStream out = response.getOutputStream();
-        try {
-          response.setContentType("image/png");
-          exportAsPNG(image, out);
-
-        } catch (Exception e) {
-          LOG.error("Generating chart " + chart.getClass().getName(), e);
-
-        } finally {
-          out.close();
-        }
+    Map<String, String> params = getParams(request);
+    String key = ChartImageCache.createKey(params);
+    ChartImageCache.Image image = cache.get(key);
+    if (image == null) {
+      Callable<byte[]> rendering;
+      if (isDeprecatedChart(request)) {
+        rendering = createDeprecatedRendering(getDeprecatedParams(request));
+
+      } else {
+        ChartFactory chartFactory = Platform.getInstance().getContainer().getComponent(ChartFactory.class);
+        rendering = createRendering(chartFactory.getChart(request.getParameter("ck")), params);
       }
+      if (rendering == null) {
+        return;
+      }
+      byte[] data = render(rendering, response);
+      if (data == null) {
+        return;
+      }
+      image = cache.put(key, data);
+    }
+    send(image, request, response);
+  }
+
+  private byte[] render(Callable<byte[]> rendering, HttpServletResponse response) throws IOException {
+    Future<byte[]> future = null;
+    try {
+      future = renderers.submit(rendering);
+      return future.get(RENDERING_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+    } catch (RejectedExecutionException e) {
+      LOG.warn("Too many charts are being generated, request rejected");
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+
+    } catch (TimeoutException e) {
+      LOG.warn("Chart not generated after " + RENDERING_TIMEOUT_SECONDS + " seconds");
+      future.cancel(true);
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+
+    } catch (ExecutionException e) {
+      LOG.error("Generating chart " + rendering, e.getCause());
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return null;
+  }
+
+  private void send(ChartImageCache.Image image, HttpServletRequest request, HttpServletResponse response) throws IOException {
+    response.setHeader("ETag", image.getEtag());
+    if (image.matches(request.getHeader("If-None-Match"))) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+    response.setContentType("image/png");
+    response.setContentLength(image.getData().length);
+    OutputStream out = response.getOutputStream();
+    try {
+      out.write(image.getData());
+    } finally {
+      out.close();
     }
   }
 
-  private ChartParameters getParams(HttpServletRequest request) {
+  private Map<String, String> getParams(HttpServletRequest request) {
     Map<String, String> map = new HashMap<String, String>();
     Enumeration keys = request.getParameterNames();
     while (keys.hasMoreElements()) {
@@ -77,17 +143,38 @@ public class ChartsServlet extends HttpServlet {
       String value = request.getParameter(key);
       map.put(key, value);
     }
-    return new ChartParameters(map);
+    return map;
   }
 
-  private void exportAsPNG(BufferedImage image, OutputStream out) throws IOException {
+  private static Callable<byte[]> createRendering(final Chart chart, final Map<String, String> params) {
+    if (chart == null) {
+      return null;
+    }
+    return new Rendering() {
+      @Override
+      void render(OutputStream out) throws IOException {
+        BufferedImage image = chart.generateImage(new ChartParameters(params));
+        exportAsPNG(image, out);
+      }
+
+      @Override
+      public String toString() {
+        return chart.getClass().getName();
+      }
+    };
+  }
+
+  private static void exportAsPNG(BufferedImage image, OutputStream out) throws IOException {
     KeypointPNGEncoderAdapter encoder = new KeypointPNGEncoderAdapter();
     encoder.setEncodingAlpha(true);
     encoder.encode(image, out);
   }
 
   public boolean isDeprecatedChart(HttpServletRequest request) {
-    String chartType = request.getParameter(BaseChartWeb.CHART_PARAM_TYPE);
+    return isDeprecatedChartType(request.getParameter(BaseChartWeb.CHART_PARAM_TYPE));
+  }
+
+  private static boolean isDeprecatedChartType(String chartType) {
     if (BaseChartWeb.BAR_CHART_HORIZONTAL.equals(chartType) || BaseChartWeb.BAR_CHART_VERTICAL.equals(chartType) || BaseChartWeb.STACKED_BAR_CHART.equals(chartType)) {
       return true;
     }
@@ -103,9 +190,7 @@ public class ChartsServlet extends HttpServlet {
     return false;
   }
 
-  public void deprecatedDoGet(HttpServletRequest request, HttpServletResponse response)
-      throws ServletException, IOException {
-
+  private static Map<String, String> getDeprecatedParams(HttpServletRequest request) {
     Map<String, String> params = new HashMap<String, String>();
     params.put(BaseChartWeb.CHART_PARAM_TYPE, request.getParameter(BaseChartWeb.CHART_PARAM_TYPE));
     params.put(BaseChartWeb.CHART_PARAM_VALUES, request.getParameter(BaseChartWeb.CHART_PARAM_VALUES));
@@ -126,6 +211,27 @@ public class ChartsServlet extends HttpServlet {
     params.put(BaseChartWeb.CHART_PARAM_OUTLINE_RANGEGRIDLINES_VISIBLE, request.getParameter(BaseChartWeb.CHART_PARAM_OUTLINE_RANGEGRIDLINES_VISIBLE));
     params.put(BaseChartWeb.CHART_PARAM_OUTLINE_VISIBLE, request.getParameter(BaseChartWeb.CHART_PARAM_OUTLINE_VISIBLE));
 
+    return params;
+  }
+
+  private static Callable<byte[]> createDeprecatedRendering(final Map<String, String> params) {
+    if (!isDeprecatedChartType(params.get(BaseChartWeb.CHART_PARAM_TYPE))) {
+      return null;
+    }
+    return new Rendering() {
+      @Override
+      void render(OutputStream out) throws IOException {
+        createDeprecatedChart(params).exportChartAsPNG(out);
+      }
+
+      @Override
+      public String toString() {
+        return params.get(BaseChartWeb.CHART_PARAM_TYPE);
+      }
+    };
+  }
+
+  private static DeprecatedChart createDeprecatedChart(Map<String, String> params) {
     String chartType = params.get(BaseChartWeb.CHART_PARAM_TYPE);
 
     DeprecatedChart chart = null;
@@ -140,20 +246,28 @@ public class ChartsServlet extends HttpServlet {
       chart = new SparkLinesChart(params);
     }
 
-    OutputStream out = null;
-    try {
-      if (chart != null) {
-        out = response.getOutputStream();
-        response.setContentType("image/png");
-        chart.exportChartAsPNG(out);
-      }
+    return chart;
+  }
 
-    } catch (Exception e) {
-      LOG.error("Generating chart " + chart.getClass().getName(), e);
+  /**
+   * Charts are rendered by the threads of the pool, which are not handled by {@link org.sonar.server.ui.DatabaseSessionFilter},
+   * so the database session of the thread is cleared after each rendering.
+   */
+  private abstract static class Rendering implements Callable<byte[]> {
+    public final byte[] call() throws IOException {
+      try {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        render(out);
+        return out.toByteArray();
 
-    } finally {
-      IOUtils.closeQuietly(out);
+      } finally {
+        DatabaseSessionFactory sessionFactory = Platform.getInstance().getContainer().getComponent(DatabaseSessionFactory.class);
+        if (sessionFactory != null) {
+          sessionFactory.clear();
+        }
+      }
     }
-  }
 
+    abstract void render(OutputStream out) throws IOException;
+  }
 }
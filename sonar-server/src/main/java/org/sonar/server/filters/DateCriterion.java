@@ -30,6 +30,7 @@ public class DateCriterion {
 
   private String operator;
   private Date date;
+  private Integer daysAgo;
 
   public DateCriterion(String operator, Date date) {
     this.operator = operator;
@@ -54,20 +55,31 @@ public class DateCriterion {
 
   public DateCriterion setDate(Date date) {
     this.date = date;
+    this.daysAgo = null;
     return this;
   }
 
   public DateCriterion setDate(int daysAgo) {
     this.date = DateUtils.addDays(new Date(), -daysAgo);
     this.date = DateUtils.truncate(this.date, Calendar.DATE);
+    this.daysAgo = daysAgo;
     return this;
   }
 
+  /**
+   * @return the number of days of a relative date, null if the date is absolute
+   * @since 2.8
+   */
+  public Integer getDaysAgo() {
+    return daysAgo;
+  }
+
   @Override
   public String toString() {
     return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
         .append("operator", operator)
         .append("date", date)
+        .append("daysAgo", daysAgo)
         .toString();
   }
 }
@@ -60,6 +60,9 @@ public class Filter {
   private boolean useMeasureValueToSort = true; // only if sortedMetricId is not null
   private boolean ascendingSort = true;
 
+  // pagination
+  private int pageSize = 0;
+  private int pageIndex = 1;
 
 
   public Filter setPath(Integer rootSnapshotId, Integer snapshotId, String snapshotPath, boolean isViewContext) {
@@ -290,6 +293,35 @@ public class Filter {
     return this;
   }
 
+  public boolean isPaginated() {
+    return pageSize > 0;
+  }
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public int getPageIndex() {
+    return pageIndex;
+  }
+
+  /**
+   * Only the rows of the given page are returned. The database must be able to apply the same access rights to all the rows,
+   * so it should be used only on the resources of a single project.
+   *
+   * @param pageSize  number of rows per page, zero to return all the rows
+   * @param pageIndex index of the page, starting from 1
+   */
+  public Filter setPagination(int pageSize, int pageIndex) {
+    this.pageSize = pageSize;
+    this.pageIndex = Math.max(pageIndex, 1);
+    return this;
+  }
+
+  int getFirstRowIndex() {
+    return (pageIndex - 1) * pageSize;
+  }
+
   public DateCriterion getDateCriterion() {
     return dateCriterion;
   }
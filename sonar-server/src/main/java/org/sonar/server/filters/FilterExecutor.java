@@ -35,16 +35,48 @@ public class FilterExecutor implements ServerComponent {
   private static final Logger LOG = LoggerFactory.getLogger(FilterExecutor.class);
   private static final int SQL_INITIAL_SIZE = 1000;
   private DatabaseSession session;
+  private FilterResultCache cache;
 
-  public FilterExecutor(DatabaseSession session) {
+  /**
+   * for unit tests
+   */
+  FilterExecutor(DatabaseSession session) {
+    this(session, new FilterResultCache(0));
+  }
+
+  public FilterExecutor(DatabaseSession session, FilterResultCache cache) {
     this.session = session;
+    this.cache = cache;
   }
 
   public FilterResult execute(Filter filter) {
     if (filter.mustReturnEmptyResult()) {
       return new FilterResult(filter, Collections.emptyList());
     }
-    
+
+    if (!cache.isEnabled()) {
+      return executeQuery(filter);
+    }
+    Long lastSnapshotId = getLastSnapshotId();
+    FilterResult result = cache.get(filter, lastSnapshotId);
+    if (result == null) {
+      result = executeQuery(filter);
+      cache.put(filter, lastSnapshotId, result);
+    }
+    return result;
+  }
+
+  /**
+   * The id of the last processed snapshot changes each time an analysis is completed.
+   */
+  private Long getLastSnapshotId() {
+    Query query = session.getEntityManager().createNativeQuery("SELECT MAX(id) FROM snapshots WHERE status=:status");
+    query.setParameter("status", Snapshot.STATUS_PROCESSED);
+    Number id = (Number) query.getSingleResult();
+    return id == null ? null : id.longValue();
+  }
+
+  private FilterResult executeQuery(Filter filter) {
     String sql = null;
     try {
       TimeProfiler profiler = new TimeProfiler(FilterExecutor.class).start("Build/execute SQL query");
@@ -52,15 +84,15 @@ public class FilterExecutor implements ServerComponent {
       LOG.info("SQL: " + sql);
       Query query = session.getEntityManager().createNativeQuery(sql);
       setHqlParameters(filter, query);
-      FilterResult result = new FilterResult(filter, query.getResultList());
-      profiler.stop();
-
-      profiler.start("Process rows");
-      result.removeUnvalidRows();
-      profiler.stop();
-
-      profiler.start("Sort rows");
-      result.sort();
+      FilterResult result;
+      if (filter.isPaginated()) {
+        // the limit and the offset are translated by the hibernate dialect
+        query.setFirstResult(filter.getFirstRowIndex());
+        query.setMaxResults(filter.getPageSize());
+        result = new FilterResult(filter, query.getResultList(), count(filter));
+      } else {
+        result = new FilterResult(filter, query.getResultList());
+      }
       profiler.stop();
       return result;
 
@@ -69,12 +101,78 @@ public class FilterExecutor implements ServerComponent {
     }
   }
 
+  private int count(Filter filter) {
+    StringBuilder sql = new StringBuilder(SQL_INITIAL_SIZE);
+    sql.append("SELECT COUNT(*) FROM (");
+    addGroupedRows(filter, sql);
+    sql.append(") filtered");
+    addValidRowsClause(filter, sql);
+    Query query = session.getEntityManager().createNativeQuery(sql.toString());
+    setHqlParameters(filter, query);
+    return ((Number) query.getSingleResult()).intValue();
+  }
+
+  /**
+   * Rows not matching all the measure criteria are removed and rows are sorted by the database, so that only the requested
+   * page can be loaded. Columns are the same than in the grouped request.
+   */
   private String toSql(Filter filter) {
     StringBuilder sql = new StringBuilder(SQL_INITIAL_SIZE);
+    sql.append("SELECT * FROM (");
+    addGroupedRows(filter, sql);
+    sql.append(") filtered");
+    addValidRowsClause(filter, sql);
+    addOrderByClause(filter, sql);
+    return sql.toString();
+  }
+
+  private void addGroupedRows(Filter filter, StringBuilder sql) {
     addSelectColumns(filter, sql);
     addFromClause(filter, sql);
     addWhereClause(filter, sql);
-    return sql.toString();
+  }
+
+  /**
+   * Rows which have no value for one of the measure criteria are excluded.
+   */
+  private void addValidRowsClause(Filter filter, StringBuilder sql) {
+    for (int index = 0; index < filter.getMeasureCriteria().size(); index++) {
+      sql.append(index == 0 ? " WHERE " : " AND ");
+      sql.append("crit_").append(index).append(" IS NOT NULL");
+    }
+  }
+
+  /**
+   * Null values are lower than the other values. Snapshot ids are used to keep the same order between pages.
+   */
+  private void addOrderByClause(Filter filter, StringBuilder sql) {
+    sql.append(" ORDER BY ");
+    String sortedColumn = getSortedColumn(filter);
+    if (sortedColumn != null) {
+      String direction = (filter.isAscendingSort() ? " ASC" : " DESC");
+      sql.append("CASE WHEN ").append(sortedColumn).append(" IS NULL THEN 0 ELSE 1 END").append(direction).append(", ");
+      sql.append(sortedColumn).append(direction).append(", ");
+    }
+    sql.append("id");
+  }
+
+  private static String getSortedColumn(Filter filter) {
+    if (filter.isSortedByLanguage()) {
+      return "lang";
+    }
+    if (filter.isSortedByName()) {
+      return "name";
+    }
+    if (filter.isSortedByDate()) {
+      return "createdat";
+    }
+    if (filter.isSortedByVersion()) {
+      return "version";
+    }
+    if (filter.getSortedMetricId() != null) {
+      return "sortvalue";
+    }
+    return null;
   }
 
   private void addSelectColumns(Filter filter, StringBuilder sql) {
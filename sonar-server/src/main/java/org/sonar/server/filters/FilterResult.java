@@ -19,21 +19,28 @@
  */
 package org.sonar.server.filters;
 
-import org.apache.commons.collections.comparators.ReverseComparator;
-
-import java.io.Serializable;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class FilterResult {
   private List<Object[]> rows;
   private Filter filter;
+  private int totalSize;
   public static final int SORTED_COLUMN_INDEX = 3;
 
   public FilterResult(Filter filter, List rows) {
+    this(filter, rows, rows.size());
+  }
+
+  /**
+   * @param totalSize number of rows of all the pages when the filter is paginated
+   */
+  public FilterResult(Filter filter, List rows, int totalSize) {
     this.rows = new ArrayList(rows);
     this.filter = filter;
+    this.totalSize = totalSize;
   }
-  
+
   /**
    * @return a list of arrays
    */
@@ -45,6 +52,13 @@ public class FilterResult {
     return rows.size();
   }
 
+  /**
+   * @return the number of rows of all the pages. It equals size() when the filter is not paginated.
+   */
+  public int getTotalSize() {
+    return filter.isPaginated() ? totalSize : rows.size();
+  }
+
   public Integer getSnapshotId(Object row) {
     return (Integer) ((Object[]) row)[getSnapshotIdIndex()];
   }
@@ -68,49 +82,4 @@ public class FilterResult {
   public int getRootProjectIdIndex() {
     return 2;
   }
-
-  public void sort() {
-    if (filter.isSorted()) {
-      Comparator comparator = new RowComparator(SORTED_COLUMN_INDEX);
-      if (!filter.isAscendingSort()) {
-        comparator = new ReverseComparator(comparator);
-      }
-      Collections.sort(rows, comparator);
-    }
-  }
-
-  public void removeUnvalidRows() {
-    int numberOfCriteria = filter.getMeasureCriteria().size();
-    if (numberOfCriteria>0) {
-      int fromColumnIndex = (filter.isSorted() ? SORTED_COLUMN_INDEX + 1 : SORTED_COLUMN_INDEX);
-      for (Iterator<Object[]> it=rows.iterator() ; it.hasNext() ; ) {
-        Object[] row = it.next();
-        boolean remove = false;
-        for (int index=0 ; index<numberOfCriteria ; index++) {
-          if (row[fromColumnIndex+index]==null) {
-            remove=true;
-          }
-        }
-        if (remove) {
-          it.remove();
-        }
-      }
-    }
-  }
-
-  static final class RowComparator implements Comparator, Serializable {
-    private static final long serialVersionUID = 4627704879575964978L;
-    private int index;
-
-    RowComparator(int index) {
-      this.index = index;
-    }
-
-    public int compare(Object a1, Object a2) {
-      Comparable c1 = (Comparable) ((Object[]) a1)[index];
-      Object o2 = ((Object[]) a2)[index];
-      return (c1 == null ? -1 : (o2 == null ? 1 : c1.compareTo(o2)));
-    }
-  }
 }
-
@@ -0,0 +1,200 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.server.filters;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.time.DateUtils;
+import org.sonar.api.ServerComponent;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Keeps the results of the filters until a new snapshot is processed. Filters are identified by their normalized criteria.
+ * The least recently used results are evicted when the total number of rows exceeds the limit.
+ * <p/>
+ * Cached results are shared between requests, so they must not be modified.
+ *
+ * @since 2.8
+ */
+public class FilterResultCache implements ServerComponent {
+
+  static final int DEFAULT_MAX_ROWS = 200000;
+
+  private final int maxRows;
+  private final LinkedHashMap<String, FilterResult> resultsByKey = new LinkedHashMap<String, FilterResult>(16, 0.75f, true);
+  private int rows = 0;
+  private Long lastSnapshotId = null;
+  private long hits = 0;
+  private long misses = 0;
+
+  public FilterResultCache() {
+    this(DEFAULT_MAX_ROWS);
+  }
+
+  /**
+   * @param maxRows maximum number of rows of all the cached results. Zero disables the cache.
+   */
+  FilterResultCache(int maxRows) {
+    this.maxRows = maxRows;
+  }
+
+  public boolean isEnabled() {
+    return maxRows > 0;
+  }
+
+  /**
+   * @param lastSnapshotId id of the last processed snapshot. All the results are evicted when it changes.
+   * @return the cached result, null if the filter has not been executed since the last processed snapshot
+   */
+  public synchronized FilterResult get(Filter filter, Long lastSnapshotId) {
+    checkLastSnapshotId(lastSnapshotId);
+    FilterResult result = resultsByKey.get(createKey(filter));
+    if (result == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return result;
+  }
+
+  public synchronized void put(Filter filter, Long lastSnapshotId, FilterResult result) {
+    checkLastSnapshotId(lastSnapshotId);
+    if (!isEnabled() || result.size() > maxRows) {
+      return;
+    }
+    FilterResult previous = resultsByKey.put(createKey(filter), result);
+    rows += result.size() - (previous == null ? 0 : previous.size());
+
+    Iterator<Map.Entry<String, FilterResult>> it = resultsByKey.entrySet().iterator();
+    while (rows > maxRows && it.hasNext()) {
+      rows -= it.next().getValue().size();
+      it.remove();
+    }
+  }
+
+  public synchronized void clear() {
+    resultsByKey.clear();
+    rows = 0;
+    lastSnapshotId = null;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return the number of cached results
+   */
+  public synchronized int size() {
+    return resultsByKey.size();
+  }
+
+  synchronized int getRows() {
+    return rows;
+  }
+
+  private void checkLastSnapshotId(Long id) {
+    if (!ObjectUtils.equals(lastSnapshotId, id)) {
+      clear();
+      lastSnapshotId = id;
+    }
+  }
+
+  /**
+   * The order of the elements of the sets is ignored, and the patterns on key and name are normalized like in the SQL request.
+   * The order of the measure criteria is kept as it defines the columns of the rows.
+   */
+  static String createKey(Filter filter) {
+    StringBuilder key = new StringBuilder();
+    if (filter.hasBaseSnapshot()) {
+      key.append("path=").append(filter.getRootSnapshotId()).append('|').append(filter.getBaseSnapshotPath())
+          .append(filter.getBaseSnapshotId());
+    }
+    key.append(";view=").append(filter.isViewContext());
+    key.append(";scopes=").append(sorted(filter.getScopes()));
+    key.append(";qualifiers=").append(sorted(filter.getQualifiers()));
+    key.append(";languages=").append(sorted(filter.getLanguages()));
+    key.append(";favourites=").append(sorted(filter.getFavouriteIds()));
+    if (filter.getDateCriterion() != null) {
+      appendDateCriterion(key, filter.getDateCriterion());
+    }
+    key.append(";key=").append(normalizePattern(filter.getKeyRegexp()));
+    key.append(";name=").append(normalizePattern(filter.getNameRegexp()));
+    key.append(";period=").append(filter.getPeriodIndex());
+    for (MeasureCriterion criterion : filter.getMeasureCriteria()) {
+      key.append(";measure=").append(criterion.getMetricId()).append(criterion.isVariation() ? "v" : "")
+          .append(criterion.getOperator()).append(criterion.getValue());
+    }
+    key.append(";sort=");
+    if (filter.getSortedMetricId() != null) {
+      key.append(filter.getSortedMetricId()).append('.').append(filter.getColumnToSort());
+    } else if (filter.isSortedByLanguage()) {
+      key.append("language");
+    } else if (filter.isSortedByName()) {
+      key.append("name");
+    } else if (filter.isSortedByDate()) {
+      key.append("date");
+    } else if (filter.isSortedByVersion()) {
+      key.append("version");
+    }
+    key.append(filter.isAscendingSort() ? " asc" : " desc");
+    if (filter.isPaginated()) {
+      key.append(";page=").append(filter.getPageIndex()).append('/').append(filter.getPageSize());
+    }
+    return key.toString();
+  }
+
+  /**
+   * A relative date is identified by its number of days and by the current day, so that the filter hits the cache until midnight.
+   */
+  private static void appendDateCriterion(StringBuilder key, DateCriterion criterion) {
+    key.append(";date").append(criterion.getOperator());
+    if (criterion.getDaysAgo() != null) {
+      key.append(criterion.getDaysAgo()).append("d@").append(DateUtils.truncate(new Date(), Calendar.DATE).getTime());
+    } else {
+      key.append(criterion.getDate().getTime());
+    }
+  }
+
+  private static String sorted(Collection<?> elements) {
+    if (elements == null) {
+      return "null";
+    }
+    return new TreeSet<Object>(elements).toString();
+  }
+
+  private static String normalizePattern(String pattern) {
+    if (StringUtils.isBlank(pattern)) {
+      return "";
+    }
+    return StringUtils.upperCase(StringUtils.replaceChars(pattern, '*', '%'));
+  }
+}
@@ -52,6 +52,7 @@ import org.sonar.server.configuration.ProfilesManager;
 import org.sonar.server.database.EmbeddedDatabaseFactory;
 import org.sonar.server.database.JndiDatabaseConnector;
 import org.sonar.server.filters.FilterExecutor;
+import org.sonar.server.filters.FilterResultCache;
 import org.sonar.server.mavendeployer.MavenRepository;
 import org.sonar.server.plugins.*;
 import org.sonar.server.qualitymodel.DefaultModelManager;
@@ -59,6 +60,7 @@ import org.sonar.server.rules.*;
 import org.sonar.server.startup.*;
 import org.sonar.server.ui.AuthenticatorFactory;
 import org.sonar.server.ui.CodeColorizers;
+import org.sonar.server.ui.ColorizedSourceCache;
 import org.sonar.server.ui.Views;
 
 /**
@@ -136,6 +138,7 @@ public final class Platform {
     coreContainer.as(Characteristics.CACHE).addComponent(UpdateCenterClient.class);
     coreContainer.as(Characteristics.CACHE).addComponent(UpdateCenterMatrixFactory.class);
     coreContainer.as(Characteristics.CACHE).addComponent(PluginDownloader.class);
+    coreContainer.as(Characteristics.CACHE).addComponent(FilterResultCache.class);
     coreContainer.as(Characteristics.NO_CACHE).addComponent(FilterExecutor.class);
     coreContainer.as(Characteristics.NO_CACHE).addAdapter(new DatabaseSessionProvider());
     coreContainer.start();
@@ -160,6 +163,7 @@ public final class Platform {
     servicesContainer.as(Characteristics.CACHE).addComponent(Languages.class);
     servicesContainer.as(Characteristics.CACHE).addComponent(Views.class);
     servicesContainer.as(Characteristics.CACHE).addComponent(CodeColorizers.class);
+    servicesContainer.as(Characteristics.CACHE).addComponent(ColorizedSourceCache.class);
     servicesContainer.as(Characteristics.NO_CACHE).addComponent(RulesDao.class);
     servicesContainer.as(Characteristics.NO_CACHE).addComponent(MeasuresDao.class);
     servicesContainer.as(Characteristics.NO_CACHE).addComponent(org.sonar.api.database.daos.MeasuresDao.class);
@@ -0,0 +1,198 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.server.ui;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.ServerComponent;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the HTML of the last colorized sources. The source of a snapshot never changes, so entries are identified by
+ * the id of the snapshot source and by the language. The least recently used entries are evicted when the memory budget
+ * is exceeded. If the spill is enabled, evicted entries are written to a temporary directory and are reloaded when
+ * requested again.
+ *
+ * @since 2.8
+ */
+public class ColorizedSourceCache implements ServerComponent {
+
+  /**
+   * Maximum size in Mb of the colorized sources kept in memory. Zero disables the cache.
+   */
+  public static final String MEMORY_BUDGET_PROPERTY = "sonar.web.colorizedSources.memoryBudget";
+  public static final int MEMORY_BUDGET_DEFAULT_VALUE = 16;
+
+  public static final String SPILL_PROPERTY = "sonar.web.colorizedSources.spill";
+  public static final boolean SPILL_DEFAULT_VALUE = false;
+
+  /**
+   * The spilled sources can use ten times the memory budget on disk.
+   */
+  static final int SPILL_RATIO = 10;
+
+  private static final Logger LOG = LoggerFactory.getLogger(ColorizedSourceCache.class);
+  private static final String ENCODING = "UTF-8";
+
+  private final long maxChars;
+  private final boolean spill;
+  private long inMemory = 0;
+  private long onDisk = 0;
+  private final LinkedHashMap<String, String> htmlByKey = new LinkedHashMap<String, String>(16, 0.75f, true);
+
+  // number of characters of the spilled sources, ordered from the least to the most recently spilled
+  private final LinkedHashMap<String, Long> spilledLengthByKey = new LinkedHashMap<String, Long>();
+  private File spillDir;
+
+  public ColorizedSourceCache(Configuration configuration) {
+    this(configuration.getLong(MEMORY_BUDGET_PROPERTY, MEMORY_BUDGET_DEFAULT_VALUE) * 1024L * 1024L / 2L,
+        configuration.getBoolean(SPILL_PROPERTY, SPILL_DEFAULT_VALUE));
+  }
+
+  /**
+   * @param maxChars maximum number of characters kept in memory
+   */
+  ColorizedSourceCache(long maxChars, boolean spill) {
+    this.maxChars = maxChars;
+    this.spill = spill;
+  }
+
+  public boolean isEnabled() {
+    return maxChars > 0;
+  }
+
+  public void stop() {
+    clear();
+  }
+
+  /**
+   * @return the colorized source, null if it's not cached
+   */
+  public synchronized String get(long sourceId, String language) {
+    if (!isEnabled()) {
+      return null;
+    }
+    String key = createKey(sourceId, language);
+    String html = htmlByKey.get(key);
+    if (html == null && spilledLengthByKey.containsKey(key)) {
+      html = reload(key);
+      if (html != null) {
+        put(key, html);
+      }
+    }
+    return html;
+  }
+
+  public synchronized void put(long sourceId, String language, String html) {
+    if (isEnabled() && html.length() <= maxChars) {
+      put(createKey(sourceId, language), html);
+    }
+  }
+
+  public synchronized void clear() {
+    htmlByKey.clear();
+    spilledLengthByKey.clear();
+    inMemory = 0;
+    onDisk = 0;
+    if (spillDir != null) {
+      FileUtils.deleteQuietly(spillDir);
+      spillDir = null;
+    }
+  }
+
+  synchronized long getMemoryUsage() {
+    return inMemory;
+  }
+
+  synchronized boolean isSpilled(long sourceId, String language) {
+    return spilledLengthByKey.containsKey(createKey(sourceId, language));
+  }
+
+  private void put(String key, String html) {
+    String previous = htmlByKey.put(key, html);
+    inMemory += html.length() - (previous == null ? 0 : previous.length());
+
+    Iterator<Map.Entry<String, String>> it = htmlByKey.entrySet().iterator();
+    while (inMemory > maxChars && it.hasNext()) {
+      Map.Entry<String, String> entry = it.next();
+      if (!entry.getKey().equals(key)) {
+        if (spill) {
+          write(entry.getKey(), entry.getValue());
+        }
+        inMemory -= entry.getValue().length();
+        it.remove();
+      }
+    }
+  }
+
+  private void write(String key, String html) {
+    if (spilledLengthByKey.containsKey(key)) {
+      // the source never changes, the file is still valid
+      return;
+    }
+    try {
+      FileUtils.writeStringToFile(new File(getSpillDir(), key), html, ENCODING);
+      spilledLengthByKey.put(key, (long) html.length());
+      onDisk += html.length();
+
+      Iterator<Map.Entry<String, Long>> it = spilledLengthByKey.entrySet().iterator();
+      while (onDisk > maxChars * SPILL_RATIO && it.hasNext()) {
+        Map.Entry<String, Long> entry = it.next();
+        FileUtils.deleteQuietly(new File(spillDir, entry.getKey()));
+        onDisk -= entry.getValue();
+        it.remove();
+      }
+    } catch (IOException e) {
+      LOG.warn("Fail to spill the colorized source " + key, e);
+    }
+  }
+
+  private String reload(String key) {
+    try {
+      return FileUtils.readFileToString(new File(spillDir, key), ENCODING);
+    } catch (IOException e) {
+      LOG.warn("Fail to reload the colorized source " + key, e);
+      onDisk -= spilledLengthByKey.remove(key);
+      return null;
+    }
+  }
+
+  private File getSpillDir() throws IOException {
+    if (spillDir == null) {
+      File file = File.createTempFile("sonar-colorized-sources", "");
+      FileUtils.forceDelete(file);
+      FileUtils.forceMkdir(file);
+      spillDir = file;
+      LOG.info("Colorized sources exceeding the memory budget are stored in " + spillDir.getAbsolutePath());
+    }
+    return spillDir;
+  }
+
+  static String createKey(long sourceId, String language) {
+    return new StringBuilder().append(sourceId).append('-').append(language).append(".html").toString();
+  }
+}
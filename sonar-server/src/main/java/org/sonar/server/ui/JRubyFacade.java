@@ -41,6 +41,7 @@ import org.sonar.server.configuration.ProfilesManager;
 import org.sonar.server.filters.Filter;
 import org.sonar.server.filters.FilterExecutor;
 import org.sonar.server.filters.FilterResult;
+import org.sonar.server.filters.FilterResultCache;
 import org.sonar.server.platform.Platform;
 import org.sonar.server.plugins.*;
 import org.sonar.server.rules.ProfilesConsole;
@@ -65,6 +66,10 @@ public final class JRubyFacade {
     return getContainer().getComponent(FilterExecutor.class).execute(filter);
   }
 
+  public void clearFilterResults() {
+    getContainer().getComponent(FilterResultCache.class).clear();
+  }
+
   // UPDATE CENTER ------------------------------------------------------------
 
   public void downloadPlugin(String pluginKey, String pluginVersion) {
@@ -123,6 +128,25 @@ public final class JRubyFacade {
     }
   }
 
+  /**
+   * Same as {@link #colorizeCode(String, String)}, but the HTML is cached because the source of a snapshot never changes.
+   */
+  public String colorizeSource(long sourceId, String code, String language) {
+    ColorizedSourceCache cache = getContainer().getComponent(ColorizedSourceCache.class);
+    String html = cache.get(sourceId, language);
+    if (html == null) {
+      try {
+        html = getContainer().getComponent(CodeColorizers.class).toHtml(code, language);
+        cache.put(sourceId, language, html);
+
+      } catch (Exception e) {
+        LoggerFactory.getLogger(getClass()).error("Can not highlight the code, language= " + language, e);
+        return code;
+      }
+    }
+    return html;
+  }
+
   public static String markdownToHtml(String input) {
     return MarkdownEngine.convertToHtml(input);
   }
@@ -79,7 +79,7 @@ class BrowseController < ApplicationController
     @expanded=(params[:expand]=='true')
 
     if @snapshot.source
-      source_lines=Java::OrgSonarServerUi::JRubyFacade.new.colorizeCode(@snapshot.source.data, @snapshot.project.language).split("\n")
+      source_lines=@snapshot.source.syntax_highlighted_source.split("\n")
       init_scm((@period && use_scm_for_periods) || @display_scm)
 
       @lines=[]
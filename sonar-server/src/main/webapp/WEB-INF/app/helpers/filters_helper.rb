@@ -24,6 +24,7 @@ module FiltersHelper
     java_filter=Java::OrgSonarServerFilters::Filter.new
 
     #----- FILTER ON RESOURCES
+    snapshot=nil
     if filter.resource_id
       snapshot=Snapshot.find(:first, :conditions => {:project_id => filter.resource_id, :islast => true})
       if snapshot
@@ -101,12 +102,28 @@ module FiltersHelper
     #----- VARIATION
     java_filter.setPeriodIndex(filter_context.period_index)
 
+    #----- PAGINATION
+    # All the resources of a project have the same permissions, so only the requested page is loaded from database
+    paginated=(snapshot && filter_context.page_size.to_i>0)
+    if paginated
+      java_filter.setPagination(filter_context.page_size.to_i, filter_context.page_id)
+    end
+
     #----- EXECUTION
     java_result=java_facade.execute_filter(java_filter)
-    snapshot_ids=extract_snapshot_ids(java_result.getRows())
+    if paginated
+      if has_role?(:user, snapshot.root_project_id || snapshot.project_id)
+        snapshot_ids=java_result.getRows().map{|row| to_integer(row[0])}
+        filter_context.process_page_results(snapshot_ids, java_result.getTotalSize())
+      else
+        filter_context.process_results([], java_result.getTotalSize()>0)
+      end
+    else
+      snapshot_ids=extract_snapshot_ids(java_result.getRows())
 
-    has_security_exclusions=(snapshot_ids.size < java_result.size())
-    filter_context.process_results(snapshot_ids, has_security_exclusions)
+      has_security_exclusions=(snapshot_ids.size < java_result.size())
+      filter_context.process_results(snapshot_ids, has_security_exclusions)
+    end
   end
 
   def column_title(column, filter)
@@ -33,60 +33,27 @@
 
   def process_results(snapshot_ids, security_exclusions)
     @sids=snapshot_ids
+    @size=snapshot_ids.size
     @security_exclusions=security_exclusions
     
     from=(@page_id-1) * @page_size
     to=(@page_id*@page_size)-1
     to=@sids.size-1 if to>=@sids.size
 
-    @measures_by_snapshot={}
-    @page_snapshots=[]
-    @snapshots_by_id={}
-    @links_by_pid={}
-    if from<@sids.size
-      #
-      # load snapshots and resources
-      #
-      @page_sids=@sids[from..to]
-      @page_snapshots=Snapshot.find(:all, :include => ['project'], :conditions => ['id in (?)', @page_sids])
-      @page_snapshots.each{|s| @snapshots_by_id[s.id]=s}
-
-      if @page_sids.size>0
-        #
-        # load measures
-        #
-        if @metric_ids.size>0
-          measures=ProjectMeasure.find(:all, :conditions => ['rule_priority is null and rule_id is null and characteristic_id is null and snapshot_id in (?)', @page_sids])
-
-          if filter.display_user_managed_metrics?
-            measures.concat(AsyncMeasureSnapshot.search(@page_sids, @metric_ids))
-          end
-
-          measures.each do |m|
-            snapshot=@snapshots_by_id[m.snapshot_id]
-            @measures_by_snapshot[snapshot]||={}
-            @measures_by_snapshot[snapshot][m.metric]=m
-          end
-        end
-
-        #
-        # load links
-        #
-        if @filter.display_links?
-          pids=@page_snapshots.map{|snapshot| snapshot.project_id}
-          ProjectLink.find(:all, :conditions => {:project_id => pids}, :order => 'link_type').each do |link|
-            @links_by_pid[link.project_id] ||= []
-            @links_by_pid[link.project_id]<<link
-          end
-        end
-      end
-    end
-    self
+    load_page(from<@sids.size ? @sids[from..to] : nil)
   end
 
+  #
+  # The database returned only the snapshots of the requested page
+  #
+  def process_page_results(page_snapshot_ids, total_size)
+    @size=total_size
+    @security_exclusions=false
+    load_page(page_snapshot_ids)
+  end
 
   def size
-    @sids.size
+    @size
   end
 
   def empty?
@@ -94,8 +61,8 @@
   end
 
   def page_count
-    result=@sids.size / @page_size
-    result+=1 if (@sids.size % @page_size > 0)
+    result=@size / @page_size
+    result+=1 if (@size % @page_size > 0)
     result
   end
 
@@ -140,6 +107,52 @@
 
   private
 
+  def load_page(page_snapshot_ids)
+    @measures_by_snapshot={}
+    @page_snapshots=[]
+    @snapshots_by_id={}
+    @links_by_pid={}
+    if page_snapshot_ids && !page_snapshot_ids.empty?
+      #
+      # load snapshots and resources
+      #
+      @page_sids=page_snapshot_ids
+      @page_snapshots=Snapshot.find(:all, :include => ['project'], :conditions => ['id in (?)', @page_sids])
+      @page_snapshots.each{|s| @snapshots_by_id[s.id]=s}
+
+      if @page_sids.size>0
+        #
+        # load measures
+        #
+        if @metric_ids.size>0
+          measures=ProjectMeasure.find(:all, :conditions => ['rule_priority is null and rule_id is null and characteristic_id is null and snapshot_id in (?)', @page_sids])
+
+          if filter.display_user_managed_metrics?
+            measures.concat(AsyncMeasureSnapshot.search(@page_sids, @metric_ids))
+          end
+
+          measures.each do |m|
+            snapshot=@snapshots_by_id[m.snapshot_id]
+            @measures_by_snapshot[snapshot]||={}
+            @measures_by_snapshot[snapshot][m.metric]=m
+          end
+        end
+
+        #
+        # load links
+        #
+        if @filter.display_links?
+          pids=@page_snapshots.map{|snapshot| snapshot.project_id}
+          ProjectLink.find(:all, :conditions => {:project_id => pids}, :order => 'link_type').each do |link|
+            @links_by_pid[link.project_id] ||= []
+            @links_by_pid[link.project_id]<<link
+          end
+        end
+      end
+    end
+    self
+  end
+
   def extract_snapshot_ids(sql_rows)
     sids=[]
     project_ids=sql_rows.map{|r| r[2] ? to_integer(r[2]) : to_integer(r[1])}.compact.uniq
@@ -73,7 +73,7 @@ class SnapshotSource < ActiveRecord::Base
   def syntax_highlighted_source
     @syntax_highlighted_source||=
       begin
-        data ? Java::OrgSonarServerUi::JRubyFacade.getInstance().colorizeCode(data, snapshot.project.language) : ''
+        data ? Java::OrgSonarServerUi::JRubyFacade.getInstance().colorizeSource(id, data, snapshot.project.language) : ''
       end
   end
   
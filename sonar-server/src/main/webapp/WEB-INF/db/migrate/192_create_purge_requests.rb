@@ -0,0 +1,37 @@
+#
+# Sonar, entreprise quality control tool.
+# Copyright (C) 2008-2011 SonarSource
+# mailto:contact AT sonarsource DOT com
+#
+# Sonar is free software; you can redistribute it and/or
+# modify it under the terms of the GNU Lesser General Public
+# License as published by the Free Software Foundation; either
+# version 3 of the License, or (at your option) any later version.
+#
+# Sonar is distributed in the hope that it will be useful,
+# but WITHOUT ANY WARRANTY; without even the implied warranty of
+# MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+# Lesser General Public License for more details.
+#
+# You should have received a copy of the GNU Lesser General Public
+# License along with Sonar; if not, write to the Free Software
+# Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+#
+
+#
+# Sonar 2.8
+#
+class CreatePurgeRequests < ActiveRecord::Migration
+
+  def self.up
+    create_table 'purge_requests' do |t|
+      t.column 'project_id',           :integer,  :null => false
+      t.column 'snapshot_id',          :integer,  :null => false
+      t.column 'previous_snapshot_id', :integer,  :null => true
+      t.column 'created_at',           :datetime, :null => true
+      t.column 'attempts',             :integer,  :null => true
+    end
+    add_index 'purge_requests', 'project_id', :name => 'purge_requests_project'
+  end
+
+end
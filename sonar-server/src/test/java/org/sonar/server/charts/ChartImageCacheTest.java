@@ -0,0 +1,103 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.server.charts;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ChartImageCacheTest {
+
+  @Test
+  public void shouldNormalizeParameters() {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("ck", "xradar");
+    params.put("w", "200");
+    params.put("title", null);
+    Map<String, String> otherOrder = new HashMap<String, String>();
+    otherOrder.put("w", "200");
+    otherOrder.put("ck", "xradar");
+
+    assertThat(ChartImageCache.createKey(params), is("ck=xradar&w=200&"));
+    assertThat(ChartImageCache.createKey(otherOrder), is(ChartImageCache.createKey(params)));
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedImages() {
+    ChartImageCache cache = new ChartImageCache(20, ChartImageCache.DEFAULT_TIME_TO_LIVE_MS);
+    cache.put("first", new byte[8]);
+    cache.put("second", new byte[8]);
+    cache.get("first");
+    cache.put("third", new byte[8]);
+
+    assertThat(cache.get("first"), not(nullValue()));
+    assertThat(cache.get("second"), nullValue());
+    assertThat(cache.get("third"), not(nullValue()));
+    assertThat(cache.getBytes(), is(16L));
+  }
+
+  @Test
+  public void shouldNotCacheImagesLargerThanLimit() {
+    ChartImageCache cache = new ChartImageCache(20, ChartImageCache.DEFAULT_TIME_TO_LIVE_MS);
+    ChartImageCache.Image image = cache.put("huge", new byte[30]);
+
+    assertThat(image.getData().length, is(30));
+    assertThat(cache.get("huge"), nullValue());
+    assertThat(cache.size(), is(0));
+  }
+
+  @Test
+  public void shouldExpireImages() throws InterruptedException {
+    ChartImageCache cache = new ChartImageCache(20, 1L);
+    cache.put("first", new byte[8]);
+    Thread.sleep(10L);
+
+    assertThat(cache.get("first"), nullValue());
+    assertThat(cache.getBytes(), is(0L));
+  }
+
+  @Test
+  public void shouldBeDisabled() {
+    ChartImageCache cache = new ChartImageCache(0, ChartImageCache.DEFAULT_TIME_TO_LIVE_MS);
+    cache.put("first", new byte[8]);
+
+    assertThat(cache.isEnabled(), is(false));
+    assertThat(cache.get("first"), nullValue());
+  }
+
+  @Test
+  public void shouldMatchEtag() {
+    ChartImageCache.Image image = new ChartImageCache(20, ChartImageCache.DEFAULT_TIME_TO_LIVE_MS).put("first", new byte[]{1, 2, 3});
+    ChartImageCache.Image sameData = new ChartImageCache(20, ChartImageCache.DEFAULT_TIME_TO_LIVE_MS).put("other", new byte[]{1, 2, 3});
+
+    assertThat(image.getEtag(), is(sameData.getEtag()));
+    assertThat(image.matches(image.getEtag()), is(true));
+    assertThat(image.matches("\"abc\", " + image.getEtag()), is(true));
+    assertThat(image.matches("*"), is(true));
+    assertThat(image.matches("\"abc\""), is(false));
+    assertThat(image.matches(null), is(false));
+  }
+}
@@ -58,6 +58,20 @@ public class FilterExecutorTest extends AbstractDbUnitTestCase {
     assertSnapshotIds(result, 2, 3);
   }
 
+  @Test
+  public void shouldCacheResults() {
+    setupData("shared");
+    FilterResultCache cache = new FilterResultCache(100);
+    FilterExecutor executor = new FilterExecutor(getSession(), cache);
+    FilterResult result = executor.execute(new Filter().setQualifiers(Resource.QUALIFIER_PROJECT, Resource.QUALIFIER_MODULE));
+    assertSnapshotIds(result, 2, 3);
+
+    FilterResult cachedResult = executor.execute(new Filter().setQualifiers(Resource.QUALIFIER_MODULE, Resource.QUALIFIER_PROJECT));
+    assertThat(cachedResult == result, is(true));
+    assertThat(cache.getHits(), is(1L));
+    assertThat(cache.getMisses(), is(1L));
+  }
+
   @Test
   public void filterOnLanguages() {
     setupData("shared");
@@ -116,6 +130,19 @@ public class FilterExecutorTest extends AbstractDbUnitTestCase {
     assertSortedSnapshotIds(result, 3, 4, 2);
   }
 
+  @Test
+  public void shouldLoadOnlyRequestedPage() {
+    setupData("shared");
+    FilterExecutor executor = new FilterExecutor(getSession());
+    FilterResult result = executor.execute(Filter.createForAllQualifiers().setSortedByDate().setPagination(2, 2));
+    assertSortedSnapshotIds(result, 3);
+    assertThat(result.getTotalSize(), is(3));
+
+    result = executor.execute(Filter.createForAllQualifiers().setSortedByDate().setAscendingSort(false).setPagination(2, 1));
+    assertSortedSnapshotIds(result, 3, 4);
+    assertThat(result.getTotalSize(), is(3));
+  }
+
   @Test
   public void sortByAscendingDate() {
     setupData("shared");
@@ -0,0 +1,116 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.server.filters;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class FilterResultCacheTest {
+
+  @Test
+  public void shouldCountHitsAndMisses() {
+    FilterResultCache cache = new FilterResultCache(100);
+    Filter filter = new Filter().setQualifiers("TRK");
+    assertThat(cache.get(filter, 10L), nullValue());
+
+    FilterResult result = newResult(filter, 3);
+    cache.put(filter, 10L, result);
+    assertThat(cache.get(new Filter().setQualifiers("TRK"), 10L), is(result));
+    assertThat(cache.getHits(), is(1L));
+    assertThat(cache.getMisses(), is(1L));
+  }
+
+  @Test
+  public void shouldEvictResultsWhenNewSnapshotIsProcessed() {
+    FilterResultCache cache = new FilterResultCache(100);
+    Filter filter = new Filter().setQualifiers("TRK");
+    cache.put(filter, 10L, newResult(filter, 3));
+
+    assertThat(cache.get(filter, 11L), nullValue());
+    assertThat(cache.size(), is(0));
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedResults() {
+    FilterResultCache cache = new FilterResultCache(10);
+    Filter first = new Filter().setQualifiers("TRK");
+    Filter second = new Filter().setQualifiers("BRC");
+    Filter third = new Filter().setQualifiers("PAC");
+    cache.put(first, 10L, newResult(first, 4));
+    cache.put(second, 10L, newResult(second, 4));
+    cache.get(first, 10L);
+    cache.put(third, 10L, newResult(third, 4));
+
+    assertThat(cache.get(first, 10L), not(nullValue()));
+    assertThat(cache.get(second, 10L), nullValue());
+    assertThat(cache.get(third, 10L), not(nullValue()));
+    assertThat(cache.getRows(), is(8));
+  }
+
+  @Test
+  public void shouldNotCacheTooLargeResults() {
+    FilterResultCache cache = new FilterResultCache(10);
+    Filter filter = new Filter().setQualifiers("FIL");
+    cache.put(filter, 10L, newResult(filter, 11));
+
+    assertThat(cache.size(), is(0));
+  }
+
+  @Test
+  public void shouldIgnoreOrderOfSets() {
+    Filter filter = new Filter().setQualifiers("TRK", "BRC").setLanguages("java", "php").setKeyRegexp("*foo*");
+    Filter sameFilter = new Filter().setQualifiers("BRC", "TRK").setLanguages("php", "java").setKeyRegexp("%FOO%");
+
+    assertThat(FilterResultCache.createKey(filter), is(FilterResultCache.createKey(sameFilter)));
+  }
+
+  @Test
+  public void shouldDistinguishSortsAndCriteria() {
+    String key = FilterResultCache.createKey(new Filter().setQualifiers("TRK").setSortedMetricId(3));
+
+    assertThat(FilterResultCache.createKey(new Filter().setQualifiers("TRK").setSortedMetricId(3).setAscendingSort(false)), not(key));
+    assertThat(FilterResultCache.createKey(new Filter().setQualifiers("TRK").setSortedMetricId(4)), not(key));
+    assertThat(FilterResultCache.createKey(new Filter().setQualifiers("TRK").setSortedByName()), not(key));
+    assertThat(FilterResultCache.createKey(new Filter().setQualifiers("TRK").setSortedMetricId(3)
+        .createMeasureCriterionOnValue(3, ">", 10.0, false)), not(key));
+    assertThat(FilterResultCache.createKey(new Filter().setQualifiers("TRK").setSortedMetricId(3).setFavouriteIds(1, 2)), not(key));
+  }
+
+  @Test
+  public void shouldIdentifyRelativeDatesByTheirNumberOfDays() throws InterruptedException {
+    String key = FilterResultCache.createKey(new Filter().setQualifiers("TRK").setDateCriterion(">=", 30));
+    Thread.sleep(5);
+
+    assertThat(FilterResultCache.createKey(new Filter().setQualifiers("TRK").setDateCriterion(">=", 30)), is(key));
+    assertThat(FilterResultCache.createKey(new Filter().setQualifiers("TRK").setDateCriterion(">=", 31)), not(key));
+    assertThat(FilterResultCache.createKey(new Filter().setQualifiers("TRK").setDateCriterion("<", 30)), not(key));
+  }
+
+  private static FilterResult newResult(Filter filter, int rows) {
+    return new FilterResult(filter, Collections.nCopies(rows, new Object[] { 1, 1, 1 }));
+  }
+}
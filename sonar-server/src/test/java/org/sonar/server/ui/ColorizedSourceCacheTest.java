@@ -0,0 +1,90 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.server.ui;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ColorizedSourceCacheTest {
+
+  private static final String HTML = StringUtils.repeat("<span class=\"k\">public</span>", 10);
+
+  private ColorizedSourceCache cache = new ColorizedSourceCache(2L * HTML.length(), false);
+
+  @After
+  public void stop() {
+    cache.stop();
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedSources() {
+    cache.put(1L, "java", HTML);
+    cache.put(2L, "java", HTML);
+    cache.get(1L, "java");
+    cache.put(3L, "java", HTML);
+
+    assertThat(cache.get(1L, "java"), is(HTML));
+    assertThat(cache.get(2L, "java"), nullValue());
+    assertThat(cache.get(3L, "java"), is(HTML));
+    assertThat(cache.getMemoryUsage(), is(2L * HTML.length()));
+  }
+
+  @Test
+  public void shouldIdentifySourcesByLanguage() {
+    cache.put(1L, "java", HTML);
+
+    assertThat(cache.get(1L, "flex"), nullValue());
+  }
+
+  @Test
+  public void shouldReloadSpilledSources() {
+    cache = new ColorizedSourceCache(2L * HTML.length(), true);
+    cache.put(1L, "java", HTML);
+    cache.put(2L, "java", HTML + "<br/>");
+    cache.put(3L, "java", HTML);
+
+    assertThat(cache.isSpilled(1L, "java"), is(true));
+    assertThat(cache.get(1L, "java"), is(HTML));
+    assertThat(cache.isSpilled(2L, "java"), is(true));
+    assertThat(cache.get(2L, "java"), is(HTML + "<br/>"));
+  }
+
+  @Test
+  public void shouldNotCacheSourcesLargerThanBudget() {
+    cache.put(1L, "java", HTML + HTML + HTML);
+
+    assertThat(cache.get(1L, "java"), nullValue());
+    assertThat(cache.getMemoryUsage(), is(0L));
+  }
+
+  @Test
+  public void shouldBeDisabled() {
+    cache = new ColorizedSourceCache(0L, false);
+    cache.put(1L, "java", HTML);
+
+    assertThat(cache.isEnabled(), is(false));
+    assertThat(cache.get(1L, "java"), nullValue());
+  }
+}
@@ -34,4 +34,8 @@ public class QueryByParent implements Query {
   public boolean match(SourceCode unit) {
     return unit.hasAmongParents(parent);
   }
+
+  SourceCode getParent() {
+    return parent;
+  }
 }
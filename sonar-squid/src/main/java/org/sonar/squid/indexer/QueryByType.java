@@ -38,6 +38,10 @@ public class QueryByType implements Query {
     return unit.isType(resourceType);
   }
 
+  Class<? extends SourceCode> getResourceType() {
+    return resourceType;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
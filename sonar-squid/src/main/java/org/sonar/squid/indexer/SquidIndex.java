@@ -17,10 +17,10 @@
  * License along with Sonar; if not, write to the Free Software
  * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
  */
-
 package org.sonar.squid.indexer;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -35,9 +35,14 @@ public class SquidIndex implements SourceCodeIndexer, SourceCodeSearchEngine {
 
   private Map<String, SourceCode> index = new TreeMap<String, SourceCode>();
 
+  /**
+   * Secondary index used to avoid a full scan when a query filters by type. The tree of source codes is used to filter by parent.
+   */
+  private Map<Class<? extends SourceCode>, Set<SourceCode>> indexByType = new HashMap<Class<? extends SourceCode>, Set<SourceCode>>();
+
   public Collection<SourceCode> search(Query... query) {
     Set<SourceCode> result = new HashSet<SourceCode>();
-    for (SourceCode unit : index.values()) {
+    for (SourceCode unit : getCandidates(query)) {
       if (isSquidUnitMatchQueries(unit, query)) {
         result.add(unit);
       }
@@ -45,6 +50,60 @@ public class SquidIndex implements SourceCodeIndexer, SourceCodeSearchEngine {
     return result;
   }
 
+  /**
+   * @return a subset of the index containing at least all the source codes matching the queries. Queries by type are resolved
+   *         with the index by type, else queries by parent are resolved by browsing the children of the parent. Other queries,
+   *         like {@link QueryByMeasure}, can't be indexed because measures change during the analysis.
+   */
+  private Collection<SourceCode> getCandidates(Query... queries) {
+    Collection<SourceCode> candidates = null;
+    for (Query query : queries) {
+      if (query instanceof QueryByType) {
+        Collection<SourceCode> units = getByType(((QueryByType) query).getResourceType());
+        if (candidates == null || units.size() < candidates.size()) {
+          candidates = units;
+        }
+      }
+    }
+    if (candidates == null) {
+      for (Query query : queries) {
+        if (query instanceof QueryByParent) {
+          Collection<SourceCode> units = getDescendants(((QueryByParent) query).getParent());
+          if (candidates == null || units.size() < candidates.size()) {
+            candidates = units;
+          }
+        }
+      }
+    }
+    return candidates == null ? index.values() : candidates;
+  }
+
+  private Collection<SourceCode> getByType(Class<? extends SourceCode> type) {
+    Set<SourceCode> units = indexByType.get(type);
+    return units == null ? new HashSet<SourceCode>() : units;
+  }
+
+  private Collection<SourceCode> getDescendants(SourceCode parent) {
+    Set<SourceCode> descendants = new HashSet<SourceCode>();
+    // the query can be built with another instance having the same key
+    SourceCode indexedParent = index.get(parent.getKey());
+    if (indexedParent != null) {
+      addDescendants(indexedParent, descendants);
+    }
+    return descendants;
+  }
+
+  private void addDescendants(SourceCode parent, Set<SourceCode> descendants) {
+    if (parent.hasChildren()) {
+      for (SourceCode child : parent.getChildren()) {
+        if (index.get(child.getKey()) == child) {
+          descendants.add(child);
+        }
+        addDescendants(child, descendants);
+      }
+    }
+  }
+
   private boolean isSquidUnitMatchQueries(SourceCode unit, Query... queries) {
     boolean match;
     for (Query query : queries) {
@@ -62,6 +121,15 @@ public class SquidIndex implements SourceCodeIndexer, SourceCodeSearchEngine {
 
   public void index(SourceCode sourceCode) {
     sourceCode.setSourceCodeIndexer(this);
-    index.put(sourceCode.getKey(), sourceCode);
+    SourceCode previous = index.put(sourceCode.getKey(), sourceCode);
+    if (previous != null) {
+      indexByType.get(previous.getClass()).remove(previous);
+    }
+    Set<SourceCode> units = indexByType.get(sourceCode.getClass());
+    if (units == null) {
+      units = new HashSet<SourceCode>();
+      indexByType.put(sourceCode.getClass(), units);
+    }
+    units.add(sourceCode);
   }
 }
@@ -0,0 +1,105 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2011 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.squid.indexer;
+
+import org.sonar.squid.api.Query;
+import org.sonar.squid.api.SourceClass;
+import org.sonar.squid.api.SourceCode;
+import org.sonar.squid.api.SourceFile;
+import org.sonar.squid.api.SourceMethod;
+import org.sonar.squid.api.SourcePackage;
+import org.sonar.squid.api.SourceProject;
+
+/**
+ * Compares the searches by type and by parent with a full scan of the index. It's not executed by the build.
+ * Usage: java SquidIndexBenchmark [number of files]
+ */
+public final class SquidIndexBenchmark {
+
+  private static final int FILES_PER_PACKAGE = 50;
+  private static final int METHODS_PER_CLASS = 20;
+  private static final int SEARCHES = 10;
+
+  private SquidIndexBenchmark() {
+  }
+
+  public static void main(String[] args) {
+    int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    SquidIndex index = new SquidIndex();
+    SourcePackage firstPackage = createTree(index, fileCount);
+
+    for (int i = 0; i < 3; i++) {
+      run("by type", index, new QueryByType(SourceFile.class));
+      run("by type (full scan)", index, new FullScanQuery(new QueryByType(SourceFile.class)));
+      run("by parent", index, new QueryByParent(firstPackage));
+      run("by parent (full scan)", index, new FullScanQuery(new QueryByParent(firstPackage)));
+    }
+  }
+
+  private static SourcePackage createTree(SquidIndex index, int fileCount) {
+    SourceProject project = new SourceProject("project");
+    index.index(project);
+    SourcePackage firstPackage = null;
+    SourcePackage sourcePackage = null;
+    for (int file = 0; file < fileCount; file++) {
+      if (file % FILES_PER_PACKAGE == 0) {
+        sourcePackage = new SourcePackage("org/foo" + file);
+        project.addChild(sourcePackage);
+        if (firstPackage == null) {
+          firstPackage = sourcePackage;
+        }
+      }
+      String className = sourcePackage.getKey() + "/Class" + file;
+      SourceFile sourceFile = new SourceFile(className + ".java");
+      sourcePackage.addChild(sourceFile);
+      SourceClass sourceClass = new SourceClass(className);
+      sourceFile.addChild(sourceClass);
+      for (int method = 0; method < METHODS_PER_CLASS; method++) {
+        sourceClass.addChild(new SourceMethod(sourceClass, "method" + method + "()V", method));
+      }
+    }
+    return firstPackage;
+  }
+
+  private static void run(String name, SquidIndex index, Query query) {
+    long start = System.currentTimeMillis();
+    int results = 0;
+    for (int i = 0; i < SEARCHES; i++) {
+      results = index.search(query).size();
+    }
+    long duration = System.currentTimeMillis() - start;
+    System.out.println(name + ": " + (duration / SEARCHES) + " ms per search, " + results + " results");
+  }
+
+  /**
+   * Hides the type of the wrapped query, so that the index can't be used.
+   */
+  private static final class FullScanQuery implements Query {
+    private final Query query;
+
+    private FullScanQuery(Query query) {
+      this.query = query;
+    }
+
+    public boolean match(SourceCode unit) {
+      return query.match(unit);
+    }
+  }
+}
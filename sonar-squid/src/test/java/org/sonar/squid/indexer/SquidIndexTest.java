@@ -109,4 +109,33 @@ public class SquidIndexTest {
     assertEquals(0, indexer.search(new QueryByMeasure(Metric.COMPLEXITY, Operator.EQUALS, 6)).size());
     assertEquals(1, indexer.search(new QueryByMeasure(Metric.COMPLEXITY, Operator.EQUALS, 2)).size());
   }
+
+  @Test
+  public void searchByParentBuiltWithAnotherInstance() {
+    Collection<SourceCode> resources = indexer.search(new QueryByParent(new SourcePackage("org.sonar.squid")));
+    assertEquals(3, resources.size());
+    assertTrue(resources.contains(classSquid));
+  }
+
+  @Test
+  public void searchByParentAndByMeasure() {
+    file2Squid.add(Metric.COMPLEXITY, 3);
+    Collection<SourceCode> resources = indexer.search(new QueryByParent(packSquid), new QueryByMeasure(Metric.COMPLEXITY,
+        Operator.GREATER_THAN, 1));
+    assertEquals(1, resources.size());
+    assertTrue(resources.contains(file2Squid));
+  }
+
+  @Test
+  public void searchByTypeAfterReindexing() {
+    SourceFile otherFile = new SourceFile("org.sonar.squid.Squid.java", "Squid.java");
+    indexer.index(otherFile);
+
+    Collection<SourceCode> resources = indexer.search(new QueryByType(SourceFile.class));
+    assertEquals(2, resources.size());
+    for (SourceCode resource : resources) {
+      assertTrue(resource != fileSquid);
+    }
+    assertEquals(0, indexer.search(new QueryByType(SourceProject.class), new QueryByType(SourceFile.class)).size());
+  }
 }